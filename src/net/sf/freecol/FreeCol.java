@@ -50,6 +50,8 @@ import net.sf.freecol.common.logging.DefaultHandler;
 import net.sf.freecol.common.model.NationOptions.Advantages;
 import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.StringTemplate;
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.MessageExecutor;
 import net.sf.freecol.common.networking.NoRouteToServerException;
 import net.sf.freecol.common.option.LanguageOption;
 import net.sf.freecol.common.option.Option;
@@ -491,6 +493,11 @@ public final class FreeCol {
                           .withArgName(Messages.message("cli.arg.name"))
                           .hasArg()
                           .create());
+        options.addOption(OptionBuilder.withLongOpt("server-threads")
+                          .withDescription(Messages.message("cli.server-threads"))
+                          .withArgName(Messages.message("cli.arg.threads"))
+                          .hasArg()
+                          .create());
         options.addOption(OptionBuilder.withLongOpt("splash")
                           .withDescription(Messages.message("cli.splash"))
                           .withArgName(Messages.message("cli.arg.file"))
@@ -526,6 +533,9 @@ public final class FreeCol {
                           .withArgName(Messages.message("cli.arg.dimensions"))
                           .hasOptionalArg()
                           .create());
+        options.addOption(OptionBuilder.withLongOpt("xml-protocol")
+                          .withDescription(Messages.message("cli.xml-protocol"))
+                          .create());
 
         CommandLineParser parser = new PosixParser();
         boolean usageError = false;
@@ -667,6 +677,14 @@ public final class FreeCol {
                 serverName = line.getOptionValue("server-name");
             }
 
+            if (line.hasOption("server-threads")) {
+                String arg = line.getOptionValue("server-threads");
+                if (!setServerThreads(arg)) { // Not fatal
+                    gripe(StringTemplate.template("cli.error.serverThreads")
+                        .addName("%string%", arg));
+                }
+            }
+
             if (line.hasOption("seed")) {
                 FreeColSeed.setFreeColSeed(line.getOptionValue("seed"));
             }
@@ -713,6 +731,10 @@ public final class FreeCol {
                 setWindowSize(arg); // Does not fail
             }
 
+            if (line.hasOption("xml-protocol")) {
+                Connection.setBinaryAllowed(false);
+            }
+
         } catch (ParseException e) {
             System.err.println("\n" + e.getMessage() + "\n");
             usageError = true;
@@ -1013,6 +1035,23 @@ public final class FreeCol {
         return false;
     }
 
+    /**
+     * Sets the number of threads handling network messages.
+     *
+     * @param threads A string containing the new number of threads.
+     * @return True if the number of threads was set.
+     */
+    public static boolean setServerThreads(String threads) {
+        try {
+            int result = Integer.parseInt(threads);
+            if (result >= 1) {
+                MessageExecutor.setPoolSize(result);
+                return true;
+            }
+        } catch (NumberFormatException nfe) {}
+        return false;
+    }
+
     /**
      * Gets the current version of game.
      *
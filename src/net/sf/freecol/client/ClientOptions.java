@@ -316,6 +316,12 @@ public class ClientOptions extends OptionGroup {
     public static final String ENEMY_MOVE_ANIMATION_SPEED
         = "model.option.enemyMoveAnimationSpeed";
 
+    /**
+     * The memory budget of the scaled image cache, in megabytes.
+     */
+    public static final String IMAGE_CACHE_SIZE
+        = "model.option.imageCacheSize";
+
 
     // clientOptions.messages
 
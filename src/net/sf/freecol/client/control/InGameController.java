@@ -103,6 +103,7 @@ import net.sf.freecol.common.model.WorkLocation;
 import net.sf.freecol.common.networking.NetworkConstants;
 import net.sf.freecol.common.networking.ServerAPI;
 import net.sf.freecol.common.option.BooleanOption;
+import net.sf.freecol.common.resources.ImageCache;
 import net.sf.freecol.server.FreeColServer;
 
 
@@ -1015,12 +1016,9 @@ public final class InGameController implements NetworkConstants {
         File saveGameFile = new File(autosaveDir, filename);
         File beforeSaveFile = new File(autosaveDir, beforeFilename);
 
-        // if "last-turn" file exists, shift it to "before-last-turn" file
-        if (saveGameFile.exists()) {
-           beforeSaveFile.delete();
-           saveGameFile.renameTo(beforeSaveFile);
-        }
-        saveGame(saveGameFile);
+        // any existing "last-turn" file is shifted to "before-last-turn"
+        // once the new one is written
+        autosaveGame(saveGameFile, beforeSaveFile);
 
         // conditional save after user-set period
         ClientOptions options = freeColClient.getClientOptions();
@@ -1036,7 +1034,26 @@ public final class InGameController implements NetworkConstants {
                 + '-' + gid  + "_" + playerNation
                 + "_" + getSaveGameString(game.getTurn()) + ".fsg";
             saveGameFile = new File(autosaveDir, filename);
-            saveGame(saveGameFile);
+            autosaveGame(saveGameFile, null);
+        }
+    }
+
+    /**
+     * Saves the game to an autosave file.  The game is captured at
+     * once, but written in the background so play can continue.
+     *
+     * @param file The <code>File</code> to save to.
+     * @param backup An optional <code>File</code> to move any existing
+     *     save to.
+     */
+    private void autosaveGame(File file, File backup) {
+        FreeColServer server = freeColClient.getFreeColServer();
+        try {
+            server.setActiveUnit(gui.getActiveUnit());
+            server.saveGameInBackground(file, backup,
+                                        freeColClient.getClientOptions());
+        } catch (IOException e) {
+            gui.showErrorMessage("couldNotSaveGame");
         }
     }
 
@@ -2190,7 +2207,10 @@ public final class InGameController implements NetworkConstants {
      * @return A <code>Map</code> containing the client statistics.
      */
     public java.util.Map<String, String> getClientStatistics() {
-        return freeColClient.getGame().getStatistics();
+        java.util.Map<String, String> stats
+            = freeColClient.getGame().getStatistics();
+        stats.putAll(ImageCache.getStatistics());
+        return stats;
     }
 
     /**
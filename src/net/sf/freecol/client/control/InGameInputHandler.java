@@ -20,7 +20,11 @@
 package net.sf.freecol.client.control;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,9 +44,12 @@ import net.sf.freecol.common.model.FreeColGameObject;
 import net.sf.freecol.common.model.FreeColObject;
 import net.sf.freecol.common.model.Game;
 import net.sf.freecol.common.model.Goods;
+import net.sf.freecol.common.model.GoodsContainer;
 import net.sf.freecol.common.model.GoodsType;
 import net.sf.freecol.common.model.HistoryEvent;
 import net.sf.freecol.common.model.LastSale;
+import net.sf.freecol.common.model.Locatable;
+import net.sf.freecol.common.model.Location;
 import net.sf.freecol.common.model.ModelMessage;
 import net.sf.freecol.common.model.Modifier;
 import net.sf.freecol.common.model.Monarch.MonarchAction;
@@ -183,6 +190,45 @@ public final class InGameInputHandler extends InputHandler {
             });
     }
 
+    /**
+     * Refreshes the parts of the map showing some changed tiles.
+     *
+     * @param tiles The <code>Tile</code>s that changed.
+     */
+    private void refreshTiles(final Collection<Tile> tiles) {
+        SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    getGUI().refreshTiles(tiles);
+                }
+            });
+    }
+
+    /**
+     * Adds the tile where an object is shown on the map to a set of
+     * changed tiles.
+     *
+     * @param fcgo The <code>FreeColGameObject</code> that changed.
+     * @param tiles The set of <code>Tile</code>s to add to.
+     * @return False if the object can change the map in ways that
+     *     do not belong to a tile, so the whole map must be refreshed.
+     */
+    private static boolean addChangedTile(FreeColGameObject fcgo,
+                                          Set<Tile> tiles) {
+        Tile tile;
+        if (fcgo instanceof Location) {
+            tile = ((Location)fcgo).getTile();
+        } else if (fcgo instanceof Locatable) {
+            tile = ((Locatable)fcgo).getTile();
+        } else if (fcgo instanceof GoodsContainer) {
+            Location loc = ((GoodsContainer)fcgo).getLocation();
+            tile = (loc == null) ? null : loc.getTile();
+        } else {
+            return false;
+        }
+        if (tile != null) tiles.add(tile);
+        return true;
+    }
+
     /**
      * Select a child element with the given object identifier from a
      * parent element.
@@ -458,7 +504,7 @@ public final class InGameInputHandler extends InputHandler {
                     }
                     getGUI().animateUnitAttack(attacker, defender,
                         attackerTile, defenderTile, success);
-                    refreshCanvas(false);
+                    refreshTiles(Arrays.asList(attackerTile, defenderTile));
                 }
             });
         return null;
@@ -467,7 +513,8 @@ public final class InGameInputHandler extends InputHandler {
     /**
      * Handles an "animateMove"-message.  This only performs
      * animation, if required.  It does not actually change unit
-     * positions, which happens in an "update".
+     * positions, which happens in an "update".  The animation is
+     * queued, and plays while the following messages are handled.
      *
      * @param element An element (root element in a DOM-parsed XML
      *     tree) that holds attributes for the old and new tiles and
@@ -518,17 +565,18 @@ public final class InGameInputHandler extends InputHandler {
 
         final boolean focus = unit != lastAnimatedUnit;
         lastAnimatedUnit = unit;
-        invokeAndWait(new Runnable() {
+        SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
                     if (getGUI().getAnimationSpeed(unit) > 0) {
                         // All is well, queue the animation.  Use
                         // lastAnimatedUnit as a filter to avoid
-                        // excessive refocussing.
-                        if (focus || !getGUI().onScreen(oldTile)) {
+                        // excessive refocussing, and do not move
+                        // the map under other units being animated.
+                        if ((focus || !getGUI().onScreen(oldTile))
+                            && !getGUI().isAnimatingUnitMoves()) {
                             getGUI().setFocusImmediately(oldTile);
                         }
                         getGUI().animateUnitMove(unit, oldTile, newTile);
-                        refreshCanvas(false);
                     } else {
                         // Not animating, but if the centering
                         // option is enabled at least refocus so
@@ -962,6 +1010,8 @@ public final class InGameInputHandler extends InputHandler {
         FreeColGameObject divert = game.getFreeColGameObject(ds);
         Player player = getFreeColClient().getMyPlayer();
         boolean visibilityChange = false;
+        boolean refreshAll = false;
+        Set<Tile> tiles = new HashSet<Tile>();
 
         NodeList nodeList = removeElement.getChildNodes();
         for (int i = 0; i < nodeList.getLength(); i++) {
@@ -979,10 +1029,13 @@ public final class InGameInputHandler extends InputHandler {
             if (fcgo instanceof Settlement) {
                 player.removeSettlement((Settlement)fcgo);
                 visibilityChange = true;//-vis(player)
+                refreshAll = true;
                 
             } else if (fcgo instanceof Unit) {
                 // Deselect the object if it is the current active unit.
                 Unit u = (Unit)fcgo;
+                if (player.owns(u)) refreshAll = true;
+                addChangedTile(u, tiles);
                 if (u == getGUI().getActiveUnit()) {
                     invokeAndWait(deselectActiveUnitRunnable);
                 }
@@ -998,7 +1051,11 @@ public final class InGameInputHandler extends InputHandler {
         }
         if (visibilityChange) player.invalidateCanSeeTiles();//+vis(player)
 
-        refreshCanvas(false);
+        if (refreshAll) {
+            refreshCanvas(false);
+        } else {
+            refreshTiles(tiles);
+        }
         return null;
     }
 
@@ -1131,6 +1188,8 @@ public final class InGameInputHandler extends InputHandler {
     private Element update(Element updateElement) {
         final Player player = getFreeColClient().getMyPlayer();
         boolean visibilityChange = false;
+        boolean refreshAll = false;
+        Set<Tile> tiles = new HashSet<Tile>();
 
         NodeList nodeList = updateElement.getChildNodes();
         for (int i = 0; i < nodeList.getLength(); i++) {
@@ -1140,7 +1199,10 @@ public final class InGameInputHandler extends InputHandler {
             if (fcgo == null) {
                 logger.warning("Update object not present in client: " + id);
             } else {
+                // Objects may move, so note where they were and are.
+                addChangedTile(fcgo, tiles);
                 fcgo.readFromXMLElement(element);
+                if (!addChangedTile(fcgo, tiles)) refreshAll = true;
             }
             if ((fcgo instanceof Player && ((Player)fcgo == player))
                 || ((fcgo instanceof Settlement || fcgo instanceof Unit)
@@ -1150,7 +1212,11 @@ public final class InGameInputHandler extends InputHandler {
         }
         if (visibilityChange) player.invalidateCanSeeTiles();//+vis(player)
 
-        refreshCanvas(false);
+        if (visibilityChange || refreshAll) {
+            refreshCanvas(false);
+        } else {
+            refreshTiles(tiles);
+        }
         return null;
     }
 }
@@ -42,6 +42,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
@@ -116,11 +117,13 @@ import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.model.UnitType;
 import net.sf.freecol.common.option.AudioMixerOption;
 import net.sf.freecol.common.option.BooleanOption;
+import net.sf.freecol.common.option.IntegerOption;
 import net.sf.freecol.common.option.LanguageOption;
 import net.sf.freecol.common.option.LanguageOption.Language;
 import net.sf.freecol.common.option.Option;
 import net.sf.freecol.common.option.OptionGroup;
 import net.sf.freecol.common.option.PercentageOption;
+import net.sf.freecol.common.resources.ImageCache;
 import net.sf.freecol.common.resources.ResourceManager;
 
 
@@ -556,6 +559,24 @@ public class GUI {
         canvas.refresh();
     }
 
+    /**
+     * Refreshes the parts of the screen showing some tiles that have
+     * changed, and their neighbours, along with the mini map and the
+     * info panel if it shows one of the tiles.
+     *
+     * @param tiles The <code>Tile</code>s that changed.
+     */
+    public void refreshTiles(Collection<Tile> tiles) {
+        if (mapViewer == null || canvas == null) return;
+        List<Rectangle> areas = mapViewer.getDirtyAreas(tiles);
+        if (areas == null) {
+            refresh();
+        } else {
+            for (Rectangle area : areas) canvas.repaint(area);
+        }
+        if (mapControls != null) mapControls.refreshTiles(tiles);
+    }
+
     /**
      * Refreshes the screen at the specified Tile.
      *
@@ -690,6 +711,17 @@ public class GUI {
                 }
             });
 
+        IntegerOption imageCacheSize
+            = (IntegerOption) opts.getOption(ClientOptions.IMAGE_CACHE_SIZE);
+        ImageCache.setBudget((long)imageCacheSize.getValue() << 20);
+        imageCacheSize.addPropertyChangeListener(new PropertyChangeListener() {
+                public void propertyChange(PropertyChangeEvent e) {
+                    int size = ((Integer)e.getNewValue()).intValue();
+                    ImageCache.setBudget((long)size << 20);
+                    logger.info("Set image cache size to: " + size + "MB");
+                }
+            });
+
         this.mapViewer = new MapViewer(freeColClient, innerWindowSize,
                                        imageLibrary);
         this.canvas = new Canvas(freeColClient, innerWindowSize, mapViewer);
@@ -988,6 +1020,15 @@ public class GUI {
         Animations.unitMove(this, unit, srcTile, dstTile);
     }
 
+    /**
+     * Are unit moves being animated?
+     *
+     * @return True if a unit move animation is playing.
+     */
+    public boolean isAnimatingUnitMoves() {
+        return canvas != null && Animations.isAnimatingMoves(this);
+    }
+
 
     // MapControls handling
 
@@ -1791,6 +1832,16 @@ public class GUI {
         mapViewer.executeWithUnitOutForAnimation(unit, sourceTile, r);
     }
 
+    public JLabel enterUnitOutForAnimation(Unit unit, Tile sourceTile) {
+        if (mapViewer == null) return null;
+        return mapViewer.enterUnitOutForAnimation(unit, sourceTile);
+    }
+
+    public void releaseUnitOutForAnimation(Unit unit) {
+        if (mapViewer == null) return;
+        mapViewer.releaseUnitOutForAnimation(unit);
+    }
+
     public Unit getActiveUnit() {
         if (mapViewer == null) return null;
         return mapViewer.getActiveUnit();
@@ -44,6 +44,7 @@ import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -124,6 +125,9 @@ public final class MapViewer {
      */
     private ImageLibrary lib;
 
+    /** The rendered base terrain of recently displayed tiles. */
+    private final TerrainCache terrainCache = new TerrainCache();
+
     private TerrainCursor cursor;
     private final Vector<GUIMessage> messages;
 
@@ -771,7 +775,12 @@ public final class MapViewer {
                 && (freeColClient.getGame().getMap() != null)
                 && (focus != null)
                 && freeColClient.isInGame()) {
-            removeOldMessages();
+            // Messages are drawn over the whole map, so if one expires
+            // during a partial repaint, repaint everything.
+            if (removeOldMessages()
+                && !g.getClipBounds().contains(0, 0, size.width, size.height)) {
+                gui.getCanvas().refresh();
+            }
             displayMap(g);
         } else {
             if (freeColClient.isMapEditor()) {
@@ -1008,6 +1017,52 @@ public final class MapViewer {
     }
 
 
+    /**
+     * Gets the areas of the screen to repaint when some tiles have
+     * changed.  Each tile is extended by its neighbours, as a change
+     * to a tile can change the borders drawn on them, and the units
+     * and labels drawn on a tile can overlap them.  Overlapping areas
+     * are merged, so tiles close together are repainted as one area
+     * and tiles far apart separately.
+     *
+     * @param tiles The <code>Tile</code>s that changed.
+     * @return A list of the areas to repaint, empty if none of the
+     *     tiles are visible, or null if the map has not been
+     *     positioned and must be repainted in full.
+     */
+    public List<Rectangle> getDirtyAreas(Collection<Tile> tiles) {
+        if (bottomRow < 0) return null;
+        List<Rectangle> result = new ArrayList<Rectangle>();
+        for (Tile tile : tiles) {
+            Rectangle area = null;
+            for (Tile t : tile.getSurroundingTiles(0, 1)) {
+                if (!isTileVisible(t)) continue;
+                if (area == null) {
+                    area = getTileBounds(t);
+                } else {
+                    area.add(getTileBounds(t));
+                }
+            }
+            if (area == null) continue;
+            // Growing an area can make it overlap one already checked.
+            boolean merged = true;
+            while (merged) {
+                merged = false;
+                for (Iterator<Rectangle> it = result.iterator(); it.hasNext();) {
+                    Rectangle r = it.next();
+                    if (r.intersects(area)) {
+                        area.add(r);
+                        it.remove();
+                        merged = true;
+                    }
+                }
+            }
+            result.add(area);
+        }
+        return result;
+    }
+
+
     /**
      * Describe <code>getTileHeight</code> method here.
      *
@@ -1431,6 +1486,8 @@ public final class MapViewer {
                 setImageLibrary(gui.getImageLibrary());
             } else {
                 setImageLibrary(new ImageLibrary(newScale));
+                ResourceManager.prepareScaledImages("model.tile.",
+                                                    newScale, false);
             }
         } catch (Exception ex) {
             logger.log(Level.WARNING, "Failed to retrieve scaled image library.", ex);
@@ -1712,6 +1769,30 @@ public final class MapViewer {
 
 
 
+    /**
+     * Gets the base terrain of a tile as drawn by
+     * {@link #displayBaseTile}, reusing the cached image while the
+     * tile and its neighbours are unchanged.
+     *
+     * @param tile The <code>Tile</code> to draw.
+     * @return The base terrain <code>Image</code>, or null if there
+     *     is no tile.
+     */
+    private Image getBaseTileImage(Tile tile) {
+        if (tile == null) return null;
+        Image image = terrainCache.get(tile);
+        if (image == null) {
+            BufferedImage bi = new BufferedImage(tileWidth, tileHeight,
+                BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = bi.createGraphics();
+            displayBaseTile(g, lib, tile, true);
+            g.dispose();
+            terrainCache.put(tile, bi);
+            image = bi;
+        }
+        return image;
+    }
+
     /**
      * Displays the given Tile onto the given Graphics2D object at the
      * location specified by the coordinates.  Fog of war will be drawn.
@@ -1880,8 +1961,8 @@ public final class MapViewer {
 
             // Column per column; start at the left side to display the tiles.
             for (int column = firstColumn; column <= lastColumn; column++) {
-                Tile tile = map.getTile(column, row);
-                displayBaseTile(g, lib, tile, true);
+                Image image = getBaseTileImage(map.getTile(column, row));
+                if (image != null) g.drawImage(image, 0, 0, null);
                 g.translate(tileWidth, 0);
             }
             g.setTransform(rowTransform);
@@ -2619,7 +2700,7 @@ public final class MapViewer {
      * @param sourceTile a <code>Tile</code> value
      * @return a <code>JLabel</code> value
      */
-    private JLabel enterUnitOutForAnimation(final Unit unit, final Tile sourceTile) {
+    JLabel enterUnitOutForAnimation(final Unit unit, final Tile sourceTile) {
         Integer i = unitsOutForAnimation.get(unit);
         if (i == null) {
             final JLabel unitLabel = getUnitLabel(unit);
@@ -3081,7 +3162,7 @@ public final class MapViewer {
      *
      * @param unit an <code>Unit</code> value
      */
-    private void releaseUnitOutForAnimation(final Unit unit) {
+    void releaseUnitOutForAnimation(final Unit unit) {
         Integer i = unitsOutForAnimation.get(unit);
         if (i == null) {
             throw new IllegalStateException("Tried to release unit that was not out for animation");
@@ -3133,6 +3214,7 @@ public final class MapViewer {
      */
     private void setImageLibrary(ImageLibrary lib) {
         this.lib = lib;
+        terrainCache.clear();
         cursorImage = lib.getMiscImage(ImageLibrary.UNIT_SELECT);
         // ATTENTION: we assume that all base tiles have the same size
         Image unexplored = lib.getTerrainImage(null, 0, 0);
@@ -3218,6 +3300,10 @@ public final class MapViewer {
         bottomRows = topRows;
         leftSpace = (size.width - tileWidth) / 2;
         rightSpace = leftSpace;
+        // Keep about twice the tiles on the screen, so scrolling back
+        // and forth does not miss.
+        terrainCache.setCapacity(2 * (size.width / tileWidth + 2)
+            * (size.height / halfHeight + 2));
     }
 
 
@@ -0,0 +1,182 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.client.gui;
+
+import java.awt.Image;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import net.sf.freecol.common.model.Map.Direction;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileImprovement;
+import net.sf.freecol.common.model.TileType;
+
+
+/**
+ * A cache of the rendered base terrain of the tiles shown by the
+ * <code>MapViewer</code>.
+ *
+ * The base terrain of a tile depends on its type, style and whether
+ * it is explored, and on the type, rivers and exploration of its
+ * neighbours, which it blends into.  Each cached image remembers
+ * these, and is only used while they are unchanged, so changes to
+ * the map need not be reported to the cache.  The least recently
+ * used images are dropped when the cache is full.
+ */
+final class TerrainCache {
+
+    /** The state of a tile that its base terrain depends on. */
+    private static final class TileState {
+
+        private final TileType type;
+        private final int style;
+        private final boolean explored;
+        private final TileType[] types = new TileType[Direction.NUMBER_OF_DIRECTIONS];
+        private final boolean[] exploreds = new boolean[Direction.NUMBER_OF_DIRECTIONS];
+        private final int[] rivers = new int[Direction.NUMBER_OF_DIRECTIONS];
+
+
+        public TileState(Tile tile) {
+            type = tile.getType();
+            style = tile.getStyle();
+            explored = tile.isExplored();
+            for (Direction d : Direction.values()) {
+                Tile t = tile.getNeighbourOrNull(d);
+                if (t == null) continue;
+                types[d.ordinal()] = t.getType();
+                exploreds[d.ordinal()] = t.isExplored();
+                rivers[d.ordinal()] = getRiverMouth(t, d);
+            }
+        }
+
+        /**
+         * Is this the current state of a tile?
+         *
+         * @param tile The <code>Tile</code> to check.
+         * @return True if the tile is unchanged.
+         */
+        public boolean matches(Tile tile) {
+            if (tile.getType() != type || tile.getStyle() != style
+                || tile.isExplored() != explored) return false;
+            for (Direction d : Direction.values()) {
+                Tile t = tile.getNeighbourOrNull(d);
+                int i = d.ordinal();
+                if (t == null) {
+                    if (types[i] != null || exploreds[i]) return false;
+                } else if (t.getType() != types[i]
+                    || t.isExplored() != exploreds[i]
+                    || getRiverMouth(t, d) != rivers[i]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Gets the magnitude of a river flowing out of a neighbouring
+         * tile towards the tile being drawn.
+         *
+         * @param neighbour The neighbouring <code>Tile</code>.
+         * @param direction The <code>Direction</code> to the neighbour.
+         * @return The river magnitude, or zero if there is none.
+         */
+        private static int getRiverMouth(Tile neighbour, Direction direction) {
+            TileImprovement river = neighbour.getRiver();
+            return (river != null
+                && river.isConnectedTo(direction.getReverseDirection()))
+                ? river.getMagnitude() : 0;
+        }
+    }
+
+    /** A cached image, with the state it was drawn from. */
+    private static final class CachedImage {
+
+        public final TileState state;
+        public final Image image;
+
+
+        public CachedImage(TileState state, Image image) {
+            this.state = state;
+            this.image = image;
+        }
+    }
+
+    /** The default number of images to cache. */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** The maximum number of images to cache. */
+    private int capacity = DEFAULT_CAPACITY;
+
+    /** The cached images, least recently used first. */
+    private final LinkedHashMap<Tile, CachedImage> images
+        = new LinkedHashMap<Tile, CachedImage>(DEFAULT_CAPACITY, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<Tile, CachedImage> e) {
+                return size() > capacity;
+            }
+        };
+
+
+    /**
+     * Gets the cached base terrain image of a tile.
+     *
+     * @param tile The <code>Tile</code> to look up.
+     * @return The cached <code>Image</code>, or null if there is none
+     *     or the tile has changed since it was drawn.
+     */
+    public Image get(Tile tile) {
+        CachedImage cached = images.get(tile);
+        if (cached == null) return null;
+        if (!cached.state.matches(tile)) {
+            images.remove(tile);
+            return null;
+        }
+        return cached.image;
+    }
+
+    /**
+     * Caches the base terrain image of a tile, as drawn from its
+     * current state.
+     *
+     * @param tile The <code>Tile</code> drawn.
+     * @param image The <code>Image</code> drawn.
+     */
+    public void put(Tile tile, Image image) {
+        images.put(tile, new CachedImage(new TileState(tile), image));
+    }
+
+    /**
+     * Sets the number of images to cache.  This should comfortably
+     * exceed the number of tiles on the screen.
+     *
+     * @param capacity The new capacity.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        while (images.size() > this.capacity) {
+            images.remove(images.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Empties the cache, as needed when the tile images change.
+     */
+    public void clear() {
+        images.clear();
+    }
+}
@@ -29,8 +29,27 @@ import net.sf.freecol.common.model.Unit;
  */
 public class Animations {
 
+    /** The scheduler playing the unit moves, only used on the EDT. */
+    private static UnitMoveScheduler moveScheduler = null;
+
+
+    /**
+     * Gets the scheduler of the unit moves for a GUI.
+     *
+     * @param gui The <code>GUI</code> to display on.
+     * @return The <code>UnitMoveScheduler</code> for the GUI.
+     */
+    private static UnitMoveScheduler getMoveScheduler(GUI gui) {
+        if (moveScheduler == null || moveScheduler.getGUI() != gui) {
+            if (moveScheduler != null) moveScheduler.finishAll();
+            moveScheduler = new UnitMoveScheduler(gui);
+        }
+        return moveScheduler;
+    }
+
     /**
-     * Animates a unit move.
+     * Animates a unit move.  The animation is queued and this returns
+     * at once.
      *
      * @param gui The <code>GUI</code> to display on.
      * @param unit The <code>Unit</code> to be animated.
@@ -39,12 +58,23 @@ public class Animations {
      */
     public static void unitMove(GUI gui, Unit unit,
                                 Tile source, Tile destination) {
-        new UnitMoveAnimation(gui, unit, source, destination)
-            .animate();
+        getMoveScheduler(gui).add(unit, source, destination);
     }
-    
+
+    /**
+     * Are unit moves being animated?
+     *
+     * @param gui The <code>GUI</code> to check.
+     * @return True if a unit move animation is playing.
+     */
+    public static boolean isAnimatingMoves(GUI gui) {
+        return moveScheduler != null && moveScheduler.getGUI() == gui
+            && moveScheduler.isAnimating();
+    }
+
     /**
-     * Animates a unit attack.
+     * Animates a unit attack.  Any unit moves still playing are
+     * ended first, as the attack follows them.
      * 
      * @param gui The <code>GUI</code> to display on.
      * @param attacker The <code>Unit</code> that is attacking.
@@ -57,6 +87,7 @@ public class Animations {
                                   Unit attacker, Unit defender,
                                   Tile attackerTile, Tile defenderTile,
                                   boolean success) {
+        getMoveScheduler(gui).finishAll();
         new UnitAttackAnimation(gui, attacker, defender,
                                 attackerTile, defenderTile, success)
             .animate();
@@ -20,18 +20,28 @@
 package net.sf.freecol.client.gui.animation;
 
 import java.awt.Point;
-import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JLabel;
 
 import net.sf.freecol.client.gui.GUI;
-import net.sf.freecol.client.gui.OutForAnimationCallback;
+import net.sf.freecol.client.gui.MapViewer;
 import net.sf.freecol.common.model.Tile;
 import net.sf.freecol.common.model.Unit;
 
 
 /**
  * Class for the animation of units movement.
+ *
+ * The animation is driven by a <code>UnitMoveScheduler</code>, which
+ * steps it along with the other animations playing at the same time.
+ * Further moves of the unit are appended to the path, so a unit
+ * moving several tiles is animated in one go.  The position of the
+ * unit is worked out afresh at each step from the time since the
+ * current leg started, so late steps skip frames, and legs that are
+ * not on the screen (for example after the map was refocused) are
+ * skipped altogether.
  */
 final class UnitMoveAnimation {
 
@@ -39,11 +49,21 @@ final class UnitMoveAnimation {
      * Display delay between one frame and another, in milliseconds.
      * 33ms == 30 fps
      */
-    private static final int ANIMATION_DELAY = 33;
+    static final int ANIMATION_DELAY = 33;
 
     private final Unit unit;
-    private final Tile sourceTile;
-    private final Tile destinationTile;
+
+    /** The tiles the unit moves through, starting with the source. */
+    private final List<Tile> tiles = new ArrayList<Tile>();
+
+    /** The index of the tile the current leg starts at. */
+    private int leg = 0;
+
+    /** The time the current leg started. */
+    private long legStart;
+
+    /** The label showing the unit while it is out for animation. */
+    private JLabel unitLabel = null;
 
     private GUI gui;
 
@@ -59,82 +79,95 @@ final class UnitMoveAnimation {
                              Tile sourceTile, Tile destinationTile) {
         this.gui = gui;
         this.unit = unit;
-        this.sourceTile = sourceTile;
-        this.destinationTile = destinationTile;
+        this.tiles.add(sourceTile);
+        this.tiles.add(destinationTile);
+    }
+
+
+    /**
+     * Gets the tile the unit will finish the animation on.
+     *
+     * @return The destination <code>Tile</code>.
+     */
+    public Tile getDestination() {
+        return tiles.get(tiles.size() - 1);
+    }
+
+    /**
+     * Continues the animation with a further move.
+     *
+     * @param tile The <code>Tile</code> the unit moves on to from the
+     *     current destination.
+     */
+    public void extend(Tile tile) {
+        tiles.add(tile);
+    }
+
+    /**
+     * Starts the animation, taking the unit out of the map display.
+     *
+     * @param now The current time in milliseconds.
+     */
+    public void start(long now) {
+        unitLabel = gui.enterUnitOutForAnimation(unit, tiles.get(0));
+        legStart = now;
+    }
+
+    /**
+     * Moves the unit to where it should be now.
+     *
+     * @param now The current time in milliseconds.
+     * @return True if the animation is still playing.
+     */
+    public boolean step(long now) {
+        if (unitLabel == null) return false;
+        final MapViewer mapViewer = gui.getMapViewer();
+        while (leg < tiles.size() - 1) {
+            final Point srcP = gui.getTilePosition(tiles.get(leg));
+            final Point dstP = gui.getTilePosition(tiles.get(leg + 1));
+            final int movementSpeed = gui.getAnimationSpeed(unit);
+            if (srcP != null && dstP != null && movementSpeed > 0) {
+                final Point srcPoint
+                    = mapViewer.getUnitLabelPositionInTile(unitLabel, srcP);
+                final Point dstPoint
+                    = mapViewer.getUnitLabelPositionInTile(unitLabel, dstP);
+                final double xratio = mapViewer.getTileWidth()
+                    / mapViewer.getTileHeight();
+                final double distance = Math.pow(2, movementSpeed + 1)
+                    * gui.getMapScale() * (now - legStart) / ANIMATION_DELAY;
+                final int x = approach(srcPoint.x, dstPoint.x,
+                                       xratio * distance);
+                final int y = approach(srcPoint.y, dstPoint.y, distance);
+                unitLabel.setLocation(x, y);
+                if (x != dstPoint.x || y != dstPoint.y) return true;
+            }
+            leg++;
+            legStart = now;
+        }
+        return false;
+    }
+
+    /**
+     * Moves a coordinate towards a target.
+     *
+     * @param from The starting coordinate.
+     * @param to The target coordinate.
+     * @param distance The distance to move.
+     * @return The new coordinate, which does not pass the target.
+     */
+    private static int approach(int from, int to, double distance) {
+        return (from < to) ? (int)Math.min(to, from + distance)
+            : (int)Math.max(to, from - distance);
     }
-    
 
     /**
-     * Do the animation.
+     * Ends the animation, returning the unit to the map display.
      */
-    public void animate() {
-        final int movementSpeed = gui.getAnimationSpeed(unit);
-        final Point srcP = gui.getTilePosition(sourceTile);
-        final Point dstP = gui.getTilePosition(destinationTile);
-        
-        if (srcP == null || dstP == null || movementSpeed <= 0) return;
-
-        float scale = gui.getMapScale();
-        final int movementRatio = (int)(Math.pow(2, movementSpeed + 1) * scale);
-        final Rectangle r1 = gui.getTileBounds(sourceTile);
-        final Rectangle r2 = gui.getTileBounds(destinationTile);
-        final Rectangle bounds = r1.union(r2);
-
-        gui.executeWithUnitOutForAnimation(unit, sourceTile,
-            new OutForAnimationCallback() {
-                public void executeWithUnitOutForAnimation(final JLabel unitLabel) {
-                    final Point srcPoint
-                        = gui.getMapViewer().getUnitLabelPositionInTile(unitLabel, srcP);
-                    final Point dstPoint
-                        = gui.getMapViewer().getUnitLabelPositionInTile(unitLabel, dstP);
-                    final double xratio = gui.getMapViewer().getTileWidth()
-                        / gui.getMapViewer().getTileHeight();
-                    final int stepX = (srcPoint.getX() == dstPoint.getX()) ? 0
-                        : (srcPoint.getX() > dstPoint.getX()) ? -1 : 1;
-                    final int stepY = (srcPoint.getY() == dstPoint.getY()) ? 0
-                        : (srcPoint.getY() > dstPoint.getY()) ? -1 : 1;
-                    
-                    // Painting the whole screen once to get rid of
-                    // disposed dialog-boxes.
-                    gui.paintImmediatelyCanvasInItsBounds();
-                    
-                    int dropFrames = 0;
-                    Point point = srcPoint;
-                    while (!point.equals(dstPoint)) {
-                        long time = System.currentTimeMillis();
-                        
-                        point.x += stepX * xratio * movementRatio;
-                        point.y += stepY * movementRatio;
-                        if ((stepX < 0 && point.x < dstPoint.x)
-                            || (stepX > 0 && point.x > dstPoint.x)) {
-                            point.x = dstPoint.x;
-                        }
-                        if ((stepY < 0 && point.y < dstPoint.y)
-                            || (stepY > 0 && point.y > dstPoint.y)) {
-                            point.y = dstPoint.y;
-                        }
-                        if (dropFrames <= 0) {
-                            unitLabel.setLocation(point);
-                            gui.paintImmediatelyCanvasIn(bounds);
-                            
-                            int timeTaken = (int)(System.currentTimeMillis()
-                                - time);
-                            final int waitTime = ANIMATION_DELAY - timeTaken;
-                            if (waitTime > 0) {
-                                try {
-                                    Thread.sleep(waitTime);
-                                } catch (InterruptedException ex) {
-                                    //ignore
-                                }
-                                dropFrames = 0;
-                            } else {
-                                dropFrames = timeTaken / ANIMATION_DELAY - 1;
-                            }
-                        } else {
-                            dropFrames--;
-                        }
-                    }
-                }
-            });
+    public void finish() {
+        if (unitLabel != null) {
+            gui.releaseUnitOutForAnimation(unit);
+            unitLabel = null;
+        }
+        gui.refreshTiles(tiles);
     }
 }
@@ -0,0 +1,146 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.client.gui.animation;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import javax.swing.Timer;
+
+import net.sf.freecol.client.gui.GUI;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.Unit;
+
+
+/**
+ * Plays the unit move animations.
+ *
+ * Moves are queued without waiting for them to be shown, so the
+ * caller (typically a server message handler) carries on at once.
+ * All the animations playing are stepped together by a single Swing
+ * timer, so several units can be seen moving at the same time.  A
+ * move starting where the unit's current animation will end extends
+ * that animation.  Moves with an end off the screen are not animated.
+ *
+ * All methods must be called on the event dispatch thread.
+ */
+final class UnitMoveScheduler implements ActionListener {
+
+    private final GUI gui;
+
+    /** The timer stepping the animations while any are playing. */
+    private final Timer timer;
+
+    /** The animations playing, by unit. */
+    private final LinkedHashMap<Unit, UnitMoveAnimation> animations
+        = new LinkedHashMap<Unit, UnitMoveAnimation>();
+
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param gui The <code>GUI</code> to display on.
+     */
+    public UnitMoveScheduler(GUI gui) {
+        this.gui = gui;
+        this.timer = new Timer(UnitMoveAnimation.ANIMATION_DELAY, this);
+    }
+
+
+    /**
+     * Gets the GUI this scheduler displays on.
+     *
+     * @return The <code>GUI</code>.
+     */
+    public GUI getGUI() {
+        return gui;
+    }
+
+    /**
+     * Are any animations playing?
+     *
+     * @return True if an animation is playing.
+     */
+    public boolean isAnimating() {
+        return !animations.isEmpty();
+    }
+
+    /**
+     * Queues a unit move.
+     *
+     * @param unit The <code>Unit</code> that is moving.
+     * @param source The <code>Tile</code> the unit moves from.
+     * @param destination The <code>Tile</code> the unit moves to.
+     */
+    public void add(Unit unit, Tile source, Tile destination) {
+        UnitMoveAnimation animation = animations.get(unit);
+        if (animation != null) {
+            if (animation.getDestination() == source) {
+                animation.extend(destination);
+                return;
+            }
+            animations.remove(unit);
+            animation.finish();
+        }
+        if (!gui.onScreen(source) || !gui.onScreen(destination)
+            || gui.getAnimationSpeed(unit) <= 0) {
+            gui.refreshTiles(Arrays.asList(source, destination));
+            return;
+        }
+        animation = new UnitMoveAnimation(gui, unit, source, destination);
+        animation.start(System.currentTimeMillis());
+        animations.put(unit, animation);
+        if (!timer.isRunning()) timer.start();
+    }
+
+    /**
+     * Ends all the animations at once.
+     */
+    public void finishAll() {
+        List<UnitMoveAnimation> finished
+            = new ArrayList<UnitMoveAnimation>(animations.values());
+        animations.clear();
+        timer.stop();
+        for (UnitMoveAnimation animation : finished) animation.finish();
+    }
+
+    /**
+     * Steps the animations.
+     *
+     * @param event The timer <code>ActionEvent</code>.
+     */
+    public void actionPerformed(ActionEvent event) {
+        final long now = System.currentTimeMillis();
+        Iterator<UnitMoveAnimation> it = animations.values().iterator();
+        while (it.hasNext()) {
+            UnitMoveAnimation animation = it.next();
+            if (!animation.step(now)) {
+                it.remove();
+                animation.finish();
+            }
+        }
+        if (animations.isEmpty()) timer.stop();
+    }
+}
@@ -20,6 +20,7 @@
 package net.sf.freecol.client.gui.panel;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.swing.JLayeredPane;
@@ -47,6 +48,7 @@ import net.sf.freecol.common.model.Game;
 import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.Tile;
 import net.sf.freecol.common.model.TileImprovementType;
+import net.sf.freecol.common.model.Unit;
 
 
 /**
@@ -176,6 +178,32 @@ public abstract class MapControls {
         }
     }
 
+    /**
+     * Refreshes this <code>MapControls</code> after some tiles have
+     * changed.  The mini map is always repainted, and the info panel
+     * is updated if the unit or tile it shows is on one of the tiles.
+     *
+     * @param tiles The <code>Tile</code>s that changed.
+     */
+    public void refreshTiles(Collection<Tile> tiles) {
+        if (miniMap != null) miniMap.repaint();
+        GUI gui = freeColClient.getGUI();
+        switch (gui.getCurrentViewMode()) {
+        case GUI.MOVE_UNITS_MODE:
+            Unit unit = infoPanel.getUnit();
+            if (unit != null && tiles.contains(unit.getTile())) {
+                infoPanel.update(unit);
+            }
+            break;
+        case GUI.VIEW_TERRAIN_MODE:
+            Tile tile = infoPanel.getTile();
+            if (tile != null && tiles.contains(tile)) {
+                infoPanel.update(tile);
+            }
+            break;
+        }
+    }
+
     /**
      * Updates this <code>InfoPanel</code>.
      *
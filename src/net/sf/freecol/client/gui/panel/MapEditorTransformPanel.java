@@ -255,8 +255,10 @@ public final class MapEditorTransformPanel extends FreeColPanel {
         }
 
         public void transform(Tile t) {
+            boolean land = t.isLand();
             t.changeType(tileType);
             t.removeLostCityRumour();
+            if (t.isLand() != land) t.getMap().updateContiguity(t);
         }
     }
 
@@ -0,0 +1,399 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+
+/**
+ * An <code>XMLStreamReader</code> that walks a DOM element, so that a
+ * <code>FreeColXMLReader</code> can read an element directly instead
+ * of serializing it and parsing the result.  The standard input
+ * factory does not accept a <code>DOMSource</code>.
+ *
+ * Only elements, attributes and text are reported, which is all that
+ * FreeCol reads.  Namespaces are not supported.
+ */
+final class DOMStreamReader implements XMLStreamReader {
+
+    /** The location reported for all events. */
+    private static final Location NO_LOCATION = new Location() {
+            public int getLineNumber() { return -1; }
+            public int getColumnNumber() { return -1; }
+            public int getCharacterOffset() { return -1; }
+            public String getPublicId() { return null; }
+            public String getSystemId() { return null; }
+        };
+
+    /** The namespace context, which has no bindings. */
+    private static final NamespaceContext NO_NAMESPACES
+        = new NamespaceContext() {
+            public String getNamespaceURI(String prefix) { return null; }
+            public String getPrefix(String uri) { return null; }
+            public Iterator<String> getPrefixes(String uri) {
+                return Collections.<String>emptyList().iterator();
+            }
+        };
+
+    /** The element to read. */
+    private final Element root;
+
+    /** The current node. */
+    private Node node = null;
+
+    /** The current event. */
+    private int event = XMLStreamConstants.START_DOCUMENT;
+
+
+    /**
+     * Create a new reader for an element.
+     *
+     * @param root The <code>Element</code> to read.
+     */
+    public DOMStreamReader(Element root) {
+        this.root = root;
+    }
+
+
+    /**
+     * Moves to a node, setting the event to match it.
+     *
+     * @param n The <code>Node</code> to move to.
+     * @return True if the node is reported, false if it should be skipped.
+     */
+    private boolean moveTo(Node n) {
+        node = n;
+        switch (n.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            event = XMLStreamConstants.START_ELEMENT;
+            return true;
+        case Node.TEXT_NODE: case Node.CDATA_SECTION_NODE:
+            event = XMLStreamConstants.CHARACTERS;
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Moves past the current node to its next sibling, or to the end
+     * of its parent.
+     */
+    private void moveOn() {
+        for (;;) {
+            if (node == root) {
+                node = null;
+                event = XMLStreamConstants.END_DOCUMENT;
+                return;
+            }
+            Node sibling = node.getNextSibling();
+            if (sibling == null) {
+                node = node.getParentNode();
+                event = XMLStreamConstants.END_ELEMENT;
+                return;
+            }
+            if (moveTo(sibling)) return;
+        }
+    }
+
+    /**
+     * Checks the current event is a start or end element.
+     */
+    private void checkElement() {
+        if (event != XMLStreamConstants.START_ELEMENT
+            && event != XMLStreamConstants.END_ELEMENT) {
+            throw new IllegalStateException("Not an element: " + event);
+        }
+    }
+
+    /**
+     * Gets the attributes of the current element.
+     *
+     * @return The attributes.
+     */
+    private NamedNodeMap getAttributes() {
+        if (event != XMLStreamConstants.START_ELEMENT) {
+            throw new IllegalStateException("Not a start element: " + event);
+        }
+        return node.getAttributes();
+    }
+
+    /**
+     * Gets the name of a node, ignoring namespaces.
+     *
+     * @param n The <code>Node</code> to examine.
+     * @return The node name.
+     */
+    private static String getName(Node n) {
+        String name = n.getLocalName();
+        return (name == null) ? n.getNodeName() : name;
+    }
+
+
+    // Implement XMLStreamReader
+
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    public int next() throws XMLStreamException {
+        switch (event) {
+        case XMLStreamConstants.START_DOCUMENT:
+            node = root;
+            event = XMLStreamConstants.START_ELEMENT;
+            break;
+        case XMLStreamConstants.START_ELEMENT:
+            Node child = node.getFirstChild();
+            if (child == null) {
+                event = XMLStreamConstants.END_ELEMENT;
+            } else if (!moveTo(child)) {
+                moveOn();
+            }
+            break;
+        case XMLStreamConstants.END_DOCUMENT:
+            throw new XMLStreamException("No more events");
+        default:
+            moveOn();
+            break;
+        }
+        return event;
+    }
+
+    public void require(int type, String namespaceURI, String localName)
+        throws XMLStreamException {
+        if (type != event
+            || (localName != null && !localName.equals(getLocalName()))) {
+            throw new XMLStreamException("Expected " + type + "/" + localName
+                + " but found " + event);
+        }
+    }
+
+    public String getElementText() throws XMLStreamException {
+        if (event != XMLStreamConstants.START_ELEMENT) {
+            throw new XMLStreamException("Not a start element: " + event);
+        }
+        StringBuilder sb = new StringBuilder();
+        while (next() != XMLStreamConstants.END_ELEMENT) {
+            if (event != XMLStreamConstants.CHARACTERS) {
+                throw new XMLStreamException("Unexpected event: " + event);
+            }
+            sb.append(getText());
+        }
+        return sb.toString();
+    }
+
+    public int nextTag() throws XMLStreamException {
+        next();
+        while (event == XMLStreamConstants.CHARACTERS && isWhiteSpace()) {
+            next();
+        }
+        if (event != XMLStreamConstants.START_ELEMENT
+            && event != XMLStreamConstants.END_ELEMENT) {
+            throw new XMLStreamException("Expected tag but found " + event);
+        }
+        return event;
+    }
+
+    public boolean hasNext() {
+        return event != XMLStreamConstants.END_DOCUMENT;
+    }
+
+    public void close() {}
+
+    public String getNamespaceURI(String prefix) {
+        return null;
+    }
+
+    public boolean isStartElement() {
+        return event == XMLStreamConstants.START_ELEMENT;
+    }
+
+    public boolean isEndElement() {
+        return event == XMLStreamConstants.END_ELEMENT;
+    }
+
+    public boolean isCharacters() {
+        return event == XMLStreamConstants.CHARACTERS;
+    }
+
+    public boolean isWhiteSpace() {
+        if (event != XMLStreamConstants.CHARACTERS) return false;
+        String text = node.getNodeValue();
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    public String getAttributeValue(String namespaceURI, String localName) {
+        Attr attr = ((Element)node).getAttributeNode(localName);
+        return (attr == null) ? null : attr.getValue();
+    }
+
+    public int getAttributeCount() {
+        return getAttributes().getLength();
+    }
+
+    public QName getAttributeName(int index) {
+        return new QName(getAttributeLocalName(index));
+    }
+
+    public String getAttributeNamespace(int index) {
+        return null;
+    }
+
+    public String getAttributeLocalName(int index) {
+        return getName(getAttributes().item(index));
+    }
+
+    public String getAttributePrefix(int index) {
+        return null;
+    }
+
+    public String getAttributeType(int index) {
+        return "CDATA";
+    }
+
+    public String getAttributeValue(int index) {
+        return getAttributes().item(index).getNodeValue();
+    }
+
+    public boolean isAttributeSpecified(int index) {
+        return true;
+    }
+
+    public int getNamespaceCount() {
+        return 0;
+    }
+
+    public String getNamespacePrefix(int index) {
+        return null;
+    }
+
+    public String getNamespaceURI(int index) {
+        return null;
+    }
+
+    public NamespaceContext getNamespaceContext() {
+        return NO_NAMESPACES;
+    }
+
+    public int getEventType() {
+        return event;
+    }
+
+    public String getText() {
+        if (event != XMLStreamConstants.CHARACTERS) {
+            throw new IllegalStateException("Not text: " + event);
+        }
+        return node.getNodeValue();
+    }
+
+    public char[] getTextCharacters() {
+        return getText().toCharArray();
+    }
+
+    public int getTextCharacters(int sourceStart, char[] target,
+                                 int targetStart, int length) {
+        String text = getText();
+        int n = Math.max(0, Math.min(length, text.length() - sourceStart));
+        text.getChars(sourceStart, sourceStart + n, target, targetStart);
+        return n;
+    }
+
+    public int getTextStart() {
+        return 0;
+    }
+
+    public int getTextLength() {
+        return getText().length();
+    }
+
+    public String getEncoding() {
+        return null;
+    }
+
+    public boolean hasText() {
+        return event == XMLStreamConstants.CHARACTERS;
+    }
+
+    public Location getLocation() {
+        return NO_LOCATION;
+    }
+
+    public QName getName() {
+        return new QName(getLocalName());
+    }
+
+    public String getLocalName() {
+        checkElement();
+        return getName(node);
+    }
+
+    public boolean hasName() {
+        return event == XMLStreamConstants.START_ELEMENT
+            || event == XMLStreamConstants.END_ELEMENT;
+    }
+
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    public String getPrefix() {
+        return null;
+    }
+
+    public String getVersion() {
+        return null;
+    }
+
+    public boolean isStandalone() {
+        return false;
+    }
+
+    public boolean standaloneSet() {
+        return false;
+    }
+
+    public String getCharacterEncodingScheme() {
+        return null;
+    }
+
+    public String getPITarget() {
+        return null;
+    }
+
+    public String getPIData() {
+        return null;
+    }
+}
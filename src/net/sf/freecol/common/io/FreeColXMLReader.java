@@ -48,6 +48,8 @@ import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.server.ai.AIObject;
 import net.sf.freecol.server.ai.AIMain;
 
+import org.w3c.dom.Element;
+
 
 /**
  * A wrapper for <code>XMLStreamReader</code> and potentially an
@@ -63,6 +65,15 @@ public class FreeColXMLReader extends StreamReaderDelegate {
         NOINTERN,   // Do not intern any object that are read
     }
 
+    /** The input factories, one per thread. */
+    private static final ThreadLocal<XMLInputFactory> inputFactories
+        = new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+                return XMLInputFactory.newInstance();
+            }
+        };
+
     /** The stream to read from. */
     private InputStream inputStream = null;
 
@@ -85,7 +96,7 @@ public class FreeColXMLReader extends StreamReaderDelegate {
         super();
 
         try {
-            XMLInputFactory xif = XMLInputFactory.newInstance();
+            XMLInputFactory xif = inputFactories.get();
             setParent(xif.createXMLStreamReader(inputStream, "UTF-8"));
         } catch (XMLStreamException e) {
             throw new IOException(e);
@@ -107,7 +118,7 @@ public class FreeColXMLReader extends StreamReaderDelegate {
         super();
 
         try {
-            XMLInputFactory xif = XMLInputFactory.newInstance();
+            XMLInputFactory xif = inputFactories.get();
             setParent(xif.createXMLStreamReader(reader));
         } catch (XMLStreamException e) {
             throw new IOException(e);
@@ -116,6 +127,19 @@ public class FreeColXMLReader extends StreamReaderDelegate {
         this.readScope = ReadScope.NORMAL;
     }
 
+    /**
+     * Creates a new <code>FreeColXMLReader</code> that reads directly
+     * from a DOM element.
+     *
+     * @param element The <code>Element</code> to read.
+     */
+    public FreeColXMLReader(Element element) {
+        super(new DOMStreamReader(element));
+
+        this.inputStream = null;
+        this.readScope = ReadScope.NORMAL;
+    }
+
 
     /**
      * Should reads from this stream intern their objects into the
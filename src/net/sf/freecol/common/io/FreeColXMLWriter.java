@@ -33,6 +33,7 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.dom.DOMResult;
 
 import net.sf.freecol.common.model.FreeColObject;
 import net.sf.freecol.common.model.FreeColGameObject;
@@ -40,6 +41,8 @@ import net.sf.freecol.common.model.Location;
 import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.Tile;
 
+import org.w3c.dom.Node;
+
 
 /**
  * A wrapper for <code>XMLStreamWriter</code> and potentially an
@@ -63,7 +66,9 @@ public class FreeColXMLWriter implements XMLStreamWriter {
         SERVER,  // Full server-visible information
         SAVE;    // Absolutely everything needed to save the game state
 
-        private Player player = null; // The player to write to.
+        // The player to write to.  Kept per-thread as the server
+        // writes to several clients at once.
+        private final ThreadLocal<Player> player = new ThreadLocal<Player>();
 
 
         public static WriteScope toClient(Player player) {
@@ -71,7 +76,7 @@ public class FreeColXMLWriter implements XMLStreamWriter {
                 throw new IllegalArgumentException("Null player.");
             }
             WriteScope ret = WriteScope.CLIENT;
-            ret.player = player;
+            ret.player.set(player);
             return ret;
         }            
 
@@ -84,11 +89,11 @@ public class FreeColXMLWriter implements XMLStreamWriter {
         }
 
         public Player getPlayer() {
-            return player;
+            return player.get();
         }
 
         public boolean isValid() {
-            return (this == WriteScope.CLIENT) == (player != null);
+            return (this == WriteScope.CLIENT) == (getPlayer() != null);
         }
 
         public boolean validForSave() {
@@ -96,11 +101,20 @@ public class FreeColXMLWriter implements XMLStreamWriter {
         }
 
         public boolean validFor(Player player) {
-            return this != WriteScope.CLIENT || this.player == player;
+            return this != WriteScope.CLIENT || getPlayer() == player;
         }
     }
 
 
+    /** The unindented output factories, one per thread. */
+    private static final ThreadLocal<XMLOutputFactory> outputFactories
+        = new ThreadLocal<XMLOutputFactory>() {
+            @Override
+            protected XMLOutputFactory initialValue() {
+                return XMLOutputFactory.newInstance();
+            }
+        };
+
     /** The stream to write to. */
     private XMLStreamWriter xmlStreamWriter;
 
@@ -154,6 +168,41 @@ public class FreeColXMLWriter implements XMLStreamWriter {
     }
 
 
+    /**
+     * Creates a new <code>FreeColXMLWriter</code> that writes directly
+     * into a DOM node.
+     *
+     * @param node The <code>Node</code> to append the output to.
+     * @param writeScope The <code>WriteScope</code> to use for
+     *     FreeCol object writes.
+     * @exception IOException if thrown while creating the
+     *     <code>FreeColXMLWriter</code>.
+     */
+    public FreeColXMLWriter(Node node, WriteScope writeScope)
+        throws IOException {
+        try {
+            this.xmlStreamWriter = getFactory(false)
+                .createXMLStreamWriter(new DOMResult(node));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        this.writeScope = writeScope;
+    }
+
+    /**
+     * Creates a new <code>FreeColXMLWriter</code> that writes to
+     * another <code>XMLStreamWriter</code>.
+     *
+     * @param xmlStreamWriter The <code>XMLStreamWriter</code> to write to.
+     * @param writeScope The <code>WriteScope</code> to use for
+     *     FreeCol object writes.
+     */
+    public FreeColXMLWriter(XMLStreamWriter xmlStreamWriter,
+                            WriteScope writeScope) {
+        this.xmlStreamWriter = xmlStreamWriter;
+        this.writeScope = writeScope;
+    }
+
     /**
      * Get the <code>XMLOutputFactory</code> to create the output stream with.
      *
@@ -161,6 +210,7 @@ public class FreeColXMLWriter implements XMLStreamWriter {
      * @return An <code>XMLOutputFactory</code>.
      */
     private XMLOutputFactory getFactory(boolean indent) {
+        if (!indent) return outputFactories.get();
         XMLOutputFactory xof = XMLOutputFactory.newInstance();
         if (indent && xof.isPropertySupported(OutputKeys.INDENT)) {
             xof.setProperty(OutputKeys.INDENT, "yes");
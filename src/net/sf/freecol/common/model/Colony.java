@@ -152,6 +152,9 @@ public class Colony extends Settlement implements Nameable {
     /** Contains information about production and consumption. */
     private ProductionCache productionCache = new ProductionCache(this);
 
+    /** The cached ability sets of this colony. */
+    private final FeatureCache featureCache = new FeatureCache();
+
 
     /**
      * Constructor for ServerColony.
@@ -1989,6 +1992,13 @@ public class Colony extends Settlement implements Nameable {
         return productionCache.getProductionInfo(object);
     }
 
+    /**
+     * Brings the production cache up to date, if it is not already.
+     */
+    public void updateCache() {
+        productionCache.update();
+    }
+
     /**
      * Invalidates the production cache.
      */
@@ -1997,6 +2007,16 @@ public class Colony extends Settlement implements Nameable {
         productionCache.invalidate();
     }
 
+    /**
+     * Invalidates the production of a work location in the
+     * production cache.
+     *
+     * @param workLocation The <code>WorkLocation</code> that changed.
+     */
+    public void invalidateCache(WorkLocation workLocation) {
+        productionCache.invalidate(workLocation);
+    }
+
   
     // Planning support
 
@@ -2311,10 +2331,15 @@ public class Colony extends Settlement implements Nameable {
     public Set<Ability> getAbilitySet(String id, FreeColGameObjectType type,
                                       Turn turn) {
         if (turn == null) turn = getGame().getTurn();
-        Set<Ability> result = super.getAbilitySet(id, type, turn);
+        final int stamp = FeatureCache.getGlobalVersion();
+        Set<Ability> result = featureCache.getAbilitySet(0, owner,
+                                                         id, type, turn);
+        if (result != null) return result;
+        result = super.getAbilitySet(id, type, turn);
         // Owner abilities also apply to colonies
         if (owner != null) result.addAll(owner.getAbilitySet(id, type, turn));
-        return result;
+        return featureCache.putAbilitySet(stamp, 0, owner,
+                                          id, type, turn, result);
     }
 
 
@@ -0,0 +1,224 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A memo of the ability and modifier sets computed for an object.
+ *
+ * The sets of a <code>Unit</code>, <code>Colony</code> or
+ * <code>Player</code> are merged from several feature containers on
+ * each query, which the AI and the production code do a great many
+ * times with the same arguments.  This cache remembers the merged
+ * sets by identifier, applicable type and turn.
+ *
+ * Every change to any <code>FeatureContainer</code> bumps a global
+ * version, which invalidates all the caches.  Changes to the holder
+ * that alter which containers contribute (a new type, owner,
+ * equipment and so on) are tracked by a version number kept by the
+ * holder, and by a context object that the holder can not track
+ * changes to directly, such as the settlement a unit is in.
+ *
+ * The cached sets are shared, so they are returned unmodifiable.
+ */
+final class FeatureCache {
+
+    /** The maximum number of sets to remember of each kind. */
+    private static final int MAXIMUM_SIZE = 256;
+
+    /** The global version, bumped on every feature container change. */
+    private static final AtomicInteger globalVersion = new AtomicInteger(0);
+
+    /** The key of a cached set. */
+    private static final class Key {
+
+        private final String id;
+        private final FreeColGameObjectType fcgot;
+        private final int turn;
+
+
+        public Key(String id, FreeColGameObjectType fcgot, Turn turn) {
+            this.id = id;
+            this.fcgot = fcgot;
+            this.turn = (turn == null) ? -1 : turn.getNumber();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key)o;
+            return turn == other.turn && fcgot == other.fcgot
+                && ((id == null) ? other.id == null : id.equals(other.id));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (id == null) ? 0 : id.hashCode();
+            hash = 31 * hash + ((fcgot == null) ? 0 : fcgot.hashCode());
+            return 31 * hash + turn;
+        }
+    }
+
+    /** The cached ability sets. */
+    private final HashMap<Key, Set<Ability>> abilities
+        = new HashMap<Key, Set<Ability>>();
+
+    /** The cached modifier sets. */
+    private final HashMap<Key, Set<Modifier>> modifiers
+        = new HashMap<Key, Set<Modifier>>();
+
+    /** The global version the cached sets were computed at. */
+    private int global = -1;
+
+    /** The holder version the cached sets were computed at. */
+    private int local = 0;
+
+    /** The holder context the cached sets were computed with. */
+    private Object context = null;
+
+
+    /**
+     * Invalidates all the caches.  Called whenever the features of
+     * any container change.
+     */
+    static void invalidateAll() {
+        globalVersion.incrementAndGet();
+    }
+
+    /**
+     * Gets the global version.  Callers capture this before computing
+     * a set to cache, so that changes made while the set is computed
+     * are not lost.
+     *
+     * @return The global version.
+     */
+    static int getGlobalVersion() {
+        return globalVersion.get();
+    }
+
+    /**
+     * Clears this cache if its sets were computed in a different state.
+     *
+     * @param version The holder version.
+     * @param ctx The holder context.
+     */
+    private void validate(int version, Object ctx) {
+        final int g = globalVersion.get();
+        if (g != global || version != local || ctx != context) {
+            abilities.clear();
+            modifiers.clear();
+            global = g;
+            local = version;
+            context = ctx;
+        }
+    }
+
+    /**
+     * Gets a cached ability set.
+     *
+     * @param version The holder version.
+     * @param ctx The holder context.
+     * @param id The ability identifier.
+     * @param fcgot The optional <code>FreeColGameObjectType</code>.
+     * @param turn The optional <code>Turn</code>.
+     * @return The cached set, or null if none.
+     */
+    synchronized Set<Ability> getAbilitySet(int version, Object ctx,
+                                            String id,
+                                            FreeColGameObjectType fcgot,
+                                            Turn turn) {
+        validate(version, ctx);
+        return abilities.get(new Key(id, fcgot, turn));
+    }
+
+    /**
+     * Caches an ability set.
+     *
+     * @param stamp The global version captured before computing the set.
+     * @param version The holder version.
+     * @param ctx The holder context.
+     * @param id The ability identifier.
+     * @param fcgot The optional <code>FreeColGameObjectType</code>.
+     * @param turn The optional <code>Turn</code>.
+     * @param result The computed set.
+     * @return An unmodifiable view of the result.
+     */
+    synchronized Set<Ability> putAbilitySet(int stamp, int version,
+                                            Object ctx, String id,
+                                            FreeColGameObjectType fcgot,
+                                            Turn turn, Set<Ability> result) {
+        result = Collections.unmodifiableSet(result);
+        validate(version, ctx);
+        if (stamp == global) {
+            if (abilities.size() >= MAXIMUM_SIZE) abilities.clear();
+            abilities.put(new Key(id, fcgot, turn), result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets a cached modifier set.
+     *
+     * @param version The holder version.
+     * @param ctx The holder context.
+     * @param id The modifier identifier.
+     * @param fcgot The optional <code>FreeColGameObjectType</code>.
+     * @param turn The optional <code>Turn</code>.
+     * @return The cached set, or null if none.
+     */
+    synchronized Set<Modifier> getModifierSet(int version, Object ctx,
+                                              String id,
+                                              FreeColGameObjectType fcgot,
+                                              Turn turn) {
+        validate(version, ctx);
+        return modifiers.get(new Key(id, fcgot, turn));
+    }
+
+    /**
+     * Caches a modifier set.
+     *
+     * @param stamp The global version captured before computing the set.
+     * @param version The holder version.
+     * @param ctx The holder context.
+     * @param id The modifier identifier.
+     * @param fcgot The optional <code>FreeColGameObjectType</code>.
+     * @param turn The optional <code>Turn</code>.
+     * @param result The computed set.
+     * @return An unmodifiable view of the result.
+     */
+    synchronized Set<Modifier> putModifierSet(int stamp, int version,
+                                              Object ctx, String id,
+                                              FreeColGameObjectType fcgot,
+                                              Turn turn, Set<Modifier> result) {
+        result = Collections.unmodifiableSet(result);
+        validate(version, ctx);
+        if (stamp == global) {
+            if (modifiers.size() >= MAXIMUM_SIZE) modifiers.clear();
+            modifiers.put(new Key(id, fcgot, turn), result);
+        }
+        return result;
+    }
+}
@@ -145,6 +145,7 @@ public final class FeatureContainer {
      */
     public boolean addAbility(Ability ability) {
         if (ability == null) return false;
+        FeatureCache.invalidateAll();
         requireAbilities();
         Set<Ability> abilitySet = abilities.get(ability.getId());
         if (abilitySet == null) {
@@ -162,6 +163,7 @@ public final class FeatureContainer {
      */
     public Ability removeAbility(Ability ability) {
         if (abilities == null || ability == null) return null;
+        FeatureCache.invalidateAll();
         Set<Ability> abilitySet = abilities.get(ability.getId());
         return (abilitySet == null || !abilitySet.remove(ability)) ? null
             : ability;
@@ -174,6 +176,7 @@ public final class FeatureContainer {
      */
     public void removeAbilities(String id) {
         if (abilities != null) abilities.remove(id);
+        FeatureCache.invalidateAll();
     }
 
 
@@ -313,6 +316,7 @@ public final class FeatureContainer {
      */
     public boolean addModifier(Modifier modifier) {
         if (modifier == null) return false;
+        FeatureCache.invalidateAll();
         requireModifiers();
         Set<Modifier> modifierSet = modifiers.get(modifier.getId());
         if (modifierSet == null) {
@@ -330,6 +334,7 @@ public final class FeatureContainer {
      */
     public Modifier removeModifier(Modifier modifier) {
         if (modifier == null) return null;
+        FeatureCache.invalidateAll();
         Set<Modifier> modifierSet = modifiers.get(modifier.getId());
         return (modifierSet == null || !modifierSet.remove(modifier)) ? null
             : modifier;
@@ -342,6 +347,7 @@ public final class FeatureContainer {
      */
     public void removeModifiers(String id) {
         if (modifiers != null) modifiers.remove(id);
+        FeatureCache.invalidateAll();
     }
 
 
@@ -353,6 +359,7 @@ public final class FeatureContainer {
     public void addFeatures(FreeColObject fco) {
         FeatureContainer c = fco.getFeatureContainer();
         if (c == null) return;
+        FeatureCache.invalidateAll();
         if (c.abilities != null) {
             requireAbilities();
             for (Entry<String, Set<Ability>> entry : c.abilities.entrySet()) {
@@ -388,6 +395,7 @@ public final class FeatureContainer {
     public void removeFeatures(FreeColObject fco) {
         FeatureContainer c = fco.getFeatureContainer();
         if (c == null) return;
+        FeatureCache.invalidateAll();
         if (c.abilities != null && abilities != null) {
             for (Entry<String, Set<Ability>> entry : c.abilities.entrySet()) {
                 Set<Ability> abilitySet = abilities.get(entry.getKey());
@@ -410,6 +418,7 @@ public final class FeatureContainer {
      * Clear this feature container.
      */
     public void clear() {
+        FeatureCache.invalidateAll();
         if (abilities != null) abilities.clear();
         if (modifiers != null) modifiers.clear();
     }
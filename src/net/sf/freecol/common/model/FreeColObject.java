@@ -40,16 +40,8 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import net.sf.freecol.common.ObjectWithId;
 import net.sf.freecol.common.io.FreeColXMLReader;
@@ -58,9 +50,8 @@ import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
 import net.sf.freecol.common.util.Introspector;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 
 /**
@@ -717,10 +708,11 @@ public abstract class FreeColObject implements ObjectWithId {
      */
     private Element toXMLElement(Document document, WriteScope writeScope,
                                  String[] fields) {
-        StringWriter sw = new StringWriter();
+        // Write straight into the document.
+        DocumentFragment fragment = document.createDocumentFragment();
         FreeColXMLWriter xw = null;
         try {
-            xw = new FreeColXMLWriter(sw, writeScope, false);
+            xw = new FreeColXMLWriter(fragment, writeScope);
         } catch (IOException ioe) {
             logger.log(Level.WARNING, "Error creating FreeColXMLWriter,", ioe);
             return null;
@@ -733,33 +725,12 @@ public abstract class FreeColObject implements ObjectWithId {
                 toXMLPartial(xw, fields);
             }
             xw.close();
-
-            DocumentBuilderFactory factory
-                = DocumentBuilderFactory.newInstance();
-            Document tempDocument = null;
-            try {
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                tempDocument = builder.parse(new InputSource(new StringReader(sw.toString())));
-                return (Element)document.importNode(tempDocument.getDocumentElement(), true);
-            } catch (ParserConfigurationException pce) {
-                // Parser with specified options can't be built
-                logger.log(Level.WARNING, "ParserConfigurationException", pce);
-                throw new IllegalStateException("ParserConfigurationException: "
-                    + pce.getMessage());
-            } catch (SAXException se) {
-                logger.log(Level.WARNING, "SAXException", se);
-                throw new IllegalStateException("SAXException: "
-                    + se.getMessage());
-            } catch (IOException ie) {
-                logger.log(Level.WARNING, "IOException", ie);
-                throw new IllegalStateException("IOException: "
-                    + ie.getMessage());
-            }
         } catch (XMLStreamException e) {
             logger.log(Level.WARNING, "Error writing stream.", e);
             throw new IllegalStateException("XMLStreamException: "
                 + e.getMessage());
         }
+        return (Element)fragment.getFirstChild();
     }
 
     // @compat 0.10.x
@@ -786,29 +757,15 @@ public abstract class FreeColObject implements ObjectWithId {
      *      this object.
      */
     public void readFromXMLElement(Element element) {
-        FreeColXMLReader xr = null;
+        FreeColXMLReader xr = new FreeColXMLReader(element);
         try {
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Transformer xmlTransformer = factory.newTransformer();
-            StringWriter stringWriter = new StringWriter();
-            xmlTransformer.transform(new DOMSource(element),
-                                     new StreamResult(stringWriter));
-            String xml = stringWriter.toString();
-            xr = new FreeColXMLReader(new StringReader(xml));
             xr.nextTag();
             readFromXML(xr);
-
-        } catch (IOException ioe) {
-            logger.log(Level.WARNING, "IOException", ioe);
-            throw new IllegalStateException("IOException");
-        } catch (TransformerException te) {
-            logger.log(Level.WARNING, "TransformerException", te);
-            throw new IllegalStateException("TransformerException");
         } catch (XMLStreamException xe) {
             logger.log(Level.WARNING, "XMLStreamException", xe);
             throw new IllegalStateException("XMLStreamException");
         } finally {
-            if (xr != null) xr.close();
+            xr.close();
         }
     }
 
@@ -19,7 +19,6 @@
 
 package net.sf.freecol.common.model;
 
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -110,8 +109,8 @@ public class Game extends FreeColGameObject {
      * Serialization is not needed directly as these must be completely
      * within { players, unknownEnemy, map } which are directly serialized.
      */
-    protected HashMap<String, WeakReference<FreeColGameObject>> freeColGameObjects
-        = new HashMap<String, WeakReference<FreeColGameObject>>(10000);
+    private final GameObjectRegistry freeColGameObjects
+        = new GameObjectRegistry();
 
     /**
      * The combat model this game uses. At the moment, the only combat
@@ -123,12 +122,6 @@ public class Game extends FreeColGameObject {
      */
     protected CombatModel combatModel = null;
 
-    /** The number of removed FCGOs that should trigger a cache clean. */
-    private static final int REMOVE_GC_THRESHOLD = 64;
-
-    /** The number of FCGOs removed since last cache clean. */
-    private int removeCount = 0;
-
     /**
      * A FreeColGameObjectListener to watch the objects in the game.
      * Usually this is the AIMain instance.
@@ -136,6 +129,12 @@ public class Game extends FreeColGameObject {
      */
     protected FreeColGameObjectListener freeColGameObjectListener = null;
 
+    /**
+     * The number of player view slots handed out.
+     * @see Player#getViewIndex
+     */
+    private int viewSlots = 0;
+
 
     /**
      * Constructor used by the ServerGame constructor.
@@ -213,16 +212,8 @@ public class Game extends FreeColGameObject {
      * @return The game object, or null if not found.
      */
     public FreeColGameObject getFreeColGameObject(String id) {
-        if (id != null && id.length() > 0) {
-            final WeakReference<FreeColGameObject> ro
-                = freeColGameObjects.get(id);
-            if (ro != null) {
-                final FreeColGameObject o = ro.get();
-                if (o != null) return o;
-                freeColGameObjects.remove(id);
-            }
-        }
-        return null;
+        return (id == null || id.length() == 0) ? null
+            : freeColGameObjects.get(id);
     }
 
     /**
@@ -260,15 +251,14 @@ public class Game extends FreeColGameObject {
             throw new IllegalArgumentException("Null FreeColGameObject.");
         }
 
-        final WeakReference<FreeColGameObject> wr
-            = new WeakReference<FreeColGameObject>(fcgo);
+        expungeFreeColGameObjects();
         final FreeColGameObject old = getFreeColGameObject(id);
         if (old != null) {
             throw new IllegalArgumentException("Replacing FreeColGameObject "
                 + id + " : " + old.getClass()
                 + " with " + fcgo.getId() + " : " + fcgo.getClass());
         }
-        freeColGameObjects.put(id, wr);
+        freeColGameObjects.put(id, fcgo);
 
         notifySetFreeColGameObject(id, fcgo);
     }
@@ -287,13 +277,17 @@ public class Game extends FreeColGameObject {
 
         freeColGameObjects.remove(id);
         notifyRemoveFreeColGameObject(id);
+        expungeFreeColGameObjects();
+    }
 
-        // Garbage collect the FCGOs if enough have been removed.
-        if (++removeCount > REMOVE_GC_THRESHOLD) {
-            Iterator<FreeColGameObject> i = getFreeColGameObjectIterator();
-            while (i.hasNext()) i.next();
-            removeCount = 0;
-            System.gc(); // Probably a good opportunity.
+    /**
+     * Drops the registered objects that have been garbage collected.
+     * This only looks at the references the collector has queued, so
+     * it is cheap enough to call on every registry change.
+     */
+    private void expungeFreeColGameObjects() {
+        for (String id : freeColGameObjects.expunge()) {
+            notifyRemoveFreeColGameObject(id);
         }
     }
 
@@ -364,55 +358,29 @@ public class Game extends FreeColGameObject {
      * Gets an <code>Iterator</code> over every registered
      * <code>FreeColGameObject</code>.
      *
-     * This <code>Iterator</code> should be iterated at least once in
-     * a while since it cleans the <code>FreeColGameObject</code>
-     * cache.  Very few routines call this any more, so there is a
-     * thresholded call in removeFreeColGameObject to ensure the cache
-     * is still cleaned.  Reconsider this if the situation changes.
-     *
      * @return An <code>Iterator</code> containing every registered
      *     <code>FreeColGameObject</code>.
      * @see #setFreeColGameObject
      */
     public Iterator<FreeColGameObject> getFreeColGameObjectIterator() {
+        expungeFreeColGameObjects();
+        final Iterator<FreeColGameObject> it = freeColGameObjects.iterator();
         return new Iterator<FreeColGameObject>() {
-            final Iterator<Entry<String, WeakReference<FreeColGameObject>>> it
-                = freeColGameObjects.entrySet().iterator();
-            FreeColGameObject nextValue = null;
-            String lastId = null;
+            private String lastId = null;
 
             public boolean hasNext() {
-                while (nextValue == null) {
-                    if (!it.hasNext()) return false;
-
-                    final Entry<String, WeakReference<FreeColGameObject>> entry
-                        = it.next();
-                    final WeakReference<FreeColGameObject> wr
-                        = entry.getValue();
-                    final FreeColGameObject o = wr.get();
-                    if (o == null) {
-                        lastId = null;
-                        notifyRemoveFreeColGameObject(entry.getKey());
-                        it.remove();
-                    } else {
-                        lastId = o.getId();
-                        nextValue = o;
-                    }
-                }
-
-                return nextValue != null;
+                return it.hasNext();
             }
 
             public FreeColGameObject next() {
-                hasNext();
-                final FreeColGameObject o = nextValue;
-                nextValue = null;
+                final FreeColGameObject o = it.next();
+                lastId = o.getId();
                 return o;
             }
 
             public void remove() {
-                if (lastId != null) notifyRemoveFreeColGameObject(lastId);
                 it.remove();
+                if (lastId != null) notifyRemoveFreeColGameObject(lastId);
             }
         };
     }
@@ -569,6 +537,15 @@ public class Game extends FreeColGameObject {
         return true;
     }
 
+    /**
+     * Allocate a new slot for the views a player has of the tiles.
+     *
+     * @return The new slot index.
+     */
+    synchronized int allocateViewSlot() {
+        return viewSlots++;
+    }
+
     /**
      * Gets the "Unknown Enemy" player, which is used for privateers.
      *
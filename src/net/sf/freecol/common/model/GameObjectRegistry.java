@@ -0,0 +1,260 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+/**
+ * The registry of the <code>FreeColGameObject</code>s in a game.
+ *
+ * Objects are held by weak references, so the registry does not keep
+ * otherwise unused objects alive.  Almost all identifiers have the
+ * form <code>tag:number</code>, with the number unique within the
+ * game, so these are stored in a dense array indexed by the number.
+ * Other identifiers, and the rare number collisions, are kept in a
+ * hash map.
+ *
+ * References cleared by the garbage collector are queued, and
+ * {@link #expunge} removes their entries without sweeping the whole
+ * registry.
+ */
+final class GameObjectRegistry {
+
+    /** Numbers above this are not worth a dense array slot. */
+    private static final int MAXIMUM_INDEX = 1 << 24;
+
+    /** A weak reference that remembers its identifier. */
+    private static final class Ref extends WeakReference<FreeColGameObject> {
+
+        /** The identifier of the referent. */
+        public final String id;
+
+
+        public Ref(String id, FreeColGameObject fcgo,
+                   ReferenceQueue<FreeColGameObject> queue) {
+            super(fcgo, queue);
+            this.id = id;
+        }
+    }
+
+    /** The references with numeric identifiers, by number. */
+    private Ref[] dense = new Ref[1024];
+
+    /** The references that do not fit the dense array. */
+    private final HashMap<String, Ref> others = new HashMap<String, Ref>();
+
+    /** The queue of references cleared by the garbage collector. */
+    private final ReferenceQueue<FreeColGameObject> queue
+        = new ReferenceQueue<FreeColGameObject>();
+
+    /** The number of registered references. */
+    private int size = 0;
+
+
+    /**
+     * Gets the dense array index for an identifier.
+     *
+     * @param id The object identifier.
+     * @return The numeric part of the identifier, or -1 if it does not
+     *     have a usable one.
+     */
+    private static int indexOf(String id) {
+        final int len = id.length();
+        final int colon = id.lastIndexOf(':');
+        if (colon + 1 >= len) return -1;
+        int n = 0;
+        for (int i = colon + 1; i < len; i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            n = 10 * n + (c - '0');
+            if (n >= MAXIMUM_INDEX) return -1;
+        }
+        return n;
+    }
+
+    /**
+     * Gets the reference registered for an identifier.
+     *
+     * @param id The object identifier.
+     * @return The <code>Ref</code>, or null if none.
+     */
+    private Ref getRef(String id) {
+        final int index = indexOf(id);
+        if (index >= 0 && index < dense.length) {
+            final Ref ref = dense[index];
+            if (ref != null && ref.id.equals(id)) return ref;
+        }
+        return (others.isEmpty()) ? null : others.get(id);
+    }
+
+    /**
+     * Gets the object registered for an identifier.
+     *
+     * @param id The object identifier.
+     * @return The <code>FreeColGameObject</code>, or null if none.
+     */
+    public FreeColGameObject get(String id) {
+        final Ref ref = getRef(id);
+        return (ref == null) ? null : ref.get();
+    }
+
+    /**
+     * Registers an object.  Any existing entry for the identifier
+     * is replaced.
+     *
+     * @param id The object identifier.
+     * @param fcgo The <code>FreeColGameObject</code> to register.
+     */
+    public void put(String id, FreeColGameObject fcgo) {
+        remove(id);
+        final Ref ref = new Ref(id, fcgo, queue);
+        final int index = indexOf(id);
+        if (index >= 0) {
+            if (index >= dense.length) {
+                Ref[] larger = new Ref[Math.max(index + 1, 2 * dense.length)];
+                System.arraycopy(dense, 0, larger, 0, dense.length);
+                dense = larger;
+            }
+            if (dense[index] == null) {
+                dense[index] = ref;
+                size++;
+                return;
+            }
+        }
+        others.put(id, ref);
+        size++;
+    }
+
+    /**
+     * Removes the entry for an identifier.
+     *
+     * @param id The object identifier.
+     * @return True if an entry was removed.
+     */
+    public boolean remove(String id) {
+        final int index = indexOf(id);
+        if (index >= 0 && index < dense.length) {
+            final Ref ref = dense[index];
+            if (ref != null && ref.id.equals(id)) {
+                dense[index] = null;
+                size--;
+                return true;
+            }
+        }
+        if (others.remove(id) != null) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the entries whose objects have been garbage collected.
+     *
+     * @return A list of the identifiers removed.
+     */
+    public List<String> expunge() {
+        List<String> result = null;
+        Ref ref;
+        while ((ref = (Ref)queue.poll()) != null) {
+            // Only remove the entry if it still belongs to this reference.
+            if (getRef(ref.id) != ref) continue;
+            remove(ref.id);
+            if (result == null) result = new ArrayList<String>();
+            result.add(ref.id);
+        }
+        return (result == null) ? new ArrayList<String>() : result;
+    }
+
+    /**
+     * Gets the number of registered entries, including any not yet
+     * expunged.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets an iterator over the live registered objects.
+     *
+     * The entries that do not fit the dense array are copied when the
+     * iterator reaches them, so that removing entries does not upset
+     * the iteration.
+     *
+     * @return An <code>Iterator</code> over the registered objects.
+     */
+    public Iterator<FreeColGameObject> iterator() {
+        return new Iterator<FreeColGameObject>() {
+            private int index = 0;
+            private List<Ref> otherRefs = null;
+            private int otherIndex = 0;
+
+            /** The next object, found by looking ahead, and its id. */
+            private FreeColGameObject nextValue = null;
+            private String nextId = null;
+
+            /** The id of the object last returned by next. */
+            private String returnedId = null;
+
+            public boolean hasNext() {
+                while (nextValue == null) {
+                    Ref ref;
+                    if (index < dense.length) {
+                        ref = dense[index++];
+                        if (ref == null) continue;
+                    } else {
+                        if (otherRefs == null) {
+                            otherRefs = new ArrayList<Ref>(others.values());
+                        }
+                        if (otherIndex >= otherRefs.size()) return false;
+                        ref = otherRefs.get(otherIndex++);
+                    }
+                    nextValue = ref.get();
+                    nextId = ref.id;
+                }
+                return true;
+            }
+
+            public FreeColGameObject next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                final FreeColGameObject o = nextValue;
+                returnedId = nextId;
+                nextValue = null;
+                nextId = null;
+                return o;
+            }
+
+            public void remove() {
+                if (returnedId == null) throw new IllegalStateException();
+                GameObjectRegistry.this.remove(returnedId);
+                returnedId = null;
+            }
+        };
+    }
+}
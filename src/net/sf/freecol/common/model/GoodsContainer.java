@@ -106,6 +106,15 @@ public class GoodsContainer extends FreeColGameObject implements Ownable {
     }
 
 
+    /**
+     * Get the goods location.
+     *
+     * @return The <code>Location</code> this container holds goods for.
+     */
+    public Location getLocation() {
+        return parent;
+    }
+
     /**
      * Set the goods location.
      *
@@ -489,6 +498,9 @@ public class GoodsContainer extends FreeColGameObject implements Ownable {
         oldStoredGoods.clear();
 
         super.readChildren(xr);
+
+        // The container may be updated without its colony.
+        if (parent instanceof Colony) ((Colony)parent).invalidateCache();
     }
 
     /**
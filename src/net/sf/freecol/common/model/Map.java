@@ -20,15 +20,14 @@
 package net.sf.freecol.common.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Random;
 import java.util.logging.Logger;
@@ -40,8 +39,11 @@ import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.model.pathfinding.CostDecider;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
+import net.sf.freecol.common.model.pathfinding.DistanceField;
+import net.sf.freecol.common.model.pathfinding.DistanceFields;
 import net.sf.freecol.common.model.pathfinding.GoalDecider;
 import net.sf.freecol.common.model.pathfinding.GoalDeciders;
+import net.sf.freecol.common.model.pathfinding.PathCache;
 import net.sf.freecol.common.util.Utils;
 
 
@@ -461,6 +463,18 @@ public class Map extends FreeColGameObject implements Location {
     /** The search tracing status.  Do not serialize. */
     private boolean traceSearch = false;
 
+    /** An optional cache of the paths found by findPath. */
+    private PathCache pathCache = null;
+
+    /** An optional cache of distances to shared search targets. */
+    private DistanceFields distanceFields = null;
+
+    /** The next unused contiguity number, or negative if not known. */
+    private int nextContiguity = -1;
+
+    /** The index of units and settlements, made when first needed. */
+    private volatile SpatialIndex spatialIndex = null;
+
 
     /**
      * Create a new <code>Map</code> from a collection of tiles.
@@ -873,6 +887,24 @@ public class Map extends FreeColGameObject implements Location {
         };
     }
 
+    /**
+     * Gets a search heuristic using the moves to the nearest target
+     * of a distance field.
+     *
+     * @param field The <code>DistanceField</code> to the targets.
+     * @return A new <code>SearchHeuristic</code> aiming for the targets.
+     */
+    private SearchHeuristic getFieldHeuristic(final DistanceField field) {
+        return new SearchHeuristic() {
+            // Tiles that can not reach a target without a carrier
+            // might still do so with one, so must not be penalized.
+            public int getValue(Tile tile) {
+                int steps = field.getSteps(tile);
+                return (steps == DistanceField.UNREACHABLE) ? 0 : steps;
+            }
+        };
+    }
+
     /**
      * Unified argument tests for full path searches, which then finds
      * the actual starting location for the path.  Deals with special
@@ -1062,6 +1094,41 @@ public class Map extends FreeColGameObject implements Location {
     public PathNode findPath(final Unit unit,
                              final Location start, final Location end,
                              final Unit carrier, CostDecider costDecider) {
+        final PathCache cache = pathCache;
+        if (cache == null) {
+            return findPathInternal(unit, start, end, carrier, costDecider);
+        }
+        final Location realStart = findRealStart(unit, start, carrier);
+        final Location realEnd = findRealEnd(end);
+        cache.setTurn(getGame().getTurn().getNumber());
+        final Object key = cache.makeKey(unit, realStart, realEnd, carrier,
+                                         costDecider);
+        if (cache.contains(key)) return cache.get(key);
+        PathNode path = findPathInternal(unit, start, end, carrier,
+                                         costDecider);
+        cache.put(key, path);
+        return path;
+    }
+
+    /**
+     * Find the quickest path for a unit (with optional carrier) from
+     * a start location to an end location, without consulting the
+     * path cache.
+     *
+     * @param unit The <code>Unit</code> to find the path for.
+     * @param start The <code>Location</code> in which the path starts from.
+     * @param end The <code>Location</code> at the end of the path.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param costDecider An optional <code>CostDecider</code> for
+     *     determining the movement costs.
+     * @return A path starting at the start location and ending at the
+     *     end location, or null if none found.
+     */
+    private PathNode findPathInternal(final Unit unit,
+                                      final Location start,
+                                      final Location end,
+                                      final Unit carrier,
+                                      CostDecider costDecider) {
         // Validate the arguments, reducing to either Europe or a Tile.
         final Location realStart = findRealStart(unit, start, carrier);
         final Location realEnd = findRealEnd(end);
@@ -1181,7 +1248,39 @@ public class Map extends FreeColGameObject implements Location {
                            final GoalDecider goalDecider,
                            final CostDecider costDecider,
                            final int maxTurns, final Unit carrier) {
+        return search(unit, start, goalDecider, costDecider, maxTurns,
+                      carrier, null);
+    }
+
+    /**
+     * Searches for a goal, guided by the distances to the possible
+     * goals.  The goal decider must not accept any tile that is not a
+     * target of the distance field, or the search may miss it.
+     *
+     * @param unit The <code>Unit</code> to find a path for.
+     * @param start The <code>Location</code> to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given <code>PathNode</code> is a goal or not.
+     * @param costDecider An optional <code>CostDecider</code>
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     <code>Unit</code> is allowed to move.  This is the
+     *     maximum search range for a goal.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param field An optional <code>DistanceField</code> to the goals.
+     * @return The path to a goal, or null if none can be found.
+     * @throws IllegalArgumentException If the unit is null, or the
+     *     start location does not make sense, or the carrier/unit
+     *     combination is bogus.
+     */
+    public PathNode search(final Unit unit, Location start,
+                           final GoalDecider goalDecider,
+                           final CostDecider costDecider,
+                           final int maxTurns, final Unit carrier,
+                           final DistanceField field) {
         final Location realStart = findRealStart(unit, start, carrier);
+        final SearchHeuristic sh = (field == null) ? null
+            : getFieldHeuristic(field);
         
         PathNode path;
         if (realStart instanceof Europe) {
@@ -1196,14 +1295,14 @@ public class Map extends FreeColGameObject implements Location {
             // if the initial search fails due to a turn limit.
             // TODO: something better.
             path = searchMap(unit, (Tile)offMapUnit.getEntryLocation(),
-                             goalDecider, costDecider, maxTurns, carrier, null);
+                             goalDecider, costDecider, maxTurns, carrier, sh);
             if (path != null) {
                 path = findPath(unit, realStart, path.getLastNode().getTile(),
                                 carrier, costDecider);
             }
         } else {
             path = searchMap(unit, realStart.getTile(), goalDecider,
-                             costDecider, maxTurns, carrier, null);
+                             costDecider, maxTurns, carrier, sh);
         }
 
         if (path != null) { // Add the turns remaining on the high seas.
@@ -1215,6 +1314,118 @@ public class Map extends FreeColGameObject implements Location {
         return path;
     }
 
+    /**
+     * Gets the path cache.
+     *
+     * @return The <code>PathCache</code> in use, or null if paths
+     *     are not cached.
+     */
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Sets the path cache.
+     *
+     * @param pathCache The new <code>PathCache</code>, or null to
+     *     disable path caching.
+     */
+    public void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    /**
+     * Drops cached paths affected by a change to the terrain,
+     * settlement or ownership of a tile.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public void invalidatePaths(Tile tile) {
+        final PathCache cache = pathCache;
+        if (cache != null) cache.invalidateTerrain(tile);
+    }
+
+    /**
+     * Drops cached paths and distances affected by a change to the
+     * terrain, tile items or settlement of a tile.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public void invalidateTerrain(Tile tile) {
+        invalidatePaths(tile);
+        final DistanceFields fields = distanceFields;
+        if (fields != null) fields.clear();
+    }
+
+    /**
+     * Gets the distance field cache.
+     *
+     * @return The <code>DistanceFields</code> in use, or null if
+     *     searches for shared targets are not accelerated.
+     */
+    public DistanceFields getDistanceFields() {
+        return distanceFields;
+    }
+
+    /**
+     * Sets the distance field cache.
+     *
+     * @param distanceFields The new <code>DistanceFields</code>, or
+     *     null to disable it.
+     */
+    public void setDistanceFields(DistanceFields distanceFields) {
+        this.distanceFields = distanceFields;
+    }
+
+    /**
+     * Gets the index of the units and settlements on this map,
+     * building it if this is the first use.
+     *
+     * @return The <code>SpatialIndex</code> for this map.
+     */
+    public SpatialIndex getSpatialIndex() {
+        SpatialIndex index = spatialIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = spatialIndex;
+                if (index == null) {
+                    // Publish before building so that changes made
+                    // meanwhile are not lost, but hold the index lock
+                    // so that it is not used until built.
+                    index = new SpatialIndex(this);
+                    synchronized (index) {
+                        spatialIndex = index;
+                        index.build();
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Updates the spatial index after the units or settlement of a
+     * tile have changed.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    void updateSpatialIndex(Tile tile) {
+        final SpatialIndex index = spatialIndex;
+        if (index != null && getTile(tile.getX(), tile.getY()) == tile) {
+            index.update(tile);
+        }
+    }
+
+    /**
+     * Drops cached paths affected by units arriving at or leaving a tile.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public void invalidateBlockedPaths(Tile tile) {
+        final PathCache cache = pathCache;
+        if (cache != null) cache.invalidateUnits(tile);
+    }
+
     /**
      * Gets the search tracing status.
      *
@@ -1353,27 +1564,15 @@ public class Map extends FreeColGameObject implements Location {
         /**
          * Replace a given path with that of this candidate move.
          *
-         * @param openList The list of available nodes.
-         * @param openListQueue The queue of available nodes.
-         * @param f The heuristic values for A*.
+         * @param state The <code>SearchState</code> holding the open list.
          * @param sh An optional <code>SearchHeuristic</code> to apply.
          */
-        public void improve(HashMap<String, PathNode> openList,
-                            PriorityQueue<PathNode> openListQueue,
-                            HashMap<String, Integer> f,
-                            SearchHeuristic sh) {
-            PathNode best = openList.get(dst.getId());
-            if (best != null) {
-                openList.remove(dst.getId());
-                openListQueue.remove(best);
-            }
+        public void improve(SearchState state, SearchHeuristic sh) {
             int fcost = cost;
             if (sh != null && dst.getTile() != null) {
                 fcost += sh.getValue(dst.getTile());
             }
-            f.put(dst.getId(), new Integer(fcost));
-            openList.put(dst.getId(), path);
-            openListQueue.offer(path);
+            state.open(getSearchIndex(dst), path, fcost);
         }
 
         /**
@@ -1394,6 +1593,289 @@ public class Map extends FreeColGameObject implements Location {
         }
     };
 
+    /**
+     * Gets the index of a location in the search arrays.
+     *
+     * Tiles are indexed by <code>y * width + x</code>, and the single
+     * index past the last tile is reserved for Europe.
+     *
+     * @param loc The <code>Location</code> to index.
+     * @return The search index of the location.
+     */
+    private int getSearchIndex(Location loc) {
+        final Tile tile = loc.getTile();
+        return (tile == null) ? getWidth() * getHeight()
+            : tile.getY() * getWidth() + tile.getX();
+    }
+
+    /**
+     * Reusable storage for the A* open and closed lists of
+     * {@link #searchMap}.
+     *
+     * Locations are identified by their search index (see
+     * {@link #getSearchIndex}), the f-values live in a primitive
+     * array, and the open list is an indexed binary heap supporting
+     * decrease-key.  A state is kept per thread and reused between
+     * searches, only the entries touched by a search are reset when
+     * it is released.
+     */
+    private static final class SearchState {
+
+        /** The number of indexable locations. */
+        private int size = 0;
+
+        /** The open list nodes, by search index. */
+        private PathNode[] open = new PathNode[0];
+
+        /** The closed list nodes, by search index. */
+        private PathNode[] closed = new PathNode[0];
+
+        /** The f-values (cost + heuristic), by search index. */
+        private int[] f = new int[0];
+
+        /** The heap of search indexes, ordered by f-value. */
+        private int[] heap = new int[0];
+
+        /** The position of each search index in the heap, or -1. */
+        private int[] heapPos = new int[0];
+
+        /** The current number of entries in the heap. */
+        private int heapSize = 0;
+
+        /** The search indexes touched by the current search. */
+        private int[] touched = new int[0];
+
+        /** The number of touched indexes. */
+        private int touchedCount = 0;
+
+        /** Whether each search index has been touched. */
+        private boolean[] isTouched = new boolean[0];
+
+        /** Is this state in use by a search? */
+        private boolean inUse = false;
+
+
+        /**
+         * Prepares this state for a search over a number of locations.
+         *
+         * @param n The number of locations to index.
+         */
+        public void acquire(int n) {
+            if (n > size) {
+                open = new PathNode[n];
+                closed = new PathNode[n];
+                f = new int[n];
+                heap = new int[n];
+                heapPos = new int[n];
+                touched = new int[n];
+                isTouched = new boolean[n];
+                Arrays.fill(heapPos, -1);
+                size = n;
+            }
+            heapSize = 0;
+            touchedCount = 0;
+            inUse = true;
+        }
+
+        /**
+         * Releases this state, dropping references to the nodes
+         * found by the last search.
+         */
+        public void release() {
+            for (int i = 0; i < touchedCount; i++) {
+                final int index = touched[i];
+                open[index] = closed[index] = null;
+                heapPos[index] = -1;
+                isTouched[index] = false;
+            }
+            heapSize = 0;
+            touchedCount = 0;
+            inUse = false;
+        }
+
+        /**
+         * Is this state in use by a search?
+         *
+         * @return True if the state is in use.
+         */
+        public boolean isInUse() {
+            return inUse;
+        }
+
+        /**
+         * Is the open list empty?
+         *
+         * @return True if there are no open nodes.
+         */
+        public boolean isOpenEmpty() {
+            return heapSize == 0;
+        }
+
+        /**
+         * Gets the open node at an index.
+         *
+         * @param index The search index.
+         * @return The open <code>PathNode</code>, or null if none.
+         */
+        public PathNode getOpen(int index) {
+            return open[index];
+        }
+
+        /**
+         * Gets the closed node at an index.
+         *
+         * @param index The search index.
+         * @return The closed <code>PathNode</code>, or null if none.
+         */
+        public PathNode getClosed(int index) {
+            return closed[index];
+        }
+
+        /**
+         * Puts a node on the closed list.
+         *
+         * @param index The search index.
+         * @param node The <code>PathNode</code> to close.
+         */
+        public void close(int index, PathNode node) {
+            touch(index);
+            closed[index] = node;
+        }
+
+        /**
+         * Removes a node from the closed list.
+         *
+         * @param index The search index.
+         */
+        public void unclose(int index) {
+            closed[index] = null;
+        }
+
+        /**
+         * Adds or improves a node on the open list.
+         *
+         * @param index The search index.
+         * @param node The <code>PathNode</code> to open.
+         * @param fcost The f-value of the node.
+         */
+        public void open(int index, PathNode node, int fcost) {
+            touch(index);
+            open[index] = node;
+            int pos = heapPos[index];
+            if (pos < 0) {
+                f[index] = fcost;
+                pos = heapSize++;
+                heap[pos] = index;
+                heapPos[index] = pos;
+                siftUp(pos);
+            } else if (fcost < f[index]) {
+                f[index] = fcost;
+                siftUp(pos);
+            } else {
+                f[index] = fcost;
+                siftDown(pos);
+            }
+        }
+
+        /**
+         * Removes the open node with the lowest f-value.
+         *
+         * @return The best open <code>PathNode</code>.
+         */
+        public PathNode poll() {
+            final int index = heap[0];
+            heapPos[index] = -1;
+            if (--heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapPos[heap[0]] = 0;
+                siftDown(0);
+            }
+            final PathNode node = open[index];
+            open[index] = null;
+            return node;
+        }
+
+        /**
+         * Records that an index has been used by the current search.
+         *
+         * @param index The search index.
+         */
+        private void touch(int index) {
+            if (!isTouched[index]) {
+                isTouched[index] = true;
+                touched[touchedCount++] = index;
+            }
+        }
+
+        /**
+         * Moves a heap entry towards the root until the heap is ordered.
+         *
+         * @param pos The heap position to start from.
+         */
+        private void siftUp(int pos) {
+            final int index = heap[pos];
+            final int value = f[index];
+            while (pos > 0) {
+                final int parent = (pos - 1) >>> 1;
+                final int p = heap[parent];
+                if (f[p] <= value) break;
+                heap[pos] = p;
+                heapPos[p] = pos;
+                pos = parent;
+            }
+            heap[pos] = index;
+            heapPos[index] = pos;
+        }
+
+        /**
+         * Moves a heap entry towards the leaves until the heap is ordered.
+         *
+         * @param pos The heap position to start from.
+         */
+        private void siftDown(int pos) {
+            final int index = heap[pos];
+            final int value = f[index];
+            final int half = heapSize >>> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                int c = heap[child];
+                final int right = child + 1;
+                if (right < heapSize && f[heap[right]] < f[c]) {
+                    c = heap[child = right];
+                }
+                if (value <= f[c]) break;
+                heap[pos] = c;
+                heapPos[c] = pos;
+                pos = child;
+            }
+            heap[pos] = index;
+            heapPos[index] = pos;
+        }
+    }
+
+    /** The search state for each searching thread. */
+    private static final ThreadLocal<SearchState> searchStates
+        = new ThreadLocal<SearchState>() {
+            @Override
+            protected SearchState initialValue() {
+                return new SearchState();
+            }
+        };
+
+    /**
+     * Gets a search state for a search over this map.  Usually this
+     * is the per-thread state, but a fresh one is used if a goal or
+     * cost decider starts a nested search.
+     *
+     * @return A <code>SearchState</code> ready for use.
+     */
+    private SearchState acquireSearchState() {
+        SearchState state = searchStates.get();
+        if (state.isInUse()) state = new SearchState();
+        state.acquire(getWidth() * getHeight() + 1);
+        return state;
+    }
+
     /**
      * Does this path include a non-carrier move within the last turn?
      *
@@ -1413,21 +1895,15 @@ public class Map extends FreeColGameObject implements Location {
      * Searches for a path to a goal determined by the given
      * <code>GoalDecider</code>.
      *
-     * Using A* with a List (closedList) for marking the visited nodes
-     * and using a PriorityQueue (openListQueue) for getting the next
-     * edge with the least cost.  This implementation could be
-     * improved by having the visited attribute stored on each Tile in
-     * order to avoid both of the HashMaps currently being used to
-     * serve this purpose.
+     * Using A* with the open and closed lists held in a reusable
+     * {@link SearchState}, indexed by the position of each location.
+     * This gives O(1) on membership tests and O(log N) for
+     * remove-best, insertions and improvements of open nodes, and
+     * avoids allocating new tables for every search.
      *
      * If the SearchHeuristic is not supplied, then the algorithm
      * degrades gracefully to Dijkstra's algorithm.
      *
-     * The data structure for the open list is a combined structure: using a
-     * HashMap for membership tests and a PriorityQueue for getting the node
-     * with the minimal f (cost+heuristics). This gives O(1) on membership
-     * test and O(log N) for remove-best and insertions.
-     *
      * @param unit The <code>Unit</code> to find a path for.
      * @param start The <code>Tile</code> to start the search from.
      * @param goalDecider The object responsible for determining whether a
@@ -1447,21 +1923,40 @@ public class Map extends FreeColGameObject implements Location {
                                final CostDecider costDecider,
                                final int maxTurns, final Unit carrier,
                                final SearchHeuristic searchHeuristic) {
-        final HashMap<String, PathNode> openList
-            = new HashMap<String, PathNode>();
-        final HashMap<String, PathNode> closedList
-            = new HashMap<String, PathNode>();
-        final HashMap<String, Integer> f
-            = new HashMap<String, Integer>();
-        final PriorityQueue<PathNode> openListQueue
-            = new PriorityQueue<PathNode>(1024,
-                new Comparator<PathNode>() {
-                    public int compare(PathNode p1, PathNode p2) {
-                        return (f.get(p1.getLocation().getId()).intValue()
-                            - f.get(p2.getLocation().getId()).intValue());
-                    }
-                });
+        final SearchState state = acquireSearchState();
+        try {
+            return searchMap(state, unit, start, goalDecider, costDecider,
+                             maxTurns, carrier, searchHeuristic);
+        } finally {
+            state.release();
+        }
+    }
+
+    /**
+     * Searches for a path to a goal using a given search state.
+     *
+     * @param state The <code>SearchState</code> to use.
+     * @param unit The <code>Unit</code> to find a path for.
+     * @param start The <code>Tile</code> to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given <code>PathNode</code> is a goal or not.
+     * @param costDecider An optional <code>CostDecider</code>
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     <code>Unit</code> is allowed to move.
+     * @param carrier An optional naval carrier <code>Unit</code> to use.
+     * @param searchHeuristic An optional <code>SearchHeuristic</code>.
+     * @return A path to a goal determined by the given
+     *     <code>GoalDecider</code>.
+     */
+    private PathNode searchMap(final SearchState state, final Unit unit,
+                               final Tile start,
+                               final GoalDecider goalDecider,
+                               final CostDecider costDecider,
+                               final int maxTurns, final Unit carrier,
+                               final SearchHeuristic searchHeuristic) {
         final Europe europe = unit.getOwner().getEurope();
+        final int europeIndex = getWidth() * getHeight();
         Unit offMapUnit = (carrier != null) ? carrier : unit;
         Unit currentUnit = (start.isLand())
             ? ((start.hasSettlement()
@@ -1486,19 +1981,15 @@ public class Map extends FreeColGameObject implements Location {
         final PathNode firstNode = new PathNode(start,
             ((currentUnit != null) ? currentUnit.getMovesLeft() : -1),
             0, carrier != null && currentUnit == carrier, null, null);
-        f.put(start.getId(),
-            new Integer((searchHeuristic == null) ? 0
-                : searchHeuristic.getValue(start)));
-        openList.put(start.getId(), firstNode);
-        openListQueue.offer(firstNode);
+        state.open(getSearchIndex(start), firstNode,
+            (searchHeuristic == null) ? 0 : searchHeuristic.getValue(start));
 
         PathNode best = null;
         int bestScore = INFINITY;
-        while (!openList.isEmpty()) {
+        while (!state.isOpenEmpty()) {
             // Choose the node with the lowest f.
-            final PathNode currentNode = openListQueue.poll();
-            final Location currentLocation = currentNode.getLocation();
-            openList.remove(currentLocation.getId());
+            final PathNode currentNode = state.poll();
+            final int currentIndex = getSearchIndex(currentNode.getLocation());
             if (sb != null) sb.append("\n  ").append(currentNode.toString());
 
             // Reset current unit to that of this node.
@@ -1515,10 +2006,14 @@ public class Map extends FreeColGameObject implements Location {
             }
 
             // Skip nodes that can not beat the current best path.
+            // With a heuristic, which never overestimates, the cost
+            // of reaching a goal from here is known to be higher.
             bestScore = ((best = goalDecider.getGoal()) == null) ? INFINITY
                 : best.getCost();
-            if (bestScore < currentNode.getCost()) {
-                closedList.put(currentLocation.getId(), currentNode);
+            if (bestScore < currentNode.getCost()
+                + ((searchHeuristic == null || currentNode.getTile() == null)
+                    ? 0 : searchHeuristic.getValue(currentNode.getTile()))) {
+                state.close(currentIndex, currentNode);
                 if (sb != null) {
                     sb.append(" ...goal cost wins(")
                         .append(Integer.toString(bestScore))
@@ -1536,7 +2031,7 @@ public class Map extends FreeColGameObject implements Location {
             }
 
             // Valid candidate for the closed list.
-            closedList.put(currentLocation.getId(), currentNode);
+            state.close(currentIndex, currentNode);
             if (sb != null) sb.append("...close");
 
             // Collect the parameters for the current node.
@@ -1563,7 +2058,8 @@ public class Map extends FreeColGameObject implements Location {
                 }
 
                 // Skip neighbouring tiles already too expensive.
-                if ((closed = closedList.get(moveTile.getId())) != null
+                final int moveIndex = getSearchIndex(moveTile);
+                if ((closed = state.getClosed(moveIndex)) != null
                     && closed.getCost() <= currentNode.getCost()) {
                     continue;
                 }
@@ -1677,13 +2173,11 @@ public class Map extends FreeColGameObject implements Location {
                     // Tighten the bounds on a previously seen case if possible
                     if (closed != null) {
                         if (move.canImprove(closed)) {
-                            closedList.remove(moveTile.getId());
-                            move.improve(openList, openListQueue, f,
-                                         searchHeuristic);
+                            state.unclose(moveIndex);
+                            move.improve(state, searchHeuristic);
                         }
-                    } else if (move.canImprove(openList.get(moveTile.getId()))){
-                        move.improve(openList, openListQueue, f,
-                                     searchHeuristic);
+                    } else if (move.canImprove(state.getOpen(moveIndex))) {
+                        move.improve(state, searchHeuristic);
                     }
                 }
             }
@@ -1695,7 +2189,7 @@ public class Map extends FreeColGameObject implements Location {
                 && currentUnit != null
                 && currentUnit.getType().canMoveToHighSeas()
                 && currentTile.isDirectlyHighSeasConnected()
-                && ((closed = closedList.get(europe.getId())) == null
+                && ((closed = state.getClosed(europeIndex)) == null
                     || closed.getCost() > currentNode.getCost())) {
                 MoveCandidate move = new MoveCandidate(currentUnit,
                     currentNode, europe, currentMovesLeft, currentTurns,
@@ -1705,11 +2199,11 @@ public class Map extends FreeColGameObject implements Location {
                 PathNode movePath = move.resetPath();
                 if (closed != null) {
                     if (move.canImprove(closed)) {
-                        closedList.remove(europe.getId());
-                        move.improve(openList, openListQueue, f, null);
+                        state.unclose(europeIndex);
+                        move.improve(state, null);
                     }
-                } else if (move.canImprove(openList.get(europe.getId()))) {
-                    move.improve(openList, openListQueue, f, null);
+                } else if (move.canImprove(state.getOpen(europeIndex))) {
+                    move.improve(state, null);
                 }
             }
         }
@@ -2073,76 +2567,94 @@ public class Map extends FreeColGameObject implements Location {
 
     /**
      * Sets the contiguity identifier for all tiles.
+     *
+     * Each region of connected water tiles, and then each region of
+     * connected land tiles, is numbered in turn in the order the
+     * regions are first met scanning the map row by row.
      */
     public void resetContiguity() {
-        // Create the water map.  It is an error for any tile not to
-        // have a region at this point.
-        boolean[][] waterMap = new boolean[getWidth()][getHeight()];
         for (int y = 0; y < getHeight(); y++) {
             for (int x = 0; x < getWidth(); x++) {
-                if (isValid(x, y)) {
-                    waterMap[x][y] = !getTile(x,y).isLand();
-                    Tile tile = getTile(x, y);
-                    tile.setContiguity(-1);
-                }
+                getTile(x, y).setContiguity(-1);
             }
         }
 
-        // Flood fill each contiguous water region, setting the
-        // contiguity number.
+        final int[] queue = new int[getWidth() * getHeight()];
         int contig = 0;
-        for (int y = 0; y < getHeight(); y++) {
-            for (int x = 0; x < getWidth(); x++) {
-                if (waterMap[x][y]) {
+        for (int pass = 0; pass < 2; pass++) {
+            final boolean land = pass > 0;
+            for (int y = 0; y < getHeight(); y++) {
+                for (int x = 0; x < getWidth(); x++) {
                     Tile tile = getTile(x, y);
-                    if (tile.getContiguity() >= 0) continue;
-                    
-                    boolean[][] found = floodFill(waterMap, x, y);
-                    for (int yy = 0; yy < getHeight(); yy++) {
-                        for (int xx = 0; xx < getWidth(); xx++) {
-                            if (found[xx][yy]) {
-                                Tile t = getTile(xx, yy);
-                                if (t.getContiguity() < 0) {
-                                    t.setContiguity(contig);
-                                }
-                            }
-                        }
+                    if (tile.isLand() == land && tile.getContiguity() < 0) {
+                        fillContiguity(tile, contig++, queue);
                     }
-                    contig++;
                 }
             }
         }
+        nextContiguity = contig;
+    }
 
-        // Complement the waterMap, it is now the land map.
-        for (int y = 0; y < getHeight(); y++) {
-            for (int x = 0; x < getWidth(); x++) {
-                if (isValid(x, y)) waterMap[x][y] = !waterMap[x][y];
+    /**
+     * Updates the contiguity identifiers after a tile has changed
+     * between land and water.  Only the regions that touch the tile
+     * are renumbered, as they may have been split or joined.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public void updateContiguity(Tile tile) {
+        if (nextContiguity < 0) {
+            for (int y = 0; y < getHeight(); y++) {
+                for (int x = 0; x < getWidth(); x++) {
+                    nextContiguity = Math.max(nextContiguity,
+                        getTile(x, y).getContiguity());
+                }
             }
+            nextContiguity++;
         }
 
-        // Flood fill again for each contiguous land region.
-        for (int y = 0; y < getHeight(); y++) {
-            for (int x = 0; x < getWidth(); x++) {
-                if (waterMap[x][y]) {
-                    Tile tile = getTile(x, y);
-                    if (tile.getContiguity() >= 0) continue;
-                    
-                    boolean[][] found = floodFill(waterMap, x, y);
-                    for (int yy = 0; yy < getHeight(); yy++) {
-                        for (int xx = 0; xx < getWidth(); xx++) {
-                            if (found[xx][yy]) {
-                                Tile t = getTile(xx, yy);
-                                if (t.getContiguity() < 0) {
-                                    t.setContiguity(contig);
-                                }
-                            }
-                        }
-                    }
-                    contig++;
-                }
+        // New numbers are all at least first, so a tile with a lower
+        // number has not been renumbered yet.
+        final int first = nextContiguity;
+        final int[] queue = new int[getWidth() * getHeight()];
+        fillContiguity(tile, nextContiguity++, queue);
+        for (Direction d : Direction.values()) {
+            Tile t = tile.getNeighbourOrNull(d);
+            if (t != null && t.getContiguity() < first) {
+                fillContiguity(t, nextContiguity++, queue);
             }
         }
-    }        
+    }
+
+    /**
+     * Sets the contiguity identifier of the region of tiles connected
+     * to a given tile that are all land or all water like it.  The
+     * region must not already have this identifier.
+     *
+     * @param start The <code>Tile</code> to start at.
+     * @param contig The contiguity identifier to set.
+     * @param queue Work space for the search, large enough to hold an
+     *     index for each tile of the map.
+     */
+    private void fillContiguity(Tile start, int contig, int[] queue) {
+        final boolean land = start.isLand();
+        final int width = getWidth();
+        int head = 0, tail = 0;
+        start.setContiguity(contig);
+        queue[tail++] = start.getY() * width + start.getX();
+        while (head < tail) {
+            final int index = queue[head++];
+            final int x = index % width, y = index / width;
+            for (Direction d : Direction.values()) {
+                final int xx = d.stepX(x, y), yy = d.stepY(x, y);
+                if (!isValid(xx, yy)) continue;
+                Tile t = getTile(xx, yy);
+                if (t.isLand() != land || t.getContiguity() == contig) continue;
+                t.setContiguity(contig);
+                queue[tail++] = yy * width + xx;
+            }
+        }
+    }
 
     /**
      * Sets the high seas count for all tiles connected to the high seas.
@@ -622,16 +622,34 @@ public class Player extends FreeColGameObject implements Nameable {
     protected final List<Settlement> settlements
         = new ArrayList<Settlement>();
 
-    /** The tiles the player can see. */
+    /** The tiles the player can see, when there is no fog of war. */
     private boolean[][] canSeeTiles = null;
+    /** The tiles in sight of the player, used when there is fog of war. */
+    private SightMap sightMap = null;
+    /** Was there fog of war when the visibility was last updated? */
+    private boolean canSeeFog = false;
     /** Are the canSeeTiles valid or do they need to be recalculated? */
     private boolean canSeeValid = false;
-    /** Do not access canSeeTiles without taking canSeeLock. */
+    /** The number of invalidations, to detect one during an update. */
+    private int canSeeVersion = 0;
+    /** Do not access canSeeTiles or sightMap without taking canSeeLock. */
     private final Object canSeeLock = new Object();
+    /** Held while updating the visibility. */
+    private final Object sightLock = new Object();
+    /**
+     * The slot of this player's views of the tiles, allocated on
+     * demand.  Only set while holding viewLock.
+     */
+    private volatile int viewIndex = -1;
+    /** Held while allocating the view slot. */
+    private final Object viewLock = new Object();
 
     /** A container for the abilities and modifiers of this type. */
     protected final FeatureContainer featureContainer = new FeatureContainer();
 
+    /** The cached ability and modifier sets of this player. */
+    private FeatureCache featureCache = null;
+
     /** The maximum food consumption of unit types available to this player. */
     private int maximumFoodConsumption = -1;
 
@@ -1019,6 +1037,8 @@ public class Player extends FreeColGameObject implements Nameable {
      */
     public void setPlayerType(PlayerType type) {
         playerType = type;
+        // The player type implies an ability.
+        FeatureCache.invalidateAll();
     }
 
     /**
@@ -2679,7 +2699,8 @@ public class Player extends FreeColGameObject implements Nameable {
         do {
             synchronized (canSeeLock) {
                 if (canSeeValid) {
-                    return canSeeTiles[tile.getX()][tile.getY()];
+                    return (canSeeFog) ? sightMap.isInSight(tile)
+                        : canSeeTiles[tile.getX()][tile.getY()];
                 }
             }
         } while (resetCanSeeTiles());
@@ -2730,26 +2751,89 @@ public class Player extends FreeColGameObject implements Nameable {
     public void invalidateCanSeeTiles() {
         synchronized (canSeeLock) {
             canSeeValid = false;
+            canSeeVersion++;
+        }
+    }
+
+    /**
+     * Gets the tiles that have come into the line of sight of this
+     * player since this was last called, and forgets them.
+     *
+     * @return A list of the newly visible <code>Tile</code>s.
+     */
+    public List<Tile> pollNewlyVisibleTiles() {
+        if (!updateCanSeeTiles()) return Collections.emptyList();
+        synchronized (canSeeLock) {
+            return sightMap.pollNewlyVisible();
         }
     }
 
     /**
-     * Resets this player's "can see"-tiles.  This is done by setting
-     * all the tiles within each {@link Unit} and {@link Settlement}s
-     * line of sight visible.  The other tiles are made invisible.
+     * Gets the tiles that have gone out of the line of sight of this
+     * player since this was last called, and forgets them.
+     *
+     * @return A list of the newly hidden <code>Tile</code>s.
+     */
+    public List<Tile> pollNewlyHiddenTiles() {
+        if (!updateCanSeeTiles()) return Collections.emptyList();
+        synchronized (canSeeLock) {
+            return sightMap.pollNewlyHidden();
+        }
+    }
+
+    /**
+     * Makes sure the "can see"-tiles are up to date.
+     *
+     * @return True if the tiles are valid.
+     */
+    private boolean updateCanSeeTiles() {
+        do {
+            synchronized (canSeeLock) {
+                if (canSeeValid) return true;
+            }
+        } while (resetCanSeeTiles());
+        return false;
+    }
+
+    /**
+     * Resets this player's "can see"-tiles.  This is done by counting
+     * the observers of each tile within the line of sight of each
+     * {@link Unit} and {@link Settlement}.  Only the observers that
+     * have changed since the last reset need to be recounted.
      *
      * Use {@link #invalidateCanSeeTiles} whenever possible.
      *
      * @return True if successful.
      */
     private boolean resetCanSeeTiles() {
-        Map map = getGame().getMap();
+        final Map map = getGame().getMap();
         if (map == null) return false;
 
-        boolean[][] cST = makeCanSeeTiles(map);
-        synchronized (canSeeLock) {
-            canSeeTiles = cST;
-            canSeeValid = true;
+        synchronized (sightLock) {
+            final int version;
+            synchronized (canSeeLock) {
+                if (canSeeValid) return true; // Updated by another thread
+                version = canSeeVersion;
+            }
+
+            // The sightings are always counted so that the tiles
+            // coming into and going out of sight are known, but
+            // without fog of war a tile is visible once it is
+            // explored.
+            final boolean fog = getSpecification()
+                .getBoolean(GameOptions.FOG_OF_WAR);
+            if (sightMap == null || sightMap.getMap() != map) {
+                sightMap = new SightMap(map);
+            }
+            // Set the PET for newly sighted tiles to the tile itself.
+            sightMap.update(makeSights(map), (fog) ? this : null);
+            boolean[][] cST = (fog) ? null : makeCanSeeTiles(map);
+
+            synchronized (canSeeLock) {
+                canSeeFog = fog;
+                if (cST != null) canSeeTiles = cST;
+                canSeeValid = version == canSeeVersion;
+            }
         }
         return true;
     }
@@ -2765,58 +2849,74 @@ public class Player extends FreeColGameObject implements Nameable {
     }
 
     /**
-     * Builds a canSeeTiles array.
+     * Gets the index of the views this player has of the tiles.
+     *
+     * @return The view index.
+     * @see Tile#getTileToCache
+     */
+    int getViewIndex() {
+        int index = viewIndex;
+        if (index < 0) {
+            synchronized (viewLock) {
+                index = viewIndex;
+                if (index < 0) {
+                    index = getGame().allocateViewSlot();
+                    viewIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds a canSeeTiles array for use when there is no fog of war,
+     * where a tile is visible once it is explored.
      *
      * Note that tiles must be tested for null as they may be both
      * valid tiles but yet null during a save game load.
      *
-     * Note the use of copies of the unit and settlement lists to
-     * avoid nasty surprises due to asynchronous disappearance of
-     * members of either.  TODO: see if this can be relaxed.
-     *
      * @param map The <code>Map</code> to use.
      * @return A canSeeTiles array.
      */
     private boolean[][] makeCanSeeTiles(Map map) {
-        final Specification spec = getSpecification();
-        // Simple case when there is no fog of war: a tile is
-        // visible once it is explored.
-        if (!spec.getBoolean(GameOptions.FOG_OF_WAR)) {
-            boolean[][] cST = (canSeeTiles != null) ? canSeeTiles
-                : new boolean[map.getWidth()][map.getHeight()];
-            for (Tile t : getGame().getMap().getAllTiles()) {
-                if (t != null) {
-                    cST[t.getX()][t.getY()] = hasExplored(t);
-                }
+        boolean[][] cST = (canSeeTiles != null
+            && canSeeTiles.length == map.getWidth()
+            && canSeeTiles[0].length == map.getHeight()) ? canSeeTiles
+            : new boolean[map.getWidth()][map.getHeight()];
+        for (Tile t : map.getAllTiles()) {
+            if (t != null) {
+                cST[t.getX()][t.getY()] = hasExplored(t);
             }
-            return cST;
         }
+        return cST;
+    }
 
-        // When there is fog, have to trace all locations where the
-        // player has units, settlements, (optionally) missions, and
-        // extra visibility.
-        // Set the PET for visible tiles to the tile itself.
-        boolean[][] cST = new boolean[map.getWidth()][map.getHeight()];
-
-        for (Unit unit : getUnits()) {
+    /**
+     * Collects the lines of sight of all the places where the player
+     * has units, settlements, (optionally) missions, and extra
+     * visibility.
+     *
+     * @param map The <code>Map</code> to use.
+     * @return A map of the observers to their lines of sight.
+     */
+    private HashMap<FreeColGameObject, SightMap.Sight> makeSights(Map map) {
+        final Specification spec = getSpecification();
+        HashMap<FreeColGameObject, SightMap.Sight> sights
+            = new HashMap<FreeColGameObject, SightMap.Sight>();
+        for (Iterator<Unit> it = getUnitIterator(); it.hasNext();) {
+            Unit unit = it.next();
             // Only consider units directly on the map, not those on a
             // carrier or in Europe.
             if (!(unit.getLocation() instanceof Tile)) continue;
 
             // All the units.
-            for (Tile t : ((Tile)unit.getLocation()).getSurroundingTiles(0,
-                    unit.getLineOfSight())) {
-                cST[t.getX()][t.getY()] = true;
-                t.seeTile(this);
-            }
+            addSight(sights, unit, (Tile)unit.getLocation(),
+                     unit.getLineOfSight());
         }
         // All the settlements.
         for (Settlement settlement : getSettlements()) {
-            for (Tile t : settlement.getTile().getSurroundingTiles(0,
-                    settlement.getLineOfSight())) {
-                cST[t.getX()][t.getY()] = true;
-                t.seeTile(this);
-            }
+            addSight(sights, settlement, settlement.getTile(),
+                     settlement.getLineOfSight());
         }
         // All missions if using enhanced missionaries.
         if (isEuropean()
@@ -2829,11 +2929,7 @@ public class Player extends FreeColGameObject implements Nameable {
                     if (!is.hasMissionary(this)) {
                         continue;
                     }
-                    for (Tile t : is.getTile().getSurroundingTiles(0,
-                            is.getLineOfSight())) {
-                        cST[t.getX()][t.getY()] = true;
-                        t.seeTile(this);
-                    }
+                    addSight(sights, is, is.getTile(), is.getLineOfSight());
                 }
             }
         }
@@ -2844,17 +2940,31 @@ public class Player extends FreeColGameObject implements Nameable {
                     continue;
                 }
                 for (Colony colony : other.getColonies()) {
-                    for (Tile t : colony.getTile().getSurroundingTiles(0,
-                            colony.getLineOfSight())) {
-                        cST[t.getX()][t.getY()] = true;
-                        t.seeTile(this);
-                    }
+                    addSight(sights, colony, colony.getTile(),
+                             colony.getLineOfSight());
                 }
             }
         }
-        return cST;
+        return sights;
     }
 
+    /**
+     * Adds the line of sight of an observer to a map of sightings.
+     *
+     * @param sights The map of observers to their lines of sight.
+     * @param observer The observing <code>FreeColGameObject</code>.
+     * @param tile The <code>Tile</code> the observer is on, which may
+     *     be null during a save game load.
+     * @param radius The line of sight radius.
+     */
+    private static void addSight(HashMap<FreeColGameObject,
+                                 SightMap.Sight> sights,
+                                 FreeColGameObject observer,
+                                 Tile tile, int radius) {
+        if (tile != null) {
+            sights.put(observer, new SightMap.Sight(tile, radius));
+        }
+    }
 
     //
     // Foreign relations
@@ -3812,7 +3922,12 @@ public class Player extends FreeColGameObject implements Nameable {
     @Override
     public Set<Ability> getAbilitySet(String id, FreeColGameObjectType fcgot,
                                       Turn turn) {
-        Set<Ability> result = super.getAbilitySet(id, fcgot, turn);
+        final int stamp = FeatureCache.getGlobalVersion();
+        final FeatureCache cache = getFeatureCache();
+        Set<Ability> result = cache.getAbilitySet(0, playerType,
+                                                  id, fcgot, turn);
+        if (result != null) return result;
+        result = super.getAbilitySet(id, fcgot, turn);
         if (id == null || id == Ability.INDEPENDENCE_DECLARED) {
             switch (playerType) {
             case REBEL: case INDEPENDENT:
@@ -3822,7 +3937,33 @@ public class Player extends FreeColGameObject implements Nameable {
                 break;
             }
         }
-        return result;
+        return cache.putAbilitySet(stamp, 0, playerType,
+                                   id, fcgot, turn, result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Modifier> getModifierSet(String id, FreeColGameObjectType fcgot,
+                                        Turn turn) {
+        final int stamp = FeatureCache.getGlobalVersion();
+        final FeatureCache cache = getFeatureCache();
+        Set<Modifier> result = cache.getModifierSet(0, null, id, fcgot, turn);
+        if (result != null) return result;
+        return cache.putModifierSet(stamp, 0, null, id, fcgot, turn,
+                                    super.getModifierSet(id, fcgot, turn));
+    }
+
+    /**
+     * Gets the cache of the ability and modifier sets of this player,
+     * creating it if needed.
+     *
+     * @return The <code>FeatureCache</code> of this player.
+     */
+    private synchronized FeatureCache getFeatureCache() {
+        if (featureCache == null) featureCache = new FeatureCache();
+        return featureCache;
     }
 
 
@@ -4086,6 +4227,7 @@ public class Player extends FreeColGameObject implements Nameable {
 
         playerType = xr.getAttribute(PLAYER_TYPE_TAG,
                                      PlayerType.class, (PlayerType)null);
+        FeatureCache.invalidateAll();
 
         currentFather = xr.getType(spec, CURRENT_FATHER_TAG,
                                    FoundingFather.class, (FoundingFather)null);
@@ -122,7 +122,8 @@ public class PlayerExploredTile extends FreeColGameObject {
      * something credible.
      */
     public void fixCache() {
-        Tile copied = tile.getTileToCache();
+        Tile copied = tile.copy(tile.getGame(), Tile.class);
+        copied.clearUnitList();
         boolean ok = true;
         if (tile.getOwner() != owner) {
             copied.setOwner(owner);
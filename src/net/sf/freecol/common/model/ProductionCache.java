@@ -34,6 +34,14 @@ import java.util.Set;
  * buildings, as well as the consumption of all units, buildings and
  * build queues.
  *
+ * The cache remembers the state each work location and consumer was
+ * computed from: its units and production type, and for a consumer
+ * the amounts of the goods it consumes and produces that are
+ * available to it.  After a partial invalidation only the entries
+ * whose state has changed, and the work locations invalidated by
+ * name, are recomputed, so moving a unit recomputes the work
+ * locations it moved between and the consumers of the goods whose
+ * production changed.  A full invalidation recomputes everything.
  */
 public class ProductionCache {
 
@@ -50,10 +58,23 @@ public class ProductionCache {
     private Map<Object, ProductionInfo> productionAndConsumption =
         new HashMap<Object, ProductionInfo>();
 
+    /** The state each cached production was computed from. */
+    private Map<Object, List<Object>> states =
+        new HashMap<Object, List<Object>>();
+
     private Set<GoodsType> goodsUsed = new HashSet<GoodsType>();
 
+    /** The work locations to recompute at the next update. */
+    private Set<WorkLocation> changed = new HashSet<WorkLocation>();
+
     private boolean upToDate = false;
 
+    /** Must all the production be recomputed? */
+    private boolean recompute = true;
+
+    /** The number of units in the colony at the last update. */
+    private int unitCount = -1;
+
 
     /**
      * Creates a new <code>ProductionCache</code> instance.
@@ -66,7 +87,8 @@ public class ProductionCache {
 
 
     /**
-     * Updates all data structures.  The method has no side effects.
+     * Updates all data structures.  The method has no side effects,
+     * so the caches of different colonies may be updated in parallel.
      *
      * For now, there is a hard assumption that ColonyTiles do not
      * consume but Buildings do.  One day we may want to generalize
@@ -79,17 +101,34 @@ public class ProductionCache {
      * should be unified into a WorkLocation.getProductionInfo with the
      * Building-form arguments.
      */
-    private synchronized void update() {
+    public synchronized void update() {
         if (upToDate) return; // nothing to do
-        productionAndConsumption.clear();
+        // A change in the population changes the consumers and the
+        // colony modifiers, so recompute everything.
+        if (recompute || colony.getUnitCount() != unitCount) {
+            productionAndConsumption.clear();
+            states.clear();
+            recompute = false;
+            unitCount = colony.getUnitCount();
+        }
+        final Map<Object, ProductionInfo> oldInfo = productionAndConsumption;
+        final Map<Object, List<Object>> oldStates = states;
+        productionAndConsumption = new HashMap<Object, ProductionInfo>();
+        states = new HashMap<Object, List<Object>>();
         netProduction.clear();
         goodsUsed.clear();
         ProductionMap production = new ProductionMap();
 
         for (ColonyTile colonyTile : colony.getColonyTiles()) {
-            ProductionInfo info = colonyTile.getBasicProductionInfo();
+            List<Object> state = getState(colonyTile);
+            ProductionInfo info = oldInfo.get(colonyTile);
+            if (info == null || changed.contains(colonyTile)
+                || !state.equals(oldStates.get(colonyTile))) {
+                info = colonyTile.getBasicProductionInfo();
+            }
             production.add(info.getProduction());
             productionAndConsumption.put(colonyTile, info);
+            states.put(colonyTile, state);
             for (AbstractGoods goods : info.getProduction()) {
                 goodsUsed.add(goods.getType());
                 netProduction.incrementCount(goods.getType().getStoredAs(),
@@ -107,6 +146,7 @@ public class ProductionCache {
         netProduction.incrementCount(bells, amount);
 
         for (Consumer consumer : colony.getConsumers()) {
+            List<Object> state = getState(consumer);
             Set<Modifier> modifier = consumer
                 .getModifierSet(Modifier.CONSUME_ONLY_SURPLUS_PRODUCTION);
             List<AbstractGoods> goods = new ArrayList<AbstractGoods>();
@@ -121,22 +161,34 @@ public class ProductionCache {
                 }
                 goods.add(surplus);
             }
-            ProductionInfo info = null;
+            state.addAll(goods);
+            List<AbstractGoods> outputs = null;
             if (consumer instanceof Building) {
                 Building building = (Building) consumer;
-                List<AbstractGoods> outputs = new ArrayList<AbstractGoods>();
+                outputs = new ArrayList<AbstractGoods>();
                 for (AbstractGoods output : building.getOutputs()) {
                     GoodsType outputType = output.getType();
                     goodsUsed.add(outputType);
                     AbstractGoods newOutput = new AbstractGoods(production.get(outputType));
                     newOutput.setAmount(newOutput.getAmount() + getGoodsCount(outputType));
                     outputs.add(newOutput);
+                    // Breeding depends on the stored goods alone.
+                    state.add(getGoodsCount(outputType));
+                }
+                state.addAll(outputs);
+            }
+            ProductionInfo info = oldInfo.get(consumer);
+            if (info == null || changed.contains(consumer)
+                || !state.equals(oldStates.get(consumer))) {
+                info = null;
+                if (consumer instanceof Building) {
+                    info = ((Building) consumer)
+                        .getAdjustedProductionInfo(goods, outputs);
+                } else if (consumer instanceof Unit) {
+                    info = ((Unit) consumer).getProductionInfo(goods);
+                } else if (consumer instanceof BuildQueue) {
+                    info = ((BuildQueue<?>) consumer).getProductionInfo(goods);
                 }
-                info = building.getAdjustedProductionInfo(goods, outputs);
-            } else if (consumer instanceof Unit) {
-                info = ((Unit) consumer).getProductionInfo(goods);
-            } else if (consumer instanceof BuildQueue) {
-                info = ((BuildQueue<?>) consumer).getProductionInfo(goods);
             }
             if (info != null) {
                 production.add(info.getProduction());
@@ -148,13 +200,47 @@ public class ProductionCache {
                     netProduction.incrementCount(g.getType().getStoredAs(), -g.getAmount());
                 }
                 productionAndConsumption.put(consumer, info);
+                states.put(consumer, state);
             }
         }
-        this.productionAndConsumption = productionAndConsumption;
-        this.netProduction = netProduction;
+        changed.clear();
         upToDate = true;
     }
 
+    /**
+     * Gets the state of the colony that the production of a work
+     * location or consumer depends on, other than the goods available
+     * to it.  This includes state that is not expected to change
+     * without a full invalidation, but is cheap to check.
+     *
+     * @param object The <code>WorkLocation</code> or
+     *     <code>Consumer</code> to check.
+     * @return A list of the state values.
+     */
+    private List<Object> getState(Object object) {
+        List<Object> state = new ArrayList<Object>();
+        state.add(colony.getGame().getTurn().getNumber());
+        state.add(colony.getProductionBonus());
+        if (object instanceof WorkLocation) {
+            WorkLocation workLocation = (WorkLocation) object;
+            state.add(workLocation.getProductionType());
+            for (Unit unit : workLocation.getUnitList()) {
+                state.add(unit);
+                state.add(unit.getType());
+            }
+            if (object instanceof ColonyTile) {
+                state.add(((ColonyTile) object).getWorkTile().getType());
+            } else if (object instanceof Building) {
+                state.add(((Building) object).getType());
+            }
+        } else if (object instanceof Unit) {
+            state.add(((Unit) object).getType());
+        } else if (object instanceof BuildQueue) {
+            state.add(((BuildQueue<?>) object).getCurrentlyBuilding());
+        }
+        return state;
+    }
+
 
     /**
      * Returns the number of goods of the given type stored in the
@@ -177,6 +263,22 @@ public class ProductionCache {
      */
     public synchronized void invalidate() {
         upToDate = false;
+        recompute = true;
+    }
+
+
+    /**
+     * Invalidates the production of a work location. This method
+     * needs to be called whenever units are added to or removed from
+     * the work location, or its production type changes.  Only the
+     * work location and the consumers of goods whose production it
+     * changes are recomputed.
+     *
+     * @param workLocation The <code>WorkLocation</code> that changed.
+     */
+    public synchronized void invalidate(WorkLocation workLocation) {
+        changed.add(workLocation);
+        upToDate = false;
     }
 
 
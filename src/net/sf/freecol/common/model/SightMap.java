@@ -0,0 +1,204 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+
+
+/**
+ * The tiles within the line of sight of the units and settlements a
+ * player can see from.
+ *
+ * Each tile has a count of the observers that can see it.  The
+ * observers and their lines of sight are remembered, so when the
+ * visibility of a player is recalculated only the observers that
+ * have moved, appeared, disappeared or changed their line of sight
+ * need to update the counts of the tiles around them.  Tiles whose
+ * count changes from or to zero are collected, so that the tiles
+ * that have come into or gone out of sight can be retrieved.
+ */
+final class SightMap {
+
+    /** The line of sight of an observer. */
+    static final class Sight {
+
+        /** The tile the observer is on. */
+        public final Tile tile;
+
+        /** The line of sight radius. */
+        public final int radius;
+
+
+        public Sight(Tile tile, int radius) {
+            this.tile = tile;
+            this.radius = radius;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Sight)) return false;
+            Sight s = (Sight)o;
+            return tile == s.tile && radius == s.radius;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return 31 * tile.hashCode() + radius;
+        }
+    }
+
+    /** The map the counts are for. */
+    private final Map map;
+
+    /** The number of observers of each tile. */
+    private final int[][] counts;
+
+    /** The observers, and their lines of sight. */
+    private HashMap<FreeColGameObject, Sight> sights
+        = new HashMap<FreeColGameObject, Sight>();
+
+    /** The tiles that have come into sight since last polled. */
+    private final LinkedHashSet<Tile> newlyVisible = new LinkedHashSet<Tile>();
+
+    /** The tiles that have gone out of sight since last polled. */
+    private final LinkedHashSet<Tile> newlyHidden = new LinkedHashSet<Tile>();
+
+    /**
+     * Are changes of sight being collected?  Not until the first
+     * update, which would otherwise report everything in sight.
+     */
+    private boolean collecting = false;
+
+
+    /**
+     * Create a new empty sight map.
+     *
+     * @param map The <code>Map</code> to count sightings on.
+     */
+    public SightMap(Map map) {
+        this.map = map;
+        this.counts = new int[map.getWidth()][map.getHeight()];
+    }
+
+
+    /**
+     * Gets the map this sight map counts sightings on.
+     *
+     * @return The <code>Map</code>.
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Is a tile in sight of any observer?
+     *
+     * @param tile The <code>Tile</code> to check.
+     * @return True if the tile is in sight.
+     */
+    public boolean isInSight(Tile tile) {
+        return counts[tile.getX()][tile.getY()] > 0;
+    }
+
+    /**
+     * Updates the counts to a new set of observers.
+     *
+     * @param current The current observers and their lines of sight.
+     * @param player If not null, the <code>Player</code> whose view
+     *     of the tiles newly sighted by an observer is to be updated.
+     */
+    public void update(HashMap<FreeColGameObject, Sight> current,
+                       Player player) {
+        // Add the new sightings first, so tiles that stay in sight
+        // do not briefly drop out of it.
+        for (Entry<FreeColGameObject, Sight> e : current.entrySet()) {
+            final Sight sight = e.getValue();
+            if (!sight.equals(sights.get(e.getKey()))) add(sight, player);
+        }
+        for (Entry<FreeColGameObject, Sight> e : sights.entrySet()) {
+            final Sight sight = e.getValue();
+            if (!sight.equals(current.get(e.getKey()))) remove(sight);
+        }
+        sights = current;
+        collecting = true;
+    }
+
+    /**
+     * Counts an observer on the tiles in its line of sight.
+     *
+     * @param sight The <code>Sight</code> of the observer.
+     * @param player An optional <code>Player</code> to update the view of.
+     */
+    private void add(Sight sight, Player player) {
+        for (Tile t : sight.tile.getSurroundingTiles(0, sight.radius)) {
+            if (counts[t.getX()][t.getY()]++ == 0 && collecting) {
+                if (!newlyHidden.remove(t)) newlyVisible.add(t);
+            }
+            if (player != null) t.seeTile(player);
+        }
+    }
+
+    /**
+     * Uncounts an observer on the tiles in its line of sight.
+     *
+     * @param sight The <code>Sight</code> of the observer.
+     */
+    private void remove(Sight sight) {
+        for (Tile t : sight.tile.getSurroundingTiles(0, sight.radius)) {
+            if (--counts[t.getX()][t.getY()] == 0 && collecting) {
+                if (!newlyVisible.remove(t)) newlyHidden.add(t);
+            }
+        }
+    }
+
+    /**
+     * Gets and forgets the tiles that have come into sight since
+     * this was last called.
+     *
+     * @return A list of the newly visible <code>Tile</code>s.
+     */
+    public List<Tile> pollNewlyVisible() {
+        List<Tile> result = new ArrayList<Tile>(newlyVisible);
+        newlyVisible.clear();
+        return result;
+    }
+
+    /**
+     * Gets and forgets the tiles that have gone out of sight since
+     * this was last called.
+     *
+     * @return A list of the newly hidden <code>Tile</code>s.
+     */
+    public List<Tile> pollNewlyHidden() {
+        List<Tile> result = new ArrayList<Tile>(newlyHidden);
+        newlyHidden.clear();
+        return result;
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * An index of the units and settlements on a map, by position, for
+ * finding those near a tile without searching the tiles around it or
+ * looking through the units of every player.
+ *
+ * The map is divided into square chunks, and each chunk lists the
+ * units directly on its tiles (not those aboard carriers or inside
+ * settlements) and its settlements.  A tile is reindexed whenever
+ * its units or settlement change.  Owners are checked when querying,
+ * so units and settlements that change hands need no reindexing.
+ * Entries are also checked to still be where they were indexed, so
+ * the odd change that is not reported can only leave an entry that
+ * is ignored, never a wrong answer.
+ *
+ * The queries do not allocate.
+ */
+public final class SpatialIndex {
+
+    /** The log2 of the width and height of a chunk, in tiles. */
+    private static final int CHUNK_SHIFT = 3;
+
+    /** The units and settlements in one chunk. */
+    private static final class Chunk {
+
+        /** The units, and the tiles they were indexed at. */
+        public final List<Unit> units = new ArrayList<Unit>();
+        public final List<Tile> unitTiles = new ArrayList<Tile>();
+
+        /** The settlements. */
+        public final List<Settlement> settlements
+            = new ArrayList<Settlement>();
+    }
+
+    /** The map indexed. */
+    private final Map map;
+
+    /** The number of chunks across the map. */
+    private final int width;
+
+    /** The chunks, by row. */
+    private final Chunk[] chunks;
+
+
+    /**
+     * Create a new spatial index.  It is empty until built.
+     *
+     * @param map The <code>Map</code> to index.
+     */
+    public SpatialIndex(Map map) {
+        this.map = map;
+        this.width = chunks(map.getWidth());
+        this.chunks = new Chunk[width * chunks(map.getHeight())];
+        for (int i = 0; i < chunks.length; i++) chunks[i] = new Chunk();
+    }
+
+    private static int chunks(int tiles) {
+        return (tiles + (1 << CHUNK_SHIFT) - 1) >> CHUNK_SHIFT;
+    }
+
+    private Chunk getChunk(Tile tile) {
+        return chunks[(tile.getY() >> CHUNK_SHIFT) * width
+            + (tile.getX() >> CHUNK_SHIFT)];
+    }
+
+    /**
+     * Indexes all the tiles of the map.
+     */
+    public synchronized void build() {
+        for (Tile t : map.getAllTiles()) update(t);
+    }
+
+    /**
+     * Reindexes a tile after its units or settlement have changed.
+     *
+     * @param tile The <code>Tile</code> to reindex.
+     */
+    public synchronized void update(Tile tile) {
+        final Chunk chunk = getChunk(tile);
+        for (int i = chunk.units.size() - 1; i >= 0; i--) {
+            final Tile t = chunk.unitTiles.get(i);
+            if (t == tile || !isAt(chunk.units.get(i), t)) {
+                chunk.units.remove(i);
+                chunk.unitTiles.remove(i);
+            }
+        }
+        for (Unit u : tile.getUnitList()) {
+            chunk.units.add(u);
+            chunk.unitTiles.add(tile);
+        }
+        for (int i = chunk.settlements.size() - 1; i >= 0; i--) {
+            final Settlement s = chunk.settlements.get(i);
+            if (s.getTile() == tile || !isValid(s)) {
+                chunk.settlements.remove(i);
+            }
+        }
+        if (tile.getSettlement() != null) {
+            chunk.settlements.add(tile.getSettlement());
+        }
+    }
+
+    private static boolean isAt(Unit unit, Tile tile) {
+        return !unit.isDisposed() && tile.contains(unit);
+    }
+
+    private static boolean isValid(Settlement settlement) {
+        final Tile tile = settlement.getTile();
+        return tile != null && tile.getSettlement() == settlement
+            && !settlement.isDisposed();
+    }
+
+    /**
+     * Gets the lowest and highest chunk rows or columns that contain
+     * positions within a distance of a position.  Callers pass twice
+     * the radius for rows, as one step on the map moves at most one
+     * column but up to two rows.
+     */
+    private static int low(int position, int distance) {
+        return Math.max(0, position - distance) >> CHUNK_SHIFT;
+    }
+
+    private static int high(int position, int distance, int size) {
+        return Math.min(size - 1, position + distance) >> CHUNK_SHIFT;
+    }
+
+    /**
+     * Limits a search radius to the size of the map, so that the
+     * chunk bounds can not overflow.
+     */
+    private int limit(int radius) {
+        return Math.min(radius, map.getWidth() + map.getHeight());
+    }
+
+    /**
+     * Is there a unit at war with a player within a radius of a tile?
+     *
+     * @param player The <code>Player</code> to find enemies of.
+     * @param tile The <code>Tile</code> to search around.
+     * @param radius The radius to search within.
+     * @return True if such a unit was found.
+     */
+    public boolean hasEnemyUnitWithin(Player player, Tile tile, int radius) {
+        return getEnemyUnitsWithin(player, tile, radius, null) > 0;
+    }
+
+    /**
+     * Gets the units at war with a player within a radius of a tile.
+     *
+     * @param player The <code>Player</code> to find enemies of.
+     * @param tile The <code>Tile</code> to search around.
+     * @param radius The radius to search within.
+     * @param result A list to add the <code>Unit</code>s found to,
+     *     or null to stop at the first one.
+     * @return The number of units found.
+     */
+    public synchronized int getEnemyUnitsWithin(Player player, Tile tile,
+                                                int radius,
+                                                List<Unit> result) {
+        final int x = tile.getX(), y = tile.getY();
+        radius = limit(radius);
+        int found = 0;
+        for (int cy = low(y, 2 * radius);
+             cy <= high(y, 2 * radius, map.getHeight()); cy++) {
+            for (int cx = low(x, radius);
+                 cx <= high(x, radius, map.getWidth()); cx++) {
+                final Chunk chunk = chunks[cy * width + cx];
+                for (int i = 0; i < chunk.units.size(); i++) {
+                    final Unit u = chunk.units.get(i);
+                    final Tile t = chunk.unitTiles.get(i);
+                    if (!isAt(u, t) || !player.atWarWith(u.getOwner())
+                        || Map.Position.getDistance(x, y, t.getX(),
+                            t.getY()) > radius) continue;
+                    found++;
+                    if (result == null) return found;
+                    result.add(u);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Collects the owners of the units and settlements within a
+     * radius of a tile.
+     *
+     * @param tile The <code>Tile</code> to search around.
+     * @param radius The radius to search within.
+     * @param owners A set to add the owning <code>Player</code>s to.
+     */
+    public synchronized void getOwnersWithin(Tile tile, int radius,
+                                             Set<Player> owners) {
+        final int x = tile.getX(), y = tile.getY();
+        radius = limit(radius);
+        for (int cy = low(y, 2 * radius);
+             cy <= high(y, 2 * radius, map.getHeight()); cy++) {
+            for (int cx = low(x, radius);
+                 cx <= high(x, radius, map.getWidth()); cx++) {
+                final Chunk chunk = chunks[cy * width + cx];
+                for (int i = 0; i < chunk.units.size(); i++) {
+                    final Unit u = chunk.units.get(i);
+                    final Tile t = chunk.unitTiles.get(i);
+                    if (isAt(u, t) && Map.Position.getDistance(x, y,
+                            t.getX(), t.getY()) <= radius) {
+                        owners.add(u.getOwner());
+                    }
+                }
+                for (Settlement s : chunk.settlements) {
+                    final Tile t = s.getTile();
+                    if (isValid(s) && Map.Position.getDistance(x, y,
+                            t.getX(), t.getY()) <= radius) {
+                        owners.add(s.getOwner());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the nearest settlement to a tile, other than one on the
+     * tile itself.  Settlements at the same distance are chosen
+     * between in the order of {@link Map#getCircleTiles}, as a
+     * search of the surrounding tiles would find them.
+     *
+     * @param owner If non-null, the settlement should be owned by
+     *     this player.
+     * @param tile The <code>Tile</code> to search around.
+     * @param radius The radius to search within.
+     * @return The nearest <code>Settlement</code>, or null if none.
+     */
+    public synchronized Settlement getNearestSettlement(Player owner,
+                                                        Tile tile,
+                                                        int radius) {
+        final int x = tile.getX(), y = tile.getY();
+        radius = limit(radius);
+        Settlement best = null;
+        int bestDistance = FreeColObject.INFINITY;
+        boolean tied = false;
+        for (int cy = low(y, 2 * radius);
+             cy <= high(y, 2 * radius, map.getHeight()); cy++) {
+            for (int cx = low(x, radius);
+                 cx <= high(x, radius, map.getWidth()); cx++) {
+                for (Settlement s : chunks[cy * width + cx].settlements) {
+                    final Tile t = s.getTile();
+                    if (t == tile || !isValid(s)
+                        || (owner != null && !owner.owns(s))) continue;
+                    final int distance = Map.Position.getDistance(x, y,
+                        t.getX(), t.getY());
+                    if (distance > radius) continue;
+                    if (distance < bestDistance) {
+                        best = s;
+                        bestDistance = distance;
+                        tied = false;
+                    } else if (distance == bestDistance) {
+                        tied = true;
+                    }
+                }
+            }
+        }
+        if (tied) { // Rare, so just search the circle the old way.
+            for (Tile t : map.getCircleTiles(tile, true, bestDistance)) {
+                final Settlement s = t.getSettlement();
+                if (s != null && isValid(s)
+                    && (owner == null || owner.owns(s))) return s;
+            }
+        }
+        return best;
+    }
+}
@@ -179,8 +179,17 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     private int contiguity = -1;
 
-    /** A map of cached tiles for each European player, null in clients. */
-    private final java.util.Map<Player, Tile> cachedTiles;
+    /**
+     * Are the European players' views of this tile kept?  Only in
+     * the server.
+     */
+    private final boolean cachingViews;
+
+    /**
+     * The European players' views of this tile, indexed by
+     * {@link Player#getViewIndex}.  A null view is unexplored.
+     */
+    private TileSnapshot[] views = null;
 
     /**
      * A map of native settlement internals for each European player,
@@ -207,11 +216,11 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         this.settlement = null;
 
         if (game.isInServer()) {
-            this.cachedTiles = new HashMap<Player, Tile>();
+            this.cachingViews = true;
             this.playerIndianSettlements
                 = new HashMap<Player, IndianSettlementInternals>();
         } else {
-            this.cachedTiles = null;
+            this.cachingViews = false;
             this.playerIndianSettlements = null;
         }
     }
@@ -228,11 +237,11 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         super(game, id);
 
         if (game.isInServer()) {
-            this.cachedTiles = new HashMap<Player, Tile>();
+            this.cachingViews = true;
             this.playerIndianSettlements
                 = new HashMap<Player, IndianSettlementInternals>();
         } else {
-            this.cachedTiles = null;
+            this.cachingViews = false;
             this.playerIndianSettlements = null;
         }
     }
@@ -260,6 +269,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setType(TileType t) {
         type = t;
+        invalidateTerrain();
     }
 
     /**
@@ -340,6 +350,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setSettlement(Settlement settlement) {
         this.settlement = settlement;
+        invalidateTerrain();
+        updateSpatialIndex();
     }
 
     /**
@@ -684,6 +696,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             tileItemContainer = new TileItemContainer(getGame(), this);
         }
         TileItem added = tileItemContainer.addTileItem(item);
+        invalidateTerrain();
         return added == item;
     }
 
@@ -698,9 +711,44 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     private <T extends TileItem> T removeTileItem(T item) {
         if (item == null || tileItemContainer == null) return null;
         T result = tileItemContainer.removeTileItem(item);
+        invalidateTerrain();
         return result;
     }
 
+    /**
+     * Drops any cached paths and navigation data that may be affected
+     * by a change to the terrain, items or settlement of this tile.
+     */
+    private void invalidateTerrain() {
+        final Map map = getMap();
+        if (map != null) map.invalidateTerrain(this);
+    }
+
+    /**
+     * Drops any cached paths that may be affected by a change to this tile.
+     *
+     * @param units True if only the units present changed, false if
+     *     the ownership or exploration changed.
+     */
+    private void invalidatePaths(boolean units) {
+        final Map map = getMap();
+        if (map == null) return;
+        if (units) {
+            map.invalidateBlockedPaths(this);
+        } else {
+            map.invalidatePaths(this);
+        }
+    }
+
+    /**
+     * Updates the index of the units and settlements on the map after
+     * those on this tile have changed.
+     */
+    private void updateSpatialIndex() {
+        final Map map = getMap();
+        if (map != null) map.updateSpatialIndex(this);
+    }
+
     /**
      * Adds a lost city rumour to this tile.
      *
@@ -1035,16 +1083,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public Settlement getNearestSettlement(Player owner, int radius) {
         if (radius <= 0) radius = INFINITY;
-        Map map = getGame().getMap();
-        for (Tile t : map.getCircleTiles(this, true, radius)) {
-            if (t == this) continue;
-            Settlement settlement = t.getSettlement();
-            if (settlement != null
-                && (owner == null || owner.owns(settlement))) {
-                return settlement;
-            }
-        }
-        return null;
+        return getMap().getSpatialIndex()
+            .getNearestSettlement(owner, this, radius);
     }
 
     /**
@@ -1098,7 +1138,10 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         if (tileItemContainer != null) {
             tileItemContainer.removeIncompatibleImprovements();
         }
-        if (!isLand()) settlement = null;
+        if (!isLand() && settlement != null) {
+            settlement = null;
+            updateSpatialIndex();
+        }
 
         updateColonyTiles();
     }
@@ -1344,24 +1387,50 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * Get a players view of this tile.
      *
      * @param player The <code>Player</code> who owns the view.
-     * @return The view of this <code>Tile</code>.
+     * @return The view of this <code>Tile</code>, which is
+     *     <code>TileSnapshot.LIVE</code> if the player sees the tile
+     *     itself, or null if it is unexplored.
+     */
+    private TileSnapshot getView(Player player) {
+        if (!cachingViews) return null;
+        if (!player.isEuropean()) return TileSnapshot.LIVE;
+        final TileSnapshot[] v = views;
+        final int index = player.getViewIndex();
+        return (v == null || index >= v.length) ? null : v[index];
+    }
+
+    /**
+     * Set a players view of this tile.
+     *
+     * @param player The European <code>Player</code> who owns the view.
+     * @param view The new <code>TileSnapshot</code> view.
      */
-    public Tile getCachedTile(Player player) {
-        return (cachedTiles == null) ? null
-            : (player.isEuropean()) ? cachedTiles.get(player)
-            : this;
+    synchronized void setView(Player player, TileSnapshot view) {
+        final int index = player.getViewIndex();
+        if (views == null || index >= views.length) {
+            if (view == null) return;
+            TileSnapshot[] v = new TileSnapshot[(index + 4) & ~3];
+            if (views != null) System.arraycopy(views, 0, v, 0, views.length);
+            views = v;
+        }
+        views[index] = view;
     }
 
     /**
      * Set a players view of this tile.
      *
      * @param player The <code>Player</code> who owns the view.
-     * @param The view of the tile (either this tile, or an uninterned
-     *     copy of it).
+     * @param tile The view of the tile (either this tile, or an
+     *     uninterned copy of it).
      */
     public void setCachedTile(Player player, Tile tile) {
-        if (cachedTiles == null || !player.isEuropean()) return;
-        cachedTiles.put(player, tile);
+        if (!cachingViews || !player.isEuropean()) return;
+        if (tile == this) {
+            seeTile(player);
+        } else {
+            TileSnapshot view = TileSnapshot.create(tile, player);
+            if (view != null) setView(player, view);
+        }
     }
 
     /**
@@ -1370,7 +1439,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @param player The <code>Player</code> who owns the view.
      */
     public void seeTile(Player player) {
-        setCachedTile(player, this);
+        if (!cachingViews || !player.isEuropean()) return;
+        setView(player, TileSnapshot.LIVE);
     }
 
     /**
@@ -1381,14 +1451,56 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     }
 
     /**
-     * Get a copy of this tile suitable for caching (lacking units).
+     * Get the views of this tile to cache for the players that are
+     * currently seeing it, in case they will not be able to see it
+     * after a change.  Players that see the same thing share a view.
      *
-     * @return An uninterned copy of this <code>Tile</code>.
+     * @return A map of <code>Player</code> to the
+     *     <code>TileSnapshot</code> of their view of this tile.
      */
-    public Tile getTileToCache() {
-        Tile tile = this.copy(getGame(), Tile.class);
-        tile.clearUnitList();
-        return tile;
+    public java.util.Map<Player, TileSnapshot> getTileToCache() {
+        java.util.Map<Player, TileSnapshot> result
+            = new HashMap<Player, TileSnapshot>();
+        if (!cachingViews) return result;
+        java.util.Map<TileSnapshot, TileSnapshot> shared
+            = new HashMap<TileSnapshot, TileSnapshot>();
+        for (Player p : getGame().getLiveEuropeanPlayers()) {
+            if (getView(p) != TileSnapshot.LIVE) continue;
+            TileSnapshot view = makeView(p, shared);
+            if (view != null) result.put(p, view);
+        }
+        return result;
+    }
+
+    /**
+     * Make a view of this tile for a player, sharing an existing
+     * equal view if there is one, either just made or already kept
+     * for another player.
+     *
+     * @param player The <code>Player</code> to make the view for.
+     * @param shared A map of the views made so far.
+     * @return The <code>TileSnapshot</code> view, or null on failure.
+     */
+    private TileSnapshot makeView(Player player,
+        java.util.Map<TileSnapshot, TileSnapshot> shared) {
+        TileSnapshot view = TileSnapshot.create(this, player);
+        if (view == null) return null;
+        TileSnapshot old = shared.get(view);
+        if (old == null) {
+            final TileSnapshot[] v = views;
+            if (v != null) {
+                for (TileSnapshot ts : v) {
+                    if (ts != null && ts != TileSnapshot.LIVE
+                        && ts.equals(view)) {
+                        old = ts;
+                        break;
+                    }
+                }
+            }
+        }
+        if (old != null) view = old;
+        shared.put(view, view);
+        return view;
     }
 
     /**
@@ -1404,32 +1516,40 @@ public final class Tile extends UnitLocation implements Named, Ownable {
 
     /**
      * A change may have occured on this tile.  Establish caches where
-     * needed.  Use the copied tile if supplied (which should have
+     * needed.  Use the copied views if supplied (which should have
      * been created previously with {@link #getTileToCache},
      *
-     * @param copied An optional <code>Tile</code> to cache.
+     * @param copied An optional map of views to cache.
      */
-    public void cacheUnseen(Tile copied) {
+    public void cacheUnseen(java.util.Map<Player, TileSnapshot> copied) {
         cacheUnseen(null, copied);
     }
 
     /**
      * A change may have occured on this tile.  Establish caches where
-     * needed.  Use the copied tile if supplied (which should have
+     * needed.  Use the copied views if supplied (which should have
      * been created previously with {@link #getTileToCache},
      *
      * @param player A <code>Player</code> that currently may not be able
      *     to see the tile, but will as a result of the change, and so
      *     should not cache it.
-     * @param copied An optional <code>Tile</code> to cache.
+     * @param copied An optional map of views to cache.
      */
-    public void cacheUnseen(Player player, Tile copied) {
-        if (cachedTiles == null) return;
+    public void cacheUnseen(Player player,
+                            java.util.Map<Player, TileSnapshot> copied) {
+        if (!cachingViews) return;
+        java.util.Map<TileSnapshot, TileSnapshot> shared = null;
         for (Player p : getGame().getLiveEuropeanPlayers()) {
             if (p != player && !p.canSee(this)
-                && getCachedTile(p) == this) {
-                if (copied == null) copied = getTileToCache();
-                setCachedTile(p, copied);
+                && getView(p) == TileSnapshot.LIVE) {
+                TileSnapshot view = (copied == null) ? null : copied.get(p);
+                if (view == null) {
+                    if (shared == null) {
+                        shared = new HashMap<TileSnapshot, TileSnapshot>();
+                    }
+                    view = makeView(p, shared);
+                }
+                if (view != null) setView(p, view);
             }
         }
     }
@@ -1505,8 +1625,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     public boolean isExploredBy(Player player) {
         return (!player.isEuropean()) ? true
             : (!isExplored()) ? false
-            : (cachedTiles == null) ? true
-            : getCachedTile(player) != null;
+            : (!cachingViews) ? true
+            : getView(player) != null;
     }
 
     /**
@@ -1516,12 +1636,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @param reveal The exploration state.
      */
     public void setExplored(Player player, boolean reveal) {
-        if (cachedTiles == null || !player.isEuropean()) return;
+        if (!cachingViews || !player.isEuropean()) return;
         if (reveal) {
             seeTile(player);
         } else {
-            cachedTiles.remove(player);
+            setView(player, null);
         }
+        invalidatePaths(false);
     }
 
 
@@ -1752,6 +1873,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         } else if (locatable instanceof Unit) {
             if (super.add(locatable)) {
                 ((Unit)locatable).setState(Unit.UnitState.ACTIVE);
+                invalidatePaths(true);
+                updateSpatialIndex();
                 return true;
             }
             return false;
@@ -1771,6 +1894,14 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             return removeTileItem((TileItem)locatable)
                 == (TileItem)locatable;//-til
 
+        } else if (locatable instanceof Unit) {
+            if (super.remove(locatable)) {
+                invalidatePaths(true);
+                updateSpatialIndex();
+                return true;
+            }
+            return false;
+
         } else {
             return super.remove(locatable);
         }
@@ -1814,7 +1945,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         } else {
             Player player = getGame().getCurrentPlayer();
             if (player != null) {
-                return (getCachedTile(player) == null) ? "unexplored"
+                return (getView(player) == null) ? "unexplored"
                     : getType().getNameKey();
             } else {
                 logger.warning("player == null");
@@ -1840,6 +1971,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setOwner(Player owner) {
         this.owner = owner;
+        invalidatePaths(false);
     }
 
 
@@ -1886,7 +2018,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     private static final String COPIED_TAG = "copied";
     private static final String MOVE_TO_EUROPE_TAG = "moveToEurope";
     private static final String OWNER_TAG = "owner";
-    private static final String OWNING_SETTLEMENT_TAG = "owningSettlement";
+    static final String OWNING_SETTLEMENT_TAG = "owningSettlement";
     private static final String PLAYER_TAG = "player";
     private static final String REGION_TAG = "region";
     private static final String STYLE_TAG = "style";
@@ -1908,12 +2040,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         // 1. If not writing to a player, just write this tile.
         // 2. If there is no cached tile then it is unexplored, so
         //    write the minimal tile (id, x, y).
-        // 3. Otherwise write the cached tile, which will either be a
-        //    copy or <code>this</code>.
+        // 3. Otherwise write the player's view, which will either be
+        //    a snapshot or <code>this</code>.
         Player player = xw.getClientPlayer();
-        Tile tile = (player == null) ? this : getCachedTile(player);
+        TileSnapshot view = (player == null) ? TileSnapshot.LIVE
+            : getView(player);
 
-        if (tile == null) {
+        if (view == null) {
             xw.writeStartElement(tag);
 
             xw.writeAttribute(ID_ATTRIBUTE_TAG, getId());
@@ -1923,8 +2056,10 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             xw.writeAttribute(Y_TAG, this.y);
 
             xw.writeEndElement();
+        } else if (view == TileSnapshot.LIVE) {
+            internalToXML(xw, tag);
         } else {
-            tile.internalToXML(xw, tag);
+            view.toXML(xw, tag, getGame());
         }
     }
 
@@ -1946,6 +2081,24 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         xw.writeEndElement();
     }
 
+    /**
+     * Write what a client can see of this tile, without the units.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @exception XMLStreamException if there are any problems writing
+     *     to the stream.
+     * @see TileSnapshot
+     */
+    void writeView(FreeColXMLWriter xw) throws XMLStreamException {
+        xw.writeStartElement(getXMLElementTagName());
+
+        writeAttributes(xw);
+
+        writeContents(xw);
+
+        xw.writeEndElement();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2013,38 +2166,30 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             super.writeChildren(xw);
         }
 
-        if (settlement != null) settlement.toXML(xw);
-
-        if (tileItemContainer != null) tileItemContainer.toXML(xw);
+        writeContents(xw);
 
-        // Save the cached tiles to saved games.
-        if (xw.validForSave() && cachedTiles != null) {
+        // Save the players views to saved games.
+        if (xw.validForSave() && cachingViews) {
             for (Player p : getGame().getLiveEuropeanPlayers()) {
-                Tile t = getCachedTile(p);
-                if (t == null) continue;
+                TileSnapshot view = getView(p);
+                if (view == null) continue;
 
-                if (t == this && getIndianSettlement() != null) {
+                if (view == TileSnapshot.LIVE
+                    && getIndianSettlement() != null) {
                     // Always save client view of native settlements
                     // because of the hidden information.
-                    t = getTileToCache();
-                    t.setIndianSettlementInternals(p, getLearnableSkill(p),
-                                                   getWantedGoods(p));
+                    view = TileSnapshot.create(this, p);
+                    if (view == null) view = TileSnapshot.LIVE;
                 }
 
                 xw.writeStartElement(CACHED_TILE_TAG);
 
                 xw.writeAttribute(PLAYER_TAG, p);
 
-                xw.writeAttribute(COPIED_TAG, t != this);
+                xw.writeAttribute(COPIED_TAG, view != TileSnapshot.LIVE);
 
-                if (t != this) {
-                    // Only write copied tiles, with limited scope.
-                    FreeColXMLWriter.WriteScope scope = xw.getWriteScope();
-                    xw.setWriteScope(FreeColXMLWriter.WriteScope.toClient(p));
-                    // Do not call toXML!  It will look for a cached tile,
-                    // inside t which is already a cached copy!
-                    t.internalToXML(xw, getXMLElementTagName());
-                    xw.setWriteScope(scope);
+                if (view != TileSnapshot.LIVE) {
+                    view.toXML(xw, getXMLElementTagName(), getGame());
                 }
 
                 xw.writeEndElement();
@@ -2052,6 +2197,19 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         }
     }
 
+    /**
+     * Write the settlement and tile items on this tile.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @exception XMLStreamException if there are any problems writing
+     *     to the stream.
+     */
+    private void writeContents(FreeColXMLWriter xw) throws XMLStreamException {
+        if (settlement != null) settlement.toXML(xw);
+
+        if (tileItemContainer != null) tileItemContainer.toXML(xw);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2135,6 +2293,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         settlement = null;
 
         super.readChildren(xr);
+
+        updateSpatialIndex();
     }
 
     /**
@@ -2146,29 +2306,36 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         final Game game = getGame();
         final String tag = xr.getLocalName();
 
-        if (cachedTiles != null && CACHED_TILE_TAG.equals(tag)) {
+        if (cachingViews && CACHED_TILE_TAG.equals(tag)) {
             Player player = xr.findFreeColGameObject(game, PLAYER_TAG, 
                 Player.class, (Player)null, true);
 
             boolean copied = xr.getAttribute(COPIED_TAG, false);
             if (copied) {
-                FreeColXMLReader.ReadScope scope = xr.getReadScope();
-                xr.setReadScope(FreeColXMLReader.ReadScope.NOINTERN);
                 xr.nextTag();
                 xr.expectTag(Tile.getXMLElementTagName());
-                Tile tile = xr.readFreeColGameObject(game, Tile.class);
-                setCachedTile(player, tile);
-                xr.setReadScope(scope);
+                TileSnapshot view = TileSnapshot.read(xr);
+                if (player.isEuropean()) setView(player, view);
 
-                IndianSettlement is = tile.getIndianSettlement();
-                if (is == null) {
+                final String isTag = IndianSettlement.getXMLElementTagName();
+                if (!view.hasChild(isTag)) {
                     removeIndianSettlementInternals(player);
                 } else {
-                    setIndianSettlementInternals(player, is.getLearnableSkill(),
-                                                 is.getWantedGoods());
+                    String str = view.getAttribute(isTag,
+                        IndianSettlement.LEARNABLE_SKILL_TAG);
+                    UnitType skill = (str == null) ? null
+                        : spec.getUnitType(str);
+                    GoodsType[] wanted
+                        = new GoodsType[IndianSettlement.WANTED_GOODS_COUNT];
+                    for (int i = 0; i < wanted.length; i++) {
+                        str = view.getAttribute(isTag,
+                            IndianSettlement.WANTED_GOODS_TAG + i);
+                        if (str != null) wanted[i] = spec.getGoodsType(str);
+                    }
+                    setIndianSettlementInternals(player, skill, wanted);
                 }
             } else {
-                setCachedTile(player, this);
+                seeTile(player);
             }
             xr.closeTag(CACHED_TILE_TAG);
 
@@ -207,6 +207,10 @@ public class TileImprovement extends TileItem implements Named {
      */
     public void setTurnsToComplete(int turns) {
         turnsToComplete = turns;
+        final Tile tile = getTile();
+        if (turns == 0 && tile != null && tile.getMap() != null) {
+            tile.getMap().invalidateTerrain(tile); // Now affects movement
+        }
     }
 
     /**
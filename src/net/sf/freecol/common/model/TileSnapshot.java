@@ -0,0 +1,437 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
+
+
+/**
+ * An immutable record of what a player was last able to see of a
+ * tile, kept by the server while the tile is out of the player's
+ * sight.
+ *
+ * Rather than a copy of the tile and everything on it, a snapshot
+ * holds the elements and attributes the tile wrote to the client at
+ * the time, which is all the client will ever be sent.  Writing the
+ * snapshot replays them.  Snapshots compare by content, and a tile
+ * keeps one instance for all the players whose views of it are equal
+ * (see {@link Tile#getTileToCache}).
+ */
+public final class TileSnapshot {
+
+    private static final Logger logger = Logger.getLogger(TileSnapshot.class.getName());
+
+    /** Marks a view of a tile that is the tile itself. */
+    static final TileSnapshot LIVE = new TileSnapshot(null);
+
+    /** An element, with its attributes and child elements. */
+    private static final class Node {
+
+        public final String tag;
+
+        /** The attribute names and values, alternating. */
+        public final String[] attributes;
+
+        public final Node[] children;
+
+        private final int hash;
+
+
+        public Node(String tag, String[] attributes, Node[] children) {
+            this.tag = tag;
+            this.attributes = attributes;
+            this.children = children;
+            this.hash = 31 * (31 * tag.hashCode()
+                + Arrays.hashCode(attributes)) + Arrays.hashCode(children);
+        }
+
+        public String getAttribute(String name) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (attributes[i].equals(name)) return attributes[i+1];
+            }
+            return null;
+        }
+
+        public Node getChild(String childTag) {
+            for (Node n : children) {
+                if (n.tag.equals(childTag)) return n;
+            }
+            return null;
+        }
+
+        public void toXML(FreeColXMLWriter xw) throws XMLStreamException {
+            xw.writeStartElement(tag);
+            for (int i = 0; i < attributes.length; i += 2) {
+                xw.writeAttribute(attributes[i], attributes[i+1]);
+            }
+            for (Node n : children) n.toXML(xw);
+            xw.writeEndElement();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node)) return false;
+            Node n = (Node)o;
+            return hash == n.hash && tag.equals(n.tag)
+                && Arrays.equals(attributes, n.attributes)
+                && Arrays.equals(children, n.children);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** An element under construction. */
+    private static final class Builder {
+
+        public final String tag;
+
+        public final List<String> attributes = new ArrayList<String>();
+
+        public final List<Node> children = new ArrayList<Node>();
+
+
+        public Builder(String tag) {
+            this.tag = tag;
+        }
+
+        public Node build() {
+            return new Node(tag,
+                attributes.toArray(new String[attributes.size()]),
+                children.toArray(new Node[children.size()]));
+        }
+    }
+
+    /**
+     * Records the elements and attributes written to it.  The model
+     * objects only write elements and attributes, so anything else is
+     * rejected.
+     */
+    private static final class Recorder implements XMLStreamWriter {
+
+        private final List<Builder> stack = new ArrayList<Builder>();
+
+        private Node root = null;
+
+
+        public Node getRoot() {
+            return root;
+        }
+
+        private Builder top() throws XMLStreamException {
+            if (stack.isEmpty()) throw new XMLStreamException("No element");
+            return stack.get(stack.size() - 1);
+        }
+
+        private static XMLStreamException unsupported(String what) {
+            return new XMLStreamException("Can not record " + what);
+        }
+
+        public void writeStartElement(String localName) throws XMLStreamException {
+            if (root != null) throw unsupported("second root");
+            stack.add(new Builder(localName));
+        }
+
+        public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+            writeStartElement(localName);
+        }
+
+        public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            writeStartElement(localName);
+        }
+
+        public void writeEndElement() throws XMLStreamException {
+            Node node = top().build();
+            stack.remove(stack.size() - 1);
+            if (stack.isEmpty()) {
+                root = node;
+            } else {
+                top().children.add(node);
+            }
+        }
+
+        public void writeAttribute(String localName, String value) throws XMLStreamException {
+            Builder b = top();
+            b.attributes.add(localName);
+            b.attributes.add(value);
+        }
+
+        public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+            writeAttribute(localName, value);
+        }
+
+        public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+            writeAttribute(localName, value);
+        }
+
+        public void writeEmptyElement(String localName) throws XMLStreamException {
+            writeStartElement(localName);
+            writeEndElement();
+        }
+
+        public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+            writeEmptyElement(localName);
+        }
+
+        public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            writeEmptyElement(localName);
+        }
+
+        public void writeEndDocument() {}
+
+        public void close() {}
+
+        public void flush() {}
+
+        public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+            throw unsupported("namespace");
+        }
+
+        public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+            throw unsupported("namespace");
+        }
+
+        public void writeComment(String data) throws XMLStreamException {
+            throw unsupported("comment");
+        }
+
+        public void writeProcessingInstruction(String target) throws XMLStreamException {
+            throw unsupported("processing instruction");
+        }
+
+        public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+            throw unsupported("processing instruction");
+        }
+
+        public void writeCData(String data) throws XMLStreamException {
+            throw unsupported("CDATA");
+        }
+
+        public void writeDTD(String dtd) throws XMLStreamException {
+            throw unsupported("DTD");
+        }
+
+        public void writeEntityRef(String name) throws XMLStreamException {
+            throw unsupported("entity reference");
+        }
+
+        public void writeStartDocument() throws XMLStreamException {
+            throw unsupported("document");
+        }
+
+        public void writeStartDocument(String version) throws XMLStreamException {
+            throw unsupported("document");
+        }
+
+        public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+            throw unsupported("document");
+        }
+
+        public void writeCharacters(String text) throws XMLStreamException {
+            throw unsupported("characters");
+        }
+
+        public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+            throw unsupported("characters");
+        }
+
+        public String getPrefix(String uri) {
+            return null;
+        }
+
+        public void setPrefix(String prefix, String uri) throws XMLStreamException {
+            throw unsupported("namespace");
+        }
+
+        public void setDefaultNamespace(String uri) throws XMLStreamException {
+            throw unsupported("namespace");
+        }
+
+        public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+            throw unsupported("namespace");
+        }
+
+        public NamespaceContext getNamespaceContext() {
+            return null;
+        }
+
+        public Object getProperty(String name) {
+            throw new IllegalArgumentException(name);
+        }
+    }
+
+    /** The tile element, null for <code>LIVE</code>. */
+    private final Node root;
+
+
+    /**
+     * Create a new snapshot.
+     *
+     * @param root The recorded tile element.
+     */
+    private TileSnapshot(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Records what a player can see of a tile now, leaving out the
+     * units on it.
+     *
+     * @param tile The <code>Tile</code> to record.
+     * @param player The <code>Player</code> to record the view of.
+     * @return A new <code>TileSnapshot</code>, or null on failure.
+     */
+    static TileSnapshot create(Tile tile, Player player) {
+        Recorder recorder = new Recorder();
+        FreeColXMLWriter xw = new FreeColXMLWriter(recorder,
+            WriteScope.toClient(player));
+        try {
+            tile.writeView(xw);
+        } catch (XMLStreamException xse) {
+            logger.log(Level.WARNING, "Failed to record: " + tile.getId(),
+                xse);
+            return null;
+        }
+        return new TileSnapshot(recorder.getRoot());
+    }
+
+    /**
+     * Reads a snapshot from a stream.  The stream must be positioned
+     * at the start of the tile element, and is left at its end.
+     *
+     * @param xr The <code>FreeColXMLReader</code> to read from.
+     * @return A new <code>TileSnapshot</code>.
+     * @exception XMLStreamException if there is a problem reading the
+     *     stream.
+     */
+    static TileSnapshot read(FreeColXMLReader xr) throws XMLStreamException {
+        return new TileSnapshot(readNode(xr));
+    }
+
+    private static Node readNode(FreeColXMLReader xr) throws XMLStreamException {
+        Builder b = new Builder(xr.getLocalName());
+        for (int i = 0; i < xr.getAttributeCount(); i++) {
+            b.attributes.add(xr.getAttributeLocalName(i));
+            b.attributes.add(xr.getAttributeValue(i));
+        }
+        while (xr.nextTag() != XMLStreamConstants.END_ELEMENT) {
+            b.children.add(readNode(xr));
+        }
+        return b.build();
+    }
+
+    /**
+     * Gets an attribute of the tile element, or of one of its children.
+     *
+     * @param childTag The tag of the child element, or null for the
+     *     tile itself.
+     * @param name The attribute name.
+     * @return The attribute value, or null if not present.
+     */
+    String getAttribute(String childTag, String name) {
+        Node n = (childTag == null) ? root : root.getChild(childTag);
+        return (n == null) ? null : n.getAttribute(name);
+    }
+
+    /**
+     * Does the tile element have a child with a given tag?
+     *
+     * @param childTag The tag to look for.
+     * @return True if such a child was recorded.
+     */
+    boolean hasChild(String childTag) {
+        return root.getChild(childTag) != null;
+    }
+
+    /**
+     * Writes this snapshot as a tile element.
+     *
+     * A reference to the settlement that owned the tile is dropped if
+     * the settlement no longer exists, as the client would not be able
+     * to resolve it.  This is an information leak, but a better option
+     * than confusing the client.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param tag The tag to use for the tile element.
+     * @param game The <code>Game</code> the tile is in.
+     * @exception XMLStreamException if there are any problems writing
+     *     to the stream.
+     */
+    void toXML(FreeColXMLWriter xw, String tag,
+               Game game) throws XMLStreamException {
+        final String owningTag = Tile.OWNING_SETTLEMENT_TAG;
+        xw.writeStartElement(tag);
+        for (int i = 0; i < root.attributes.length; i += 2) {
+            final String name = root.attributes[i];
+            final String value = root.attributes[i+1];
+            if (owningTag.equals(name)) {
+                FreeColGameObject fcgo = game.getFreeColGameObject(value);
+                if (fcgo == null || fcgo.isDisposed()) continue;
+            }
+            xw.writeAttribute(name, value);
+        }
+        for (Node n : root.children) n.toXML(xw);
+        xw.writeEndElement();
+    }
+
+
+    // Override Object
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TileSnapshot)) return false;
+        TileSnapshot ts = (TileSnapshot)o;
+        return (root == null) ? ts.root == null : root.equals(ts.root);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return (root == null) ? 0 : root.hashCode();
+    }
+}
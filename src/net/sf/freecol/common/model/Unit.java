@@ -45,6 +45,8 @@ import net.sf.freecol.common.model.Map.Direction;
 import net.sf.freecol.common.model.Modifier;
 import net.sf.freecol.common.model.pathfinding.CostDecider;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
+import net.sf.freecol.common.model.pathfinding.DistanceField;
+import net.sf.freecol.common.model.pathfinding.DistanceFields;
 import net.sf.freecol.common.model.pathfinding.GoalDecider;
 import net.sf.freecol.common.model.TradeRouteStop;
 import net.sf.freecol.common.model.UnitTypeChange.ChangeType;
@@ -194,6 +196,17 @@ public class Unit extends GoodsLocation
     protected final TypeCountMap<EquipmentType> equipment
         = new TypeCountMap<EquipmentType>();
 
+    /** The cached ability and modifier sets of this unit. */
+    private FeatureCache featureCache = null;
+
+    /** Counts changes to the state the features of this unit depend on. */
+    private int featureVersion = 0;
+
+    /** The owner, type and role the feature version was checked at. */
+    private Player featureOwner = null;
+    private UnitType featureType = null;
+    private Role featureRole = null;
+
 
     /**
      * Constructor for ServerUnit.
@@ -1518,6 +1531,7 @@ public class Unit extends GoodsLocation
      */
     public void clearEquipment() {
         equipment.clear();
+        invalidateFeatures();
     }
 
     /**
@@ -1771,6 +1785,7 @@ public class Unit extends GoodsLocation
     public List<EquipmentType> changeEquipment(EquipmentType type, int amount) {
         List<EquipmentType> result = new ArrayList<EquipmentType>();
         equipment.incrementCount(type, amount);
+        invalidateFeatures();
         if (amount > 0) {
             for (EquipmentType oldType
                      : new HashSet<EquipmentType>(equipment.keySet())) {
@@ -2454,6 +2469,27 @@ public class Unit extends GoodsLocation
             getModifierSet(Modifier.MOVEMENT_BONUS));
     }
 
+    /**
+     * Gets an upper bound on the number of tiles this unit could move
+     * within a number of turns, optionally aboard a carrier.  Every
+     * move costs at least one movement point, so this is the number
+     * of movement points available.
+     *
+     * @param turns The number of turns after this one.
+     * @param carrier An optional carrier <code>Unit</code>.
+     * @return The maximum distance in tiles, or <code>INFINITY</code>
+     *     if unbounded.
+     */
+    public int getMaximumRange(int turns, Unit carrier) {
+        int moves = Math.max(getInitialMovesLeft(), getMovesLeft());
+        if (carrier != null) {
+            moves = Math.max(moves, Math.max(carrier.getInitialMovesLeft(),
+                                             carrier.getMovesLeft()));
+        }
+        long range = ((long)turns + 1) * Math.max(moves, 1);
+        return (range >= INFINITY) ? INFINITY : (int)range;
+    }
+
     /**
      * Make a label showing the unit moves left.
      *
@@ -2741,6 +2777,10 @@ public class Unit extends GoodsLocation
      * Find a path for this unit to the nearest settlement with the
      * same owner that is reachable without a carrier.
      *
+     * If the map has distance fields, units not on a carrier share
+     * the field to the matching settlements, which fails the search
+     * at once if none can be reached and guides it if one can.
+     *
      * @param excludeStart If true, ignore any settlement the unit is
      *     currently in.
      * @param range An upper bound on the number of moves.
@@ -2753,6 +2793,20 @@ public class Unit extends GoodsLocation
         if (player.getNumberOfSettlements() <= 0 || !hasTile()) return null;
 
         final Tile startTile = getTile();
+        final DistanceFields fields = getGame().getMap().getDistanceFields();
+        DistanceField field = null;
+        if (fields != null && !isOnCarrier()) {
+            List<Tile> targets = new ArrayList<Tile>();
+            for (Settlement s : player.getSettlements()) {
+                if ((excludeStart && s.getTile() == startTile)
+                    || (coastal && !s.isConnectedPort())) continue;
+                targets.add(s.getTile());
+            }
+            field = fields.getField(targets, isNaval());
+            if (field.getSteps(startTile) == DistanceField.UNREACHABLE) {
+                return null;
+            }
+        }
         final GoalDecider gd = new GoalDecider() {
                 private int bestValue = Integer.MAX_VALUE;
                 private PathNode best = null;
@@ -2776,7 +2830,8 @@ public class Unit extends GoodsLocation
                     return false;
                 }
             };
-        return search(startTile, gd, CostDeciders.avoidIllegal(), range, null);
+        return getGame().getMap().search(this, startTile, gd,
+            CostDeciders.avoidIllegal(), range, null, field);
     }
 
     /**
@@ -2944,9 +2999,12 @@ public class Unit extends GoodsLocation
                 : getSpecification().getFastestLandUnitType())
             .getMovement()) / this.getType().getMovement();
 
-        return (start == null) ? null
-            : search(start, threatDecider, CostDeciders.avoidIllegal(),
-                     reverseRange, getCarrier());
+        // Skip the search if no enemy unit could be in range.
+        if (start == null || !getGame().getMap().getSpatialIndex()
+            .hasEnemyUnitWithin(getOwner(), start,
+                getMaximumRange(reverseRange, getCarrier()))) return null;
+        return search(start, threatDecider, CostDeciders.avoidIllegal(),
+                      reverseRange, getCarrier());
     }
 
     /**
@@ -3716,8 +3774,17 @@ public class Unit extends GoodsLocation
                                       Turn turn) {
         final Player owner = getOwner();
         final UnitType unitType = getType();
-        Set<Ability> result = new HashSet<Ability>();
         if (turn == null) turn = getGame().getTurn();
+        final int stamp = FeatureCache.getGlobalVersion();
+        final int version = getFeatureVersion();
+        final Settlement settlement = getSettlement();
+        final Europe europe = (settlement == null && isInEurope())
+            ? owner.getEurope() : null;
+        final Object context = (settlement != null) ? settlement : europe;
+        Set<Ability> result = featureCache.getAbilitySet(version, context,
+                                                         id, fcgot, turn);
+        if (result != null) return result;
+        result = new HashSet<Ability>();
 
         // UnitType abilities always apply.
         result.addAll(unitType.getAbilitySet(id));
@@ -3736,12 +3803,13 @@ public class Unit extends GoodsLocation
         // code.  Units are also Locations however, which complicates
         // the issue as we do not want Units aboard other Units to share
         // the abilities of the carriers.
-        if (getSettlement() != null) {
-            result.addAll(getSettlement().getAbilitySet(id, unitType, turn));
-        } else if (isInEurope()) {
-            result.addAll(owner.getEurope().getAbilitySet(id, unitType, turn));
+        if (settlement != null) {
+            result.addAll(settlement.getAbilitySet(id, unitType, turn));
+        } else if (europe != null) {
+            result.addAll(europe.getAbilitySet(id, unitType, turn));
         }
-        return result;
+        return featureCache.putAbilitySet(stamp, version, context,
+                                          id, fcgot, turn, result);
     }
 
     /**
@@ -3752,8 +3820,13 @@ public class Unit extends GoodsLocation
                                         Turn turn) {
         final Player owner = getOwner();
         final UnitType unitType = getType();
-        Set<Modifier> result = new HashSet<Modifier>();
         if (turn == null) turn = getGame().getTurn();
+        final int stamp = FeatureCache.getGlobalVersion();
+        final int version = getFeatureVersion();
+        Set<Modifier> result = featureCache.getModifierSet(version, null,
+                                                           id, fcgot, turn);
+        if (result != null) return result;
+        result = new HashSet<Modifier>();
 
         // UnitType modifiers always apply
         result.addAll(unitType.getModifierSet(id));
@@ -3765,7 +3838,36 @@ public class Unit extends GoodsLocation
             // player modifiers may also apply to equipment (unused)
             result.addAll(owner.getModifierSet(id, equipmentType, turn));
         }
-        return result;
+        return featureCache.putModifierSet(stamp, version, null,
+                                           id, fcgot, turn, result);
+    }
+
+    /**
+     * Notes a change to the equipment of this unit, which invalidates
+     * its cached features.
+     */
+    private synchronized void invalidateFeatures() {
+        featureVersion++;
+    }
+
+    /**
+     * Gets the version of the state the features of this unit depend
+     * on, creating the feature cache if needed.  The owner, type and
+     * role fields are set directly in several places, so they are
+     * checked here rather than tracked.
+     *
+     * @return The feature version.
+     */
+    private synchronized int getFeatureVersion() {
+        if (featureCache == null) featureCache = new FeatureCache();
+        if (owner != featureOwner || unitType != featureType
+            || role != featureRole) {
+            featureOwner = owner;
+            featureType = unitType;
+            featureRole = role;
+            featureVersion++;
+        }
+        return featureVersion;
     }
 
 
@@ -4014,6 +4116,7 @@ public class Unit extends GoodsLocation
         // Clear containers.
         if (getGoodsContainer() != null) getGoodsContainer().removeAll();
         equipment.clear();
+        invalidateFeatures();
         workImprovement = null;
 
         super.readChildren(xr);
@@ -4033,6 +4136,12 @@ public class Unit extends GoodsLocation
             workImprovement = null;
         }
         // end @compat 0.10.x
+
+        // The unit may be updated without the colony it works in.
+        if (getLocation() instanceof WorkLocation) {
+            Colony colony = ((WorkLocation)getLocation()).getColony();
+            if (colony != null) colony.invalidateCache();
+        }
     }
 
     /**
@@ -4047,6 +4156,7 @@ public class Unit extends GoodsLocation
         if (EQUIPMENT_TAG.equals(tag)) {
             equipment.incrementCount(spec.getEquipmentType(xr.readId()),
                                      xr.getAttribute(COUNT_TAG, 0));
+            invalidateFeatures();
             xr.closeTag(EQUIPMENT_TAG);
 
         // @compat 0.10.5
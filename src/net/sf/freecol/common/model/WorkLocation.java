@@ -99,7 +99,7 @@ public abstract class WorkLocation extends UnitLocation implements Ownable {
     public final void setProductionType(final ProductionType newProductionType) {
         if (newProductionType != productionType) {
             productionType = newProductionType;
-            colony.invalidateCache();
+            colony.invalidateCache(this);
         }
     }
 
@@ -351,7 +351,7 @@ public abstract class WorkLocation extends UnitLocation implements Ownable {
             }
         }
 
-        getColony().invalidateCache();
+        getColony().invalidateCache(this);
         return true;
     }
 
@@ -369,7 +369,7 @@ public abstract class WorkLocation extends UnitLocation implements Ownable {
 
         unit.setState(Unit.UnitState.ACTIVE);
         unit.setMovesLeft(0);
-        getColony().invalidateCache();
+        getColony().invalidateCache(this);
         return true;
     }
 
@@ -594,6 +594,8 @@ public abstract class WorkLocation extends UnitLocation implements Ownable {
         super.readChildren(xr);
 
         updateProductionType();
+        // The work location may be updated without its colony.
+        if (colony != null) colony.invalidateCache();
     }
 
     /**
@@ -0,0 +1,162 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model.pathfinding;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.common.model.Map.Direction;
+import net.sf.freecol.common.model.Tile;
+
+
+/**
+ * The number of moves from every tile of a map to the nearest of a
+ * set of target tiles, for land units or for naval units, found by
+ * a single breadth first search out from all the targets at once.
+ *
+ * Land units may cross land tiles, and naval units water tiles and
+ * settlements, in both cases only explored tiles.  Move costs and
+ * units in the way are ignored, so the number of moves is never more
+ * than a real path without a carrier needs, and can serve as an
+ * exact search heuristic.  A tile from which no target can be
+ * reached in this way can not reach one at all without a carrier.
+ */
+public final class DistanceField {
+
+    /** The value of unreachable tiles. */
+    public static final int UNREACHABLE = FreeColObject.INFINITY;
+
+    /** The map the field covers. */
+    private final Map map;
+
+    /** The map width. */
+    private final int width;
+
+    /** The number of moves to the nearest target, by tile index. */
+    private final int[] steps;
+
+    /** The direction of the next move towards it, or -1. */
+    private final byte[] next;
+
+    /** The index of the nearest target, or -1. */
+    private final int[] source;
+
+
+    /**
+     * Creates the distance field to a set of targets.
+     *
+     * @param map The <code>Map</code> to cover.
+     * @param targets The target <code>Tile</code>s.
+     * @param naval True to find the distances for naval units.
+     */
+    public DistanceField(Map map, Collection<Tile> targets, boolean naval) {
+        this.map = map;
+        this.width = map.getWidth();
+        final int height = map.getHeight();
+        final int size = width * height;
+        this.steps = new int[size];
+        this.next = new byte[size];
+        this.source = new int[size];
+        Arrays.fill(steps, UNREACHABLE);
+        Arrays.fill(next, (byte)-1);
+        Arrays.fill(source, -1);
+
+        final Direction[] directions = Direction.values();
+        final int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for (Tile t : targets) {
+            if (!isTraversable(t, naval)) continue;
+            final int i = t.getY() * width + t.getX();
+            if (steps[i] == 0) continue;
+            steps[i] = 0;
+            source[i] = i;
+            queue[tail++] = i;
+        }
+        while (head < tail) {
+            final int i = queue[head++];
+            final int x = i % width, y = i / width;
+            for (Direction d : directions) {
+                final int nx = d.stepX(x, y), ny = d.stepY(x, y);
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                final int j = ny * width + nx;
+                if (steps[j] != UNREACHABLE
+                    || !isTraversable(map.getTile(nx, ny), naval)) continue;
+                steps[j] = steps[i] + 1;
+                next[j] = (byte)d.getReverseDirection().ordinal();
+                source[j] = source[i];
+                queue[tail++] = j;
+            }
+        }
+    }
+
+    /**
+     * Can a unit of a movement class cross a tile?
+     *
+     * @param tile The <code>Tile</code> to check.
+     * @param naval True for naval units.
+     * @return True if the tile is traversable.
+     */
+    private static boolean isTraversable(Tile tile, boolean naval) {
+        if (tile == null || !tile.isExplored()) return false;
+        return (naval) ? !tile.isLand() || tile.hasSettlement()
+            : tile.isLand();
+    }
+
+    private int index(Tile tile) {
+        return tile.getY() * width + tile.getX();
+    }
+
+    /**
+     * Gets the number of moves from a tile to the nearest target.
+     *
+     * @param tile The <code>Tile</code> to start from.
+     * @return The number of moves, or <code>UNREACHABLE</code>.
+     */
+    public int getSteps(Tile tile) {
+        return steps[index(tile)];
+    }
+
+    /**
+     * Gets the direction of the first move from a tile towards the
+     * nearest target.
+     *
+     * @param tile The <code>Tile</code> to start from.
+     * @return The <code>Direction</code> to move in, or null if the
+     *     tile is a target or can not reach one.
+     */
+    public Direction getNextStep(Tile tile) {
+        final int d = next[index(tile)];
+        return (d < 0) ? null : Direction.values()[d];
+    }
+
+    /**
+     * Gets the nearest target to a tile.
+     *
+     * @param tile The <code>Tile</code> to start from.
+     * @return The nearest target <code>Tile</code>, or null if none
+     *     can be reached.
+     */
+    public Tile getSource(Tile tile) {
+        final int s = source[index(tile)];
+        return (s < 0) ? null : map.getTile(s % width, s / width);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model.pathfinding;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.common.model.Tile;
+
+
+/**
+ * A cache of {@link DistanceField}s, so that the many units looking
+ * for the nearest of the same targets share one search.
+ *
+ * Fields are keyed by the movement class and the target tiles.  A
+ * field depends only on the terrain and settlements, so all the
+ * fields are dropped when either changes.  Only the most recently
+ * used fields are kept.
+ */
+public final class DistanceFields {
+
+    /** The maximum number of fields kept. */
+    private static final int MAXIMUM_SIZE = 32;
+
+    /** The key for a field. */
+    private static final class Key {
+
+        private final boolean naval;
+        private final int[] targets;
+        private final int hash;
+
+
+        /**
+         * Create a new key.
+         *
+         * @param map The <code>Map</code> the targets are on.
+         * @param targets The target <code>Tile</code>s.
+         * @param naval True for naval units.
+         */
+        public Key(Map map, Collection<Tile> targets, boolean naval) {
+            this.naval = naval;
+            this.targets = new int[targets.size()];
+            int i = 0;
+            for (Tile t : targets) {
+                this.targets[i++] = t.getY() * map.getWidth() + t.getX();
+            }
+            Arrays.sort(this.targets);
+            this.hash = 31 * Arrays.hashCode(this.targets)
+                + ((naval) ? 1 : 0);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return hash == k.hash && naval == k.naval
+                && Arrays.equals(targets, k.targets);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** The map the fields cover. */
+    private final Map map;
+
+    /** The fields, least recently used first. */
+    private final LinkedHashMap<Key, DistanceField> fields
+        = new LinkedHashMap<Key, DistanceField>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<Key,
+                                                DistanceField> eldest) {
+                return size() > MAXIMUM_SIZE;
+            }
+        };
+
+    /** Statistics. */
+    private long made = 0, reused = 0, invalidations = 0;
+
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param map The <code>Map</code> the fields cover.
+     */
+    public DistanceFields(Map map) {
+        this.map = map;
+    }
+
+
+    /**
+     * Gets the distance field to a set of targets, making it if needed.
+     *
+     * @param targets The target <code>Tile</code>s.
+     * @param naval True for naval units.
+     * @return The <code>DistanceField</code> to the targets.
+     */
+    public synchronized DistanceField getField(Collection<Tile> targets,
+                                               boolean naval) {
+        final Key key = new Key(map, targets, naval);
+        DistanceField field = fields.get(key);
+        if (field == null) {
+            field = new DistanceField(map, targets, naval);
+            fields.put(key, field);
+            made++;
+        } else {
+            reused++;
+        }
+        return field;
+    }
+
+    /**
+     * Drops all the fields, following a change to the terrain or
+     * settlements.
+     */
+    public synchronized void clear() {
+        if (fields.isEmpty()) return;
+        invalidations += fields.size();
+        fields.clear();
+    }
+
+    /**
+     * Gets the number of fields made.
+     *
+     * @return The number of fields made.
+     */
+    public synchronized long getMade() {
+        return made;
+    }
+
+    /**
+     * Gets the number of times a field was reused.
+     *
+     * @return The number of reuses.
+     */
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("[DistanceFields size=").append(fields.size())
+            .append(" made=").append(made)
+            .append(" reused=").append(reused)
+            .append(" invalidations=").append(invalidations)
+            .append("]");
+        return sb.toString();
+    }
+}
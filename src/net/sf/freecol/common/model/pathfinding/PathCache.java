@@ -0,0 +1,432 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model.pathfinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.freecol.common.model.Location;
+import net.sf.freecol.common.model.PathNode;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Role;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.UnitType;
+
+
+/**
+ * A cache of the results of {@link net.sf.freecol.common.model.Map#findPath},
+ * valid for a single turn.
+ *
+ * Paths are keyed by the unit type, role, owner and moves left, the
+ * start and end locations, the carrier and the cost decider, so units
+ * of the same kind share results.  Each cached path remembers the
+ * tiles it visits so that it can be dropped when one of those tiles
+ * (or for terrain changes, one of their neighbours) changes.  Cached
+ * failures are dropped on any change, as a change anywhere may open
+ * a new route.
+ *
+ * A change can also open a shorter route that no cached path visits,
+ * so paths that a route through the changed tile might beat are
+ * dropped too.  Every move costs at least one move point, so such a
+ * route takes at least as many turns as it takes the unit (or its
+ * carrier) to cover the distance to the tile and on to the end at
+ * full speed, and paths that are quicker than that are kept.
+ *
+ * Cost deciders are compared by identity.  The standard deciders are
+ * shared objects, so searches using them share results, while a
+ * search with its own decider object only hits the cache if it
+ * searches again with the same one.  A decider must therefore not
+ * change its costs while a cache is in use.
+ *
+ * The paths handed out are always copies, as callers are free to
+ * modify the paths they are given.
+ */
+public final class PathCache {
+
+    /** The key for a cached path. */
+    private static final class Key {
+
+        private final UnitType unitType;
+        private final Role role;
+        private final Player owner;
+        private final int movesLeft;
+        private final int initialTurns;
+        private final boolean aboard;
+        private final Location start;
+        private final Location end;
+        private final Unit carrier;
+        private final int carrierMovesLeft;
+        private final CostDecider costDecider;
+        private final int hash;
+
+        /**
+         * The most tiles the unit or its carrier can cross in a turn.
+         * This follows from the other fields, so is not compared.
+         */
+        private final int range;
+
+
+        /**
+         * Create a new key.
+         *
+         * @param unit The <code>Unit</code> to find a path for.
+         * @param start The start <code>Location</code>.
+         * @param end The end <code>Location</code>.
+         * @param carrier An optional carrier <code>Unit</code>.
+         * @param costDecider An optional <code>CostDecider</code>.
+         */
+        public Key(Unit unit, Location start, Location end, Unit carrier,
+                   CostDecider costDecider) {
+            this.unitType = unit.getType();
+            this.role = unit.getRole();
+            this.owner = unit.getOwner();
+            this.movesLeft = unit.getMovesLeft();
+            this.initialTurns = (!unit.isAtSea()) ? 0
+                : ((unit.isOnCarrier()) ? unit.getCarrier() : unit)
+                .getWorkLeft();
+            this.aboard = carrier != null && unit.getLocation() == carrier;
+            this.start = start;
+            this.end = end;
+            this.carrier = carrier;
+            this.carrierMovesLeft = (carrier == null) ? -1
+                : carrier.getMovesLeft();
+            this.costDecider = costDecider;
+            this.range = Math.max(unit.getInitialMovesLeft(),
+                (carrier == null) ? 0 : carrier.getInitialMovesLeft());
+            int h = 31 * unitType.hashCode() + role.hashCode();
+            h = 31 * h + owner.hashCode();
+            h = 31 * h + movesLeft;
+            h = 31 * h + initialTurns;
+            h = 31 * h + start.hashCode();
+            h = 31 * h + end.hashCode();
+            h = 31 * h + ((carrier == null) ? 0 : carrier.hashCode());
+            h = 31 * h + carrierMovesLeft;
+            this.hash = h;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return hash == k.hash
+                && unitType == k.unitType
+                && role == k.role
+                && owner == k.owner
+                && movesLeft == k.movesLeft
+                && initialTurns == k.initialTurns
+                && aboard == k.aboard
+                && start == k.start
+                && end == k.end
+                && carrier == k.carrier
+                && carrierMovesLeft == k.carrierMovesLeft
+                && costDecider == k.costDecider;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** The turn number the cached paths are valid for. */
+    private int turn = -1;
+
+    /** The cached paths.  Failed searches are stored as null values. */
+    private final HashMap<Key, PathNode> paths
+        = new HashMap<Key, PathNode>();
+
+    /** The keys of the cached paths that visit a tile. */
+    private final HashMap<Tile, List<Key>> byTile
+        = new HashMap<Tile, List<Key>>();
+
+    /** The total turns of each cached path. */
+    private final HashMap<Key, Integer> turns
+        = new HashMap<Key, Integer>();
+
+    /** The keys of the cached failures. */
+    private final Set<Key> failures = new HashSet<Key>();
+
+    /** The number of cache hits. */
+    private long hits = 0;
+
+    /** The number of cache misses. */
+    private long misses = 0;
+
+    /** The number of paths dropped due to changes. */
+    private long invalidations = 0;
+
+
+    /**
+     * Create a new empty path cache.
+     */
+    public PathCache() {}
+
+
+    /**
+     * Creates a key for a path query.
+     *
+     * @param unit The <code>Unit</code> to find a path for.
+     * @param start The start <code>Location</code>.
+     * @param end The end <code>Location</code>.
+     * @param carrier An optional carrier <code>Unit</code>.
+     * @param costDecider An optional <code>CostDecider</code>.
+     * @return A key object for use with {@link #contains}, {@link #get}
+     *     and {@link #put}.
+     */
+    public Object makeKey(Unit unit, Location start, Location end,
+                          Unit carrier, CostDecider costDecider) {
+        return new Key(unit, start, end, carrier, costDecider);
+    }
+
+    /**
+     * Prepares the cache for use in a turn, dropping everything if
+     * the turn has changed.
+     *
+     * @param turnNumber The current turn number.
+     */
+    public synchronized void setTurn(int turnNumber) {
+        if (turnNumber != turn) {
+            turn = turnNumber;
+            clear();
+        }
+    }
+
+    /**
+     * Is there a cached result for a key?  The result may be a failure.
+     *
+     * @param key The key from {@link #makeKey}.
+     * @return True if there is a cached result.
+     */
+    public synchronized boolean contains(Object key) {
+        if (paths.containsKey(key)) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Gets a copy of a cached path.
+     *
+     * @param key The key from {@link #makeKey}.
+     * @return A copy of the cached path, or null if the search failed
+     *     or there is no such path.
+     */
+    public synchronized PathNode get(Object key) {
+        return copyPath(paths.get(key));
+    }
+
+    /**
+     * Caches the result of a search.
+     *
+     * @param key The key from {@link #makeKey}.
+     * @param path The path found, or null if the search failed.
+     */
+    public synchronized void put(Object key, PathNode path) {
+        final Key k = (Key)key;
+        if (paths.containsKey(k)) return;
+        paths.put(k, copyPath(path));
+        if (path == null) {
+            failures.add(k);
+            return;
+        }
+        turns.put(k, path.getLastNode().getTurns());
+        for (PathNode p = path; p != null; p = p.next) {
+            Tile tile = p.getTile();
+            if (tile == null) continue;
+            List<Key> keys = byTile.get(tile);
+            if (keys == null) {
+                keys = new ArrayList<Key>();
+                byTile.put(tile, keys);
+            }
+            keys.add(k);
+        }
+    }
+
+    /**
+     * Drops the paths affected by a change to the terrain, settlement
+     * or ownership of a tile.  As such changes alter the cost of
+     * moving onto and past the tile, paths through the neighbouring
+     * tiles are dropped as well.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public synchronized void invalidateTerrain(Tile tile) {
+        if (paths.isEmpty()) return;
+        dropFailures();
+        dropTile(tile);
+        for (Tile t : tile.getSurroundingTiles(1)) dropTile(t);
+        dropBeatable(tile);
+    }
+
+    /**
+     * Drops the paths affected by a unit arriving at or leaving a tile,
+     * which may block or unblock it.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    public synchronized void invalidateUnits(Tile tile) {
+        if (paths.isEmpty()) return;
+        dropFailures();
+        dropTile(tile);
+        dropBeatable(tile);
+    }
+
+    /**
+     * Drops all the cached paths.
+     */
+    public synchronized void clear() {
+        paths.clear();
+        byTile.clear();
+        turns.clear();
+        failures.clear();
+    }
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of cached paths dropped due to changes.
+     *
+     * @return The number of invalidations.
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the number of currently cached results.
+     *
+     * @return The cache size.
+     */
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    /**
+     * Drops the cached failures.
+     */
+    private void dropFailures() {
+        for (Key k : failures) paths.remove(k);
+        invalidations += failures.size();
+        failures.clear();
+    }
+
+    /**
+     * Drops the cached paths that a route through a tile might beat.
+     * Paths starting or ending off the map are always dropped, as
+     * their distance to the tile is not known.
+     *
+     * @param tile The <code>Tile</code> that changed.
+     */
+    private void dropBeatable(Tile tile) {
+        Iterator<java.util.Map.Entry<Key, Integer>> it
+            = turns.entrySet().iterator();
+        while (it.hasNext()) {
+            java.util.Map.Entry<Key, Integer> e = it.next();
+            final Key k = e.getKey();
+            final Tile start = k.start.getTile();
+            final Tile end = k.end.getTile();
+            if (start != null && end != null && k.range > 0) {
+                final int distance = start.getDistanceTo(tile)
+                    + tile.getDistanceTo(end);
+                final int fewest = k.initialTurns
+                    + (distance + k.range - 1) / k.range - 1;
+                if (fewest > e.getValue().intValue()) continue;
+            }
+            it.remove();
+            if (paths.remove(k) != null) invalidations++;
+        }
+    }
+
+    /**
+     * Drops the cached paths that visit a tile.
+     *
+     * @param tile The <code>Tile</code> to check.
+     */
+    private void dropTile(Tile tile) {
+        List<Key> keys = byTile.remove(tile);
+        if (keys == null) return;
+        for (Key k : keys) {
+            turns.remove(k);
+            if (paths.remove(k) != null) invalidations++;
+        }
+    }
+
+    /**
+     * Copies a path.
+     *
+     * @param path The <code>PathNode</code> to copy.
+     * @return A new path with the same nodes, or null if the path was null.
+     */
+    private static PathNode copyPath(PathNode path) {
+        PathNode first = null, prev = null;
+        for (PathNode p = path; p != null; p = p.next) {
+            PathNode n = new PathNode(p.getLocation(), p.getMovesLeft(),
+                p.getTurns(), p.isOnCarrier(), prev, null);
+            if (prev == null) first = n; else prev.next = n;
+            prev = n;
+        }
+        return first;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("[PathCache turn=").append(turn)
+            .append(" size=").append(paths.size())
+            .append(" hits=").append(hits)
+            .append(" misses=").append(misses)
+            .append(" invalidations=").append(invalidations)
+            .append("]");
+        return sb.toString();
+    }
+}
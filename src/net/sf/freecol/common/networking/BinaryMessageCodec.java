@@ -0,0 +1,406 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+
+/**
+ * A compact binary encoding of network messages, used instead of XML
+ * text when both ends agree to it at login.
+ *
+ * A message is sent as a frame: a zero byte, which can never start
+ * an XML message, then the length of the payload as a varint, then
+ * the payload.  The payload encodes the message element:
+ *
+ * <pre>
+ *   element   := string(tag) varint(#attributes) attribute*
+ *                varint(#children) child*
+ *   attribute := string(name) value
+ *   child     := 0 element | 1 string(text)
+ *   value     := 0 string | 1 zigzag-varint | 2 string(prefix) varint
+ * </pre>
+ *
+ * Integer values and object identifiers of the form
+ * <code>prefix:number</code> are sent as varints when this reproduces
+ * the original text exactly.  Tag and attribute names, identifier
+ * prefixes and specification identifiers (<code>model.*</code>) are
+ * sent once and then referred to by their index in a string table
+ * that both ends build as the messages pass.  The tables therefore
+ * depend on every frame being decoded in the order it was encoded,
+ * which the connection guarantees by encoding while it holds the
+ * output stream lock and decoding in the receiving thread.  A frame
+ * that fails to decode may have added strings the receiver never
+ * learnt, so the receiving table can no longer be trusted: the
+ * strings the frame added are dropped, every later frame is refused,
+ * and the receiving thread closes the connection.
+ *
+ * The encoder and decoder state are independent, so one instance
+ * serves both directions of a connection.
+ */
+public final class BinaryMessageCodec {
+
+    /** The byte that starts a binary frame. */
+    public static final int FRAME_MARKER = 0;
+
+    /** Kinds of child node. */
+    private static final int CHILD_ELEMENT = 0, CHILD_TEXT = 1;
+
+    /** Kinds of value. */
+    private static final int VALUE_STRING = 0, VALUE_INT = 1, VALUE_ID = 2;
+
+    /** Kinds of string reference, in the low two bits. */
+    private static final int STRING_LITERAL = 0, STRING_REF = 1,
+        STRING_NEW = 2;
+
+    /** The strings already sent, with their table index. */
+    private final HashMap<String, Integer> sentStrings
+        = new HashMap<String, Integer>();
+
+    /** The strings received, by table index. */
+    private final List<String> receivedStrings = new ArrayList<String>();
+
+    /** Has a frame failed to decode? */
+    private boolean failed = false;
+
+
+    /**
+     * Create a new codec with empty string tables.
+     */
+    public BinaryMessageCodec() {}
+
+
+    // Encoding
+
+    /**
+     * Writes a message as a frame.
+     *
+     * @param element The message <code>Element</code> to write.
+     * @param out The <code>OutputStream</code> to write to.
+     * @exception IOException if the write fails.
+     */
+    public void writeFrame(Element element, OutputStream out)
+        throws IOException {
+        byte[] payload = encode(element);
+        out.write(FRAME_MARKER);
+        writeVarint(out, payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Encodes a message.
+     *
+     * @param element The message <code>Element</code> to encode.
+     * @return The encoded message.
+     */
+    public byte[] encode(Element element) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            writeElement(out, element);
+        } catch (IOException ioe) { // Can not happen
+            throw new IllegalStateException(ioe);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeElement(ByteArrayOutputStream out, Element element)
+        throws IOException {
+        writeString(out, element.getTagName(), true);
+        NamedNodeMap attributes = element.getAttributes();
+        final int n = attributes.getLength();
+        writeVarint(out, n);
+        for (int i = 0; i < n; i++) {
+            Node attr = attributes.item(i);
+            writeString(out, attr.getNodeName(), true);
+            writeValue(out, attr.getNodeValue());
+        }
+        int count = 0;
+        for (Node c = element.getFirstChild(); c != null;
+             c = c.getNextSibling()) {
+            if (isEncoded(c)) count++;
+        }
+        writeVarint(out, count);
+        for (Node c = element.getFirstChild(); c != null;
+             c = c.getNextSibling()) {
+            switch (c.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                out.write(CHILD_ELEMENT);
+                writeElement(out, (Element)c);
+                break;
+            case Node.TEXT_NODE: case Node.CDATA_SECTION_NODE:
+                out.write(CHILD_TEXT);
+                writeString(out, c.getNodeValue(), false);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Is a node encoded?  Comments and the like are dropped, as they
+     * are by the XML reader.
+     *
+     * @param node The <code>Node</code> to check.
+     * @return True if the node is encoded.
+     */
+    private static boolean isEncoded(Node node) {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE: case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void writeValue(ByteArrayOutputStream out, String value)
+        throws IOException {
+        if (value == null) value = "";
+        final int colon = value.lastIndexOf(':');
+        if (colon < 0) {
+            if (isCanonicalInt(value, 0, true)) {
+                out.write(VALUE_INT);
+                int i = Integer.parseInt(value);
+                writeVarint(out, (i << 1) ^ (i >> 31));
+                return;
+            }
+        } else if (colon > 0 && isCanonicalInt(value, colon + 1, false)) {
+            out.write(VALUE_ID);
+            writeString(out, value.substring(0, colon), true);
+            writeVarint(out, Integer.parseInt(value.substring(colon + 1)));
+            return;
+        }
+        out.write(VALUE_STRING);
+        writeString(out, value, isSymbol(value));
+    }
+
+    /**
+     * Should a value be added to the string table?
+     *
+     * @param value The value to check.
+     * @return True for specification identifiers and booleans.
+     */
+    private static boolean isSymbol(String value) {
+        return value.startsWith("model.")
+            || "true".equals(value) || "false".equals(value);
+    }
+
+    /**
+     * Does part of a string hold an integer that converts back to the
+     * same text?
+     *
+     * @param s The string to check.
+     * @param start The index to start at.
+     * @param signed Whether a leading minus sign is allowed.
+     * @return True if the integer can be sent as a varint.
+     */
+    private static boolean isCanonicalInt(String s, int start,
+                                          boolean signed) {
+        final int len = s.length();
+        if (signed && start < len && s.charAt(start) == '-') start++;
+        final int digits = len - start;
+        // Nine digits always fit an int.
+        if (digits < 1 || digits > 9) return false;
+        if (s.charAt(start) == '0'
+            && (digits > 1 || start > 0 && s.charAt(start - 1) == '-')) {
+            return false; // Leading zero, or "-0"
+        }
+        for (int i = start; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private void writeString(ByteArrayOutputStream out, String s,
+                             boolean intern) throws IOException {
+        if (intern) {
+            Integer index = sentStrings.get(s);
+            if (index != null) {
+                writeVarint(out, (index << 2) | STRING_REF);
+                return;
+            }
+            sentStrings.put(s, sentStrings.size());
+        }
+        byte[] b = toBytes(s);
+        writeVarint(out, (b.length << 2)
+            | ((intern) ? STRING_NEW : STRING_LITERAL));
+        out.write(b);
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param out The <code>OutputStream</code> to write to.
+     * @param value The value to write.
+     * @exception IOException if the write fails.
+     */
+    public static void writeVarint(OutputStream out, int value)
+        throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+
+    // Decoding
+
+    /**
+     * Decodes a message.
+     *
+     * @param data The encoded message.
+     * @return The decoded <code>DOMMessage</code>.
+     * @exception IOException if the data is malformed.
+     */
+    public DOMMessage decode(byte[] data) throws IOException {
+        if (failed) throw new IOException("String table out of step");
+        Document document = DOMMessage.createNewDocument();
+        if (document == null) throw new IOException("No document");
+        final int mark = receivedStrings.size();
+        boolean ok = false;
+        int[] pos = new int[] { 0 };
+        try {
+            document.appendChild(readElement(document, data, pos));
+            if (pos[0] != data.length) {
+                throw new IOException("Trailing data in message");
+            }
+            ok = true;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated message");
+        } catch (DOMException e) {
+            throw new IOException("Bad name in message", e);
+        } finally {
+            if (!ok) {
+                failed = true;
+                receivedStrings.subList(mark, receivedStrings.size()).clear();
+            }
+        }
+        return new DOMMessage(document);
+    }
+
+    private Element readElement(Document document, byte[] data, int[] pos)
+        throws IOException {
+        Element element = document.createElement(readString(data, pos));
+        int n = readVarint(data, pos);
+        for (int i = 0; i < n; i++) {
+            String name = readString(data, pos);
+            element.setAttribute(name, readValue(data, pos));
+        }
+        n = readVarint(data, pos);
+        for (int i = 0; i < n; i++) {
+            switch (data[pos[0]++]) {
+            case CHILD_ELEMENT:
+                element.appendChild(readElement(document, data, pos));
+                break;
+            case CHILD_TEXT:
+                element.appendChild(document
+                    .createTextNode(readString(data, pos)));
+                break;
+            default:
+                throw new IOException("Bad child at " + (pos[0] - 1));
+            }
+        }
+        return element;
+    }
+
+    private String readValue(byte[] data, int[] pos) throws IOException {
+        switch (data[pos[0]++]) {
+        case VALUE_STRING:
+            return readString(data, pos);
+        case VALUE_INT:
+            int z = readVarint(data, pos);
+            return Integer.toString((z >>> 1) ^ -(z & 1));
+        case VALUE_ID:
+            String prefix = readString(data, pos);
+            return prefix + ":" + Integer.toString(readVarint(data, pos));
+        default:
+            throw new IOException("Bad value at " + (pos[0] - 1));
+        }
+    }
+
+    private String readString(byte[] data, int[] pos) throws IOException {
+        final int v = readVarint(data, pos);
+        final int n = v >>> 2;
+        switch (v & 3) {
+        case STRING_REF:
+            if (n >= receivedStrings.size()) {
+                throw new IOException("Bad string reference: " + n);
+            }
+            return receivedStrings.get(n);
+        case STRING_LITERAL: case STRING_NEW:
+            if (pos[0] + n > data.length) {
+                throw new IOException("Truncated string");
+            }
+            String s = new String(data, pos[0], n, "UTF-8");
+            pos[0] += n;
+            if ((v & 3) == STRING_NEW) receivedStrings.add(s);
+            return s;
+        default:
+            throw new IOException("Bad string at " + pos[0]);
+        }
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param data The data to read from.
+     * @param pos The position to read at, updated past the varint.
+     * @return The value read.
+     * @exception IOException if the varint is malformed.
+     */
+    private static int readVarint(byte[] data, int[] pos) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Bad varint at " + pos[0]);
+    }
+
+    /**
+     * Converts a string to UTF-8.
+     *
+     * @param s The string to convert.
+     * @return The UTF-8 bytes.
+     */
+    private static byte[] toBytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException uee) { // Can not happen
+            throw new IllegalStateException(uee);
+        }
+    }
+}
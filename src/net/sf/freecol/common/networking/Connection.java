@@ -19,7 +19,6 @@
 
 package net.sf.freecol.common.networking;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,7 +28,6 @@ import java.net.SocketAddress;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -38,10 +36,8 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import net.sf.freecol.common.debug.FreeColDebugger;
-import net.sf.freecol.common.io.FreeColXMLReader;
 
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
 
 /**
@@ -75,8 +71,23 @@ public class Connection {
 
     private MessageHandler messageHandler;
 
+    /** Runs the message handlers, in the order the messages arrive. */
+    private final MessageExecutor executor;
+
+    /** The binary encoding state. */
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    /** Send messages with the binary encoding? */
+    private volatile boolean binary = false;
+
+    /** May connections use the binary encoding? */
+    private static boolean binaryAllowed = true;
+
     private String name;
 
+    /** Run when a message fails to send, or null. */
+    private volatile Runnable sendFailureHandler = null;
+
     protected static boolean dump
         = FreeColDebugger.isInDebugMode(FreeColDebugger.DebugMode.COMMS);
 
@@ -93,6 +104,7 @@ public class Connection {
         this.xmlTransformer = null;
         this.thread = null;
         this.messageHandler = null;
+        this.executor = new MessageExecutor(name);
         this.name = name;
     }
 
@@ -179,6 +191,17 @@ public class Connection {
         messageHandler = mh;
     }
 
+    /**
+     * Sets the handler to run when a message fails to send.  The
+     * other peer may then have missed a message it was expected to
+     * receive.
+     *
+     * @param handler The <code>Runnable</code> to run, or null.
+     */
+    public void setSendFailureHandler(Runnable handler) {
+        sendFailureHandler = handler;
+    }
+
     /**
      * Gets the MessageHandler for this Connection.
      *
@@ -188,6 +211,62 @@ public class Connection {
         return messageHandler;
     }
 
+    /**
+     * Are connections allowed to use the binary encoding?
+     *
+     * @return True if the binary encoding may be negotiated.
+     */
+    public static boolean isBinaryAllowed() {
+        return binaryAllowed;
+    }
+
+    /**
+     * Sets whether connections may use the binary encoding.
+     *
+     * @param allowed If false, always use XML.
+     */
+    public static void setBinaryAllowed(boolean allowed) {
+        binaryAllowed = allowed;
+    }
+
+    /**
+     * Is this connection sending with the binary encoding?
+     *
+     * @return True if messages are sent in binary.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Sets whether this connection sends with the binary encoding.
+     * Only do this once the other end has said it understands it.
+     * Incoming messages are accepted in either encoding.
+     *
+     * @param binary If true, send messages in binary.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary && binaryAllowed;
+    }
+
+    /**
+     * Gets the codec for the binary encoding.
+     *
+     * @return The <code>BinaryMessageCodec</code>.
+     */
+    BinaryMessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets the number of received messages waiting to be handled.
+     *
+     * @return The message queue depth.
+     */
+    public int getQueueDepth() {
+        return executor.getQueueDepth();
+    }
+
     /**
      * Gets the connection name.
      *
@@ -245,17 +324,34 @@ public class Connection {
      * @throws IOException If an error occur while sending the message.
      */
     private void send(Element element, boolean logOK) throws IOException {
-        synchronized (out) {
-            try {
-                xmlTransformer.transform(new DOMSource(element),
-                                         new StreamResult(out));
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "Failed to transform and send!", e);
+        boolean failed = true;
+        try {
+            synchronized (out) {
+                if (isBinary()) {
+                    codec.writeFrame(element, out);
+                    failed = false;
+                } else {
+                    try {
+                        xmlTransformer.transform(new DOMSource(element),
+                                                 new StreamResult(out));
+                        failed = false;
+                    } catch (Exception e) {
+                        logger.log(Level.WARNING,
+                                   "Failed to transform and send!", e);
+                    }
+                    out.write('\n');
+                }
+                out.flush();
+                out.notifyAll(); // Just in case others are waiting
+            }
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        } finally {
+            if (failed) {
+                Runnable handler = sendFailureHandler;
+                if (handler != null) handler.run();
             }
-
-            out.write('\n');
-            out.flush();
-            out.notifyAll(); // Just in case others are waiting
         }
         if (logOK) logger.fine("Send: " + element.getTagName());
     }
@@ -333,6 +429,8 @@ public class Connection {
 
         NetworkReplyObject nro = thread.waitForNetworkReply(networkReplyId);
         send(question, false);
+        // Do not hold up the following messages while waiting.
+        MessageExecutor.release();
         DOMMessage response = (DOMMessage)nro.getResponse();
         Element reply = (response == null) ? null
             : response.getDocument().getDocumentElement();
@@ -390,45 +488,19 @@ public class Connection {
     /**
      * Handles a message using the registered <code>MessageHandler</code>.
      *
-     * @param in The stream containing the message.
+     * @param msg The <code>DOMMessage</code> to handle.
      */
-    public void handleAndSendReply(final BufferedInputStream in) 
-        throws IOException {
-
-        in.mark(200); // Peek at the reply identifier and tag.
-
-        // Extract the reply id and check if this is a question.
-        final String networkReplyId;
-        final boolean question;
-        FreeColXMLReader xr = null;
-        try {
-            xr = new FreeColXMLReader(in);
-            xr.nextTag();
-            question = QUESTION_TAG.equals(xr.getLocalName());
-            networkReplyId = xr.getAttribute(NETWORK_REPLY_ID_TAG,
-                                             (String)null);
-
-        } catch (XMLStreamException xse) {
-            logger.log(Level.WARNING, "XML stream failure", xse);
-            return;
-        } 
-
-        // Reset and build a message.
-        final DOMMessage msg;
-        in.reset();
-        try {
-            msg = new DOMMessage(in);
-        } catch (SAXException e) {
-            logger.log(Level.WARNING, "Unable to read message.", e);
-            return;
-        } finally {
-            if (xr != null) xr.close(); // Will close in
-        }
-
-        // Process the message in its own thread.
+    public void handleAndSendReply(final DOMMessage msg) {
+        // Check if this is a question, and if so extract the reply id.
+        final Element root = msg.getDocument().getDocumentElement();
+        final boolean question = QUESTION_TAG.equals(root.getTagName());
+        final String networkReplyId = (question)
+            ? root.getAttribute(NETWORK_REPLY_ID_TAG)
+            : null;
+
+        // Queue the message for processing.
         final Connection conn = this;
-        Thread t = new Thread(msg.getType()) {
-                @Override
+        executor.execute(msg.getType(), new Runnable() {
                 public void run() {
                     Element reply, element = msg.getDocument()
                         .getDocumentElement();
@@ -456,9 +528,7 @@ public class Connection {
                             + element.toString(), e);
                     }
                 }
-            };
-        t.setName(name + "-MessageHandler-" + t.getName());
-        t.start();
+            });
     }
 
     /**
@@ -63,6 +63,25 @@ public class DOMMessage {
 
     private static final String INVALID_MESSAGE = "invalid";
 
+    /**
+     * The document builders, one per thread as they are not thread safe
+     * and are expensive to create for every message.
+     */
+    private static final ThreadLocal<DocumentBuilder> documentBuilders
+        = new ThreadLocal<DocumentBuilder>() {
+            @Override
+            protected DocumentBuilder initialValue() {
+                try {
+                    return DocumentBuilderFactory.newInstance()
+                        .newDocumentBuilder();
+                } catch (ParserConfigurationException pce) {
+                    // Parser with specified options can't be built
+                    logger.log(Level.WARNING, "Parser failure", pce);
+                }
+                return null;
+            }
+        };
+
     /** The actual message data. */
     protected Document document;
 
@@ -100,7 +119,6 @@ public class DOMMessage {
      */
     private DOMMessage(InputSource inputSource)
         throws SAXException, IOException {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         Document tempDocument = null;
         boolean dumpMsgOnError = true;
         if (dumpMsgOnError) {
@@ -114,11 +132,8 @@ public class DOMMessage {
         }
 
         try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            tempDocument = builder.parse(inputSource);
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            logger.log(Level.WARNING, "Parser error", pce);
+            DocumentBuilder builder = getDocumentBuilder();
+            if (builder != null) tempDocument = builder.parse(inputSource);
         } catch (SAXException se) {
             throw se;
         } catch (IOException ie) {
@@ -298,15 +313,20 @@ public class DOMMessage {
      * @return the new XML-document.
      */
     public static Document createNewDocument() {
-        try {
-            DocumentBuilderFactory factory
-                = DocumentBuilderFactory.newInstance();
-            return factory.newDocumentBuilder().newDocument();
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            logger.log(Level.WARNING, "Parser failure", pce);
-        }
-        return null;
+        DocumentBuilder builder = documentBuilders.get();
+        return (builder == null) ? null : builder.newDocument();
+    }
+
+    /**
+     * Gets the document builder for the current thread, ready to parse.
+     *
+     * @return A <code>DocumentBuilder</code>, or null if none could
+     *     be created.
+     */
+    private static DocumentBuilder getDocumentBuilder() {
+        DocumentBuilder builder = documentBuilders.get();
+        if (builder != null) builder.reset();
+        return builder;
     }
 
     /**
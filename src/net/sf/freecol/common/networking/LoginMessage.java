@@ -60,6 +60,9 @@ public class LoginMessage extends DOMMessage {
     /** The game. */
     private Game game;
 
+    /** Will the server send in the binary encoding. */
+    private boolean binary;
+
         
     /**
      * Create a new <code>LoginMessage</code> with the supplied name
@@ -73,11 +76,12 @@ public class LoginMessage extends DOMMessage {
      * @param currentPlayer True if this player is the current player.
      * @param activeUnit The current active <code>Unit</code>, or null.
      * @param game The entire game.
+     * @param binary True if the server will send in the binary encoding.
      */
     public LoginMessage(Player player, String userName, String version,
                         boolean startGame, boolean singlePlayer,
                         boolean currentPlayer, Unit activeUnit,
-                        Game game) {
+                        Game game, boolean binary) {
         super(getXMLElementTagName());
 
         this.player = player;
@@ -89,6 +93,7 @@ public class LoginMessage extends DOMMessage {
         this.currentPlayer = currentPlayer;
         this.activeUnitId = (activeUnit == null) ? null : activeUnit.getId();
         this.game = game;
+        this.binary = binary;
     }
 
     /**
@@ -113,6 +118,8 @@ public class LoginMessage extends DOMMessage {
         str = element.getAttribute("currentPlayer");
         this.currentPlayer = Boolean.valueOf(str).booleanValue();
         this.activeUnitId = element.getAttribute("activeUnit");
+        str = element.getAttribute("binary");
+        this.binary = Boolean.valueOf(str).booleanValue();
         NodeList children = element.getChildNodes();
         this.game = (children.getLength() != 1) ? null
             : new Game((Element)children.item(0), this.userName);
@@ -153,6 +160,10 @@ public class LoginMessage extends DOMMessage {
         return game;
     }
 
+    public boolean isBinary() {
+        return binary;
+    }
+
     /**
      * Handle a "login"-message.
      * This is actually done in PreGameController.
@@ -181,7 +192,8 @@ public class LoginMessage extends DOMMessage {
             "startGame", Boolean.toString(startGame),
             "singlePlayer", Boolean.toString(singlePlayer),
             "currentPlayer", Boolean.toString(currentPlayer),
-            "activeUnit", activeUnitId);
+            "activeUnit", activeUnitId,
+            "binary", Boolean.toString(binary));
         result.appendChild(game.toXMLElement(result.getOwnerDocument(), player));
         return result;
     }
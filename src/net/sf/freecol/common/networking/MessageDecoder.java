@@ -0,0 +1,139 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+
+/**
+ * Decodes incoming network messages.
+ *
+ * The message is read once, with a streaming parser, and its document
+ * is built as the events arrive.  The envelope (the root tag, and for
+ * questions and replies the network reply identifier) is then
+ * available from the root element without parsing the message again.
+ */
+public final class MessageDecoder {
+
+    /** The input factories, one per thread. */
+    private static final ThreadLocal<XMLInputFactory> inputFactories
+        = new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+                return XMLInputFactory.newInstance();
+            }
+        };
+
+
+    /**
+     * Trivial private constructor, this class is not instantiated.
+     */
+    private MessageDecoder() {}
+
+
+    /**
+     * Decodes a message.  Reads the stream to its end.
+     *
+     * @param in The <code>InputStream</code> to read the message from.
+     * @return The <code>DOMMessage</code> read.
+     * @exception IOException if a document can not be created.
+     * @exception XMLStreamException if the message is malformed.
+     */
+    public static DOMMessage decode(InputStream in)
+        throws IOException, XMLStreamException {
+        final Document document = DOMMessage.createNewDocument();
+        if (document == null) throw new IOException("No document");
+
+        XMLStreamReader xsr = inputFactories.get()
+            .createXMLStreamReader(in, "UTF-8");
+        try {
+            Node parent = document;
+            while (xsr.hasNext()) {
+                switch (xsr.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element element
+                        = document.createElement(getName(xsr.getPrefix(),
+                                                          xsr.getLocalName()));
+                    for (int i = 0; i < xsr.getAttributeCount(); i++) {
+                        element.setAttribute(getName(xsr.getAttributePrefix(i),
+                                xsr.getAttributeLocalName(i)),
+                            xsr.getAttributeValue(i));
+                    }
+                    parent.appendChild(element);
+                    parent = element;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    parent = parent.getParentNode();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (parent == document) break;
+                    // The parser may split text, but a parsed document
+                    // would hold it in one node.
+                    Node last = parent.getLastChild();
+                    if (last != null
+                        && last.getNodeType() == Node.TEXT_NODE) {
+                        ((Text)last).appendData(xsr.getText());
+                    } else {
+                        parent.appendChild(document
+                            .createTextNode(xsr.getText()));
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    if (parent == document) break;
+                    parent.appendChild(document
+                        .createCDATASection(xsr.getText()));
+                    break;
+                default: // Ignore comments, processing instructions...
+                    break;
+                }
+            }
+        } finally {
+            xsr.close();
+        }
+        if (document.getDocumentElement() == null) {
+            throw new XMLStreamException("Empty message");
+        }
+        return new DOMMessage(document);
+    }
+
+    /**
+     * Gets the qualified name of an element or attribute.
+     *
+     * @param prefix The namespace prefix, which may be null or empty.
+     * @param localName The local name.
+     * @return The qualified name.
+     */
+    private static String getName(String prefix, String localName) {
+        return (prefix == null || prefix.length() == 0) ? localName
+            : prefix + ":" + localName;
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Runs the message handlers of a connection.
+ *
+ * Each connection has its own executor, which runs the handlers for
+ * the messages it is given one at a time and in order, on threads
+ * borrowed from a pool shared by all connections.  A handler may
+ * however block waiting for the other end of a connection to reply
+ * to a question, and the reply may depend on the other end seeing
+ * the answers to messages queued behind it.  So a handler that is
+ * about to block calls {@link #release}, which lets the following
+ * messages proceed on another thread.
+ *
+ * The pool is bounded, but handlers can not be made to wait for a
+ * free thread without risking deadlock, so when the pool is exhausted
+ * the work falls back to a dedicated thread as it did before the pool
+ * was introduced.  Such overflows are counted in the statistics.
+ */
+public final class MessageExecutor {
+
+    private static final Logger logger = Logger.getLogger(MessageExecutor.class.getName());
+
+    /** The default number of pooled handler threads. */
+    public static final int POOL_SIZE_DEFAULT = 8;
+
+    /** How long an idle pooled thread lives, in seconds. */
+    private static final long KEEP_ALIVE = 60L;
+
+    /** The shared thread pool, created on demand. */
+    private static ThreadPoolExecutor pool = null;
+
+    /** The number of pooled threads. */
+    private static int poolSize = POOL_SIZE_DEFAULT;
+
+    /** The worker being run by the current thread, if any. */
+    private static final ThreadLocal<Worker> currentWorker
+        = new ThreadLocal<Worker>();
+
+    // Statistics, over all connections.
+    private static final AtomicInteger queued = new AtomicInteger(0);
+    private static final AtomicLong handled = new AtomicLong(0L);
+    private static final AtomicLong overflows = new AtomicLong(0L);
+    private static final AtomicLong releases = new AtomicLong(0L);
+    private static final AtomicLong waitTime = new AtomicLong(0L);
+    private static final AtomicLong handlerTime = new AtomicLong(0L);
+    private static final AtomicLong maximumHandlerTime = new AtomicLong(0L);
+
+    /** A message handling task. */
+    private static final class Task {
+
+        public final String name;
+        public final Runnable runnable;
+        public final long queuedAt = System.nanoTime();
+
+
+        public Task(String name, Runnable runnable) {
+            this.name = name;
+            this.runnable = runnable;
+        }
+    }
+
+    /** Runs the queued tasks of this executor in order. */
+    private final class Worker implements Runnable {
+
+        /** Set when this worker has handed the queue on to another. */
+        private boolean released = false;
+
+
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            final String oldName = thread.getName();
+            currentWorker.set(this);
+            try {
+                for (;;) {
+                    Task task;
+                    synchronized (MessageExecutor.this) {
+                        if (released) return;
+                        if (tasks.isEmpty()) {
+                            active = null;
+                            return;
+                        }
+                        task = tasks.removeFirst();
+                    }
+                    queued.decrementAndGet();
+                    thread.setName(name + "-MessageHandler-" + task.name);
+                    runTask(task);
+                }
+            } finally {
+                currentWorker.remove();
+                thread.setName(oldName);
+            }
+        }
+
+        /**
+         * Hand the queue on to a new worker.
+         */
+        public void release() {
+            synchronized (MessageExecutor.this) {
+                if (released || active != this) return;
+                released = true;
+                active = null;
+                if (!tasks.isEmpty()) startWorker();
+            }
+            releases.incrementAndGet();
+        }
+    }
+
+    /** The name of the connection, used to name threads. */
+    private final String name;
+
+    /** The tasks waiting to run. */
+    private final LinkedList<Task> tasks = new LinkedList<Task>();
+
+    /** The worker currently running tasks, if any. */
+    private Worker active = null;
+
+
+    /**
+     * Create a new executor.
+     *
+     * @param name The name of the connection to run handlers for.
+     */
+    public MessageExecutor(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * Queues a handler to run after those already queued.
+     *
+     * @param taskName A name for the task.
+     * @param runnable The <code>Runnable</code> to run.
+     */
+    public void execute(String taskName, Runnable runnable) {
+        queued.incrementAndGet();
+        synchronized (this) {
+            tasks.add(new Task(taskName, runnable));
+            if (active == null) startWorker();
+        }
+    }
+
+    /**
+     * Gets the number of handlers waiting to run.
+     *
+     * @return The queue depth of this executor.
+     */
+    public synchronized int getQueueDepth() {
+        return tasks.size();
+    }
+
+    /**
+     * Starts a new worker on the queue.  Must be called with the
+     * executor lock held.
+     */
+    private void startWorker() {
+        final Worker worker = new Worker();
+        active = worker;
+        try {
+            getPool().execute(worker);
+        } catch (RejectedExecutionException ree) {
+            overflows.incrementAndGet();
+            Thread t = new Thread(worker, name + "-MessageHandler");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Runs a task, collecting the statistics.
+     *
+     * @param task The <code>Task</code> to run.
+     */
+    private static void runTask(Task task) {
+        final long start = System.nanoTime();
+        waitTime.addAndGet(start - task.queuedAt);
+        try {
+            task.runnable.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Handler failed: " + task.name, e);
+        } finally {
+            final long time = System.nanoTime() - start;
+            handlerTime.addAndGet(time);
+            handled.incrementAndGet();
+            long max;
+            while (time > (max = maximumHandlerTime.get())
+                && !maximumHandlerTime.compareAndSet(max, time));
+        }
+    }
+
+    /**
+     * Lets the handlers queued behind the one running in the current
+     * thread proceed.  Called before a handler blocks waiting on the
+     * network.  Does nothing if the current thread is not running a
+     * handler.
+     */
+    public static void release() {
+        Worker worker = currentWorker.get();
+        if (worker != null) worker.release();
+    }
+
+    /**
+     * Gets the shared thread pool, creating it if needed.
+     *
+     * @return The <code>ThreadPoolExecutor</code> to run workers with.
+     */
+    private static synchronized ThreadPoolExecutor getPool() {
+        if (pool == null) {
+            pool = new ThreadPoolExecutor(poolSize, poolSize,
+                KEEP_ALIVE, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "MessageHandler-"
+                            + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            pool.allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    /**
+     * Gets the number of pooled handler threads.
+     *
+     * @return The pool size.
+     */
+    public static synchronized int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Sets the number of pooled handler threads.
+     *
+     * @param size The new pool size.
+     */
+    public static synchronized void setPoolSize(int size) {
+        if (size < 1) throw new IllegalArgumentException("Bad size: " + size);
+        if (pool != null) {
+            if (size > poolSize) {
+                pool.setMaximumPoolSize(size);
+                pool.setCorePoolSize(size);
+            } else {
+                pool.setCorePoolSize(size);
+                pool.setMaximumPoolSize(size);
+            }
+        }
+        poolSize = size;
+    }
+
+    /**
+     * Gets the number of handlers waiting to run, over all connections.
+     *
+     * @return The total queue depth.
+     */
+    public static int getTotalQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Gets the statistics of the message handlers.  Times are in
+     * microseconds.
+     *
+     * @return A <code>Map</code> of the statistics.
+     */
+    public static java.util.Map<String, String> getStatistics() {
+        java.util.Map<String, String> stats = new HashMap<String, String>();
+        final long n = handled.get();
+        stats.put("messagePoolSize", Integer.toString(getPoolSize()));
+        stats.put("messageQueueDepth", Integer.toString(queued.get()));
+        stats.put("messagesHandled", Long.toString(n));
+        stats.put("messageOverflows", Long.toString(overflows.get()));
+        stats.put("messageReleases", Long.toString(releases.get()));
+        stats.put("messageWaitAverage",
+            Long.toString((n == 0) ? 0 : waitTime.get() / n / 1000));
+        stats.put("messageHandlerAverage",
+            Long.toString((n == 0) ? 0 : handlerTime.get() / n / 1000));
+        stats.put("messageHandlerMaximum",
+            Long.toString(maximumHandlerTime.get() / 1000));
+        return stats;
+    }
+}
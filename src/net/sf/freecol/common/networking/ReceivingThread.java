@@ -19,7 +19,7 @@
 
 package net.sf.freecol.common.networking;
 
-import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
@@ -31,9 +31,8 @@ import java.util.logging.Logger;
 import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.common.FreeColException;
-import net.sf.freecol.common.io.FreeColXMLReader;
 
-import org.xml.sax.SAXException;
+import org.w3c.dom.Element;
 
 
 /**
@@ -144,6 +143,46 @@ final class ReceivingThread extends Thread {
             return ret;
         }
 
+        /**
+         * Looks at the next byte without consuming it.  The end of
+         * message marker is not treated specially.
+         *
+         * @return The next byte, or -1 if the stream has ended.
+         * @exception IOException is thrown by the underlying read.
+         */
+        public int peek() throws IOException {
+            if (empty && !fill()) return -1;
+            return buffer[bStart] & 0xFF;
+        }
+
+        /**
+         * Reads a single byte of a binary frame.  The end of message
+         * marker is not treated specially.
+         *
+         * @return The byte read.
+         * @exception IOException is thrown by the underlying read, or
+         *     if the stream ends.
+         */
+        public int readRaw() throws IOException {
+            if (empty && !fill()) throw new EOFException("In binary frame");
+            int ret = buffer[bStart] & 0xFF;
+            bStart++;
+            if (bStart >= BUFFER_SIZE) bStart = 0;
+            if (bStart == bEnd) empty = true;
+            return ret;
+        }
+
+        /**
+         * Reads the bytes of a binary frame.
+         *
+         * @param b The buffer to fill.
+         * @exception IOException is thrown by the underlying read, or
+         *     if the stream ends.
+         */
+        public void readRawFully(byte[] b) throws IOException {
+            for (int i = 0; i < b.length; i++) b[i] = (byte)readRaw();
+        }
+
         /**
          * Reads from the buffer and returns the data.
          * 
@@ -281,44 +320,56 @@ final class ReceivingThread extends Thread {
      * each message received.
      * 
      * @throws IOException If thrown by the {@link FreeColNetworkInputStream}.
-     * @throws SAXException if a problem occured during parsing.
      * @throws XMLStreamException if a problem occured during parsing.
      */
-    private void listen() throws IOException, SAXException, XMLStreamException {
+    private void listen() throws IOException, XMLStreamException {
         if (!shouldRun()) return;
         in.enable();
 
-        final int LOOK_AHEAD = 8192;
-        BufferedInputStream bis = new BufferedInputStream(in, LOOK_AHEAD);
-        bis.mark(LOOK_AHEAD);
-
-        FreeColXMLReader xr = new FreeColXMLReader(bis);
-        xr.nextTag();
-        final String tag = xr.getLocalName();
+        final DOMMessage msg;
+        if (in.peek() == BinaryMessageCodec.FRAME_MARKER) {
+            in.readRaw();
+            int length = 0;
+            for (int shift = 0;; shift += 7) {
+                if (shift > 28) throw new IOException("Bad frame length");
+                int b = in.readRaw();
+                length |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+            }
+            byte[] data = new byte[length];
+            in.readRawFully(data);
+            msg = connection.getCodec().decode(data);
+        } else {
+            try {
+                msg = MessageDecoder.decode(in);
+            } finally {
+                while (in.read() >= 0); // Skip to the end of the message
+            }
+        }
+        final Element element = msg.getDocument().getDocumentElement();
+        final String tag = element.getTagName();
 
         if (Connection.DISCONNECT_TAG.equals(tag)) {
             askToStop();
 
         } else if (Connection.REPLY_TAG.equals(tag)) {
-            int id = xr.getAttribute(Connection.NETWORK_REPLY_ID_TAG, -1);
+            int id;
+            try {
+                id = Integer.parseInt(element
+                    .getAttribute(Connection.NETWORK_REPLY_ID_TAG));
+            } catch (NumberFormatException nfe) {
+                id = -1;
+            }
             NetworkReplyObject nro = waitingThreads.remove(id);
             if (nro == null) {
                 logger.warning("Could not find networkReplyId: " + id);
             } else {
-                bis.reset();
-                nro.setResponse(new DOMMessage(bis));
+                nro.setResponse(msg);
             }
         
         } else {
-            try {
-                bis.reset();
-                connection.handleAndSendReply(bis);
-            } catch (IOException ioe) {
-                logger.log(Level.WARNING, "IO error", ioe);
-            }
+            connection.handleAndSendReply(msg);
         }
-
-        if (xr != null) xr.close();
     }
 
     /**
@@ -340,12 +391,6 @@ final class ReceivingThread extends Thread {
                     if (++timesFailed > MAXIMUM_RETRIES) {
                         disconnect("Too many failures (XML)");
                     }
-                } catch (SAXException e) {
-                    if (!shouldRun()) break;
-                    logger.log(Level.WARNING, "SAX fail", e);
-                    if (++timesFailed > MAXIMUM_RETRIES) {
-                        disconnect("Too many failures (SAX)");
-                    }
                 } catch (IOException e) {
                     if (!shouldRun()) break;
                     logger.log(Level.WARNING, "IO fail", e);
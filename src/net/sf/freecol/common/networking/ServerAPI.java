@@ -962,10 +962,16 @@ public abstract class ServerAPI {
      */
     public LoginMessage login(String userName, String version) {
         Element reply = askExpecting(new TrivialMessage("login",
-                                                        "userName", userName,
-                                                        "version", version),
-                                     "login", null);
-        return (reply == null) ? null : new LoginMessage(null, reply);
+                "userName", userName,
+                "version", version,
+                "binary", Boolean.toString(Connection.isBinaryAllowed())),
+            "login", null);
+        if (reply == null) return null;
+        LoginMessage msg = new LoginMessage(null, reply);
+        // The server has switched to binary, so can we.
+        Connection c = getConnection();
+        if (msg.isBinary() && c != null) c.setBinary(true);
+        return msg;
     }
 
     /**
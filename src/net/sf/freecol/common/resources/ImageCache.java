@@ -0,0 +1,274 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.resources;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The cache of the scaled and grayscale variants of the images of
+ * all <code>ImageResource</code>s.
+ *
+ * The cache holds images up to a budget of bytes, estimated from
+ * their sizes, and drops the least recently used images beyond it.
+ * Dropped images are still held by soft references, so they can be
+ * reused until the garbage collector needs the memory.
+ */
+public final class ImageCache {
+
+    /** The default budget, in bytes. */
+    public static final long BUDGET_DEFAULT = 64L << 20;
+
+    /** The key of a cached image. */
+    private static final class Key {
+
+        public final ImageResource resource;
+        public final int width;
+        public final int height;
+        public final boolean grayscale;
+
+
+        public Key(ImageResource resource, Dimension d, boolean grayscale) {
+            this.resource = resource;
+            this.width = d.width;
+            this.height = d.height;
+            this.grayscale = grayscale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return resource == k.resource && width == k.width
+                && height == k.height && grayscale == k.grayscale;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(resource);
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            return (grayscale) ? ~hash : hash;
+        }
+    }
+
+    /** A soft reference that remembers its key. */
+    private static final class Ref extends SoftReference<Image> {
+
+        public final Key key;
+
+
+        public Ref(Key key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+
+    /** The images within the budget, least recently used first. */
+    private static final LinkedHashMap<Key, Image> images
+        = new LinkedHashMap<Key, Image>(256, 0.75f, true);
+
+    /** The images dropped from the budget, while the GC allows. */
+    private static final HashMap<Key, Ref> dropped = new HashMap<Key, Ref>();
+
+    /** The queue of dropped images cleared by the garbage collector. */
+    private static final ReferenceQueue<Image> queue
+        = new ReferenceQueue<Image>();
+
+    /** The budget, in bytes. */
+    private static long budget = BUDGET_DEFAULT;
+
+    /** The estimated size of the images within the budget. */
+    private static long bytes = 0L;
+
+    // Statistics.
+    private static long hits = 0L;
+    private static long softHits = 0L;
+    private static long misses = 0L;
+    private static long evictions = 0L;
+
+
+    private ImageCache() {}
+
+
+    /**
+     * Gets a cached image.
+     *
+     * @param resource The <code>ImageResource</code> of the image.
+     * @param d The <code>Dimension</code> of the image.
+     * @param grayscale True for the grayscale variant.
+     * @return The cached <code>Image</code>, or null if not present.
+     */
+    public static synchronized Image get(ImageResource resource, Dimension d,
+                                         boolean grayscale) {
+        final Key key = new Key(resource, d, grayscale);
+        Image image = images.get(key);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        expunge();
+        final Ref ref = dropped.get(key);
+        if (ref != null && (image = ref.get()) != null) {
+            softHits++;
+            dropped.remove(key);
+            add(key, image);
+            return image;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Adds an image to the cache.
+     *
+     * @param resource The <code>ImageResource</code> of the image.
+     * @param d The <code>Dimension</code> of the image.
+     * @param grayscale True for the grayscale variant.
+     * @param image The <code>Image</code> to cache.
+     */
+    public static synchronized void put(ImageResource resource, Dimension d,
+                                        boolean grayscale, Image image) {
+        final Key key = new Key(resource, d, grayscale);
+        dropped.remove(key);
+        final Image old = images.remove(key);
+        if (old != null) bytes -= sizeOf(old);
+        add(key, image);
+    }
+
+    /**
+     * Adds an image within the budget, dropping the least recently
+     * used images as needed.
+     *
+     * @param key The <code>Key</code> of the image.
+     * @param image The <code>Image</code> to add.
+     */
+    private static void add(Key key, Image image) {
+        images.put(key, image);
+        bytes += sizeOf(image);
+        trim();
+    }
+
+    /**
+     * Drops the least recently used images until within the budget.
+     * The most recent image is always kept.
+     */
+    private static void trim() {
+        Iterator<Map.Entry<Key, Image>> it = images.entrySet().iterator();
+        while (bytes > budget && images.size() > 1) {
+            Map.Entry<Key, Image> e = it.next();
+            it.remove();
+            bytes -= sizeOf(e.getValue());
+            dropped.put(e.getKey(), new Ref(e.getKey(), e.getValue(), queue));
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the dropped images that the garbage collector cleared.
+     */
+    private static void expunge() {
+        Ref ref;
+        while ((ref = (Ref)queue.poll()) != null) {
+            if (dropped.get(ref.key) == ref) dropped.remove(ref.key);
+        }
+    }
+
+    /**
+     * Estimates the memory used by an image.
+     *
+     * @param image The <code>Image</code> to check.
+     * @return The size of the image in bytes, assuming 32 bit pixels.
+     */
+    private static long sizeOf(Image image) {
+        return 4L * Math.max(0, image.getWidth(null))
+            * Math.max(0, image.getHeight(null));
+    }
+
+    /**
+     * Gets the number of images cached for a resource.
+     *
+     * @param resource The <code>ImageResource</code> to count.
+     * @return The number of cached variants of the resource's image.
+     */
+    public static synchronized int getCount(ImageResource resource) {
+        int n = 0;
+        for (Key key : images.keySet()) {
+            if (key.resource == resource) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Gets the budget of the cache.
+     *
+     * @return The budget in bytes.
+     */
+    public static synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget of the cache.
+     *
+     * @param newBudget The new budget in bytes.
+     */
+    public static synchronized void setBudget(long newBudget) {
+        if (newBudget < 0) {
+            throw new IllegalArgumentException("Bad budget: " + newBudget);
+        }
+        budget = newBudget;
+        trim();
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public static synchronized void clear() {
+        images.clear();
+        dropped.clear();
+        bytes = 0L;
+    }
+
+    /**
+     * Gets the statistics of the cache.
+     *
+     * @return A <code>Map</code> of the statistics.
+     */
+    public static synchronized Map<String, String> getStatistics() {
+        Map<String, String> stats = new HashMap<String, String>();
+        stats.put("imageCacheBudget", Long.toString(budget));
+        stats.put("imageCacheBytes", Long.toString(bytes));
+        stats.put("imageCacheImages", Integer.toString(images.size()));
+        stats.put("imageCacheDropped", Integer.toString(dropped.size()));
+        stats.put("imageCacheHits", Long.toString(hits));
+        stats.put("imageCacheSoftHits", Long.toString(softHits));
+        stats.put("imageCacheMisses", Long.toString(misses));
+        stats.put("imageCacheEvictions", Long.toString(evictions));
+        return stats;
+    }
+}
@@ -30,22 +30,20 @@ import java.awt.image.ColorConvertOp;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 /**
- * A <code>Resource</code> wrapping an <code>Image</code>.
+ * A <code>Resource</code> wrapping an <code>Image</code>.  Scaled and
+ * grayscale variants of the image are kept in the
+ * <code>ImageCache</code>.
  * @see Resource
  */
 public class ImageResource extends Resource {
 
     private static final Logger logger = Logger.getLogger(ImageResource.class.getName());
 
-    private Map<Dimension, Image> grayscaleImages = new HashMap<Dimension, Image>();
-    private Map<Dimension, Image> scaledImages = new HashMap<Dimension, Image>();
     private Image image = null;
     private final Object loadingLock = new Object();
     private static final Component _c = new Component() {};
@@ -139,7 +137,7 @@ public class ImageResource extends Resource {
                 && im.getHeight(null) == d.height)) return im;
 
         synchronized (loadingLock) {
-            final Image cached = scaledImages.get(d);
+            final Image cached = ImageCache.get(this, d, false);
             if (cached != null) return cached;
 
             MediaTracker mt = new MediaTracker(_c);
@@ -153,7 +151,7 @@ public class ImageResource extends Resource {
                 mt.waitForID(0);
                 int result = mt.statusID(0, false);
                 if (result == MediaTracker.COMPLETE) {
-                    scaledImages.put(d, scaled);
+                    ImageCache.put(this, d, false, scaled);
                 } else {
                     logger.warning("Scaling image: " + getResourceLocator()
                         + " => " + result);
@@ -176,10 +174,8 @@ public class ImageResource extends Resource {
     public Image getGrayscaleImage(Dimension d) {
         final Image im = getImage(d);
         if (im == null) return null;
-        final Image cachedGrayscaleImage = grayscaleImages.get(d);
-        if (cachedGrayscaleImage != null) return cachedGrayscaleImage;
         synchronized (loadingLock) {
-            final Image cached = grayscaleImages.get(d);
+            final Image cached = ImageCache.get(this, d, true);
             if (cached != null) return cached;
             int width = im.getWidth(null);
             int height = im.getHeight(null);
@@ -187,7 +183,7 @@ public class ImageResource extends Resource {
             BufferedImage srcImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
             srcImage.createGraphics().drawImage(im, 0, 0, null);
             final Image grayscaleImage = filter.filter(srcImage, null);
-            grayscaleImages.put(d, grayscaleImage);
+            ImageCache.put(this, d, true, grayscaleImage);
             return grayscaleImage;
         }
     }
@@ -207,7 +203,7 @@ public class ImageResource extends Resource {
     }
 
     public int getCount() {
-        return grayscaleImages.size() + scaledImages.size();
+        return ImageCache.getCount(this);
     }
     
 }
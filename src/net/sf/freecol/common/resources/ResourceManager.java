@@ -63,6 +63,8 @@ public class ResourceManager {
 
     private static volatile Thread preloadThread = null;
 
+    private static volatile Thread scaleThread = null;
+
     private static volatile boolean dirty = false;
 
     private static Dimension lastWindowSize = null;
@@ -189,6 +191,44 @@ public class ResourceManager {
         preloadThread.start();
     }
 
+    /**
+     * Starts a background thread that creates the scaled (and
+     * optionally grayscale) variants of the images whose keys start
+     * with a prefix, so that the GUI finds them already in the
+     * <code>ImageCache</code>.  Any unfinished earlier request is
+     * cancelled.
+     *
+     * @param prefix The prefix of the image keys.
+     * @param scale The scale to prepare the images at.
+     * @param grayscale If true prepare the grayscale variants too.
+     */
+    public static void prepareScaledImages(final String prefix,
+                                           final double scale,
+                                           final boolean grayscale) {
+        if ("true".equals(System.getProperty("java.awt.headless", "false"))
+            || mergedContainer == null) return;
+
+        final List<String> keys = getKeys(prefix);
+        scaleThread = new Thread(FreeCol.CLIENT_THREAD+"Image scaler") {
+                public void run() {
+                    int n = 0;
+                    for (String key : keys) {
+                        if (scaleThread != this) return; // Cancelled!
+                        ImageResource r = getResource(key, ImageResource.class);
+                        if (r == null) continue;
+                        r.getImage(scale);
+                        if (grayscale) r.getGrayscaleImage(scale);
+                        n++;
+                    }
+                    logger.info("Background thread scaled " + n
+                        + " images to " + scale);
+                }
+            };
+        scaleThread.setDaemon(true);
+        scaleThread.setPriority(2);
+        scaleThread.start();
+    }
+
     /**
      * Updates the resource mappings after making changes.
      */
@@ -0,0 +1,109 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A shared set of named daemon threads, one per processor, for work
+ * that may be done in parallel, and a switch for whether it should be.
+ * The threads are only created when first needed, and being daemons
+ * they never keep the program running.
+ */
+public final class WorkerPool {
+
+    /** The prefix of the names of the threads. */
+    private final String name;
+
+    /** Is parallel work enabled? */
+    private boolean enabled;
+
+    /** The threads, created on demand. */
+    private ExecutorService executor = null;
+
+
+    /**
+     * Creates a new <code>WorkerPool</code>.
+     *
+     * @param name The prefix of the names of the threads, to which
+     *     a number is added.
+     * @param enabled Whether parallel work is enabled to begin with.
+     */
+    public WorkerPool(String name, boolean enabled) {
+        this.name = name;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Creates a new <code>WorkerPool</code> that is enabled if there
+     * is more than one processor.
+     *
+     * @param name The prefix of the names of the threads.
+     */
+    public WorkerPool(String name) {
+        this(name, Runtime.getRuntime().availableProcessors() > 1);
+    }
+
+
+    /**
+     * Is parallel work enabled?
+     *
+     * @return True if work should be done in parallel.
+     */
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether parallel work is enabled.
+     *
+     * @param enabled The new enabled state.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the threads, creating them if needed.
+     *
+     * @return The <code>ExecutorService</code> to do work with.
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name + "-"
+                            + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return executor;
+    }
+}
@@ -20,6 +20,7 @@
 package net.sf.freecol.server;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -39,8 +40,6 @@ import java.util.Random;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -774,34 +773,66 @@ public final class FreeColServer {
      */
     public void saveGame(File file, OptionGroup options, BufferedImage image)
         throws IOException {
+        makeSavegame(options, image).write(file, null);
+    }
+
+    /**
+     * Saves a game, writing the file in the background.  The game is
+     * captured before returning, so play can continue at once.
+     *
+     * @param file The file where the data will be written.
+     * @param backup An optional file to move any existing save to.
+     * @param options The client <code>OptionGroup</code> to save.
+     * @throws IOException If a problem was encountered while capturing
+     *     the game.
+     */
+    public void saveGameInBackground(File file, File backup,
+                                     OptionGroup options) throws IOException {
+        makeSavegame(options, null).writeInBackground(file, backup);
+    }
+
+    /**
+     * Captures the contents of a saved game in memory.
+     *
+     * @param options An optional client <code>OptionGroup</code> to save.
+     * @param image An optional thumbnail <code>Image</code>.
+     * @return A new <code>SavegameWriter</code> holding the contents.
+     * @throws IOException If a problem was encountered while
+     *     capturing the game.
+     */
+    private SavegameWriter makeSavegame(OptionGroup options,
+                                        BufferedImage image)
+        throws IOException {
         final ServerGame game = getGame();
-        JarOutputStream fos = null;
+        final SavegameWriter sw = new SavegameWriter();
+        ByteArrayOutputStream out;
         FreeColXMLWriter xw = null;
         try {
-            fos = new JarOutputStream(new FileOutputStream(file));
-
             if (image != null) {
-                fos.putNextEntry(new JarEntry(FreeColSavegameFile.THUMBNAIL_FILE));
-                ImageIO.write(image, "png", fos);
-                fos.closeEntry();
+                out = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", out);
+                sw.addEntry(FreeColSavegameFile.THUMBNAIL_FILE,
+                            out.toByteArray());
             }
 
             if (options != null) {
-                fos.putNextEntry(new JarEntry(FreeColSavegameFile.CLIENT_OPTIONS));
-                options.save(fos, FreeColXMLWriter.WriteScope.toSave());
-                fos.closeEntry();
+                out = new ByteArrayOutputStream();
+                options.save(out, FreeColXMLWriter.WriteScope.toSave());
+                sw.addEntry(FreeColSavegameFile.CLIENT_OPTIONS,
+                            out.toByteArray());
             }
 
             Properties properties = new Properties();
             properties.put("map.width", Integer.toString(game.getMap().getWidth()));
             properties.put("map.height", Integer.toString(game.getMap().getHeight()));
-            fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_PROPERTIES));
-            properties.store(fos, null);
-            fos.closeEntry();
+            out = new ByteArrayOutputStream();
+            properties.store(out, null);
+            sw.addEntry(FreeColSavegameFile.SAVEGAME_PROPERTIES,
+                        out.toByteArray());
 
             // save the actual game data
-            fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_FILE));
-            xw = new FreeColXMLWriter(fos, FreeColXMLWriter.WriteScope.toSave(),
+            out = new ByteArrayOutputStream(1 << 16);
+            xw = new FreeColXMLWriter(out, FreeColXMLWriter.WriteScope.toSave(),
                                       false);
 
             xw.writeStartDocument("UTF-8", "1.0");
@@ -848,7 +879,8 @@ public final class FreeColServer {
             xw.writeEndDocument();
             xw.flush();
             xw.close();
-            fos.closeEntry();
+            xw = null;
+            sw.addEntry(FreeColSavegameFile.SAVEGAME_FILE, out.toByteArray());
 
         } catch (XMLStreamException e) {
             logger.log(Level.WARNING, "Failed to save", e);
@@ -858,8 +890,8 @@ public final class FreeColServer {
             throw new IOException(e);
         } finally {
             if (xw != null) xw.close();
-            if (fos != null) fos.close();
         }
+        return sw;
     }
 
     /**
@@ -897,6 +929,7 @@ public final class FreeColServer {
                                       Specification specification,
                                       FreeColServer server)
         throws IOException, FreeColException, XMLStreamException {
+        SavegameWriter.waitForPending(); // The file may still be writing
         final int savegameVersion = getSavegameVersion(fis);
         if (savegameVersion < MINIMUM_SAVEGAME_VERSION) {
             throw new FreeColException("incompatibleVersions");
@@ -1538,6 +1571,7 @@ public final class FreeColServer {
     }
 
     public void shutdown() {
+        SavegameWriter.waitForPending();
         server.shutdown();
     }
 }
@@ -0,0 +1,249 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * The contents of a saved game, taken in memory so that compressing
+ * and writing them to disk need not hold up the game.
+ *
+ * A file is written under a temporary name in the same directory and
+ * then renamed, so that a save that fails or is interrupted never
+ * leaves a damaged file in place of a good one.
+ *
+ * Saves made in the background are written one at a time, in order.
+ * A newer save of a file replaces any older one still waiting to be
+ * written to it.  Only a few saves may wait, beyond which the caller
+ * waits for room, so a slow disk can not fill memory with saves.
+ * Anything about to read a saved game should first call
+ * {@link #waitForPending}.
+ */
+public final class SavegameWriter {
+
+    private static final Logger logger = Logger.getLogger(SavegameWriter.class.getName());
+
+    /** The maximum number of saves waiting to be written. */
+    private static final int MAXIMUM_PENDING = 2;
+
+    /** How long the writer thread waits for more saves, in ms. */
+    private static final long IDLE_TIME = 10000L;
+
+    /** A save waiting to be written. */
+    private static final class Save {
+
+        public final SavegameWriter writer;
+        public final File file;
+        public final File backup;
+
+
+        public Save(SavegameWriter writer, File file, File backup) {
+            this.writer = writer;
+            this.file = file;
+            this.backup = backup;
+        }
+    }
+
+    /**
+     * The saves waiting to be written, oldest first.  This and the
+     * following fields are guarded by the class lock.
+     */
+    private static final LinkedList<Save> queue = new LinkedList<Save>();
+
+    /** The number of saves waiting or being written. */
+    private static int pending = 0;
+
+    /** The writer thread, which exits when idle, or null if none. */
+    private static Thread writerThread = null;
+
+    /** The names of the entries. */
+    private final List<String> names = new ArrayList<String>();
+
+    /** The contents of the entries. */
+    private final List<byte[]> contents = new ArrayList<byte[]>();
+
+
+    /**
+     * Adds an entry to the saved game.
+     *
+     * @param name The name of the entry.
+     * @param content The content of the entry.
+     */
+    public void addEntry(String name, byte[] content) {
+        names.add(name);
+        contents.add(content);
+    }
+
+    /**
+     * Writes the saved game to a file.
+     *
+     * @param file The <code>File</code> to write to.
+     * @param backup An optional <code>File</code> to move any
+     *     existing file to once the new one is written.
+     * @exception IOException if the file can not be written.
+     */
+    public void write(File file, File backup) throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        final File temp = File.createTempFile(file.getName() + "-", ".tmp",
+                                              dir);
+        JarOutputStream jos = null;
+        try {
+            jos = new JarOutputStream(new FileOutputStream(temp));
+            for (int i = 0; i < names.size(); i++) {
+                jos.putNextEntry(new JarEntry(names.get(i)));
+                jos.write(contents.get(i));
+                jos.closeEntry();
+            }
+            jos.close();
+            jos = null;
+            if (backup != null && file.exists()) {
+                backup.delete();
+                file.renameTo(backup);
+            }
+            // Renaming over an existing file fails on some platforms,
+            // so then move the old file aside, and put it back if the
+            // new one still can not be renamed.
+            if (!temp.renameTo(file)) {
+                final File old = new File(temp.getPath() + ".old");
+                boolean renamed = false;
+                if (file.renameTo(old)) {
+                    renamed = temp.renameTo(file);
+                    if (renamed) {
+                        old.delete();
+                    } else {
+                        old.renameTo(file);
+                    }
+                }
+                if (!renamed) {
+                    throw new IOException("Could not rename " + temp
+                        + " to " + file);
+                }
+            }
+        } finally {
+            if (jos != null) {
+                try {
+                    jos.close();
+                } catch (IOException ioe) {} // Failing anyway
+            }
+            if (temp.exists()) temp.delete();
+        }
+    }
+
+    /**
+     * Writes the saved game to a file in the background.  Failures
+     * are logged.  Waits if too many saves are waiting already.
+     *
+     * @param file The <code>File</code> to write to.
+     * @param backup An optional <code>File</code> to move any
+     *     existing file to once the new one is written.
+     */
+    public void writeInBackground(File file, File backup) {
+        boolean interrupted = false;
+        synchronized (SavegameWriter.class) {
+            for (Iterator<Save> it = queue.iterator(); it.hasNext();) {
+                if (it.next().file.equals(file)) {
+                    it.remove();
+                    pending--;
+                }
+            }
+            while (queue.size() >= MAXIMUM_PENDING) {
+                try {
+                    SavegameWriter.class.wait();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            queue.add(new Save(this, file, backup));
+            pending++;
+            if (writerThread == null) {
+                writerThread = new Thread(new Runnable() {
+                        public void run() {
+                            writeSaves();
+                        }
+                    }, "SavegameWriter");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            SavegameWriter.class.notifyAll();
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Writes the waiting saves in order, until idle.  Run by the
+     * writer thread.
+     */
+    private static void writeSaves() {
+        for (;;) {
+            Save save;
+            synchronized (SavegameWriter.class) {
+                if (queue.isEmpty()) {
+                    try {
+                        SavegameWriter.class.wait(IDLE_TIME);
+                    } catch (InterruptedException ie) {} // Check again
+                    if (queue.isEmpty()) {
+                        writerThread = null;
+                        return;
+                    }
+                }
+                save = queue.removeFirst();
+                SavegameWriter.class.notifyAll(); // There is room now
+            }
+            try {
+                save.writer.write(save.file, save.backup);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to save: "
+                    + save.file.getPath(), e);
+            } finally {
+                synchronized (SavegameWriter.class) {
+                    pending--;
+                    SavegameWriter.class.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for all the saves made in the background to be written.
+     */
+    public static void waitForPending() {
+        synchronized (SavegameWriter.class) {
+            while (pending > 0) {
+                try {
+                    SavegameWriter.class.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -108,6 +108,12 @@ public class AIColony extends AIObject implements PropertyChangeListener {
     /** The current plan for the colony.  Does not need to be serialized. */
     private ColonyPlan colonyPlan = null;
 
+    /** A plan made in advance by {@link #planTurn}, if any. */
+    private ColonyPlan preparedPlan = null;
+
+    /** The state of the colony when the prepared plan was made. */
+    private List<Object> preparedState = null;
+
     /** Goods to export from the colony. */
     private final List<AIGoods> aiGoods;
 
@@ -250,6 +256,74 @@ public class AIColony extends AIObject implements PropertyChangeListener {
         return isBadlyDefended(colony);
     }
 
+    /**
+     * Makes the colony plan for this turn in advance, if the workers
+     * are due to be rearranged.  This only reads the game, so the
+     * plans for many colonies can be made in parallel, as long as the
+     * game does not change meanwhile.  {@link #rearrangeWorkers} uses
+     * the plan if the colony is still in the same state.
+     */
+    public void planTurn() {
+        preparedPlan = null;
+        preparedState = null;
+        if (colony.getUnitCount() <= 0
+            || rearrangeTurn.getNumber() > getGame().getTurn().getNumber()) {
+            return;
+        }
+        ColonyPlan plan = new ColonyPlan(getAIMain(), colony);
+        plan.update();
+        preparedState = getPlanState();
+        preparedPlan = plan;
+    }
+
+    /**
+     * Gets the colony plan made in advance by {@link #planTurn}.
+     * Public for the test suite.
+     *
+     * @return The prepared <code>ColonyPlan</code>, or null if none.
+     */
+    public ColonyPlan getPreparedPlan() {
+        return preparedPlan;
+    }
+
+    /**
+     * Gets the state of the colony that a colony plan depends on:
+     * the turn, owner, defence, units, buildings, goods, and the
+     * surrounding and owned tiles.  Package visible for the test
+     * suite.
+     *
+     * @return A list describing the colony state.
+     */
+    List<Object> getPlanState() {
+        final Specification spec = getSpecification();
+        List<Object> state = new ArrayList<Object>();
+        state.add(getGame().getTurn().getNumber());
+        state.add(colony.getOwner());
+        state.add(isBadlyDefended());
+        for (Unit unit : colony.getUnitList()) {
+            state.add(unit);
+            state.add(unit.getType());
+            state.add(unit.getRole());
+            state.add(unit.getExperience());
+        }
+        for (Building building : colony.getBuildings()) {
+            state.add(building.getType());
+        }
+        for (GoodsType goodsType : spec.getGoodsTypeList()) {
+            state.add(colony.getGoodsCount(goodsType));
+        }
+        for (Tile t : colony.getTile().getSurroundingTiles(1)) {
+            state.add(t.getOwner());
+        }
+        for (Tile t : colony.getOwnedTiles()) {
+            state.add(t);
+            state.add(t.getType());
+            state.add(t.getResource());
+            state.addAll(t.getCompletedTileImprovements());
+        }
+        return state;
+    }
+
     /**
      * Rearranges the workers within this colony using the {@link ColonyPlan}.
      * TODO: Detect military threats and boost defence.
@@ -296,8 +370,15 @@ public class AIColony extends AIObject implements PropertyChangeListener {
             }
         }
 
-        // Update the colony plan.
-        colonyPlan.update();
+        // Update the colony plan, unless one was made in advance and
+        // the colony has not changed since.
+        if (preparedPlan != null && preparedState.equals(getPlanState())) {
+            colonyPlan = preparedPlan;
+        } else {
+            colonyPlan.update();
+        }
+        preparedPlan = null;
+        preparedState = null;
 
         // Now that we know what raw materials are available in the
         // colony plan, set the current buildable, first backing out
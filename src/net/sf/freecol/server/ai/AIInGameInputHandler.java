@@ -205,11 +205,13 @@ public final class AIInGameInputHandler implements MessageHandler {
             logger.finest("Starting new Thread for " + serverPlayer.getName());
             Thread t = new Thread(FreeCol.SERVER_THREAD+"AIPlayer (" + serverPlayer.getName() + ")") {
                 public void run() {
+                    final long start = System.nanoTime();
                     try {
                         getAIPlayer().startWorking();
                     } catch (Exception e) {
                         logger.log(Level.SEVERE, "AI player failed while working!", e);
                     }
+                    aiMain.addWorkTime(System.nanoTime() - start);
                     AIMessage.askEndTurn(getAIPlayer());
                 }
             };
@@ -22,12 +22,17 @@ package net.sf.freecol.server.ai;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
+import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.model.Colony;
@@ -38,6 +43,7 @@ import net.sf.freecol.common.model.Game;
 import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.util.Utils;
+import net.sf.freecol.common.util.WorkerPool;
 import net.sf.freecol.server.FreeColServer;
 import net.sf.freecol.server.model.ServerPlayer;
 
@@ -53,6 +59,10 @@ public class AIMain extends FreeColObject
 
     private static final Logger logger = Logger.getLogger(AIMain.class.getName());
 
+    /** The threads to plan the turns of the AI players with. */
+    private static final WorkerPool planPool
+        = new WorkerPool(FreeCol.SERVER_THREAD + "AIPlanner");
+
     /** The server that this AI is operating within. */
     private FreeColServer freeColServer;
 
@@ -66,6 +76,9 @@ public class AIMain extends FreeColObject
     private final HashMap<String, AIObject> aiObjects
         = new HashMap<String, AIObject>();
 
+    /** The time the AI players have spent working, in nanoseconds. */
+    private final AtomicLong workTime = new AtomicLong(0L);
+
 
     /**
      * Creates a new <code>AIMain</code> and searches the current
@@ -274,6 +287,112 @@ public class AIMain extends FreeColObject
         aiObjects.remove(id);
     }
 
+    /**
+     * Are the turns of the AI players planned in parallel?
+     *
+     * @return True if parallel planning is enabled.
+     */
+    public static boolean isParallelPlanning() {
+        return planPool.isEnabled();
+    }
+
+    /**
+     * Set whether the turns of the AI players are planned in parallel.
+     *
+     * @param parallel The new parallel planning state.
+     */
+    public static void setParallelPlanning(boolean parallel) {
+        planPool.setEnabled(parallel);
+    }
+
+    /**
+     * Lets all the live AI players plan their coming turns, in
+     * parallel if enabled.  Called at the start of a new turn, while
+     * the game is not changing.  The players then take their turns
+     * one after another as usual, using the plans that are still
+     * valid.  The planning only reads the game, so its results do not
+     * depend on whether it was done in parallel.
+     */
+    public void planTurn() {
+        final long start = System.nanoTime();
+        try {
+            planTurns();
+        } finally {
+            addWorkTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Plans the turns of the AI players.
+     *
+     * @see #planTurn
+     */
+    private void planTurns() {
+        List<AIPlayer> aiPlayers = new ArrayList<AIPlayer>();
+        for (Player p : getGame().getPlayers()) {
+            if (p.isDead() || !p.isAI()) continue;
+            AIPlayer aip = getAIPlayer(p);
+            if (aip != null) aiPlayers.add(aip);
+        }
+        if (aiPlayers.size() < 2 || !isParallelPlanning()) {
+            for (AIPlayer aip : aiPlayers) planTurn(aip);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final AIPlayer aip : aiPlayers) {
+            futures.add(planPool.getExecutor().submit(new Runnable() {
+                    public void run() {
+                        planTurn(aip);
+                    }
+                }));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException ee) {
+                logger.log(Level.WARNING, "Planning failed", ee.getCause());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lets an AI player plan its turn.  A failure only loses the plan,
+     * so it is logged rather than passed on.
+     *
+     * @param aip The <code>AIPlayer</code> to plan for.
+     */
+    private static void planTurn(AIPlayer aip) {
+        try {
+            aip.planTurn();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "AI player failed while planning: "
+                + aip.getPlayer().getName(), e);
+        }
+    }
+
+    /**
+     * Gets the time the AI players have spent working, including
+     * planning.
+     *
+     * @return The work time in nanoseconds.
+     */
+    public long getWorkTime() {
+        return workTime.get();
+    }
+
+    /**
+     * Adds to the time the AI players have spent working.
+     *
+     * @param time The time to add, in nanoseconds.
+     */
+    public void addWorkTime(long time) {
+        workTime.addAndGet(time);
+    }
+
     /**
      * Computes how many objects of each class have been created, to
      * track memory leaks over time
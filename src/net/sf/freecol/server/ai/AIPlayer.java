@@ -453,6 +453,14 @@ public abstract class AIPlayer extends AIObject {
      */
     public abstract void startWorking();
 
+    /**
+     * Does the work for the coming turn that only reads the game,
+     * ahead of {@link #startWorking}.  The players plan their turns
+     * in parallel, so this must not change the game or any shared AI
+     * state.  By default there is nothing to do.
+     */
+    public void planTurn() {}
+
     /**
      * Adjusts the score of this proposed mission for this player type.
      * Subclasses should override and refine this.
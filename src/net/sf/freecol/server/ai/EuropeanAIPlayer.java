@@ -73,6 +73,8 @@ import net.sf.freecol.common.model.UnitTradeItem;
 import net.sf.freecol.common.model.UnitType;
 import net.sf.freecol.common.model.WorkLocation;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
+import net.sf.freecol.common.model.pathfinding.DistanceFields;
+import net.sf.freecol.common.model.pathfinding.PathCache;
 import net.sf.freecol.common.networking.NetworkConstants;
 import net.sf.freecol.common.option.OptionGroup;
 import net.sf.freecol.common.util.RandomChoice;
@@ -1942,6 +1944,14 @@ public class EuropeanAIPlayer extends AIPlayer {
 
     // AIPlayer interface
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void planTurn() {
+        for (AIColony aic : getAIColonies()) aic.planTurn();
+    }
+
     /**
      * Tells this <code>AIPlayer</code> to make decisions.  The
      * <code>AIPlayer</code> is done doing work this turn when this
@@ -1953,6 +1963,41 @@ public class EuropeanAIPlayer extends AIPlayer {
             + ": " + Utils.lastPart(getPlayer().getNationId(), "."));
         sessionRegister.clear();
         clearAIUnits();
+
+        // The missions repeat many of the same path searches, so cache
+        // them for the duration of this pass.
+        final Map map = getGame().getMap();
+        final PathCache pathCache = (map.getPathCache() != null) ? null
+            : new PathCache();
+        if (pathCache != null) map.setPathCache(pathCache);
+        // Likewise the many units looking for the nearest of the same
+        // settlements share the distances to them.
+        final DistanceFields distanceFields
+            = (map.getDistanceFields() != null) ? null
+            : new DistanceFields(map);
+        if (distanceFields != null) map.setDistanceFields(distanceFields);
+        try {
+            startWorkingInternal(turn);
+        } finally {
+            if (pathCache != null) {
+                map.setPathCache(null);
+                logger.fine("Path cache for " + getPlayer().getName()
+                    + ": " + pathCache);
+            }
+            if (distanceFields != null) {
+                map.setDistanceFields(null);
+                logger.fine("Distance fields for " + getPlayer().getName()
+                    + ": " + distanceFields);
+            }
+        }
+    }
+
+    /**
+     * Performs the AI work for this turn.
+     *
+     * @param turn The current <code>Turn</code>.
+     */
+    private void startWorkingInternal(Turn turn) {
         determineStances();
         if (turn.isFirstTurn()) initializeMissions();
         buildTipMap();
@@ -19,6 +19,8 @@
 
 package net.sf.freecol.server.ai.mission;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamException;
@@ -33,6 +35,7 @@ import net.sf.freecol.common.model.IndianSettlement;
 import net.sf.freecol.common.model.Location;
 import net.sf.freecol.common.model.Map.Direction;
 import net.sf.freecol.common.model.PathNode;
+import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.Settlement;
 import net.sf.freecol.common.model.Tension;
 import net.sf.freecol.common.model.Tile;
@@ -279,6 +282,20 @@ public class UnitSeekAndDestroyMission extends Mission {
         final Tile startTile = unit.getPathStartTile();
         if (startTile == null) return null;
 
+        // Only search if there is a unit or settlement in range that
+        // it would be valid to attack.
+        Set<Player> owners = new HashSet<Player>();
+        unit.getGame().getMap().getSpatialIndex().getOwnersWithin(startTile,
+            unit.getMaximumRange(range, unit.getCarrier()), owners);
+        boolean attackable = false;
+        for (Player p : owners) {
+            if (invalidAttackReason(aiUnit, p) == null) {
+                attackable = true;
+                break;
+            }
+        }
+        if (!attackable) return null;
+
         // Can the unit legally reach a valid target from where it
         // currently is?
         return unit.search(startTile, getGoalDecider(aiUnit, false),
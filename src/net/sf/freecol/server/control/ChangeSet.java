@@ -22,8 +22,14 @@ package net.sf.freecol.server.control;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.freecol.common.model.Ability;
 import net.sf.freecol.common.model.Feature;
@@ -48,6 +54,7 @@ import net.sf.freecol.common.model.TradeRoute;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.model.WorkLocation;
 import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.common.util.WorkerPool;
 import net.sf.freecol.server.model.ServerPlayer;
 
 import org.w3c.dom.Document;
@@ -87,6 +94,16 @@ public class ChangeSet {
 
     private ArrayList<Change> changes;
 
+    /** The changes indexed for building, or null if not yet indexed. */
+    private Index index = null;
+
+    /** The threads to build the elements for several players with. */
+    private static final WorkerPool buildPool
+        = new WorkerPool("ChangeSetBuilder", false);
+
+    /** The total time spent building elements, in nanoseconds. */
+    private static final AtomicLong buildTime = new AtomicLong(0L);
+
     private static Comparator<Change> changeComparator
         = new Comparator<Change>() {
         public int compare(final Change c1, final Change c2) {
@@ -94,6 +111,97 @@ public class ChangeSet {
         }
     };
 
+    /**
+     * The changes sorted by priority, with their positions in the
+     * sorted order grouped by visibility.  Most changes are only
+     * visible to one player, so building for a player need only
+     * consider the changes that might be visible to everyone, and
+     * those restricted to that player.  Immutable once made, so it
+     * can be shared by builds running in parallel.
+     */
+    private static class Index {
+
+        /** The changes, sorted by priority. */
+        public final Change[] sorted;
+
+        /** The positions of the changes any player might see. */
+        public final int[] general;
+
+        /** The positions of the restricted changes, by player. */
+        private final HashMap<ServerPlayer, int[]> restricted
+            = new HashMap<ServerPlayer, int[]>();
+
+        private static final int[] NONE = new int[0];
+
+
+        /**
+         * Index a list of changes.
+         *
+         * @param changes The list of <code>Change</code>s to index.
+         */
+        public Index(List<Change> changes) {
+            List<Change> c = new ArrayList<Change>(changes);
+            Collections.sort(c, changeComparator);
+            sorted = c.toArray(new Change[c.size()]);
+
+            int[] all = new int[sorted.length];
+            int n = 0;
+            HashMap<ServerPlayer, List<Integer>> players
+                = new HashMap<ServerPlayer, List<Integer>>();
+            for (int i = 0; i < sorted.length; i++) {
+                final See see = sorted[i].see;
+                if (!see.isRestricted()) {
+                    all[n++] = i;
+                    continue;
+                }
+                addPosition(players, see.seeAlways, i);
+                if (see.seePerhaps != see.seeAlways) {
+                    addPosition(players, see.seePerhaps, i);
+                }
+            }
+            general = new int[n];
+            System.arraycopy(all, 0, general, 0, n);
+            for (Entry<ServerPlayer, List<Integer>> e : players.entrySet()) {
+                final List<Integer> positions = e.getValue();
+                int[] p = new int[positions.size()];
+                for (int i = 0; i < p.length; i++) p[i] = positions.get(i);
+                restricted.put(e.getKey(), p);
+            }
+        }
+
+        private static void addPosition(HashMap<ServerPlayer,
+                                        List<Integer>> players,
+                                        ServerPlayer player, int position) {
+            if (player == null) return;
+            List<Integer> positions = players.get(player);
+            if (positions == null) {
+                positions = new ArrayList<Integer>();
+                players.put(player, positions);
+            }
+            positions.add(position);
+        }
+
+        /**
+         * Gets the changes a player might see, in priority order.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to consider.
+         * @return A list of candidate <code>Change</code>s.
+         */
+        public List<Change> getCandidates(ServerPlayer serverPlayer) {
+            int[] own = restricted.get(serverPlayer);
+            if (own == null) own = NONE;
+            List<Change> result
+                = new ArrayList<Change>(general.length + own.length);
+            int i = 0, j = 0;
+            while (i < general.length || j < own.length) {
+                result.add(sorted[(j >= own.length
+                            || (i < general.length && general[i] < own[j]))
+                        ? general[i++] : own[j++]]);
+            }
+            return result;
+        }
+    }
+
     /**
      * Class to control the visibility of a change.
      */
@@ -119,12 +227,34 @@ public class ChangeSet {
          * @return True if the player satisfies the visibility test.
          */
         public boolean check(ServerPlayer player, boolean perhapsResult) {
-            return (seeNever == player) ? false
-                : (seeAlways == player) ? true
-                : (seePerhaps == player) ? perhapsResult
-                : (type == ONLY) ? false
-                : (type == ALL) ? true
-                : perhapsResult;
+            final int result = resolve(player);
+            return (result == PERHAPS) ? perhapsResult : result == ALL;
+        }
+
+        /**
+         * Resolve this visibility with respect to a player, without
+         * deciding the ambiguous case.
+         *
+         * @param player The <code>ServerPlayer</code> to consider.
+         * @return ALL if the player satisfies the visibility test,
+         *     ONLY if it does not, and PERHAPS if it is ambiguous.
+         */
+        private int resolve(ServerPlayer player) {
+            return (seeNever == player) ? ONLY
+                : (seeAlways == player) ? ALL
+                : (seePerhaps == player) ? PERHAPS
+                : type;
+        }
+
+        /**
+         * Is this visibility restricted to at most the players it
+         * names explicitly?
+         *
+         * @return True if only the always and perhaps players can
+         *     satisfy this visibility.
+         */
+        private boolean isRestricted() {
+            return type == ONLY;
         }
 
         // Use these public constructor-like functions to define the
@@ -258,7 +388,9 @@ public class ChangeSet {
          * @return True if this <code>Change</code> should be sent.
          */
         public boolean isNotifiable(ServerPlayer serverPlayer) {
-            return see.check(serverPlayer, isPerhapsNotifiable(serverPlayer));
+            final int result = see.resolve(serverPlayer);
+            return (result == See.PERHAPS) ? isPerhapsNotifiable(serverPlayer)
+                : result == See.ALL;
         }
 
         /**
@@ -306,6 +438,29 @@ public class ChangeSet {
         public abstract Element toElement(ServerPlayer serverPlayer,
                                           Document doc);
 
+        /**
+         * Add this change to a build for a particular player.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @param doc The owner <code>Document</code> to build elements in.
+         * @param elements A list of <code>Element</code>s to add to.
+         * @param diverted A list of <code>Change</code>s to be attached
+         *     to the final element.
+         * @param pending A list of <code>Change</code>s still to be
+         *     built, to which any consequences are added.
+         */
+        public void build(ServerPlayer serverPlayer, Document doc,
+                          List<Element> elements, List<Change> diverted,
+                          List<Change> pending) {
+            if (!isNotifiable(serverPlayer)) return;
+            if (convertsToElement()) {
+                elements.add(toElement(serverPlayer, doc));
+            } else {
+                diverted.add(this);
+            }
+            pending.addAll(consequences(serverPlayer));
+        }
+
         /**
          * Some changes can not be directly specialized, but need to be
          * directly attached to an element.
@@ -634,16 +789,54 @@ public class ChangeSet {
         @Override
         public List<Change> consequences(ServerPlayer serverPlayer) {
             if (seeOld(serverPlayer) && !seeNew(serverPlayer)) {
-                List<Unit> units = new ArrayList<Unit>();
-                units.add(unit);
-                List<Change> changes = new ArrayList<Change>();
-                changes.add(new RemoveChange(See.only(serverPlayer),
-                                             unit.getLocation(), units));
-                return changes;
+                return disappear(serverPlayer);
             }
             return Collections.emptyList();
         }
 
+        /**
+         * Make the change that removes the unit for a player that
+         * can no longer see it.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to notify.
+         * @return A list containing a RemoveChange for the unit.
+         */
+        private List<Change> disappear(ServerPlayer serverPlayer) {
+            List<Unit> units = new ArrayList<Unit>();
+            units.add(unit);
+            List<Change> changes = new ArrayList<Change>();
+            changes.add(new RemoveChange(See.only(serverPlayer),
+                                         unit.getLocation(), units));
+            return changes;
+        }
+
+        /**
+         * Add this move to a build, testing what the player can see
+         * of the old and new locations only once.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @param doc The owner <code>Document</code> to build elements in.
+         * @param elements A list of <code>Element</code>s to add to.
+         * @param diverted A list of <code>Change</code>s to be attached
+         *     to the final element.
+         * @param pending A list of <code>Change</code>s still to be
+         *     built, to which any consequences are added.
+         */
+        @Override
+        public void build(ServerPlayer serverPlayer, Document doc,
+                          List<Element> elements, List<Change> diverted,
+                          List<Change> pending) {
+            final int result = see.resolve(serverPlayer);
+            if (result == See.ONLY) return;
+            final boolean seeOld = seeOld(serverPlayer);
+            if (result == See.PERHAPS && !seeOld
+                && !seeNew(serverPlayer)) return;
+            elements.add(toElement(serverPlayer, doc, seeOld));
+            if (seeOld && !seeNew(serverPlayer)) {
+                pending.addAll(disappear(serverPlayer));
+            }
+        }
+
         /**
          * Specialize a MoveChange into an "animateMove" element for a
          * particular player.
@@ -653,11 +846,25 @@ public class ChangeSet {
          * @return An "animateMove" element.
          */
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
+            return toElement(serverPlayer, doc, seeOld(serverPlayer));
+        }
+
+        /**
+         * Specialize a MoveChange into an "animateMove" element.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @param doc The owner <code>Document</code>.
+         * @param seeOld True if the player can see the unit at its
+         *     old location.
+         * @return An "animateMove" element.
+         */
+        private Element toElement(ServerPlayer serverPlayer, Document doc,
+                                  boolean seeOld) {
             Element element = doc.createElement("animateMove");
             element.setAttribute("unit", unit.getId());
             element.setAttribute("oldTile", oldLocation.getTile().getId());
             element.setAttribute("newTile", newTile.getId());
-            if (!seeOld(serverPlayer)) {
+            if (!seeOld) {
                 // We can not rely on the unit that is about to move
                 // being present on the client side, and it is needed
                 // before we can run the animation, so it is attached
@@ -751,16 +958,25 @@ public class ChangeSet {
         }
 
         /**
-         * Specialize a ObjectChange to a particular player.
+         * Specialize a ObjectChange to a particular player.  Human
+         * players are only sent the parts of the object that have
+         * changed since it was last sent to them.
          *
          * @param serverPlayer The <code>ServerPlayer</code> to update.
          * @param doc The owner <code>Document</code>.
          * @return An "update" element, or null if the update should not
          *     be visible to the player.
+         * @see DeltaTracker
          */
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
             Element element = doc.createElement("update");
-            element.appendChild(fcgo.toXMLElement(doc, serverPlayer));
+            Element full = fcgo.toXMLElement(doc, serverPlayer);
+            if (serverPlayer.isAI()) {
+                element.appendChild(full);
+            } else {
+                for (Element e : serverPlayer.getDeltaTracker()
+                         .update(fcgo, full)) element.appendChild(e);
+            }
             return element;
         }
 
@@ -1104,8 +1320,7 @@ public class ChangeSet {
             // Have to tack on two copies of the settlement tile.
             // One full version, one ordinary version to restore.
             element.appendChild(tile.toXMLElement(doc));
-            element.appendChild(tile.getCachedTile(serverPlayer)
-                .toXMLElement(doc, serverPlayer));
+            element.appendChild(tile.toXMLElement(doc, serverPlayer));
             return element;
         }
 
@@ -1270,6 +1485,55 @@ public class ChangeSet {
     }
 
 
+    /**
+     * Are elements for several players built in parallel?
+     *
+     * @return True if parallel building is enabled.
+     */
+    public static boolean isParallelBuild() {
+        return buildPool.isEnabled();
+    }
+
+    /**
+     * Set whether elements for several players are built in parallel.
+     *
+     * @param parallel The new parallel build state.
+     */
+    public static void setParallelBuild(boolean parallel) {
+        buildPool.setEnabled(parallel);
+    }
+
+    /**
+     * Gets the total time spent building updates, summed over all
+     * threads.
+     *
+     * @return The build time in nanoseconds.
+     */
+    public static long getBuildTime() {
+        return buildTime.get();
+    }
+
+    /**
+     * Adds a change.
+     *
+     * @param change The <code>Change</code> to add.
+     */
+    private void addChange(Change change) {
+        changes.add(change);
+        index = null;
+    }
+
+    /**
+     * Gets the index of the changes, making it if needed.
+     *
+     * @return The current <code>Index</code>.
+     */
+    private synchronized Index getIndex() {
+        if (index == null) index = new Index(changes);
+        return index;
+    }
+
+
     // Helper routines that should be used to construct a change set.
 
     /**
@@ -1282,7 +1546,10 @@ public class ChangeSet {
         Iterator<Change> ci = changes.iterator();
         while (ci.hasNext()) {
             Change c = ci.next();
-            if (c.matches(fcgo)) ci.remove();
+            if (c.matches(fcgo)) {
+                ci.remove();
+                index = null;
+            }
         }
     }
 
@@ -1295,7 +1562,7 @@ public class ChangeSet {
      */
     public ChangeSet add(See see, FreeColGameObject... objects) {
         for (FreeColGameObject o : objects) {
-            changes.add(new ObjectChange(see, o));
+            addChange(new ObjectChange(see, o));
         }
         return this;
     }
@@ -1309,7 +1576,7 @@ public class ChangeSet {
      */
     public ChangeSet add(See see, List<? extends FreeColGameObject> objects) {
         for (FreeColGameObject o : objects) {
-            changes.add(new ObjectChange(see, o));
+            addChange(new ObjectChange(see, o));
         }
         return this;
     }
@@ -1323,7 +1590,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet add(See see, ChangePriority cp, DOMMessage message) {
-        changes.add(new MessageChange(see, cp, message));
+        addChange(new MessageChange(see, cp, message));
         return this;
     }
 
@@ -1341,7 +1608,7 @@ public class ChangeSet {
     public ChangeSet addAttack(See see, Unit attacker, Unit defender,
                                Tile attackerTile, Tile defenderTile,
                                boolean success) {
-        changes.add(new AttackChange(see, attacker, defender,
+        addChange(new AttackChange(see, attacker, defender,
                                      attackerTile, defenderTile, success));
         return this;
     }
@@ -1355,7 +1622,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet addAttribute(See see, String key, String value) {
-        changes.add(new AttributeChange(see, key, value));
+        addChange(new AttributeChange(see, key, value));
         return this;
     }
 
@@ -1384,7 +1651,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet addDispose(See see, Location loc, FreeColGameObject obj) {
-        changes.add(new RemoveChange(see, loc, obj.disposeList()));//-vis
+        addChange(new RemoveChange(see, loc, obj.disposeList()));//-vis
         return this;
     }
 
@@ -1401,8 +1668,8 @@ public class ChangeSet {
                                   FreeColGameObject fcgo) {
         List<FreeColGameObject> objects = new ArrayList<FreeColGameObject>();
         objects.add(fcgo);
-        changes.add(new RemoveChange(See.perhaps().except(owner), tile, objects));
-        changes.add(new ObjectChange(See.perhaps().except(owner), tile));
+        addChange(new RemoveChange(See.perhaps().except(owner), tile, objects));
+        addChange(new ObjectChange(See.perhaps().except(owner), tile));
         return this;
     }
 
@@ -1416,7 +1683,7 @@ public class ChangeSet {
      */
     public ChangeSet addFather(ServerPlayer serverPlayer,
                                FoundingFather father) {
-        changes.add(new OwnedChange(See.only(serverPlayer), father));
+        addChange(new OwnedChange(See.only(serverPlayer), father));
         serverPlayer.addFather(father);
         return this;
     }
@@ -1432,7 +1699,7 @@ public class ChangeSet {
      */
     public ChangeSet addFeatureChange(ServerPlayer serverPlayer, FreeColGameObject object,
                                       Ability ability, boolean add) {
-        changes.add(new FeatureChange(See.only(serverPlayer), object, ability, add));
+        addChange(new FeatureChange(See.only(serverPlayer), object, ability, add));
         if (add) {
             object.addAbility(ability);
         } else {
@@ -1452,7 +1719,7 @@ public class ChangeSet {
      */
     public ChangeSet addFeatureChange(ServerPlayer serverPlayer, FreeColGameObject object,
                                       Modifier modifier, boolean add) {
-        changes.add(new FeatureChange(See.only(serverPlayer), object, modifier, add));
+        addChange(new FeatureChange(See.only(serverPlayer), object, modifier, add));
         if (add) {
             object.addModifier(modifier);
         } else {
@@ -1470,7 +1737,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet addGlobalHistory(Game game, HistoryEvent history) {
-        changes.add(new OwnedChange(See.all(), history));
+        addChange(new OwnedChange(See.all(), history));
         for (Player p : game.getLiveEuropeanPlayers()) {
             p.addHistory(history);
         }
@@ -1487,7 +1754,7 @@ public class ChangeSet {
      */
     public ChangeSet addHistory(ServerPlayer serverPlayer,
                                 HistoryEvent history) {
-        changes.add(new OwnedChange(See.only(serverPlayer), history));
+        addChange(new OwnedChange(See.only(serverPlayer), history));
         serverPlayer.addHistory(history);
         return this;
     }
@@ -1500,7 +1767,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet addMessage(See see, ModelMessage message) {
-        changes.add(new OwnedChange(see, message));
+        addChange(new OwnedChange(see, message));
         return this;
     }
 
@@ -1514,7 +1781,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet addMove(See see, Unit unit, Location loc, Tile tile) {
-        changes.add(new MoveChange(see, unit, loc, tile));
+        addChange(new MoveChange(see, unit, loc, tile));
         return this;
     }
 
@@ -1529,7 +1796,7 @@ public class ChangeSet {
      */
     public ChangeSet addPartial(See see, FreeColGameObject fcgo,
                                 String... fields) {
-        changes.add(new PartialObjectChange(see, fcgo, fields));
+        addChange(new PartialObjectChange(see, fcgo, fields));
         return this;
     }
 
@@ -1546,7 +1813,7 @@ public class ChangeSet {
                                String name) {
         Game game = serverPlayer.getGame();
         HistoryEvent h = region.discover(serverPlayer, game.getTurn(), name);
-        changes.add(new ObjectChange(See.all(), region));
+        addChange(new ObjectChange(See.all(), region));
         addGlobalHistory(game, h);
         return this;
     }
@@ -1564,7 +1831,7 @@ public class ChangeSet {
                              GoodsType type, int price) {
         Game game = settlement.getGame();
         LastSale sale = new LastSale(settlement, type, game.getTurn(), price);
-        changes.add(new OwnedChange(See.only(serverPlayer), sale));
+        addChange(new OwnedChange(See.only(serverPlayer), sale));
         serverPlayer.addLastSale(sale);
         return this;
     }
@@ -1582,7 +1849,7 @@ public class ChangeSet {
         List<FreeColGameObject> fcgos = new ArrayList<FreeColGameObject>();
         for (FreeColGameObject fcgo : objects) {
             fcgos.clear(); fcgos.add(fcgo);
-            changes.add(new RemoveChange(see, loc, fcgos));
+            addChange(new RemoveChange(see, loc, fcgos));
         }
         return this;
     }
@@ -1595,7 +1862,7 @@ public class ChangeSet {
      * @return The updated <code>ChangeSet</code>.
      */
     public ChangeSet addSpy(See see, Settlement settlement) {
-        changes.add(new SpyChange(see, settlement));
+        addChange(new SpyChange(see, settlement));
         return this;
     }
 
@@ -1610,7 +1877,7 @@ public class ChangeSet {
      */
     public ChangeSet addStance(See see, Player first, Stance stance,
                                Player second) {
-        changes.add(new StanceChange(see, first, stance, second));
+        addChange(new StanceChange(see, first, stance, second));
         return this;
     }
 
@@ -1624,7 +1891,7 @@ public class ChangeSet {
      */
     public ChangeSet addTradeRoute(ServerPlayer serverPlayer,
                                    TradeRoute tradeRoute) {
-        changes.add(new OwnedChange(See.only(serverPlayer), tradeRoute));
+        addChange(new OwnedChange(See.only(serverPlayer), tradeRoute));
         return this;
     }
 
@@ -1639,7 +1906,7 @@ public class ChangeSet {
      */
     public ChangeSet addTrivial(See see, String name, ChangePriority cp,
                                 String... attributes) {
-        changes.add(new TrivialChange(see, name, cp.getPriority(), attributes));
+        addChange(new TrivialChange(see, name, cp.getPriority(), attributes));
         return this;
     }
 
@@ -1709,19 +1976,16 @@ public class ChangeSet {
      */
     private static List<Element> collapseElementList(List<Element> elements) {
         List<Element> results = new ArrayList<Element>();
-        if (!elements.isEmpty()) {
-            Element head = elements.remove(0);
-            while (!elements.isEmpty()) {
-                Element e = elements.remove(0);
-                if (collapseOK(head, e)) {
-                    collapseElements(head, e);
-                } else {
-                    results.add(head);
-                    head = e;
-                }
+        Element head = null;
+        for (Element e : elements) {
+            if (head != null && collapseOK(head, e)) {
+                collapseElements(head, e);
+            } else {
+                if (head != null) results.add(head);
+                head = e;
             }
-            results.add(head);
         }
+        if (head != null) results.add(head);
         return results;
     }
 
@@ -1737,27 +2001,42 @@ public class ChangeSet {
      *         consider, or null if there is nothing to report.
      */
     public Element build(ServerPlayer serverPlayer) {
-        List<Change> c = new ArrayList<Change>(changes);
+        final long start = System.nanoTime();
+        try {
+            return buildElement(serverPlayer);
+        } finally {
+            buildTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Build the update for a player.
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> to send the
+     *            update to.
+     * @return The update, or null if there is nothing to report.
+     * @see #build
+     */
+    private Element buildElement(ServerPlayer serverPlayer) {
+        List<Change> c = getIndex().getCandidates(serverPlayer);
         List<Element> elements = new ArrayList<Element>();
         List<Change> diverted = new ArrayList<Change>();
         Document doc = DOMMessage.createNewDocument();
 
         // For all sorted changes, if it is notifiable to the target
         // player then convert it to an Element, or divert for later
-        // attachment.  Then add all consequence changes to the list.
-        Collections.sort(c, changeComparator);
-        while (!c.isEmpty()) {
-            Change change = c.remove(0);
-            if (change.isNotifiable(serverPlayer)) {
-                if (change.convertsToElement()) {
-                    elements.add(change.toElement(serverPlayer, doc));
-                } else {
-                    diverted.add(change);
-                }
-                c.addAll(change.consequences(serverPlayer));
-            }
+        // attachment.  Consequence changes are added to the end of
+        // the list.
+        for (int i = 0; i < c.size(); i++) {
+            c.get(i).build(serverPlayer, doc, elements, diverted, c);
         }
         elements = collapseElementList(elements);
+        // Drop updates left empty because nothing changed.
+        for (Iterator<Element> it = elements.iterator(); it.hasNext();) {
+            Element e = it.next();
+            if ("update".equals(e.getTagName()) && !e.hasChildNodes()
+                && !e.hasAttributes()) it.remove();
+        }
 
         // Decide what to return.  If there are several parts with
         // children then return multiple, if there is one viable part,
@@ -1766,7 +2045,12 @@ public class ChangeSet {
         Element result;
         switch (elements.size()) {
         case 0:
-            if (diverted.isEmpty()) return null;
+            if (diverted.isEmpty()) {
+                if (!serverPlayer.isAI()) {
+                    serverPlayer.getDeltaTracker().sent(null);
+                }
+                return null;
+            }
             result = doc.createElement("update");
             break;
         case 1:
@@ -1779,9 +2063,50 @@ public class ChangeSet {
         }
         doc.appendChild(result);
         for (Change change : diverted) change.attachToElement(result);
+        if (!serverPlayer.isAI()) serverPlayer.getDeltaTracker().sent(result);
         return result;
     }
 
+    /**
+     * Build the updates for several players, in parallel if enabled.
+     *
+     * @param serverPlayers The <code>ServerPlayer</code>s to build for.
+     * @return A list of the elements built by {@link #build} for
+     *     each player, in the same order as the players.
+     */
+    public List<Element> buildAll(List<ServerPlayer> serverPlayers) {
+        List<Element> results = new ArrayList<Element>();
+        if (serverPlayers.size() < 2 || !isParallelBuild()) {
+            for (ServerPlayer sp : serverPlayers) results.add(build(sp));
+            return results;
+        }
+
+        getIndex(); // Make the index before starting the threads
+        List<Future<Element>> futures = new ArrayList<Future<Element>>();
+        for (final ServerPlayer sp : serverPlayers) {
+            futures.add(buildPool.getExecutor().submit(new Callable<Element>() {
+                    public Element call() {
+                        return build(sp);
+                    }
+                }));
+        }
+        for (Future<Element> f : futures) {
+            try {
+                results.add(f.get());
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ie);
+            }
+        }
+        return results;
+    }
+
     /**
      * {@inheritDoc}
      */
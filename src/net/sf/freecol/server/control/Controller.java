@@ -22,6 +22,7 @@ package net.sf.freecol.server.control;
 import java.util.logging.Logger;
 
 import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.SavegameWriter;
 import net.sf.freecol.server.networking.Server;
 
 
@@ -45,9 +46,11 @@ public abstract class Controller extends FreeColServerHolder {
 
 
     /**
-     * Shut down the server (which sends a message to each client).
+     * Shut down the server (which sends a message to each client),
+     * once any saves still being written have finished.
      */
     public void shutdown() {
+        SavegameWriter.waitForPending();
         Server server = getFreeColServer().getServer();
         if (server != null) {
             server.shutdown();
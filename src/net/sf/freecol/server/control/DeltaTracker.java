@@ -0,0 +1,312 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server.control;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.freecol.common.model.FreeColGameObject;
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Game;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+
+/**
+ * Remembers what the objects sent to a client in full object updates
+ * looked like, so that later updates of the same objects need only
+ * send the parts that changed.
+ *
+ * An object element is divided into its parts, which are the child
+ * elements that are themselves game objects, such as the buildings
+ * and goods container of a colony, and the rest.  A digest of each
+ * is kept.  If the rest of an object is unchanged only the changed
+ * parts are sent, and the client updates them in place.  Otherwise,
+ * or if the object has not been sent before, the whole object is
+ * sent as before.
+ *
+ * The client may also learn about an object by other means, for
+ * example within a tile update, and then what it has might no longer
+ * match the digest.  So any object that appears in a message other
+ * than as the result of {@link #update} is forgotten, as are all the
+ * objects at the start of a new turn or on a new connection.  Objects
+ * are recorded when a message is made, before it is sent, so all the
+ * objects are also forgotten when a message to the client fails to
+ * send.
+ */
+public final class DeltaTracker {
+
+    /** A digest of an object element. */
+    private static final class Digest {
+
+        /** The hash of the element without the content of its parts. */
+        public final long self;
+
+        /** The hash of the whole element. */
+        public long total;
+
+        /** The identifiers of the parts. */
+        public final List<String> partIds = new ArrayList<String>();
+
+        /** The digests of the parts. */
+        public final List<Digest> parts = new ArrayList<Digest>();
+
+        /** The element digested, only held while making an update. */
+        public Element element;
+
+
+        public Digest(Element element, Game game) {
+            this.element = element;
+            long h = hash(OFFSET, element.getTagName());
+            h = hashAttributes(h, element);
+            for (Node n = element.getFirstChild(); n != null;
+                 n = n.getNextSibling()) {
+                if (!(n instanceof Element)) {
+                    h = hash(h, n.getNodeValue());
+                    continue;
+                }
+                Element e = (Element)n;
+                String id = e.getAttribute(FreeColObject.ID_ATTRIBUTE_TAG);
+                if (id.length() > 0
+                    && game.getFreeColGameObject(id) != null) {
+                    h = hash(hash(h, "#"), id);
+                    partIds.add(id);
+                    parts.add(new Digest(e, game));
+                } else {
+                    h = hashElement(h, e);
+                }
+            }
+            self = h;
+            total = h;
+            for (Digest d : parts) total = hash(total, d.total);
+        }
+
+        /**
+         * Drop the references to the elements.
+         */
+        public void forget() {
+            element = null;
+            for (Digest d : parts) d.forget();
+        }
+    }
+
+    // Hashing, 64 bit FNV-1a over the characters.
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private static long hash(long h, String s) {
+        if (s == null) return hash(h, 0);
+        for (int i = 0; i < s.length(); i++) h = hash(h, s.charAt(i));
+        return hash(h, 0);
+    }
+
+    private static long hash(long h, long value) {
+        return (h ^ value) * PRIME;
+    }
+
+    private static long hashAttributes(long h, Element element) {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node a = attributes.item(i);
+            h = hash(hash(h, a.getNodeName()), a.getNodeValue());
+        }
+        return hash(h, "/");
+    }
+
+    private static long hashElement(long h, Element element) {
+        h = hashAttributes(hash(h, element.getTagName()), element);
+        for (Node n = element.getFirstChild(); n != null;
+             n = n.getNextSibling()) {
+            h = (n instanceof Element) ? hashElement(h, (Element)n)
+                : hash(h, n.getNodeValue());
+        }
+        return hash(h, "/");
+    }
+
+    // Statistics, over all players.
+    private static final AtomicLong fullUpdates = new AtomicLong(0L);
+    private static final AtomicLong partUpdates = new AtomicLong(0L);
+    private static final AtomicLong partsSent = new AtomicLong(0L);
+    private static final AtomicLong unchangedUpdates = new AtomicLong(0L);
+
+    /** The digests of the objects sent, by identifier. */
+    private final HashMap<String, Digest> digests
+        = new HashMap<String, Digest>();
+
+    /** The identifier of the object containing each part sent. */
+    private final HashMap<String, String> containers
+        = new HashMap<String, String>();
+
+    /** The elements made by update since the last call to sent. */
+    private final IdentityHashMap<Element, Boolean> made
+        = new IdentityHashMap<Element, Boolean>();
+
+    /** The turn the digests belong to. */
+    private int turn = -1;
+
+
+    /**
+     * Makes the update of an object.
+     *
+     * @param fcgo The <code>FreeColGameObject</code> to update.
+     * @param element The full <code>Element</code> for the object.
+     * @return A list of the elements to send, which is either the
+     *     full element, the elements of the changed parts, or empty
+     *     if nothing has changed.
+     */
+    public synchronized List<Element> update(FreeColGameObject fcgo,
+                                             Element element) {
+        final Game game = fcgo.getGame();
+        final int now = game.getTurn().getNumber();
+        if (turn != now) {
+            clear();
+            turn = now;
+        }
+
+        final String id = fcgo.getId();
+        Digest old = digests.get(id);
+        Digest digest = new Digest(element, game);
+        List<Element> result = new ArrayList<Element>();
+        if (old == null || old.self != digest.self) {
+            result.add(element);
+            fullUpdates.incrementAndGet();
+        } else {
+            addChangedParts(old, digest, result);
+            if (result.isEmpty()) {
+                unchangedUpdates.incrementAndGet();
+            } else {
+                partUpdates.incrementAndGet();
+                partsSent.addAndGet(result.size());
+            }
+        }
+        // An object may only be recorded in one digest, so forget
+        // any others that include this one or its parts.
+        forgetDigestOf(id);
+        forgetDigestsOfParts(digest);
+        digest.forget();
+        digests.put(id, digest);
+        addContainers(id, digest);
+        for (Element e : result) made.put(e, Boolean.TRUE);
+        return result;
+    }
+
+    /**
+     * Adds the elements of the parts that have changed.
+     *
+     * @param old The old <code>Digest</code>.
+     * @param digest The new <code>Digest</code>, with the same
+     *     <code>self</code> hash.
+     * @param result A list of <code>Element</code>s to add to.
+     */
+    private static void addChangedParts(Digest old, Digest digest,
+                                        List<Element> result) {
+        for (int i = 0; i < digest.parts.size(); i++) {
+            Digest o = old.parts.get(i), d = digest.parts.get(i);
+            if (o.total == d.total) continue;
+            if (o.self == d.self) {
+                addChangedParts(o, d, result);
+            } else {
+                result.add(d.element);
+            }
+        }
+    }
+
+    private void addContainers(String id, Digest digest) {
+        for (int i = 0; i < digest.parts.size(); i++) {
+            containers.put(digest.partIds.get(i), id);
+            addContainers(id, digest.parts.get(i));
+        }
+    }
+
+    /**
+     * Forget the digest an object is recorded in.
+     *
+     * @param id The identifier of the object.
+     */
+    private void forgetDigestOf(String id) {
+        String container = containers.get(id);
+        Digest digest = digests.remove((container == null) ? id : container);
+        if (digest != null) removeContainers(digest);
+    }
+
+    private void forgetDigestsOfParts(Digest digest) {
+        for (int i = 0; i < digest.parts.size(); i++) {
+            forgetDigestOf(digest.partIds.get(i));
+            forgetDigestsOfParts(digest.parts.get(i));
+        }
+    }
+
+    private void removeContainers(Digest digest) {
+        for (int i = 0; i < digest.parts.size(); i++) {
+            containers.remove(digest.partIds.get(i));
+            removeContainers(digest.parts.get(i));
+        }
+    }
+
+    /**
+     * Notes that a message has been made for the client.  The objects
+     * in it that were not made by {@link #update} are forgotten.
+     *
+     * @param message The message <code>Element</code>, or null if
+     *     there is nothing to send.
+     */
+    public synchronized void sent(Element message) {
+        if (message != null && !digests.isEmpty()) check(message);
+        made.clear();
+    }
+
+    private void check(Element element) {
+        if (made.containsKey(element)) return;
+        String id = element.getAttribute(FreeColObject.ID_ATTRIBUTE_TAG);
+        if (id.length() > 0) forgetDigestOf(id);
+        for (Node n = element.getFirstChild(); n != null;
+             n = n.getNextSibling()) {
+            if (n instanceof Element) check((Element)n);
+        }
+    }
+
+    /**
+     * Forget all the objects.
+     */
+    public synchronized void clear() {
+        digests.clear();
+        containers.clear();
+        made.clear();
+    }
+
+    /**
+     * Gets the statistics of the object updates.
+     *
+     * @return A <code>Map</code> of the statistics.
+     */
+    public static java.util.Map<String, String> getStatistics() {
+        java.util.Map<String, String> stats = new HashMap<String, String>();
+        stats.put("updatesFull", Long.toString(fullUpdates.get()));
+        stats.put("updatesPartial", Long.toString(partUpdates.get()));
+        stats.put("updatesPartsSent", Long.toString(partsSent.get()));
+        stats.put("updatesUnchanged", Long.toString(unchangedUpdates.get()));
+        return stats;
+    }
+}
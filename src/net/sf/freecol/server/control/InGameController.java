@@ -35,6 +35,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -107,6 +108,7 @@ import net.sf.freecol.common.networking.DiplomacyMessage;
 import net.sf.freecol.common.networking.GoodsForSaleMessage;
 import net.sf.freecol.common.networking.IndianDemandMessage;
 import net.sf.freecol.common.networking.LootCargoMessage;
+import net.sf.freecol.common.networking.MessageExecutor;
 import net.sf.freecol.common.networking.MonarchActionMessage;
 import net.sf.freecol.common.networking.NetworkRequestHandler;
 import net.sf.freecol.common.networking.RearrangeColonyMessage;
@@ -154,6 +156,12 @@ public final class InGameController extends Controller {
      * turn in 1780.
      */
     public static final int SCORE_INDEPENDENCE_YEAR = 1780;
+    /**
+     * The property fired on the game when a new turn has been
+     * processed, with the old and new turn numbers.
+     */
+    public static final String NEW_TURN = "newTurn";
+
     public static final Turn.Season SCORE_INDEPENDENCE_SEASON
         = Turn.Season.SPRING;
     
@@ -165,6 +173,16 @@ public final class InGameController extends Controller {
     private MonarchAction debugMonarchAction = null;
     private ServerPlayer debugMonarchPlayer = null;
 
+    // The number of turns left to simulate without human players.
+    private volatile int simulationTurns = 0;
+
+    // Is a simulation running?  Guarded by simulationLock.
+    private boolean simulating = false;
+    private final Object simulationLock = new Object();
+
+    // The time spent processing new turns, in nanoseconds.
+    private final AtomicLong newTurnTime = new AtomicLong(0L);
+
 
     /**
      * The constructor to use.
@@ -199,6 +217,69 @@ public final class InGameController extends Controller {
         }
     }
 
+    /**
+     * Starts a game without human players, which runs for a given
+     * number of new turns before ending.  The game must have been
+     * started with the pre-game controller.
+     *
+     * @param turns The number of new turns to run.
+     */
+    public void startSimulation(int turns) {
+        if (turns <= 0) throw new IllegalArgumentException("Bad turns: "
+            + turns);
+        synchronized (simulationLock) {
+            simulationTurns = turns;
+            simulating = true;
+        }
+        ServerGame game = getGame();
+        ServerPlayer player = (ServerPlayer)game.getCurrentPlayer();
+        if (player == null || player.isDead()) {
+            player = (ServerPlayer)game.getFirstPlayer();
+            if (player == null) {
+                throw new IllegalStateException("No players to simulate.");
+            }
+            game.setCurrentPlayer(player);
+        }
+        ChangeSet cs = new ChangeSet();
+        cs.addTrivial(See.all(), "setCurrentPlayer",
+                      ChangePriority.CHANGE_LATE,
+                      "player", player.getId());
+        sendToAll(cs);
+    }
+
+    /**
+     * Waits for a simulation started with {@link #startSimulation}
+     * to end, either after its turns have run or because a player
+     * has won.
+     *
+     * @exception InterruptedException if interrupted while waiting.
+     */
+    public void waitForSimulation() throws InterruptedException {
+        synchronized (simulationLock) {
+            while (simulating) simulationLock.wait();
+        }
+    }
+
+    /**
+     * Ends any simulation, as the game has ended.
+     */
+    private void endSimulation() {
+        synchronized (simulationLock) {
+            simulationTurns = 0;
+            simulating = false;
+            simulationLock.notifyAll();
+        }
+    }
+
+    /**
+     * Gets the time spent processing new turns.
+     *
+     * @return The new turn time in nanoseconds.
+     */
+    public long getNewTurnTime() {
+        return newTurnTime.get();
+    }
+
     /**
      * Sets a monarch action to debug/test.
      *
@@ -441,6 +522,7 @@ public final class InGameController extends Controller {
                 }
             });
         DOMMessage reply;
+        MessageExecutor.release(); // Do not hold up other messages
         try {
             boolean single = getFreeColServer().isSinglePlayer();
             reply = future.get(FreeCol.getTimeout(single), TimeUnit.SECONDS);
@@ -514,7 +596,10 @@ public final class InGameController extends Controller {
      * @param cs The <code>ChangeSet</code> encapsulating the update.
      */
     private void sendToList(List<ServerPlayer> serverPlayers, ChangeSet cs) {
-        for (ServerPlayer s : serverPlayers) sendElement(s, cs);
+        List<Element> elements = cs.buildAll(serverPlayers);
+        for (int i = 0; i < serverPlayers.size(); i++) {
+            askElement(serverPlayers.get(i), elements.get(i));
+        }
     }
 
     /**
@@ -612,170 +697,192 @@ public final class InGameController extends Controller {
                 + ((player == null) ? "noone" : player.getName()) + "'s!");
         }
 
-        for (;;) {
-            logger.finest("Ending turn for " + player.getName());
-            player.clearModelMessages();
-
-            // Has anyone won?
-            // Do not end single player games where an AI has won,
-            // that would stop revenge mode.
-            Player winner = game.checkForWinner();
-            if (winner != null
-                && !(freeColServer.isSinglePlayer() && winner.isAI())) {
-                ChangeSet cs = new ChangeSet();
-                cs.addTrivial(See.all(), "gameEnded",
-                              ChangePriority.CHANGE_NORMAL,
-                              "winner", winner.getId());
-                sendToOthers(serverPlayer, cs);
-                return cs.build(serverPlayer);
-            }
+        boolean playing = false;
+        try {
+            for (;;) {
+                logger.finest("Ending turn for " + player.getName());
+                player.clearModelMessages();
+
+                // Has anyone won?
+                // Do not end single player games where an AI has won,
+                // that would stop revenge mode.
+                Player winner = game.checkForWinner();
+                if (winner != null
+                    && !(freeColServer.isSinglePlayer() && winner.isAI())) {
+                    ChangeSet cs = new ChangeSet();
+                    cs.addTrivial(See.all(), "gameEnded",
+                                  ChangePriority.CHANGE_NORMAL,
+                                  "winner", winner.getId());
+                    sendToOthers(serverPlayer, cs);
+                    return cs.build(serverPlayer);
+                }
 
-            // Are there humans left?
-            // TODO: see if this can be relaxed so we can run large
-            // AI-only simulations.
-            boolean human = false;
-            for (Player p : game.getPlayers()) {
-                if (!p.isDead() && !p.isAI()
-                    && ((ServerPlayer) p).isConnected()) {
-                    human = true;
-                    break;
+                // Are there humans left?  AI-only games end unless they
+                // are being simulated.
+                boolean human = false;
+                for (Player p : game.getPlayers()) {
+                    if (!p.isDead() && !p.isAI()
+                        && ((ServerPlayer) p).isConnected()) {
+                        human = true;
+                        break;
+                    }
                 }
-            }
-            if (!human) {
-                if (debugOnlyAITurns > 0) { // Complete debug runs
-                    FreeColDebugger.signalEndDebugRun();
+                if (!human && simulationTurns <= 0) {
+                    if (debugOnlyAITurns > 0) { // Complete debug runs
+                        FreeColDebugger.signalEndDebugRun();
+                    }
+                    game.setCurrentPlayer(null);
+
+                    ChangeSet cs = new ChangeSet();
+                    cs.addTrivial(See.all(), "gameEnded",
+                                  ChangePriority.CHANGE_NORMAL);
+                    sendToOthers(serverPlayer, cs);
+                    return cs.build(serverPlayer);
                 }
-                game.setCurrentPlayer(null);
 
+                // Check for new turn
                 ChangeSet cs = new ChangeSet();
-                cs.addTrivial(See.all(), "gameEnded",
-                              ChangePriority.CHANGE_NORMAL);
-                sendToOthers(serverPlayer, cs);
-                return cs.build(serverPlayer);
-            }
-
-            // Check for new turn
-            ChangeSet cs = new ChangeSet();
-            if (game.isNextPlayerInNewTurn()) {
-                game.csNewTurn(random, cs);
-                if (debugOnlyAITurns > 0) {
-                    if (--debugOnlyAITurns <= 0) {
-                        // If this was a debug run, complete it.  This will
-                        // signal the client to save and quit at the next
-                        // suitable opportunity.
-                        FreeColDebugger.signalEndDebugRun();
+                if (game.isNextPlayerInNewTurn()) {
+                    final int oldTurn = game.getTurn().getNumber();
+                    final long start = System.nanoTime();
+                    game.csNewTurn(random, cs);
+                    newTurnTime.addAndGet(System.nanoTime() - start);
+                    game.firePropertyChange(NEW_TURN, oldTurn,
+                                            game.getTurn().getNumber());
+                    if (simulationTurns > 0 && --simulationTurns <= 0) {
+                        game.setCurrentPlayer(null);
+                        cs.addTrivial(See.all(), "gameEnded",
+                                      ChangePriority.CHANGE_NORMAL);
+                        sendToOthers(serverPlayer, cs);
+                        return cs.build(serverPlayer);
+                    }
+                    // Let the AIs plan their turns while nothing is moving.
+                    if (freeColServer.getAIMain() != null) {
+                        freeColServer.getAIMain().planTurn();
+                    }
+                    if (debugOnlyAITurns > 0) {
+                        if (--debugOnlyAITurns <= 0) {
+                            // If this was a debug run, complete it.  This will
+                            // signal the client to save and quit at the next
+                            // suitable opportunity.
+                            FreeColDebugger.signalEndDebugRun();
+                        }
                     }
                 }
-            }
 
-            if ((player = (ServerPlayer) game.getNextPlayer()) == null) {
-                // "can not happen"
-                return DOMMessage.clientError("Can not get next player");
-            }
-            // Remove dead players and retry
-            switch (player.checkForDeath()) {
-            case ServerPlayer.IS_DEAD:
-                player.csWithdraw(cs);
-                sendToAll(cs);
-                logger.info(player.getNation() + " is dead.");
-                continue;
-            case ServerPlayer.IS_ALIVE:
-                if (player.isREF() && player.checkForREFDefeat()) {
-                    for (Player p : player.getRebels()) {
-                        csGiveIndependence(player, (ServerPlayer) p, cs);
-                    }
+                if ((player = (ServerPlayer) game.getNextPlayer()) == null) {
+                    // "can not happen"
+                    return DOMMessage.clientError("Can not get next player");
+                }
+                // Remove dead players and retry
+                switch (player.checkForDeath()) {
+                case ServerPlayer.IS_DEAD:
                     player.csWithdraw(cs);
                     sendToAll(cs);
-                    logger.info(player.getNation() + " is defeated.");
+                    logger.info(player.getNation() + " is dead.");
                     continue;
+                case ServerPlayer.IS_ALIVE:
+                    if (player.isREF() && player.checkForREFDefeat()) {
+                        for (Player p : player.getRebels()) {
+                            csGiveIndependence(player, (ServerPlayer) p, cs);
+                        }
+                        player.csWithdraw(cs);
+                        sendToAll(cs);
+                        logger.info(player.getNation() + " is defeated.");
+                        continue;
+                    }
+                    break;
+                default: // Need to autorecruit a unit to keep alive.
+                    ((ServerPlayer)player).csEmigrate(0, MigrationType.SURVIVAL,
+                                                      random, cs);
+                    break;
                 }
-                break;
-            default: // Need to autorecruit a unit to keep alive.
-                ((ServerPlayer)player).csEmigrate(0, MigrationType.SURVIVAL,
-                                                  random, cs);
-                break;
-            }
 
-            // Do "new turn"-like actions that need to wait until right
-            // before the player is about to move.
-            game.setCurrentPlayer(player);
-            if (player.isREF() && player.getEntryLocation() == null) {
-                // Initialize this newly created REF, determining its
-                // entry location.
-                // If the teleportREF option is enabled, teleport it in.
-                REFAIPlayer refAIPlayer = (REFAIPlayer) freeColServer
-                    .getAIPlayer(player);
-                boolean teleport = getGame().getSpecification()
-                    .getBoolean(GameOptions.TELEPORT_REF);
-                Tile entry = refAIPlayer.initialize(teleport);
-                if (entry == null) {
-                    for (Player p : player.getRebels()) {
-                        entry = p.getEntryLocation().getTile();
-                        break;
+                // Do "new turn"-like actions that need to wait until right
+                // before the player is about to move.
+                game.setCurrentPlayer(player);
+                if (player.isREF() && player.getEntryLocation() == null) {
+                    // Initialize this newly created REF, determining its
+                    // entry location.
+                    // If the teleportREF option is enabled, teleport it in.
+                    REFAIPlayer refAIPlayer = (REFAIPlayer) freeColServer
+                        .getAIPlayer(player);
+                    boolean teleport = getGame().getSpecification()
+                        .getBoolean(GameOptions.TELEPORT_REF);
+                    Tile entry = refAIPlayer.initialize(teleport);
+                    if (entry == null) {
+                        for (Player p : player.getRebels()) {
+                            entry = p.getEntryLocation().getTile();
+                            break;
+                        }
                     }
-                }
-                player.setEntryLocation(entry);
-                logger.fine(player.getName() + " will appear at " + entry);
-                if (teleport) {
-                    Unit explorer = null;
-                    for (Unit u : player.getUnits()) {
-                        if (u.isNaval()) {
-                            explorer = u;
-                            u.setLocation(entry);//-vis(player)
-                            u.setWorkLeft(-1);
-                            u.setState(Unit.UnitState.ACTIVE);
+                    player.setEntryLocation(entry);
+                    logger.fine(player.getName() + " will appear at " + entry);
+                    if (teleport) {
+                        Unit explorer = null;
+                        for (Unit u : player.getUnits()) {
+                            if (u.isNaval()) {
+                                explorer = u;
+                                u.setLocation(entry);//-vis(player)
+                                u.setWorkLeft(-1);
+                                u.setState(Unit.UnitState.ACTIVE);
+                            }
                         }
+                        if (explorer != null) cs.add(See.only(player),
+                            ((ServerPlayer)player).exploreForUnit(explorer));
+                        player.invalidateCanSeeTiles();//+vis(player)
+                        cs.add(See.perhaps(), entry);
                     }
-                    if (explorer != null) cs.add(See.only(player),
-                        ((ServerPlayer)player).exploreForUnit(explorer));
-                    player.invalidateCanSeeTiles();//+vis(player)
-                    cs.add(See.perhaps(), entry);
-                }
-            }
-            player.csStartTurn(random, cs);
-
-            cs.addTrivial(See.all(), "setCurrentPlayer",
-                          ChangePriority.CHANGE_LATE,
-                          "player", player.getId());
-            if (player.getPlayerType() == PlayerType.COLONIAL) {
-                Monarch monarch = player.getMonarch();
-                MonarchAction action = null;
-                if (debugMonarchAction != null
-                    && player == debugMonarchPlayer) {
-                    action = debugMonarchAction;
-                    debugMonarchAction = null;
-                    debugMonarchPlayer = null;
-                    logger.finest("Debug monarch action: " + action);
-                } else {
-                    action = RandomChoice.getWeightedRandom(logger,
-                            "Choose monarch action",
-                        monarch.getActionChoices(), random);
                 }
-                if (action != null) {
-                    if (monarch.actionIsValid(action)) {
-                        logger.finest("Monarch action: " + action);
-                        csMonarchAction(player, action, cs);
+                player.csStartTurn(random, cs);
+
+                cs.addTrivial(See.all(), "setCurrentPlayer",
+                              ChangePriority.CHANGE_LATE,
+                              "player", player.getId());
+                if (player.getPlayerType() == PlayerType.COLONIAL) {
+                    Monarch monarch = player.getMonarch();
+                    MonarchAction action = null;
+                    if (debugMonarchAction != null
+                        && player == debugMonarchPlayer) {
+                        action = debugMonarchAction;
+                        debugMonarchAction = null;
+                        debugMonarchPlayer = null;
+                        logger.finest("Debug monarch action: " + action);
                     } else {
-                        logger.finest("Skipping invalid monarch action: "
-                            + action);
+                        action = RandomChoice.getWeightedRandom(logger,
+                                "Choose monarch action",
+                            monarch.getActionChoices(), random);
+                    }
+                    if (action != null) {
+                        if (monarch.actionIsValid(action)) {
+                            logger.finest("Monarch action: " + action);
+                            csMonarchAction(player, action, cs);
+                        } else {
+                            logger.finest("Skipping invalid monarch action: "
+                                + action);
+                        }
                     }
                 }
-            }
 
-            // Flush accumulated changes.  Send to all players, but
-            // take care that the new player is last so that it does
-            // not immediately start moving and cause further changes
-            // which conflict with these updates.  Finally return to the
-            // current player which requested the end-of-turn, unless
-            // it is doing a debug run.
-            sendToList(getOtherPlayers(serverPlayer, (ServerPlayer)player), cs);
-            sendElement((ServerPlayer)player, cs);
-            if (!player.isAI()
-                && freeColServer.isSinglePlayer()
-                && debugOnlyAITurns > 0) {
-                continue;
+                // Flush accumulated changes.  Send to all players, but
+                // take care that the new player is last so that it does
+                // not immediately start moving and cause further changes
+                // which conflict with these updates.  Finally return to the
+                // current player which requested the end-of-turn, unless
+                // it is doing a debug run.
+                sendToList(getOtherPlayers(serverPlayer, (ServerPlayer)player), cs);
+                sendElement((ServerPlayer)player, cs);
+                if (!player.isAI()
+                    && freeColServer.isSinglePlayer()
+                    && debugOnlyAITurns > 0) {
+                    continue;
+                }
+                playing = true;
+                return cs.build(serverPlayer);
             }
-            return cs.build(serverPlayer);
+        } finally {
+            // Whatever stopped the game, let a simulation finish.
+            if (!playing) endSimulation();
         }
     }
 
@@ -1842,14 +1949,13 @@ public final class InGameController extends Controller {
         ChangeSet cs = new ChangeSet();
 
         Location newLocation = carrier.getLocation();
-        List<Tile> newTiles = (newLocation.getTile() == null) ? null
-            : ((ServerUnit) unit).collectNewTiles(newLocation.getTile());
+        serverPlayer.pollNewlyVisibleTiles();
         unit.setLocation(newLocation);//-vis(serverPlayer)
         serverPlayer.invalidateCanSeeTiles();//+vis(serverPlayer)
         unit.setMovesLeft(0); // In Col1 disembark consumes whole move.
         cs.add(See.perhaps(), (FreeColGameObject)newLocation);
-        if (newTiles != null) {
-            serverPlayer.csSeeNewTiles(newTiles, cs);
+        if (newLocation.getTile() != null) {
+            serverPlayer.csSeeNewTiles(cs);
         }
 
         // Others can (potentially) see the location.
@@ -3979,6 +4085,13 @@ public final class InGameController extends Controller {
 
 
         stats.putAll(getFreeColServer().getAIMain().getAIStatistics());
+        stats.putAll(MessageExecutor.getStatistics());
+        stats.putAll(DeltaTracker.getStatistics());
+        stats.put("newTurnTime", Long.toString(getNewTurnTime() / 1000000));
+        stats.put("aiWorkTime", Long.toString(getFreeColServer().getAIMain()
+                .getWorkTime() / 1000000));
+        stats.put("changeSetBuildTime",
+            Long.toString(ChangeSet.getBuildTime() / 1000000));
 
 
         List<String> all = new ArrayList<String>();
@@ -214,6 +214,12 @@ public final class UserConnectionHandler implements MessageHandler {
             mh = freeColServer.getInGameInputHandler();
         }
 
+        // Switch to the binary encoding if the client offered it.
+        // The client reads either encoding, so the reply can use it.
+        final boolean binary = Connection.isBinaryAllowed()
+            && Boolean.parseBoolean(element.getAttribute("binary"));
+        connection.setBinary(binary);
+
         connection.setMessageHandler(mh);
         server.addConnection(connection);
         try {
@@ -224,7 +230,7 @@ public final class UserConnectionHandler implements MessageHandler {
         return new LoginMessage(player, userName, version, !starting,
                                 freeColServer.isSinglePlayer(),
                                 isCurrentPlayer, active,
-                                game).toXMLElement();
+                                game, binary).toXMLElement();
     }
 
     /**
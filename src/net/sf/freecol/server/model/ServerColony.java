@@ -22,6 +22,7 @@ package net.sf.freecol.server.model;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -46,6 +47,7 @@ import net.sf.freecol.common.model.ProductionInfo;
 import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.StringTemplate;
 import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileSnapshot;
 import net.sf.freecol.common.model.TileImprovement;
 import net.sf.freecol.common.model.TypeCountMap;
 import net.sf.freecol.common.model.Unit;
@@ -148,6 +150,29 @@ public class ServerColony extends Colony implements ServerModelObject {
         updateProductionBonus();
     }
 
+    /**
+     * Computes the production of this colony ahead of its new turn.
+     * This only reads the model, so it may be called for several
+     * colonies in parallel, and the new turn then uses the result.
+     *
+     * Nothing is done if a worked tile has a resource that can be
+     * exhausted, as {@link #csNewTurn} would then see the production
+     * after the resource was used.
+     *
+     * @return True if the production was computed.
+     */
+    public boolean prepareNewTurn() {
+        if (getUnitCount() <= 0) return false;
+        for (ColonyTile ct : getColonyTiles()) {
+            if (ct.isColonyCenterTile() || ct.isEmpty()) continue;
+            Tile workTile = ct.getWorkTile();
+            if (workTile.hasResource()
+                && !workTile.getResource().isUnlimited()) return false;
+        }
+        updateCache();
+        return true;
+    }
+
     /**
      * New turn for this colony.
      * Try to find out if the colony is going to survive (last colonist does
@@ -645,7 +670,7 @@ public class ServerColony extends Colony implements ServerModelObject {
     private boolean csBuildBuilding(BuildQueue<? extends BuildableType> buildQueue,
                                     ChangeSet cs) {
         BuildingType type = (BuildingType) buildQueue.getCurrentlyBuilding();
-        Tile copied = getTile().getTileToCache();
+        Map<Player, TileSnapshot> copied = getTile().getTileToCache();
         BuildingType from = type.getUpgradesFrom();
         boolean success;
         if (from == null) {
@@ -759,7 +784,7 @@ public class ServerColony extends Colony implements ServerModelObject {
         ServerColonyTile ct = (ServerColonyTile)getColonyTile(tile);
         if (ct == null) return;
         Tile colonyTile = ct.getColony().getTile();
-        Tile copied = colonyTile.getTileToCache();
+        Map<Player, TileSnapshot> copied = colonyTile.getTileToCache();
         if (!ejectUnits(ct, ct.getUnitList())) return;//-til
         colonyTile.cacheUnseen(copied);//+til
         cs.addMessage(See.only(serverPlayer),
@@ -19,12 +19,12 @@
 
 package net.sf.freecol.server.model;
 
-import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -379,9 +379,11 @@ public class ServerGame extends Game implements ServerModelObject {
      */
     public List<ServerModelObject> getServerModelObjects() {
         List<ServerModelObject> objs = new ArrayList<ServerModelObject>();
-        for (WeakReference<FreeColGameObject> wr :freeColGameObjects.values()) {
-            if (wr.get() instanceof ServerModelObject) {
-                objs.add((ServerModelObject) wr.get());
+        Iterator<FreeColGameObject> it = getFreeColGameObjectIterator();
+        while (it.hasNext()) {
+            FreeColGameObject fcgo = it.next();
+            if (fcgo instanceof ServerModelObject) {
+                objs.add((ServerModelObject)fcgo);
             }
         }
         return objs;
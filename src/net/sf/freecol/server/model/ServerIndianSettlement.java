@@ -20,6 +20,7 @@
 package net.sf.freecol.server.model;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -35,6 +36,7 @@ import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.Tension;
 import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileSnapshot;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.model.UnitType;
 import net.sf.freecol.common.util.Utils;
@@ -316,7 +318,7 @@ public class ServerIndianSettlement extends IndianSettlement
      */
     public void csModifyAlarm(Player player, int add, boolean propagate,
                               ChangeSet cs) {
-        Tile copied = getTile().getTileToCache();
+        Map<Player, TileSnapshot> copied = getTile().getTileToCache();
         boolean change = changeAlarm(player, add);//-til
         if (change) {
             getTile().cacheUnseen(copied);//+til
@@ -24,12 +24,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.sf.freecol.FreeCol;
 import net.sf.freecol.client.gui.i18n.Messages;
 import net.sf.freecol.common.debug.FreeColDebugger;
 import net.sf.freecol.common.model.Ability;
@@ -72,6 +76,7 @@ import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.StringTemplate;
 import net.sf.freecol.common.model.Tension;
 import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileSnapshot;
 import net.sf.freecol.common.model.Turn;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.model.UnitType;
@@ -83,9 +88,11 @@ import net.sf.freecol.common.networking.LootCargoMessage;
 import net.sf.freecol.common.networking.MonarchActionMessage;
 import net.sf.freecol.common.util.RandomChoice;
 import net.sf.freecol.common.util.Utils;
+import net.sf.freecol.common.util.WorkerPool;
 import net.sf.freecol.server.control.ChangeSet;
 import net.sf.freecol.server.control.ChangeSet.ChangePriority;
 import net.sf.freecol.server.control.ChangeSet.See;
+import net.sf.freecol.server.control.DeltaTracker;
 
 
 /**
@@ -129,6 +136,10 @@ public class ServerPlayer extends Player implements ServerModelObject {
     public static final int SCORE_INDEPENDENCE_BONUS_SECOND = 50;
     public static final int SCORE_INDEPENDENCE_BONUS_THIRD = 25;
 
+    /** The threads to compute the production of the colonies with. */
+    private static final WorkerPool productionPool
+        = new WorkerPool(FreeCol.SERVER_THREAD + "ColonyProduction");
+
     /** The network socket to the player's client. */
     private Socket socket;
 
@@ -147,6 +158,9 @@ public class ServerPlayer extends Player implements ServerModelObject {
     private final List<AbstractGoods> extraTrades
         = new ArrayList<AbstractGoods>();
 
+    /** What this player's client has been sent of the objects updated. */
+    private final DeltaTracker deltaTracker = new DeltaTracker();
+
 
     /**
      * Trivial constructor required for all ServerModelObjects.
@@ -280,6 +294,25 @@ public class ServerPlayer extends Player implements ServerModelObject {
     public void setConnection(Connection connection) {
         this.connection = connection;
         connected = (connection != null);
+        deltaTracker.clear();
+        if (connection != null) {
+            // The client may have missed updates the tracker recorded.
+            connection.setSendFailureHandler(new Runnable() {
+                    public void run() {
+                        deltaTracker.clear();
+                    }
+                });
+        }
+    }
+
+    /**
+     * Gets the record of what the client of this player has been
+     * sent of the objects updated.
+     *
+     * @return The <code>DeltaTracker</code> for this player.
+     */
+    public DeltaTracker getDeltaTracker() {
+        return deltaTracker;
     }
 
     /**
@@ -1158,6 +1191,58 @@ public class ServerPlayer extends Player implements ServerModelObject {
         }
     }
 
+    /**
+     * Is the production of the colonies computed in parallel?
+     *
+     * @return True if parallel production is enabled.
+     */
+    public static boolean isParallelProduction() {
+        return productionPool.isEnabled();
+    }
+
+    /**
+     * Set whether the production of the colonies is computed in parallel.
+     *
+     * @param parallel The new parallel production state.
+     */
+    public static void setParallelProduction(boolean parallel) {
+        productionPool.setEnabled(parallel);
+    }
+
+    /**
+     * Computes the production of the colonies of this player in
+     * parallel, ahead of their new turns.  The new turns are then
+     * applied one colony at a time, in order, so the outcome is the
+     * same as if the production had been computed as each colony
+     * came up.  A colony that fails here just computes its production
+     * again in its new turn.
+     *
+     * @param settlements The <code>Settlement</code>s about to have a
+     *     new turn.
+     */
+    private void prepareNewTurn(List<Settlement> settlements) {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (Settlement settlement : settlements) {
+            if (!(settlement instanceof ServerColony)) continue;
+            final ServerColony colony = (ServerColony)settlement;
+            futures.add(productionPool.getExecutor().submit(new Runnable() {
+                    public void run() {
+                        colony.prepareNewTurn();
+                    }
+                }));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException ee) {
+                logger.log(Level.WARNING, "Production failed", ee.getCause());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     /**
      * New turn for this player.
      *
@@ -1170,6 +1255,10 @@ public class ServerPlayer extends Player implements ServerModelObject {
         // Settlements
         List<Settlement> settlements
             = new ArrayList<Settlement>(getSettlements());
+        if (isEuropean() && settlements.size() > 1
+            && isParallelProduction()) {
+            prepareNewTurn(settlements);
+        }
         int newSoL = 0, newImmigration = getImmigration();
         for (Settlement settlement : settlements) {
             ((ServerModelObject)settlement).csNewTurn(random, cs);
@@ -3542,7 +3631,8 @@ public class ServerPlayer extends Player implements ServerModelObject {
      */
     private void csDamageBuilding(Building building, ChangeSet cs) {
         ServerColony colony = (ServerColony)building.getColony();
-        Tile copied = colony.getTile().getTileToCache();
+        java.util.Map<Player, TileSnapshot> copied
+            = colony.getTile().getTileToCache();
         int unitCount = colony.getUnitCount();
         boolean changed = false;
         BuildingType type = building.getType();
@@ -3770,6 +3860,25 @@ public class ServerPlayer extends Player implements ServerModelObject {
         cs.add(See.only(this), newTiles);
     }
 
+    /**
+     * Updates the player view for each tile that has come into sight
+     * since the newly visible tiles were last polled, and update a
+     * ChangeSet as well.
+     *
+     * @param cs A <code>ChangeSet</code> to update.
+     */
+    public void csSeeNewTiles(ChangeSet cs) {
+        List<Tile> newTiles = pollNewlyVisibleTiles();
+        if (!getSpecification().getBoolean(GameOptions.FOG_OF_WAR)) {
+            // Without fog of war, explored tiles are always visible.
+            Iterator<Tile> it = newTiles.iterator();
+            while (it.hasNext()) {
+                if (hasExplored(it.next())) it.remove();
+            }
+        }
+        csSeeNewTiles(newTiles, cs);
+    }
+
     /**
      * Raises the players tax rate, or handles a goods party.
      *
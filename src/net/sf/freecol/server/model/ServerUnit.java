@@ -59,6 +59,7 @@ import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.StringTemplate;
 import net.sf.freecol.common.model.Tension;
 import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileSnapshot;
 import net.sf.freecol.common.model.TileImprovement;
 import net.sf.freecol.common.model.TileImprovementType;
 import net.sf.freecol.common.model.TileType;
@@ -870,22 +871,6 @@ public class ServerUnit extends Unit implements ServerModelObject {
         }
     }
 
-    /**
-     * Collects the tiles surrounding this unit that the player
-     * can not currently see, but now should as a result of a move.
-     *
-     * @param tile The center tile to look from.
-     * @return A list of new tiles to see.
-     */
-    public List<Tile> collectNewTiles(Tile tile) {
-        List<Tile> newTiles = new ArrayList<Tile>();
-        int los = getLineOfSight();
-        for (Tile t : tile.getSurroundingTiles(0, los)) {
-            if (!getOwner().canSee(t)) newTiles.add(t);
-        }
-        return newTiles;
-    }
-
     /**
      * Move a unit.
      *
@@ -896,9 +881,10 @@ public class ServerUnit extends Unit implements ServerModelObject {
     public void csMove(Tile newTile, Random random, ChangeSet cs) {
         ServerPlayer serverPlayer = (ServerPlayer) getOwner();
 
-        // Plan to update tiles that could not be seen before but will
-        // now be within the line-of-sight.
-        List<Tile> newTiles = collectNewTiles(newTile);
+        // Forget the tiles that came into sight before the move, so
+        // that those that come into sight as a result of it can be
+        // updated.
+        serverPlayer.pollNewlyVisibleTiles();
 
         // Update unit state.
         Location oldLocation = getLocation();
@@ -945,7 +931,7 @@ public class ServerUnit extends Unit implements ServerModelObject {
         }
         cs.add(See.perhaps().always(serverPlayer), newTile);
         if (isDisposed()) return;
-        serverPlayer.csSeeNewTiles(newTiles, cs);
+        serverPlayer.csSeeNewTiles(cs);
 
         if (newTile.isLand()) {
             Settlement settlement;
@@ -1012,7 +998,8 @@ public class ServerUnit extends Unit implements ServerModelObject {
                         && (contactPlayer = (ServerPlayer)unit.getOwner())
                             .isEuropean()
                         && (is = getHomeIndianSettlement()) != null)) {
-                    Tile copied = is.getTile().getTileToCache();
+                    java.util.Map<Player, TileSnapshot> copied
+                        = is.getTile().getTileToCache();
                     if (contactPlayer.hasExplored(is.getTile())
                         && is.setContacted(contactPlayer)) {//-til
                         is.getTile().cacheUnseen(copied);//+til
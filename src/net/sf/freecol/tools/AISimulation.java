@@ -0,0 +1,123 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.util.Locale;
+
+import net.sf.freecol.client.gui.i18n.Messages;
+import net.sf.freecol.common.FreeColSeed;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.ai.AIMain;
+import net.sf.freecol.server.control.ChangeSet;
+import net.sf.freecol.server.control.InGameController;
+import net.sf.freecol.server.control.PreGameController;
+import net.sf.freecol.server.model.ServerGame;
+
+
+/**
+ * Runs a game with only AI players, without a client, and reports
+ * how long each turn took.
+ *
+ * The arguments are the number of turns to run (default 10), the
+ * seed of the server random number source (default 1), and the name
+ * of a file to save the game to when the run completes.
+ *
+ * A line of comma separated timings in milliseconds is printed for
+ * each turn: the wall clock time, the time the AI players spent
+ * working, the time spent processing the new turn, and the time
+ * spent building the updates sent to the players.  The AI players
+ * move in their own threads and updates are built while they move,
+ * so the phases overlap and need not add up to the wall clock time.
+ * The AI threads also make the runs only approximately repeatable
+ * for a given seed.
+ */
+public class AISimulation {
+
+    /** The port to run the simulation server on. */
+    private static final int PORT = 3541;
+
+    /** The cumulative timings at the end of the last turn. */
+    private static long lastWall, lastAI, lastNewTurn, lastBuild;
+
+
+    private static long ms(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int turns = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        FreeColSeed.setFreeColSeed((args.length > 1) ? args[1] : "1");
+        final String save = (args.length > 2) ? args[2] : null;
+        Messages.setMessageBundle(Locale.US);
+
+        Specification spec = new FreeColTcFile("freecol").getSpecification();
+        spec.applyDifficultyLevel("model.difficulty.medium");
+        final FreeColServer server = new FreeColServer(false, false, spec,
+            PORT, "AISimulation");
+        try {
+            ((PreGameController)server.getController()).startGame();
+            final ServerGame game = (ServerGame)server.getGame();
+            final AIMain aiMain = server.getAIMain();
+            final InGameController igc = server.getInGameController();
+
+            System.out.println("turn,wall,ai,newTurn,build");
+            final long start = System.nanoTime();
+            lastWall = start;
+            game.addPropertyChangeListener(InGameController.NEW_TURN,
+                new PropertyChangeListener() {
+                    public void propertyChange(PropertyChangeEvent e) {
+                        long wall = System.nanoTime();
+                        long ai = aiMain.getWorkTime();
+                        long newTurn = igc.getNewTurnTime();
+                        long build = ChangeSet.getBuildTime();
+                        System.out.println(e.getOldValue()
+                            + "," + ms(wall - lastWall)
+                            + "," + ms(ai - lastAI)
+                            + "," + ms(newTurn - lastNewTurn)
+                            + "," + ms(build - lastBuild));
+                        lastWall = wall;
+                        lastAI = ai;
+                        lastNewTurn = newTurn;
+                        lastBuild = build;
+                    }
+                });
+            final int firstTurn = game.getTurn().getNumber();
+            igc.startSimulation(turns);
+            igc.waitForSimulation();
+
+            // The game may have ended before all the turns were run.
+            final long time = System.nanoTime() - start;
+            final int run = game.getTurn().getNumber() - firstTurn;
+            System.out.println(String.format("%d turns in %d ms, %.2f turns/s",
+                    run, ms(time), run * 1.0e9 / time));
+            if (save != null) {
+                server.saveGame(new File(save), null);
+                System.out.println("Saved " + save);
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import net.sf.freecol.client.gui.i18n.Messages;
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.control.ChangeSet;
+import net.sf.freecol.server.control.PreGameController;
+import net.sf.freecol.server.model.ServerGame;
+import net.sf.freecol.server.model.ServerPlayer;
+
+import org.w3c.dom.Element;
+
+
+/**
+ * Times building the updates sent to each player at the end of a turn.
+ *
+ * The change set is recorded by running the server side of a new
+ * turn on a game, which is either loaded from the saved game named by
+ * the first argument, or is a freshly generated single player game
+ * if there are no arguments or the first is "-".  An optional second argument sets the
+ * number of turns recorded into the change set, and a third the
+ * number of timed passes.
+ *
+ * Each pass builds the update for every player, first one player
+ * after another, and then in parallel.
+ */
+public class ChangeSetBenchmark {
+
+    /** The port to run the benchmark server on. */
+    private static final int PORT = 3541;
+
+
+    /**
+     * Starts a server with a game to record changes from.
+     *
+     * @param file The saved game to load, or null to make a new game.
+     * @return The <code>FreeColServer</code> running the game.
+     */
+    private static FreeColServer startServer(String file) throws Exception {
+        if (file != null) {
+            return new FreeColServer(new FreeColSavegameFile(new File(file)),
+                                     null, PORT, "ChangeSetBenchmark");
+        }
+        Specification spec = new FreeColTcFile("freecol").getSpecification();
+        spec.applyDifficultyLevel("model.difficulty.medium");
+        FreeColServer server = new FreeColServer(false, true, spec, PORT,
+                                                 "ChangeSetBenchmark");
+        try {
+            ((PreGameController)server.getController()).startGame();
+        } catch (Exception e) {
+            server.shutdown();
+            throw e;
+        }
+        return server;
+    }
+
+    /**
+     * Builds the updates for all players.
+     *
+     * @param cs The <code>ChangeSet</code> to build.
+     * @param players The <code>ServerPlayer</code>s to build for.
+     * @param passes The number of passes.
+     * @param parallel If true, build for the players in parallel.
+     * @return The time taken per pass, in microseconds.
+     */
+    private static double run(ChangeSet cs, List<ServerPlayer> players,
+                              int passes, boolean parallel) {
+        ChangeSet.setParallelBuild(parallel);
+        int check = 0;
+        long start = System.nanoTime();
+        for (int p = 0; p < passes; p++) {
+            for (Element e : cs.buildAll(players)) {
+                if (e != null) check += e.getChildNodes().getLength();
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (check == 0) System.err.println("Nothing built?");
+        return time / 1000.0 / passes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Messages.setMessageBundle(Locale.US);
+        FreeColServer server = startServer((args.length > 0
+                && !"-".equals(args[0])) ? args[0] : null);
+        int turns = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+        int passes = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+        try {
+            ServerGame game = (ServerGame)server.getGame();
+            Random random = new Random(1);
+            ChangeSet cs = new ChangeSet();
+            for (int t = 0; t < turns; t++) game.csNewTurn(random, cs);
+            List<ServerPlayer> players = new ArrayList<ServerPlayer>();
+            for (Player p : game.getPlayers()) players.add((ServerPlayer)p);
+            System.out.println("Players: " + players.size()
+                + ", changes: " + cs.toString().split("\n").length
+                + ", passes: " + passes);
+
+            // Warm up both paths, then measure.
+            run(cs, players, Math.max(1, passes / 4), false);
+            run(cs, players, Math.max(1, passes / 4), true);
+            double serial = run(cs, players, passes, false);
+            double parallel = run(cs, players, passes, true);
+            System.out.println(String.format("Serial: %.0f us/turn", serial));
+            System.out.println(String.format("Parallel: %.0f us/turn",
+                    parallel));
+            System.out.println(String.format("Speedup: %.2f",
+                    serial / parallel));
+        } finally {
+            ChangeSet.setParallelBuild(false);
+            server.shutdown();
+        }
+    }
+}
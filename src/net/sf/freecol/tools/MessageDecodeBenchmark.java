@@ -0,0 +1,198 @@
+/**
+ *  Copyright (C) 2002-2013   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import net.sf.freecol.common.networking.MessageDecoder;
+
+
+/**
+ * Compares the throughput of the network message decoders.
+ *
+ * The old decoder peeked at each message with a streaming parser in
+ * the receiving thread, again in the connection to find the network
+ * reply identifier, and then parsed it into a document with a freshly
+ * created parser.  The new decoder reads each message once.
+ *
+ * Pass the name of a trace file recorded with the COMMS debug mode
+ * (<code>--debug comms</code>), which dumps every message sent, or
+ * no arguments to use a small synthetic trace.  An optional second
+ * argument sets the number of passes over the trace.
+ */
+public class MessageDecodeBenchmark {
+
+    /** Matches a dumped message, e.g. &lt;server-send&gt;...&lt;/server-send&gt;. */
+    private static final Pattern DUMP
+        = Pattern.compile("^<([-\\w]+)>(.*)</\\1>$");
+
+
+    /**
+     * Reads the messages from a trace file.
+     *
+     * @param file The name of the file to read.
+     * @return A list of the encoded messages.
+     */
+    private static List<byte[]> readTrace(String file) throws Exception {
+        List<byte[]> result = new ArrayList<byte[]>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Matcher m = DUMP.matcher(line.trim());
+                if (m.matches()) result.add(m.group(2).getBytes("UTF-8"));
+            }
+        } finally {
+            br.close();
+        }
+        return result;
+    }
+
+    /**
+     * Makes a synthetic trace of typical messages.
+     *
+     * @return A list of the encoded messages.
+     */
+    private static List<byte[]> makeTrace() throws Exception {
+        List<byte[]> result = new ArrayList<byte[]>();
+        for (int i = 0; i < 100; i++) {
+            result.add(("<question networkReplyId=\"" + i + "\">"
+                    + "<move unit=\"unit:" + (1000 + i)
+                    + "\" direction=\"NE\"/></question>").getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            sb.append("<reply networkReplyId=\"").append(i)
+                .append("\"><multiple><update>");
+            for (int j = 0; j < 9; j++) {
+                sb.append("<tile id=\"tile:").append(2000 + 9 * i + j)
+                    .append("\" x=\"").append(j).append("\" y=\"").append(i)
+                    .append("\" type=\"model.tile.plains\" style=\"0\"")
+                    .append(" connected=\"false\" owner=\"player:1\">")
+                    .append("<cachedTile player=\"player:2\" tile=\"tile:")
+                    .append(2000 + 9 * i + j).append("\"/></tile>");
+            }
+            sb.append("</update><animateMove unit=\"unit:").append(1000 + i)
+                .append("\" oldTile=\"tile:1\" newTile=\"tile:2\"/>")
+                .append("</multiple></reply>");
+            result.add(sb.toString().getBytes("UTF-8"));
+            result.add(("<chat sender=\"player:1\" message=\"Message " + i
+                    + "\" privateChat=\"false\"/>").getBytes("UTF-8"));
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a message the old way.
+     *
+     * @param data The encoded message.
+     * @return The root element tag, to defeat dead code elimination.
+     */
+    private static String decodeOld(byte[] data) throws Exception {
+        // Peek in the receiving thread.
+        BufferedInputStream in
+            = new BufferedInputStream(new ByteArrayInputStream(data), 8192);
+        in.mark(8192);
+        XMLStreamReader xsr = XMLInputFactory.newInstance()
+            .createXMLStreamReader(in, "UTF-8");
+        xsr.nextTag();
+        String tag = xsr.getLocalName();
+        xsr.close();
+        in.reset();
+        // Peek again in the connection.
+        in.mark(200);
+        xsr = XMLInputFactory.newInstance().createXMLStreamReader(in, "UTF-8");
+        xsr.nextTag();
+        xsr.getAttributeValue(null, "networkReplyId");
+        xsr.close();
+        in.reset();
+        // Parse.
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(in).getDocumentElement().getTagName();
+    }
+
+    /**
+     * Decodes a message the new way.
+     *
+     * @param data The encoded message.
+     * @return The root element tag, to defeat dead code elimination.
+     */
+    private static String decodeNew(byte[] data) throws Exception {
+        InputStream in = new ByteArrayInputStream(data);
+        return MessageDecoder.decode(in).getType();
+    }
+
+    /**
+     * Times a number of passes over a trace.
+     *
+     * @param trace The messages to decode.
+     * @param passes The number of passes.
+     * @param old If true use the old decoder.
+     * @return The number of messages decoded per second.
+     */
+    private static double run(List<byte[]> trace, int passes, boolean old)
+        throws Exception {
+        int check = 0;
+        long start = System.nanoTime();
+        for (int p = 0; p < passes; p++) {
+            for (byte[] data : trace) {
+                check += ((old) ? decodeOld(data) : decodeNew(data)).length();
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (check == 0) System.err.println("Empty trace?");
+        return 1.0e9 * passes * trace.size() / time;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<byte[]> trace = (args.length > 0) ? readTrace(args[0])
+            : makeTrace();
+        int passes = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        if (trace.isEmpty()) {
+            System.err.println("No messages found.");
+            System.exit(1);
+        }
+        long bytes = 0;
+        for (byte[] data : trace) bytes += data.length;
+        System.out.println("Messages: " + trace.size()
+            + ", bytes: " + bytes + ", passes: " + passes);
+
+        // Warm up both paths, then measure.
+        run(trace, Math.max(1, passes / 4), true);
+        run(trace, Math.max(1, passes / 4), false);
+        double oldRate = run(trace, passes, true);
+        double newRate = run(trace, passes, false);
+        System.out.println(String.format("Old: %.0f msg/s", oldRate));
+        System.out.println(String.format("New: %.0f msg/s", newRate));
+        System.out.println(String.format("Speedup: %.2f", newRate / oldRate));
+    }
+}
@@ -31,6 +31,7 @@ public class AllTests {
         suite.addTest(net.sf.freecol.client.gui.i18n.AllTests.suite());
         suite.addTestSuite(net.sf.freecol.client.gui.sound.SoundTest.class);
         suite.addTestSuite(FontTest.class);
+        suite.addTestSuite(TerrainCacheTest.class);
         //$JUnit-END$
         return suite;
     }
@@ -0,0 +1,103 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.client.gui;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.common.model.Map.Direction;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileType;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class TerrainCacheTest extends FreeColTestCase {
+
+    private static final TileType plains
+        = spec().getTileType("model.tile.plains");
+    private static final TileType ocean
+        = spec().getTileType("model.tile.ocean");
+
+
+    public void testChanges() {
+        Game game = getStandardGame();
+        Map map = getTestMap(plains);
+        game.setMap(map);
+        Tile tile = map.getTile(5, 5);
+        Tile neighbour = tile.getNeighbourOrNull(Direction.N);
+        Image image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+        TerrainCache cache = new TerrainCache();
+        assertNull(cache.get(tile));
+        cache.put(tile, image);
+        assertSame(image, cache.get(tile));
+
+        // A change to the tile itself
+        tile.setStyle(tile.getStyle() + 1);
+        assertNull(cache.get(tile));
+        cache.put(tile, image);
+        assertSame(image, cache.get(tile));
+
+        // A neighbour blending into the tile
+        neighbour.setType(ocean);
+        assertNull(cache.get(tile));
+        cache.put(tile, image);
+        assertSame(image, cache.get(tile));
+
+        // A neighbour becoming unexplored
+        neighbour.setType(null);
+        assertNull(cache.get(tile));
+
+        // A distant tile does not matter
+        cache.put(tile, image);
+        map.getTile(9, 9).setType(ocean);
+        assertSame(image, cache.get(tile));
+
+        cache.clear();
+        assertNull(cache.get(tile));
+    }
+
+    public void testCapacity() {
+        Game game = getStandardGame();
+        Map map = getTestMap(plains);
+        game.setMap(map);
+        Image image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Tile t1 = map.getTile(1, 1);
+        Tile t2 = map.getTile(2, 2);
+        Tile t3 = map.getTile(3, 3);
+
+        TerrainCache cache = new TerrainCache();
+        cache.setCapacity(2);
+        cache.put(t1, image);
+        cache.put(t2, image);
+        assertSame(image, cache.get(t1));
+        // The least recently used image goes
+        cache.put(t3, image);
+        assertSame(image, cache.get(t1));
+        assertNull(cache.get(t2));
+        assertSame(image, cache.get(t3));
+
+        cache.setCapacity(1);
+        assertNull(cache.get(t1));
+        assertSame(image, cache.get(t3));
+    }
+}
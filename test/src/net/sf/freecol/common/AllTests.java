@@ -29,7 +29,9 @@ public class AllTests {
         //$JUnit-BEGIN$
         suite.addTest(net.sf.freecol.common.io.AllTests.suite());
         suite.addTest(net.sf.freecol.common.option.AllTests.suite());
+        suite.addTest(net.sf.freecol.common.resources.AllTests.suite());
         suite.addTest(net.sf.freecol.common.model.AllTests.suite());
+        suite.addTest(net.sf.freecol.common.networking.AllTests.suite());
         suite.addTest(net.sf.freecol.common.utils.AllTests.suite());
         //$JUnit-END$
         return suite;
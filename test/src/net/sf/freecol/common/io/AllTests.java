@@ -27,6 +27,7 @@ public class AllTests {
 
     public static Test suite() {
 	TestSuite suite = new TestSuite("Test for net.sf.freecol.common.option");
+        suite.addTestSuite(DOMStreamReaderTest.class);
         suite.addTestSuite(ModTest.class);
         return suite;
     }
@@ -0,0 +1,86 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import javax.xml.stream.XMLStreamConstants;
+
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+
+public class DOMStreamReaderTest extends FreeColTestCase {
+
+    public void testEvents() throws Exception {
+        Document document = DOMMessage.createNewDocument();
+        Element root = document.createElement("root");
+        root.setAttribute("a", "1");
+        root.setAttribute("b", "x & y");
+        Element child = document.createElement("child");
+        child.appendChild(document.createTextNode("some "));
+        child.appendChild(document.createTextNode("text"));
+        root.appendChild(document.createTextNode("\n  "));
+        root.appendChild(child);
+        root.appendChild(document.createElement("empty"));
+
+        FreeColXMLReader xr = new FreeColXMLReader(root);
+        assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+        assertEquals("root", xr.getLocalName());
+        assertEquals(2, xr.getAttributeCount());
+        assertEquals("1", xr.getAttributeValue(null, "a"));
+        assertEquals("x & y", xr.getAttributeValue(null, "b"));
+        assertNull(xr.getAttributeValue(null, "c"));
+        assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+        assertEquals("child", xr.getLocalName());
+        assertEquals("some text", xr.getElementText());
+        assertEquals(XMLStreamConstants.END_ELEMENT, xr.getEventType());
+        assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+        assertEquals("empty", xr.getLocalName());
+        assertEquals(XMLStreamConstants.END_ELEMENT, xr.nextTag());
+        assertEquals("empty", xr.getLocalName());
+        assertEquals(XMLStreamConstants.END_ELEMENT, xr.nextTag());
+        assertEquals("root", xr.getLocalName());
+        assertEquals(XMLStreamConstants.END_DOCUMENT, xr.next());
+        assertFalse(xr.hasNext());
+        xr.close();
+    }
+
+    public void testElementRoundTrip() throws Exception {
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        Colony colony = getStandardColony();
+        Unit unit = colony.getUnitList().get(0);
+
+        Document document = DOMMessage.createNewDocument();
+        Element element = unit.toXMLElement(document, WriteScope.toServer());
+        assertEquals(document, element.getOwnerDocument());
+        assertEquals(unit.getId(), element.getAttribute("id"));
+
+        String before = unit.serialize();
+        unit.readFromXMLElement(element);
+        assertEquals(before, unit.serialize());
+    }
+}
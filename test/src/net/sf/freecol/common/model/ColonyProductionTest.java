@@ -19,7 +19,9 @@
 
 package net.sf.freecol.common.model;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import net.sf.freecol.server.model.ServerBuilding;
 import net.sf.freecol.server.model.ServerColony;
@@ -299,6 +301,76 @@ public class ColonyProductionTest extends FreeColTestCase {
     }
 
 
+    /**
+     * Checks the production cache of a colony against a fully
+     * recomputed one.
+     *
+     * @param colony The <code>Colony</code> to check.
+     * @param step The step of the test, for the failure messages.
+     */
+    private void checkProductionCache(Colony colony, int step) {
+        ProductionCache full = new ProductionCache(colony);
+        for (GoodsType type : spec().getGoodsTypeList()) {
+            assertEquals("Net production of " + type + " at step " + step,
+                full.getNetProductionOf(type),
+                colony.getNetProductionOf(type));
+        }
+        List<Object> objects = new ArrayList<Object>();
+        objects.addAll(colony.getAllWorkLocations());
+        objects.addAll(colony.getConsumers());
+        for (Object o : objects) {
+            assertEquals("Production of " + o + " at step " + step,
+                String.valueOf(full.getProductionInfo(o)),
+                String.valueOf(colony.getProductionInfo(o)));
+        }
+    }
+
+    public void testIncrementalProductionCache() {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(plainsType, true));
+        Colony colony = getStandardColony(6);
+        colony.addBuilding(new ServerBuilding(game, colony, depotType));
+        List<GoodsType> goodsTypes = spec().getGoodsTypeList();
+        Random random = new Random(1);
+        checkProductionCache(colony, 0);
+        for (int step = 1; step <= 300; step++) {
+            switch (random.nextInt(3)) {
+            case 0: case 1: // Move a unit.
+                List<Unit> units = colony.getUnitList();
+                Unit unit = units.get(random.nextInt(units.size()));
+                List<WorkLocation> wls = colony.getCurrentWorkLocations();
+                WorkLocation wl = wls.get(random.nextInt(wls.size()));
+                if (wl.canAdd(unit)) unit.setLocation(wl);
+                break;
+            default: // Change the stored goods.
+                GoodsType type
+                    = goodsTypes.get(random.nextInt(goodsTypes.size()));
+                if (random.nextBoolean()) {
+                    colony.addGoods(type, random.nextInt(100));
+                } else {
+                    colony.removeGoods(type, random.nextInt(100));
+                }
+                break;
+            }
+            checkProductionCache(colony, step);
+        }
+    }
+
+    public void testInvalidateWorkLocation() {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(plainsType, true));
+        Colony colony = getStandardColony(3);
+        ColonyTile center = colony.getColonyTile(colony.getTile());
+        Building building = colony.getBuildings().get(0);
+        ProductionInfo centerInfo = colony.getProductionInfo(center);
+        ProductionInfo buildingInfo = colony.getProductionInfo(building);
+
+        // Only the invalidated work location is recomputed.
+        colony.invalidateCache(building);
+        assertSame(centerInfo, colony.getProductionInfo(center));
+        assertNotSame(buildingInfo, colony.getProductionInfo(building));
+    }
+
     public void testProductionMap() {
         ProductionMap pm = new ProductionMap();
 
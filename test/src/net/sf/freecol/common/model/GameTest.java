@@ -72,6 +72,89 @@ public class GameTest extends FreeColTestCase {
         assertEquals(players, game.getPlayers());
     }
 
+    public void testFreeColGameObjectRegistry() {
+        Game game = getStandardGame();
+        Map map = getTestMap();
+        game.setMap(map);
+
+        Tile tile = map.getTile(5, 8);
+        String id = tile.getId();
+        assertSame("Lookup by identifier", tile,
+                   game.getFreeColGameObject(id));
+        assertSame("Typed lookup", tile,
+                   game.getFreeColGameObject(id, Tile.class));
+        assertNull("Lookup with the wrong class",
+                   game.getFreeColGameObject(id, Unit.class));
+        assertNull("Lookup of a similar identifier with another tag",
+                   game.getFreeColGameObject("unit:"
+                       + id.substring(id.indexOf(':') + 1)));
+        assertNull("Lookup of an unknown identifier",
+                   game.getFreeColGameObject("tile:999999"));
+        assertNull("Lookup of an empty identifier",
+                   game.getFreeColGameObject(""));
+
+        // Identifiers without a number, or sharing a number with
+        // another object, still work.
+        Unit odd = new Unit(game, "unit:odd");
+        assertSame("Non-numeric identifier", odd,
+                   game.getFreeColGameObject("unit:odd", Unit.class));
+        String clash = "unit:" + id.substring(id.indexOf(':') + 1);
+        Unit shared = new Unit(game, clash);
+        assertSame("Shared number", shared,
+                   game.getFreeColGameObject(clash, Unit.class));
+        assertSame("Original still present", tile,
+                   game.getFreeColGameObject(id));
+
+        game.removeFreeColGameObject(clash);
+        assertNull("Removed object", game.getFreeColGameObject(clash));
+        assertSame("Original survives removal", tile,
+                   game.getFreeColGameObject(id));
+
+        boolean found = false;
+        java.util.Iterator<FreeColGameObject> it
+            = game.getFreeColGameObjectIterator();
+        while (it.hasNext()) {
+            if (it.next() == odd) found = true;
+        }
+        assertTrue("Iterator includes non-numeric identifiers", found);
+    }
+
+    public void testFreeColGameObjectIteratorRemove() {
+        Game game = getStandardGame();
+        Map map = getTestMap();
+        game.setMap(map);
+
+        // Look ahead with hasNext before each removal, in both the
+        // numbered and the other identifiers.
+        Unit odd1 = new Unit(game, "unit:odd1");
+        Unit odd2 = new Unit(game, "unit:odd2");
+        Tile tile = map.getTile(5, 8);
+        java.util.List<FreeColGameObject> all
+            = new java.util.ArrayList<FreeColGameObject>();
+        java.util.Iterator<FreeColGameObject> it
+            = game.getFreeColGameObjectIterator();
+        while (it.hasNext()) {
+            FreeColGameObject o = it.next();
+            all.add(o);
+            it.hasNext();
+            if (o == tile || o == odd1 || o == odd2) it.remove();
+        }
+        assertTrue("All objects visited",
+                   all.contains(tile) && all.contains(odd1)
+                   && all.contains(odd2));
+        assertNull("Numbered object removed",
+                   game.getFreeColGameObject(tile.getId()));
+        assertNull("Other object removed",
+                   game.getFreeColGameObject("unit:odd1"));
+        assertNull("Last object removed",
+                   game.getFreeColGameObject("unit:odd2"));
+        for (FreeColGameObject o : all) {
+            if (o == tile || o == odd1 || o == odd2) continue;
+            assertSame("Others kept: " + o.getId(), o,
+                       game.getFreeColGameObject(o.getId()));
+        }
+    }
+
     public void testTurn() {
         assertEquals(1492, Turn.getYear(1));
         assertEquals(1, Turn.yearToTurn(1492, Turn.Season.YEAR));
@@ -34,7 +34,10 @@ import net.sf.freecol.common.model.Map.Position;
 import net.sf.freecol.common.model.Player.Stance;
 import net.sf.freecol.common.model.pathfinding.CostDecider;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
+import net.sf.freecol.common.model.pathfinding.DistanceField;
+import net.sf.freecol.common.model.pathfinding.DistanceFields;
 import net.sf.freecol.common.model.pathfinding.GoalDecider;
+import net.sf.freecol.common.model.pathfinding.PathCache;
 import net.sf.freecol.server.model.ServerUnit;
 import net.sf.freecol.util.test.FreeColTestCase;
 import net.sf.freecol.util.test.FreeColTestUtils;
@@ -343,6 +346,203 @@ public class MapTest extends FreeColTestCase {
         assertNotNull("A path should be available", path);
     }
 
+    public void testRepeatedAndNestedSearch() {
+        Game game = getStandardGame();
+        final Map map = getShortLongPathMap(getGame());
+        game.setMap(map);
+
+        Player dutchPlayer = game.getPlayer("model.nation.dutch");
+        final Tile unitTile = map.getTile(1, 11);
+        final Tile destinationTile = map.getTile(3, 7);
+        final Unit colonist = new ServerUnit(game, unitTile, dutchPlayer,
+                                             colonistType);
+
+        // Searches reuse their state, so repeated searches must agree.
+        PathNode path = colonist.findPath(destinationTile);
+        assertNotNull("A path should be available", path);
+        final String expected = path.fullPathToString();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Repeated search should find the same path",
+                expected, colonist.findPath(destinationTile).fullPathToString());
+        }
+
+        // A goal decider that searches must not disturb the outer search.
+        GoalDecider gd = new GoalDecider() {
+                private PathNode found = null;
+
+                public PathNode getGoal() {
+                    return found;
+                }
+
+                public boolean hasSubGoals() {
+                    return false;
+                }
+
+                public boolean check(Unit u, PathNode pathNode) {
+                    PathNode inner = map.findPath(colonist, unitTile,
+                        destinationTile, null, null);
+                    assertEquals("Nested search should find the same path",
+                                 expected, inner.fullPathToString());
+                    if (pathNode.getTile() == destinationTile) {
+                        found = pathNode;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        path = map.search(colonist, unitTile, gd, null,
+                          FreeColObject.INFINITY, null);
+        assertNotNull("Nested search should reach the goal", path);
+        assertEquals("Nested search should find the same path",
+                     expected, path.fullPathToString());
+    }
+
+    public void testPathCache() {
+        Game game = getStandardGame();
+        Map map = getShortLongPathMap(getGame());
+        game.setMap(map);
+
+        Player dutchPlayer = game.getPlayer("model.nation.dutch");
+        Player frenchPlayer = game.getPlayer("model.nation.french");
+        Tile unitTile = map.getTile(1, 11);
+        Tile destinationTile = map.getTile(3, 7);
+        Unit colonist = new ServerUnit(game, unitTile, dutchPlayer,
+                                       colonistType);
+        Unit other = new ServerUnit(game, unitTile, dutchPlayer,
+                                    colonistType);
+        PathNode uncached = colonist.findPath(destinationTile);
+        assertNotNull("A path should be available", uncached);
+
+        PathCache cache = new PathCache();
+        map.setPathCache(cache);
+        try {
+            PathNode path = colonist.findPath(destinationTile);
+            assertEquals("First search misses", 1, cache.getMisses());
+            assertEquals("Cached path matches", uncached.fullPathToString(),
+                         path.fullPathToString());
+            PathNode again = colonist.findPath(destinationTile);
+            assertEquals("Second search hits", 1, cache.getHits());
+            assertNotSame("Cached paths are copies", path, again);
+            assertEquals("Cached path matches", path.fullPathToString(),
+                         again.fullPathToString());
+
+            // Another colonist of the same type shares the result.
+            other.findPath(destinationTile);
+            assertEquals("Same kind of unit hits", 2, cache.getHits());
+
+            // Block the short path with a foreign unit.
+            Tile blockTile = map.getTile(2, 10);
+            Unit blocker = new ServerUnit(game, blockTile, frenchPlayer,
+                                          colonistType);
+            assertEquals("Blocking unit drops the path", 0, cache.size());
+            path = colonist.findPath(destinationTile);
+            assertEquals("Search after blocking misses", 2, cache.getMisses());
+            assertEquals("Cached result matches a fresh search",
+                         map.findPath(colonist, unitTile, destinationTile,
+                                      null, null).fullPathToString(),
+                         path.fullPathToString());
+            assertFalse("The long path avoids the blocked tile",
+                        path.fullPathToString().contains(blockTile.getId()));
+
+            // Unblocking opens a shorter route the long path does not
+            // visit, so it must be dropped too.
+            blocker.setLocation(map.getTile(10, 20));
+            path = colonist.findPath(destinationTile);
+            assertEquals("Search after unblocking misses", 3,
+                         cache.getMisses());
+            assertEquals("Unblocked path matches the first",
+                         uncached.fullPathToString(), path.fullPathToString());
+        } finally {
+            map.setPathCache(null);
+        }
+    }
+
+    public void testDistanceFields() {
+        Game game = getStandardGame();
+        // A wide lake across the map with one gap.
+        MapBuilder builder = new MapBuilder(game);
+        builder.setDimensions(40, 80).setBaseTileType(plainsType);
+        for (int x = 0; x < 40; x++) {
+            if (x == 34) continue;
+            for (int y = 38; y < 43; y++) builder.setTile(x, y, lakeType);
+        }
+        Map map = builder.build();
+        game.setMap(map);
+
+        Player dutchPlayer = game.getPlayer("model.nation.dutch");
+        Tile north = map.getTile(30, 10);
+        Tile south = map.getTile(5, 76);
+        FreeColTestUtils.getColonyBuilder().player(dutchPlayer)
+            .colonyTile(north).build();
+        FreeColTestUtils.getColonyBuilder().player(dutchPlayer)
+            .colonyTile(south).build();
+        List<Tile> targets = new ArrayList<Tile>();
+        targets.add(north);
+        targets.add(south);
+
+        DistanceField field = new DistanceField(map, targets, false);
+        assertEquals("No moves at a target", 0, field.getSteps(north));
+        assertNull("No next step at a target", field.getNextStep(north));
+        assertEquals("Lake unreachable by land", DistanceField.UNREACHABLE,
+                     field.getSteps(map.getTile(20, 40)));
+        Tile start = map.getTile(34, 44);
+        assertEquals("Nearest by moves is through the gap", north,
+                     field.getSource(start));
+        Tile t = start;
+        for (int steps = field.getSteps(start); steps > 0; steps--) {
+            t = t.getNeighbourOrNull(field.getNextStep(t));
+            assertEquals("Each step is one move nearer", steps - 1,
+                         field.getSteps(t));
+        }
+        assertEquals("Steps lead to the nearest target", north, t);
+        assertTrue("Moves are never fewer than the distance",
+                   field.getSteps(start) >= start.getDistanceTo(north));
+
+        Unit colonist = new ServerUnit(game, start, dutchPlayer,
+                                       colonistType);
+        PathNode full = colonist.findOurNearestSettlement();
+        assertNotNull("A settlement should be found", full);
+
+        DistanceFields fields = new DistanceFields(map);
+        map.setDistanceFields(fields);
+        try {
+            PathNode path = colonist.findOurNearestSettlement();
+            assertNotNull("A settlement should be found with fields", path);
+            assertEquals("Same settlement with fields",
+                         full.getLastNode().getTile(),
+                         path.getLastNode().getTile());
+            assertEquals("Same turns with fields", full.getTotalTurns(),
+                         path.getTotalTurns());
+            colonist.findOurNearestSettlement();
+            assertEquals("One field made", 1, fields.getMade());
+            assertEquals("Field reused", 1, fields.getReused());
+
+            // Close the gap, so only the southern colony can be reached.
+            for (int y = 38; y < 43; y++) {
+                map.getTile(34, y).setType(lakeType);
+            }
+            map.setDistanceFields(null);
+            full = colonist.findOurNearestSettlement();
+            map.setDistanceFields(fields);
+            path = colonist.findOurNearestSettlement();
+            assertEquals("Field remade after a terrain change", 2,
+                         fields.getMade());
+            assertEquals("Now the southern settlement", south,
+                         path.getLastNode().getTile());
+            assertEquals("Same turns after the change", full.getTotalTurns(),
+                         path.getTotalTurns());
+
+            // No settlement can be reached from an island.
+            Tile island = map.getTile(20, 40);
+            island.setType(plainsType);
+            colonist.setLocation(island);
+            assertNull("No settlement reachable from the island",
+                       colonist.findOurNearestSettlement());
+        } finally {
+            map.setDistanceFields(null);
+        }
+    }
+
     public void testSearchForColony() {
         Game game = getStandardGame();
         Map map = getCoastTestMap(plainsType, true);
@@ -610,4 +810,177 @@ public class MapTest extends FreeColTestCase {
         assertFalse(otherColony == colony);
         assertEquals(otherColony.getId(), colony.getId());
     }
+
+    /**
+     * Checks the contiguity of a map against a slow flood fill,
+     * numbering water then land regions as they are met.
+     */
+    private void checkContiguity(Map map, boolean exactNumbers) {
+        final int width = map.getWidth(), height = map.getHeight();
+        boolean[][] water = new boolean[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                water[x][y] = !map.getTile(x, y).isLand();
+            }
+        }
+        int[][] expect = new int[width][height];
+        int contig = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (!water[x][y] || expect[x][y] > 0) continue;
+                    contig++;
+                    boolean[][] found = Map.floodFill(water, x, y);
+                    for (int xx = 0; xx < width; xx++) {
+                        for (int yy = 0; yy < height; yy++) {
+                            if (found[xx][yy]) expect[xx][yy] = contig;
+                        }
+                    }
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) water[x][y] = !water[x][y];
+            }
+        }
+
+        java.util.Map<Integer, Integer> forward
+            = new java.util.HashMap<Integer, Integer>();
+        java.util.Map<Integer, Integer> backward
+            = new java.util.HashMap<Integer, Integer>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int actual = map.getTile(x, y).getContiguity();
+                if (exactNumbers) {
+                    assertEquals("Contiguity at " + x + "," + y,
+                                 expect[x][y] - 1, actual);
+                }
+                Integer f = forward.put(expect[x][y], actual);
+                Integer b = backward.put(actual, expect[x][y]);
+                assertTrue("Region split at " + x + "," + y,
+                           f == null || f == actual);
+                assertTrue("Regions joined at " + x + "," + y,
+                           b == null || b == expect[x][y]);
+            }
+        }
+    }
+
+    public void testContiguity() {
+        Game game = getStandardGame();
+        Random random = new Random(7);
+        MapBuilder builder = new MapBuilder(game);
+        builder.setDimensions(24, 40).setBaseTileType(oceanType);
+        for (int x = 0; x < 24; x++) {
+            for (int y = 0; y < 40; y++) {
+                if (random.nextInt(100) < 45) {
+                    builder.setTile(x, y, plainsType);
+                }
+            }
+        }
+        Map map = builder.build();
+        game.setMap(map);
+
+        map.resetContiguity();
+        checkContiguity(map, true);
+
+        // Toggle tiles between land and water, splitting and joining
+        // regions.
+        for (int i = 0; i < 200; i++) {
+            Tile tile = map.getTile(random.nextInt(24), random.nextInt(40));
+            tile.setType((tile.isLand()) ? oceanType : plainsType);
+            map.updateContiguity(tile);
+            checkContiguity(map, false);
+        }
+    }
+
+    private static Set<Unit> enemiesWithin(Player player, Tile tile,
+                                           int radius, List<Unit> units) {
+        Set<Unit> result = new HashSet<Unit>();
+        for (Unit u : units) {
+            if (!u.isDisposed() && u.getLocation() instanceof Tile
+                && player.atWarWith(u.getOwner())
+                && u.getTile().getDistanceTo(tile) <= radius) result.add(u);
+        }
+        return result;
+    }
+
+    public void testSpatialIndex() {
+        Game game = getStandardGame();
+        Random random = new Random(11);
+        MapBuilder builder = new MapBuilder(game);
+        builder.setDimensions(24, 40).setBaseTileType(plainsType);
+        Map map = builder.build();
+        game.setMap(map);
+        Player dutch = game.getPlayer("model.nation.dutch");
+        Player french = game.getPlayer("model.nation.french");
+        dutch.setStance(french, Stance.WAR);
+        french.setStance(dutch, Stance.WAR);
+        SpatialIndex index = map.getSpatialIndex();
+
+        // Units placed and moved after the index is made are tracked.
+        List<Unit> units = new ArrayList<Unit>();
+        for (int i = 0; i < 30; i++) {
+            Tile tile = map.getTile(random.nextInt(24), random.nextInt(40));
+            units.add(new ServerUnit(game, tile, (i % 2 == 0) ? dutch
+                    : french, colonistType));
+        }
+        List<Unit> found = new ArrayList<Unit>();
+        for (int i = 0; i < 200; i++) {
+            Unit unit = units.get(random.nextInt(units.size()));
+            if (i % 50 == 49) {
+                unit.dispose();
+            } else if (!unit.isDisposed()) {
+                unit.setLocation(map.getTile(random.nextInt(24),
+                                             random.nextInt(40)));
+            }
+            Tile tile = map.getTile(random.nextInt(24), random.nextInt(40));
+            int radius = random.nextInt(10);
+            Player player = (i % 2 == 0) ? dutch : french;
+            Set<Unit> expect = enemiesWithin(player, tile, radius, units);
+            found.clear();
+            assertEquals(expect.size(),
+                index.getEnemyUnitsWithin(player, tile, radius, found));
+            assertEquals(expect, new HashSet<Unit>(found));
+            assertEquals(!expect.isEmpty(),
+                index.hasEnemyUnitWithin(player, tile, radius));
+        }
+
+        // Settlements are found when placed, and not once removed.
+        Tile tile = map.getTile(12, 20);
+        Colony colony = getStandardColony(1, 15, 24);
+        assertEquals(colony, tile.getNearestSettlement(null, 0));
+        assertEquals(colony, tile.getNearestSettlement(dutch, 0));
+        assertNull(tile.getNearestSettlement(null,
+                tile.getDistanceTo(colony.getTile()) - 1));
+        Colony nearer = getStandardColony(1, 12, 18);
+        assertEquals(nearer, tile.getNearestSettlement(null, 0));
+        assertEquals(colony, nearer.getTile().getNearestSettlement(null, 0));
+        nearer.exciseSettlement();
+        assertEquals(colony, tile.getNearestSettlement(null, 0));
+
+        // Ties go to the settlement a circle search finds first, even
+        // where that is not the first by map position.
+        tile = map.getTile(12, 32);
+        List<Tile> ring = new ArrayList<Tile>();
+        for (Tile t : map.getCircleTiles(tile, true, 2)) {
+            if (t.getDistanceTo(tile) == 2) ring.add(t);
+        }
+        Tile first = null, second = null;
+        for (int i = 0; i < ring.size() && first == null; i++) {
+            for (int j = i + 1; j < ring.size(); j++) {
+                Tile a = ring.get(i), b = ring.get(j);
+                if (a.getY() > b.getY()
+                    || (a.getY() == b.getY() && a.getX() > b.getX())) {
+                    first = a;
+                    second = b;
+                    break;
+                }
+            }
+        }
+        assertNotNull(first);
+        Colony later = getStandardColony(1, second.getX(), second.getY());
+        Colony earlier = getStandardColony(1, first.getX(), first.getY());
+        assertEquals(earlier, tile.getNearestSettlement(null, 0));
+        later.exciseSettlement();
+        earlier.exciseSettlement();
+    }
 }
@@ -19,7 +19,12 @@
 
 package net.sf.freecol.common.model;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import net.sf.freecol.server.model.ServerGame;
 import net.sf.freecol.server.model.ServerPlayer;
@@ -298,4 +303,72 @@ public class PlayerTest extends FreeColTestCase {
         }
 
     }
+
+    private static Set<Tile> inSight(Player player) {
+        Set<Tile> result = new HashSet<Tile>();
+        for (Unit u : player.getUnits()) {
+            if (!(u.getLocation() instanceof Tile)) continue;
+            result.addAll(u.getTile().getSurroundingTiles(0,
+                    u.getLineOfSight()));
+        }
+        return result;
+    }
+
+    private static void checkSight(Player player, Set<Tile> expected) {
+        for (Tile t : player.getGame().getMap().getAllTiles()) {
+            assertEquals("Visibility of " + t, expected.contains(t),
+                         player.canSee(t));
+        }
+    }
+
+    public void testCanSee() {
+        Game game = getStandardGame();
+        Map map = getTestMap(spec().getTileType("model.tile.plains"));
+        game.setMap(map);
+        assertTrue(spec().getBoolean(GameOptions.FOG_OF_WAR));
+        Player dutch = game.getPlayer("model.nation.dutch");
+
+        Random random = new Random(1);
+        List<Unit> units = new ArrayList<Unit>();
+        for (int i = 0; i < 5; i++) {
+            units.add(new ServerUnit(game, map.getTile(2 + 3 * i, 5 + i),
+                                     dutch, freeColonist));
+        }
+        dutch.invalidateCanSeeTiles();
+        Set<Tile> seen = inSight(dutch);
+        checkSight(dutch, seen);
+        assertTrue("Nothing new to start with",
+                   dutch.pollNewlyVisibleTiles().isEmpty());
+
+        for (int n = 0; n < 20; n++) {
+            Unit unit = units.get(random.nextInt(units.size()));
+            int x = 1 + random.nextInt(map.getWidth() - 2);
+            int y = 1 + random.nextInt(map.getHeight() - 2);
+            unit.setLocation(map.getTile(x, y));
+            dutch.invalidateCanSeeTiles();
+            Set<Tile> now = inSight(dutch);
+            checkSight(dutch, now);
+
+            Set<Tile> visible = new HashSet<Tile>(now);
+            visible.removeAll(seen);
+            Set<Tile> hidden = new HashSet<Tile>(seen);
+            hidden.removeAll(now);
+            assertEquals(visible,
+                         new HashSet<Tile>(dutch.pollNewlyVisibleTiles()));
+            assertEquals(hidden,
+                         new HashSet<Tile>(dutch.pollNewlyHiddenTiles()));
+            seen = now;
+        }
+
+        // A unit leaving the map takes its sightings with it.
+        Unit unit = units.get(0);
+        Set<Tile> around = new HashSet<Tile>(unit.getTile()
+            .getSurroundingTiles(0, unit.getLineOfSight()));
+        unit.dispose();
+        dutch.invalidateCanSeeTiles();
+        Set<Tile> now = inSight(dutch);
+        checkSight(dutch, now);
+        around.removeAll(now);
+        assertEquals(around, new HashSet<Tile>(dutch.pollNewlyHiddenTiles()));
+    }
 }
@@ -20,10 +20,16 @@
 package net.sf.freecol.common.model;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.List;
 import java.util.Set;
 
+import javax.xml.stream.XMLStreamException;
+
 import net.sf.freecol.client.gui.MapViewer;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.option.OptionGroup;
 import net.sf.freecol.util.test.FreeColTestCase;
 import net.sf.freecol.util.test.FreeColTestUtils;
@@ -645,4 +651,54 @@ public class TileTest extends FreeColTestCase {
         // recognized as belonging to the colony which stops those
         // work locations from contributing their units.
     }
+
+    private static String writeTo(Tile tile, Player player)
+        throws IOException, XMLStreamException {
+        StringWriter sw = new StringWriter();
+        FreeColXMLWriter xw = new FreeColXMLWriter(sw,
+            FreeColXMLWriter.WriteScope.toClient(player), false);
+        tile.toXML(xw);
+        xw.close();
+        return sw.toString();
+    }
+
+    public void testCachedViews() throws Exception {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(plains));
+        Colony colony = getStandardColony();
+        Tile tile = colony.getTile();
+        Player english = game.getPlayer("model.nation.english");
+        Player french = game.getPlayer("model.nation.french");
+
+        assertFalse(tile.isExploredBy(french));
+        tile.setExplored(english, true);
+        tile.setExplored(french, true);
+        assertTrue(tile.isExploredBy(french));
+
+        java.util.Map<Player, TileSnapshot> views = tile.getTileToCache();
+        TileSnapshot view = views.get(french);
+        assertNotNull(view);
+        assertTrue("Same view should be shared", view == views.get(english));
+
+        // The view records what the player was sent.
+        String seen = writeTo(tile, french);
+        FreeColXMLReader xr = new FreeColXMLReader(new StringReader(seen));
+        xr.nextTag();
+        assertEquals(view, TileSnapshot.read(xr));
+        xr.close();
+
+        // Players with a cached view do not see changes.
+        tile.setView(french, view);
+        assertTrue("Kept view should be shared",
+                   view == tile.getTileToCache().get(english));
+        colony.setName("Changed");
+        assertEquals(seen, writeTo(tile, french));
+        assertFalse(seen.equals(writeTo(tile, english)));
+
+        tile.seeTile(french);
+        assertEquals(writeTo(tile, english), writeTo(tile, french));
+
+        tile.setExplored(french, false);
+        assertFalse(tile.isExploredBy(french));
+    }
 }
@@ -23,6 +23,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.Set;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.DocumentBuilder;
 
@@ -669,4 +670,58 @@ public class UnitTest extends FreeColTestCase {
 
     }
 
+    public void testFeatureCache() {
+        Game game = getStandardGame();
+        Map map = getTestMap();
+        game.setMap(map);
+
+        Colony colony = getStandardColony();
+        Player dutch = game.getPlayer("model.nation.dutch");
+        Tile tile = colony.getTile().getNeighbourOrNull(Map.Direction.N);
+        Unit unit = new ServerUnit(game, tile, dutch, colonistType);
+
+        // Repeated queries share an unmodifiable set.
+        Set<Modifier> offence = unit.getModifierSet(Modifier.OFFENCE);
+        assertSame(offence, unit.getModifierSet(Modifier.OFFENCE));
+        try {
+            offence.add(new Modifier(Modifier.OFFENCE, 1, Modifier.Type.ADDITIVE));
+            fail("Cached modifier set should be unmodifiable");
+        } catch (UnsupportedOperationException uoe) {}
+
+        // Equipment changes are seen.
+        unit.changeEquipment(musketsEquipmentType, 1);
+        assertTrue(unit.getModifierSet(Modifier.OFFENCE)
+            .containsAll(musketsEquipmentType.getModifierSet(Modifier.OFFENCE)));
+        unit.clearEquipment();
+        assertEquals(offence, unit.getModifierSet(Modifier.OFFENCE));
+
+        // Type changes are seen.
+        unit.setType(veteranSoldierType);
+        assertTrue(unit.getModifierSet(Modifier.OFFENCE)
+            .containsAll(veteranSoldierType.getModifierSet(Modifier.OFFENCE)));
+        unit.setType(colonistType);
+
+        // Changes to the owner features are seen.
+        Modifier bonus = new Modifier(Modifier.OFFENCE, 50,
+                                      Modifier.Type.PERCENTAGE);
+        dutch.addModifier(bonus);
+        assertTrue(unit.getModifierSet(Modifier.OFFENCE).contains(bonus));
+        dutch.removeModifier(bonus);
+        assertFalse(unit.getModifierSet(Modifier.OFFENCE).contains(bonus));
+        assertFalse(unit.hasAbility(Ability.INDEPENDENCE_DECLARED));
+        dutch.setPlayerType(Player.PlayerType.REBEL);
+        assertTrue(unit.hasAbility(Ability.INDEPENDENCE_DECLARED));
+        assertTrue(colony.hasAbility(Ability.INDEPENDENCE_DECLARED));
+        dutch.setPlayerType(Player.PlayerType.COLONIAL);
+        assertFalse(unit.hasAbility(Ability.INDEPENDENCE_DECLARED));
+
+        // Settlement abilities apply once the unit enters the settlement.
+        final String id = "model.ability.featureCacheTest";
+        colony.addAbility(new Ability(id));
+        assertFalse(unit.hasAbility(id));
+        unit.setLocation(colony.getTile());
+        assertTrue(unit.hasAbility(id));
+        unit.setLocation(tile);
+        assertFalse(unit.hasAbility(id));
+    }
 }
@@ -0,0 +1,294 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.jar.JarFile;
+
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.DiplomaticTrade;
+import net.sf.freecol.common.model.ExportData;
+import net.sf.freecol.common.model.FreeColGameObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Goods;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.Location;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Region;
+import net.sf.freecol.common.model.Settlement;
+import net.sf.freecol.common.model.StringTemplate;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TradeItem;
+import net.sf.freecol.common.model.TradeRoute;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.WorkLocation;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class BinaryMessageCodecTest extends FreeColTestCase {
+
+    private static final GoodsType cottonType
+        = spec().getGoodsType("model.goods.cotton");
+
+
+    /**
+     * Finds all the concrete <code>DOMMessage</code> subclasses.
+     */
+    private List<Class<?>> getMessageClasses() throws Exception {
+        final String pkg = "net/sf/freecol/common/networking/";
+        List<String> names = new ArrayList<String>();
+        File where = new File(DOMMessage.class.getProtectionDomain()
+            .getCodeSource().getLocation().toURI());
+        if (where.isDirectory()) {
+            for (String f : new File(where, pkg).list()) names.add(pkg + f);
+        } else {
+            JarFile jar = new JarFile(where);
+            for (Enumeration<? extends java.util.zip.ZipEntry> e
+                     = jar.entries(); e.hasMoreElements();) {
+                names.add(e.nextElement().getName());
+            }
+            jar.close();
+        }
+        List<Class<?>> result = new ArrayList<Class<?>>();
+        for (String name : names) {
+            if (!name.startsWith(pkg) || !name.endsWith(".class")
+                || name.indexOf('$') >= 0) continue;
+            String cn = name.substring(0, name.length() - ".class".length())
+                .replace('/', '.');
+            Class<?> c = Class.forName(cn);
+            if (c != DOMMessage.class && DOMMessage.class.isAssignableFrom(c)
+                && !Modifier.isAbstract(c.getModifiers())) result.add(c);
+        }
+        return result;
+    }
+
+    /**
+     * Makes a message with the public constructor that does not take
+     * an element, using sample arguments.
+     */
+    private DOMMessage makeMessage(Class<?> c,
+                                   java.util.Map<Class<?>, Object> samples)
+        throws Exception {
+        outer: for (Constructor<?> k : c.getConstructors()) {
+            Class<?>[] types = k.getParameterTypes();
+            if (types.length == 2 && types[1] == Element.class) continue;
+            Object[] args = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                if (samples.containsKey(types[i])) {
+                    args[i] = samples.get(types[i]);
+                } else if (types[i].isEnum()) {
+                    args[i] = types[i].getEnumConstants()[0];
+                } else if (types[i] == List.class) {
+                    args[i] = new ArrayList<Object>();
+                } else if (types[i] == String[].class) {
+                    args[i] = new String[] { "key", "value" };
+                } else {
+                    continue outer;
+                }
+            }
+            return (DOMMessage)k.newInstance(args);
+        }
+        return null;
+    }
+
+    private String encodeXML(Element element) {
+        return DOMMessage.elementToString(element);
+    }
+
+    public void testConformance() throws Exception {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(true));
+        Colony colony = getStandardColony();
+        Player player = colony.getOwner();
+        Player other = game.getPlayer("model.nation.french");
+        Unit unit = colony.getUnitList().get(0);
+        Tile tile = colony.getTile();
+        Goods goods = new Goods(game, colony, cottonType, 42);
+        WorkLocation wl = colony.getWorkLocationFor(unit);
+
+        java.util.Map<Class<?>, Object> samples
+            = new HashMap<Class<?>, Object>();
+        samples.put(Game.class, game);
+        samples.put(Unit.class, unit);
+        samples.put(Colony.class, colony);
+        samples.put(Settlement.class, colony);
+        samples.put(Tile.class, tile);
+        samples.put(Location.class, tile);
+        samples.put(FreeColGameObject.class, unit);
+        samples.put(WorkLocation.class, (wl != null) ? wl
+            : colony.getBuildings().get(0));
+        samples.put(Player.class, player);
+        samples.put(Goods.class, goods);
+        samples.put(GoodsType.class, cottonType);
+        samples.put(String.class, "Café");
+        samples.put(int.class, Integer.valueOf(-17));
+        samples.put(boolean.class, Boolean.TRUE);
+        samples.put(Element.class, DOMMessage.createMessage("test",
+                "a", "1", "b", "unit:007"));
+        samples.put(net.sf.freecol.common.model.UnitType.class,
+            unit.getType());
+        samples.put(net.sf.freecol.common.model.Role.class,
+            spec().getRole("model.role.soldier"));
+        samples.put(net.sf.freecol.common.model.TileImprovementType.class,
+            spec().getTileImprovementType("model.improvement.road"));
+        samples.put(net.sf.freecol.common.model.EquipmentType.class,
+            spec().getEquipmentTypeList().get(0));
+        samples.put(net.sf.freecol.common.model.FoundingFather.class,
+            spec().getFoundingFathers().get(0));
+        samples.put(StringTemplate.class,
+            StringTemplate.template("model.unit.nationUnit")
+            .addName("%nation%", "Dutch"));
+        samples.put(TradeRoute.class, new TradeRoute(game, "route", player));
+        samples.put(Region.class, new Region(game));
+        samples.put(ExportData.class, new ExportData(cottonType));
+        samples.put(DiplomaticTrade.class, new DiplomaticTrade(game, player,
+                other, new ArrayList<TradeItem>(), 0));
+
+        List<String> failed = new ArrayList<String>();
+        List<Class<?>> classes = getMessageClasses();
+        assertTrue(classes.size() > 50);
+        for (Class<?> c : classes) {
+            Element element;
+            try {
+                DOMMessage message = makeMessage(c, samples);
+                element = (message == null) ? null : message.toXMLElement();
+            } catch (Exception e) {
+                element = null;
+            }
+            if (element == null) {
+                failed.add(c.getSimpleName());
+                continue;
+            }
+            String xml = encodeXML(element);
+
+            // XML text round trip.
+            DOMMessage viaXML = MessageDecoder.decode(new ByteArrayInputStream(
+                    xml.getBytes("UTF-8")));
+            assertEquals(c.getSimpleName(), xml,
+                encodeXML(viaXML.getDocument().getDocumentElement()));
+
+            // Binary round trip, through a framed stream and with fresh
+            // string tables, and again with the tables populated.
+            BinaryMessageCodec out = new BinaryMessageCodec();
+            BinaryMessageCodec in = new BinaryMessageCodec();
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                out.writeFrame(element, bos);
+                byte[] frame = bos.toByteArray();
+                assertEquals(BinaryMessageCodec.FRAME_MARKER, frame[0]);
+                int pos = 1, length = 0;
+                for (int shift = 0;; shift += 7) {
+                    int b = frame[pos++];
+                    length |= (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0) break;
+                }
+                assertEquals(frame.length - pos, length);
+                byte[] payload = new byte[length];
+                System.arraycopy(frame, pos, payload, 0, length);
+                DOMMessage viaBinary = in.decode(payload);
+                assertEquals(c.getSimpleName(), xml,
+                    encodeXML(viaBinary.getDocument().getDocumentElement()));
+            }
+        }
+        assertEquals("Messages not constructed: " + failed,
+            Collections.emptyList(), failed);
+    }
+
+    public void testValues() throws Exception {
+        String[] values = { "", "0", "-0", "007", "-17", "123456789",
+                            "1234567890", "unit:0", "unit:01", "a:b:12",
+                            ":12", "tile:", "model.goods.food", "true",
+                            "café", "12:30", "-", "2147483647",
+                            "<1> & \"2\"" };
+        Element element = DOMMessage.createMessage("values");
+        for (int i = 0; i < values.length; i++) {
+            element.setAttribute("v" + i, values[i]);
+        }
+        element.appendChild(element.getOwnerDocument()
+            .createTextNode("text & <more>"));
+        Element child = element.getOwnerDocument().createElement("child");
+        child.setAttribute("v0", "true");
+        element.appendChild(child);
+
+        BinaryMessageCodec out = new BinaryMessageCodec();
+        BinaryMessageCodec in = new BinaryMessageCodec();
+        String xml = encodeXML(element);
+        byte[] first = out.encode(element);
+        assertEquals(xml, encodeXML(in.decode(first).getDocument()
+                .getDocumentElement()));
+        byte[] second = out.encode(element);
+        assertTrue("String table not used", second.length < first.length);
+        assertEquals(xml, encodeXML(in.decode(second).getDocument()
+                .getDocumentElement()));
+        assertTrue("Not compact", second.length < xml.length() / 2);
+    }
+
+    public void testMalformed() throws Exception {
+        byte[] data = new BinaryMessageCodec()
+            .encode(DOMMessage.createMessage("test", "a", "1"));
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        byte[] trailing = new byte[data.length + 1];
+        System.arraycopy(data, 0, trailing, 0, data.length);
+        // Each on a fresh codec, as a failure stops further decoding.
+        assertMalformed("Truncated message", truncated);
+        assertMalformed("Bad string reference: 0", new byte[] { 1 });
+        assertMalformed("Trailing data in message", trailing);
+    }
+
+    private static void assertMalformed(String message, byte[] data) {
+        try {
+            new BinaryMessageCodec().decode(data);
+            fail("Malformed message decoded: " + message);
+        } catch (java.io.IOException ioe) {
+            assertEquals(message, ioe.getMessage());
+        }
+    }
+
+    public void testFailedFrameStopsDecoding() throws Exception {
+        BinaryMessageCodec sender = new BinaryMessageCodec();
+        BinaryMessageCodec receiver = new BinaryMessageCodec();
+        // The first frame adds strings to both tables, but is damaged
+        // on the way, so the tables are out of step from then on.
+        byte[] data = sender.encode(DOMMessage.createMessage("first",
+                "name", "value"));
+        try {
+            receiver.decode(java.util.Arrays.copyOf(data, data.length - 1));
+            fail("Damaged frame decoded");
+        } catch (java.io.IOException ioe) {}
+        byte[] next = sender.encode(DOMMessage.createMessage("first",
+                "name", "other"));
+        try {
+            receiver.decode(next);
+            fail("Frame decoded after a failure");
+        } catch (java.io.IOException ioe) {}
+    }
+}
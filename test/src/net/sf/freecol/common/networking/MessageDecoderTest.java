@@ -0,0 +1,77 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class MessageDecoderTest extends FreeColTestCase {
+
+    private static final String[] messages = {
+        "<disconnect reason=\"Too many failures\"/>",
+        "<question networkReplyId=\"42\"><move unit=\"unit:123\" direction=\"NE\"/></question>",
+        "<reply networkReplyId=\"7\"><multiple><update><tile id=\"tile:1\" x=\"1\" y=\"2\"/></update><chat message=\"a &amp; b &lt;c&gt;\"/></multiple></reply>",
+        "<text>Some text &amp; more<inner/>tail</text>",
+    };
+
+
+    private DOMMessage decode(String text) throws Exception {
+        return MessageDecoder.decode(new ByteArrayInputStream(text
+                .getBytes("UTF-8")));
+    }
+
+    public void testDecode() throws Exception {
+        for (String text : messages) {
+            DOMMessage decoded = decode(text);
+            DOMMessage parsed = new DOMMessage(new ByteArrayInputStream(text
+                    .getBytes("UTF-8")));
+            assertEquals(parsed.getType(), decoded.getType());
+            assertTrue(text, parsed.getDocument().getDocumentElement()
+                .isEqualNode(decoded.getDocument().getDocumentElement()));
+        }
+    }
+
+    public void testEnvelope() throws Exception {
+        DOMMessage msg = decode(messages[1]);
+        Element root = msg.getDocument().getDocumentElement();
+        assertEquals(Connection.QUESTION_TAG, root.getTagName());
+        assertEquals("42", root.getAttribute(Connection.NETWORK_REPLY_ID_TAG));
+        assertEquals("move", ((Element)root.getFirstChild()).getTagName());
+        assertEquals("a & b <c>", ((Element)decode(messages[2]).getDocument()
+                .getElementsByTagName("chat").item(0)).getAttribute("message"));
+    }
+
+    public void testMalformed() throws Exception {
+        try {
+            decode("<unclosed attr=\"1\">");
+            fail("Malformed message decoded");
+        } catch (XMLStreamException xse) {}
+        try {
+            decode("");
+            fail("Empty message decoded");
+        } catch (XMLStreamException xse) {}
+    }
+}
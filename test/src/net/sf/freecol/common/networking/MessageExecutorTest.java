@@ -0,0 +1,116 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class MessageExecutorTest extends FreeColTestCase {
+
+    public void testOrdering() throws InterruptedException {
+        final MessageExecutor executor = new MessageExecutor("test");
+        final List<Integer> seen
+            = Collections.synchronizedList(new ArrayList<Integer>());
+        final int n = 200;
+        final CountDownLatch done = new CountDownLatch(n);
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            executor.execute("task" + i, new Runnable() {
+                    public void run() {
+                        if (index % 17 == 0) Thread.yield();
+                        seen.add(index);
+                        done.countDown();
+                    }
+                });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, seen.get(i).intValue());
+        }
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    public void testRelease() throws InterruptedException {
+        final MessageExecutor executor = new MessageExecutor("test");
+        final CountDownLatch second = new CountDownLatch(1);
+        final CountDownLatch first = new CountDownLatch(1);
+        final boolean[] result = new boolean[1];
+
+        // The first task waits for the second, which would deadlock
+        // without the release.
+        executor.execute("first", new Runnable() {
+                public void run() {
+                    MessageExecutor.release();
+                    try {
+                        result[0] = second.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ie) {}
+                    first.countDown();
+                }
+            });
+        executor.execute("second", new Runnable() {
+                public void run() {
+                    second.countDown();
+                }
+            });
+        assertTrue(first.await(20, TimeUnit.SECONDS));
+        assertTrue(result[0]);
+    }
+
+    public void testStatistics() throws InterruptedException {
+        final MessageExecutor executor = new MessageExecutor("test");
+        final CountDownLatch done = new CountDownLatch(1);
+        final long before = Long.parseLong(MessageExecutor.getStatistics()
+            .get("messagesHandled"));
+        executor.execute("first", new Runnable() {
+                public void run() {}
+            });
+        // The first task is fully accounted for before the second runs.
+        executor.execute("second", new Runnable() {
+                public void run() {
+                    done.countDown();
+                }
+            });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        java.util.Map<String, String> stats = MessageExecutor.getStatistics();
+        assertTrue(Long.parseLong(stats.get("messagesHandled")) > before);
+        assertNotNull(stats.get("messageQueueDepth"));
+        assertNotNull(stats.get("messageHandlerAverage"));
+    }
+
+    public void testPoolSize() {
+        final int old = MessageExecutor.getPoolSize();
+        try {
+            MessageExecutor.setPoolSize(2);
+            assertEquals(2, MessageExecutor.getPoolSize());
+            try {
+                MessageExecutor.setPoolSize(0);
+                fail("Zero size pool accepted");
+            } catch (IllegalArgumentException iae) {}
+        } finally {
+            MessageExecutor.setPoolSize(old);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.resources;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.MemoryImageSource;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class ImageCacheTest extends FreeColTestCase {
+
+    private static final Dimension SMALL = new Dimension(16, 16);
+    private static final Dimension LARGE = new Dimension(32, 32);
+
+
+    private static Image makeImage(Dimension d) {
+        return new BufferedImage(d.width, d.height,
+                                 BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static Image makeToolkitImage(Dimension d) {
+        int[] pixels = new int[d.width * d.height];
+        return Toolkit.getDefaultToolkit().createImage(
+            new MemoryImageSource(d.width, d.height, pixels, 0, d.width));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        ImageCache.clear();
+        ImageCache.setBudget(ImageCache.BUDGET_DEFAULT);
+        super.tearDown();
+    }
+
+    public void testScaledImages() {
+        ImageResource r = new ImageResource(makeToolkitImage(LARGE));
+        Image small = r.getImage(SMALL);
+        assertEquals(16, small.getWidth(null));
+        assertSame(small, r.getImage(SMALL));
+        assertSame(small, r.getImage(0.5));
+        assertEquals(1, r.getCount());
+
+        Image gray = r.getGrayscaleImage(SMALL);
+        assertNotSame(small, gray);
+        assertSame(gray, r.getGrayscaleImage(SMALL));
+        assertEquals(2, r.getCount());
+
+        // The original size is not cached
+        assertSame(r.getImage(), r.getImage(LARGE));
+        assertEquals(2, r.getCount());
+    }
+
+    public void testBudget() {
+        ImageResource r1 = new ImageResource(makeImage(LARGE));
+        ImageResource r2 = new ImageResource(makeImage(LARGE));
+        ImageResource r3 = new ImageResource(makeImage(LARGE));
+        final long size = 4 * SMALL.width * SMALL.height;
+        ImageCache.setBudget(2 * size);
+
+        Image i1 = makeImage(SMALL), i2 = makeImage(SMALL);
+        Image i3 = makeImage(SMALL);
+        ImageCache.put(r1, SMALL, false, i1);
+        ImageCache.put(r2, SMALL, false, i2);
+        assertSame(i1, ImageCache.get(r1, SMALL, false));
+        ImageCache.put(r3, SMALL, false, i3);
+        assertEquals(1, r1.getCount());
+        assertEquals(0, r2.getCount());
+        assertEquals(1, r3.getCount());
+        assertEquals("1", ImageCache.getStatistics().get("imageCacheEvictions"));
+        assertEquals(Long.toString(2 * size),
+            ImageCache.getStatistics().get("imageCacheBytes"));
+
+        // The dropped image is still reachable, so it comes back
+        assertSame(i2, ImageCache.get(r2, SMALL, false));
+        assertEquals(1, r2.getCount());
+        assertEquals("1", ImageCache.getStatistics().get("imageCacheSoftHits"));
+
+        ImageCache.setBudget(0);
+        assertEquals(1, r1.getCount() + r2.getCount() + r3.getCount());
+        assertNull(ImageCache.get(r1, LARGE, false));
+    }
+}
@@ -20,6 +20,9 @@
 package net.sf.freecol.server;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.JarFile;
 
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.io.FreeColSavegameFile;
@@ -94,4 +97,54 @@ System.err.println("BAR");
         file.delete();
         assertFalse(file.exists());
     }
+
+    public void testBackgroundSave() {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File dir = file.getAbsoluteFile().getParentFile();
+        File backup = new File(dir, "test-backup.fsg");
+        backup.delete();
+
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        try {
+            server.saveGameInBackground(file, backup, null);
+            server.saveGameInBackground(file, backup, null);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        SavegameWriter.waitForPending();
+        assertTrue("Save written", file.exists());
+        assertTrue("Previous save kept", backup.exists());
+        for (String f : dir.list()) {
+            assertFalse("Temporary file left: " + f,
+                        f.startsWith(file.getName()) && f.endsWith(".tmp"));
+        }
+
+        server = ServerTestHelper.startServer(file, false, true);
+        assertNotNull(server.getGame());
+        assertNotNull(server.getGame().getMap());
+        server = ServerTestHelper.startServer(backup, false, true);
+        assertNotNull(server.getGame());
+        file.delete();
+        backup.delete();
+    }
+
+    public void testBackgroundSaveOrder() throws IOException {
+        File file = File.createTempFile("order-", ".fsg");
+        for (int i = 0; i < 20; i++) {
+            SavegameWriter writer = new SavegameWriter();
+            writer.addEntry("turn", new byte[] { (byte)i });
+            writer.writeInBackground(file, null);
+        }
+        SavegameWriter.waitForPending();
+
+        JarFile jar = new JarFile(file);
+        try {
+            InputStream in = jar.getInputStream(jar.getEntry("turn"));
+            assertEquals("Latest save kept", 19, in.read());
+            in.close();
+        } finally {
+            jar.close();
+            file.delete();
+        }
+    }
 }
@@ -19,6 +19,8 @@
 
 package net.sf.freecol.server.ai;
 
+import java.util.List;
+
 import net.sf.freecol.common.model.BuildableType;
 import net.sf.freecol.common.model.Building;
 import net.sf.freecol.common.model.BuildingType;
@@ -350,4 +352,72 @@ public class AIColonyTest extends FreeColTestCase {
         Colony colony = getStandardColony();
         assertEquals(artilleryType, colony.getBestDefenderType());
     }
+
+    public void testPlanTurn() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(savannahType));
+        Colony colony = decorateMap(game, true);
+        AIMain aiMain = ServerTestHelper.getServer().getAIMain();
+        AIColony aiColony = aiMain.getAIColony(colony);
+        colony.addGoods(foodType, GoodsContainer.CARGO_SIZE);
+
+        // The prepared plan is the one the colony would make anyway.
+        aiColony.propertyChange(null); // force rearranging workers
+        aiColony.planTurn();
+        ColonyPlan prepared = aiColony.getPreparedPlan();
+        assertNotNull("Colony should have planned", prepared);
+        ColonyPlan plan = new ColonyPlan(aiMain, colony);
+        plan.update();
+        assertEquals(plan.toString(), prepared.toString());
+
+        // Rearranging consumes the plan, and then the colony is not
+        // due to plan again.
+        aiColony.rearrangeWorkers();
+        assertNull(aiColony.getPreparedPlan());
+        aiColony.planTurn();
+        assertNull("Colony is not due to rearrange",
+                   aiColony.getPreparedPlan());
+
+        // Parallel planning gives the same plan.
+        boolean parallel = AIMain.isParallelPlanning();
+        try {
+            aiColony.propertyChange(null);
+            AIMain.setParallelPlanning(true);
+            aiMain.planTurn();
+            prepared = aiColony.getPreparedPlan();
+            assertNotNull("Colony should have planned in parallel", prepared);
+            plan = new ColonyPlan(aiMain, colony);
+            plan.update();
+            assertEquals(plan.toString(), prepared.toString());
+        } finally {
+            AIMain.setParallelPlanning(parallel);
+        }
+    }
+
+    public void testPlanState() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(savannahType));
+        AIMain aiMain = ServerTestHelper.getServer().getAIMain();
+        Colony colony = getStandardColony(6);
+        AIColony aiColony = aiMain.getAIColony(colony);
+
+        // Changing the type of a unit changes the state, even though
+        // the population does not change.
+        List<Object> state = aiColony.getPlanState();
+        Unit unit = colony.getUnitList().get(0);
+        unit.setType(lumberJackType);
+        assertFalse("Unit type should be in the plan state",
+                    state.equals(aiColony.getPlanState()));
+
+        // So does defending the colony.
+        assertTrue("Colony should start badly defended",
+                   aiColony.isBadlyDefended());
+        state = aiColony.getPlanState();
+        for (int i = 0; i < 3; i++) {
+            new ServerUnit(game, colony.getTile(),
+                           (ServerPlayer)colony.getOwner(), artilleryType);
+        }
+        assertFalse("Colony should now be defended",
+                    aiColony.isBadlyDefended());
+        assertFalse("Defence should be in the plan state",
+                    state.equals(aiColony.getPlanState()));
+    }
 }
@@ -0,0 +1,322 @@
+/**
+ *  Copyright (C) 2002-2013  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server.control;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.common.model.ModelMessage;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Region;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileType;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.UnitType;
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.server.ServerTestHelper;
+import net.sf.freecol.server.control.ChangeSet.See;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.model.ServerRegion;
+import net.sf.freecol.server.model.ServerUnit;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class ChangeSetTest extends FreeColTestCase {
+
+    private static final TileType plains
+        = spec().getTileType("model.tile.plains");
+
+    private static final GoodsType hammersType
+        = spec().getGoodsType("model.goods.hammers");
+    private static final GoodsType lumberType
+        = spec().getGoodsType("model.goods.lumber");
+
+    private static final UnitType colonistType
+        = spec().getUnitType("model.unit.freeColonist");
+
+
+    private static String toString(Element element) {
+        return (element == null) ? null : DOMMessage.elementToString(element);
+    }
+
+    private static List<String> tags(Element element) {
+        List<String> result = new ArrayList<String>();
+        if (element == null) return result;
+        if ("multiple".equals(element.getTagName())) {
+            for (int i = 0; i < element.getChildNodes().getLength(); i++) {
+                result.add(((Element)element.getChildNodes().item(i))
+                    .getTagName());
+            }
+        } else {
+            result.add(element.getTagName());
+        }
+        return result;
+    }
+
+    public void testVisibility() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        ServerPlayer dutch = (ServerPlayer)game.getPlayer("model.nation.dutch");
+        ServerPlayer french = (ServerPlayer)game.getPlayer("model.nation.french");
+
+        ChangeSet cs = new ChangeSet();
+        cs.addPartial(See.only(dutch), dutch, "gold");
+        assertNotNull(cs.build(dutch));
+        assertNull(cs.build(french));
+
+        cs.addPartial(See.all(), french, "score");
+        assertEquals("update", cs.build(french).getTagName());
+        assertEquals(2, cs.build(dutch).getChildNodes().getLength());
+
+        cs.addPartial(See.all().except(dutch), french, "gold");
+        assertEquals(2, cs.build(dutch).getChildNodes().getLength());
+        assertEquals(2, cs.build(french).getChildNodes().getLength());
+
+        cs.remove(french);
+        assertEquals(1, cs.build(dutch).getChildNodes().getLength());
+        assertNull(cs.build(french));
+    }
+
+    public void testOrder() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        ServerPlayer dutch = (ServerPlayer)game.getPlayer("model.nation.dutch");
+        ServerPlayer french = (ServerPlayer)game.getPlayer("model.nation.french");
+
+        // Changes are sorted by priority, then adjacent similar
+        // elements are collapsed.
+        ChangeSet cs = new ChangeSet();
+        cs.addMessage(See.only(dutch),
+            new ModelMessage("model.player.dead.european", dutch));
+        cs.addPartial(See.only(dutch), dutch, "gold");
+        cs.addPartial(See.all(), french, "score");
+        cs.addMessage(See.only(french),
+            new ModelMessage("model.player.dead.european", french));
+        cs.addPartial(See.only(dutch), dutch, "score");
+
+        Element element = cs.build(dutch);
+        List<String> tags = tags(element);
+        assertEquals(2, tags.size());
+        assertEquals("update", tags.get(0));
+        assertEquals("addObject", tags.get(1));
+        assertEquals(3, ((Element)element.getFirstChild())
+            .getChildNodes().getLength());
+        assertEquals(1, ((Element)element.getLastChild())
+            .getChildNodes().getLength());
+    }
+
+    public void testMove() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        Map map = game.getMap();
+        ServerPlayer dutch = (ServerPlayer)game.getPlayer("model.nation.dutch");
+        ServerPlayer french = (ServerPlayer)game.getPlayer("model.nation.french");
+        ServerPlayer english = (ServerPlayer)game.getPlayer("model.nation.english");
+
+        Tile oldTile = map.getTile(5, 5);
+        Tile newTile = map.getTile(9, 5);
+        Unit unit = new ServerUnit(game, oldTile, dutch, colonistType);
+        new ServerUnit(game, map.getTile(4, 5), french, colonistType);
+        dutch.invalidateCanSeeTiles();
+        french.invalidateCanSeeTiles();
+        english.invalidateCanSeeTiles();
+        assertTrue(french.canSee(oldTile));
+        assertFalse(french.canSee(newTile));
+
+        unit.setLocation(newTile);
+        dutch.invalidateCanSeeTiles();
+        ChangeSet cs = new ChangeSet();
+        cs.addMove(See.perhaps().always(dutch), unit, oldTile, newTile);
+
+        // The owner sees the move, the neighbour sees the unit leave,
+        // and the distant player sees nothing.
+        assertEquals("animateMove", cs.build(dutch).getTagName());
+        List<String> tags = tags(cs.build(french));
+        assertEquals(2, tags.size());
+        assertEquals("animateMove", tags.get(0));
+        assertEquals("remove", tags.get(1));
+        assertNull(cs.build(english));
+    }
+
+    public void testBuildAll() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        Map map = game.getMap();
+        List<ServerPlayer> players = new ArrayList<ServerPlayer>();
+        for (Player p : game.getPlayers()) players.add((ServerPlayer)p);
+
+        ChangeSet cs = new ChangeSet();
+        for (ServerPlayer sp : players) {
+            cs.addPartial(See.only(sp), sp, "gold");
+            cs.addPartial(See.all().except(sp), sp, "score");
+        }
+        cs.add(See.perhaps(), map.getTile(5, 5));
+
+        List<String> serial = new ArrayList<String>();
+        for (ServerPlayer sp : players) serial.add(toString(cs.build(sp)));
+        try {
+            ChangeSet.setParallelBuild(true);
+            List<Element> elements = cs.buildAll(players);
+            assertEquals(players.size(), elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                assertEquals(serial.get(i), toString(elements.get(i)));
+            }
+        } finally {
+            ChangeSet.setParallelBuild(false);
+        }
+    }
+
+    private static String updatedId(Element element) {
+        assertEquals("update", element.getTagName());
+        assertEquals(1, element.getChildNodes().getLength());
+        return ((Element)element.getFirstChild()).getAttribute("id");
+    }
+
+    public void testDeltaUpdates() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        Colony colony = getStandardColony();
+        ServerPlayer dutch = (ServerPlayer)colony.getOwner();
+        dutch.setAI(false); // AI players are always sent everything
+        ChangeSet cs;
+
+        // The first update is sent in full.
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        assertEquals(colony.getId(), updatedId(cs.build(dutch)));
+
+        // Nothing changed, nothing to send.
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        assertNull(cs.build(dutch));
+
+        // Only the changed part is sent.
+        colony.addGoods(lumberType, 10);
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        assertEquals(colony.getGoodsContainer().getId(),
+                     updatedId(cs.build(dutch)));
+
+        // A change to the colony itself sends it in full.
+        colony.setName("Delta");
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        assertEquals(colony.getId(), updatedId(cs.build(dutch)));
+
+        // As does sending a part of it by other means first.
+        cs = new ChangeSet();
+        cs.addPartial(See.only(dutch), colony.getGoodsContainer(), "id");
+        cs.build(dutch);
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        assertEquals(colony.getId(), updatedId(cs.build(dutch)));
+
+        // And a new connection.
+        dutch.setConnection(null);
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        assertEquals(colony.getId(), updatedId(cs.build(dutch)));
+    }
+
+    public void testDeltaUpdatesAfterSendFailure() throws Exception {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        Colony colony = getStandardColony();
+        ServerPlayer dutch = (ServerPlayer)colony.getOwner();
+        dutch.setAI(false); // AI players are always sent everything
+        ServerSocket serverSocket = new ServerSocket(0);
+        Socket socket = new Socket("127.0.0.1", serverSocket.getLocalPort());
+        Socket peer = serverSocket.accept();
+        Connection connection = new Connection(socket, null, "test");
+        try {
+            dutch.setConnection(connection);
+            ChangeSet cs = new ChangeSet();
+            cs.add(See.only(dutch), colony);
+            assertEquals(colony.getId(), updatedId(cs.build(dutch)));
+
+            // The update is never delivered, so the next is in full.
+            socket.shutdownOutput();
+            colony.addGoods(lumberType, 10);
+            cs = new ChangeSet();
+            cs.add(See.only(dutch), colony);
+            Element update = cs.build(dutch);
+            assertEquals(colony.getGoodsContainer().getId(),
+                         updatedId(update));
+            try {
+                connection.send(update);
+                fail("Send should fail");
+            } catch (IOException ioe) {}
+            cs = new ChangeSet();
+            cs.add(See.only(dutch), colony);
+            assertEquals(colony.getId(), updatedId(cs.build(dutch)));
+        } finally {
+            dutch.setConnection(null);
+            connection.reallyClose();
+            peer.close();
+            serverSocket.close();
+        }
+    }
+
+    public void testDeltaUpdatesOnClient() {
+        Game game = ServerTestHelper.startServerGame(getTestMap(plains));
+        Colony colony = getStandardColony();
+        ServerPlayer dutch = (ServerPlayer)colony.getOwner();
+        dutch.setAI(false); // AI players are always sent everything
+        Unit carpenter = colony.getUnitList().get(0);
+        carpenter.setLocation(colony.getBuildingForConsuming(lumberType));
+        colony.removeGoods(lumberType);
+        ChangeSet cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        cs.build(dutch);
+
+        // Test maps have no proper region, which the client needs.
+        Region region = new ServerRegion(game, "model.region.test",
+                                         Region.RegionType.LAND, null);
+        game.getMap().putRegion(region);
+        for (Tile t : game.getMap().getAllTiles()) t.setRegion(region);
+
+        // The client game starts out the same, with no hammers made.
+        Game clientGame = new Game(game.toXMLElement(DOMMessage
+                .createNewDocument(), dutch), dutch.getName());
+        Colony clientColony = clientGame.getFreeColGameObject(colony.getId(),
+                                                              Colony.class);
+        GoodsType clientHammersType = clientGame.getSpecification()
+            .getGoodsType(hammersType.getId());
+        assertEquals(0, colony.getNetProductionOf(hammersType));
+        assertEquals(0, clientColony.getNetProductionOf(clientHammersType));
+
+        // Only the goods container is sent when lumber arrives, and
+        // the client production follows it.
+        colony.addGoods(lumberType, 50);
+        assertTrue(colony.getNetProductionOf(hammersType) > 0);
+        cs = new ChangeSet();
+        cs.add(See.only(dutch), colony);
+        Element update = cs.build(dutch);
+        assertEquals(colony.getGoodsContainer().getId(), updatedId(update));
+        clientGame.getFreeColGameObject(updatedId(update))
+            .readFromXMLElement((Element)update.getFirstChild());
+        assertEquals(colony.getNetProductionOf(hammersType),
+                     clientColony.getNetProductionOf(clientHammersType));
+    }
+}
@@ -19,7 +19,9 @@
 
 package net.sf.freecol.server.model;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import net.sf.freecol.common.model.AbstractGoods;
 import net.sf.freecol.common.model.Building;
@@ -365,6 +367,46 @@ public class ServerColonyTest extends FreeColTestCase {
 
     }
 
+    /**
+     * Runs new turns for two colonies and records the outcome.
+     *
+     * @param parallel Whether to compute the production in parallel.
+     * @return The goods and unit counts of the colonies at each turn.
+     */
+    private List<Integer> runColonyTurns(boolean parallel) {
+        ServerTestHelper.startServerGame(getTestMap(true));
+        ServerTestHelper.setRandom(new Random(1));
+        boolean old = ServerPlayer.isParallelProduction();
+        ServerPlayer.setParallelProduction(parallel);
+        List<Integer> result = new ArrayList<Integer>();
+        try {
+            Colony[] colonies = new Colony[] {
+                getStandardColony(3, 5, 8), getStandardColony(2, 5, 12) };
+            colonies[0].addGoods(lumberGoodsType, 50);
+            colonies[1].addGoods(foodGoodsType, 10);
+            for (int turn = 0; turn < 4; turn++) {
+                ServerTestHelper.newTurn();
+                for (Colony colony : colonies) {
+                    result.add(colony.getUnitCount());
+                    for (GoodsType type : spec().getGoodsTypeList()) {
+                        result.add(colony.getGoodsCount(type));
+                    }
+                }
+            }
+        } finally {
+            ServerPlayer.setParallelProduction(old);
+            ServerTestHelper.stopServerGame();
+        }
+        return result;
+    }
+
+    public void testParallelProduction() {
+        List<Integer> serial = runColonyTurns(false);
+        List<Integer> parallel = runColonyTurns(true);
+        assertEquals("Parallel production should not change the outcome",
+                     serial, parallel);
+    }
+
     /** Disabled.  Currently no reliable way to count messages.
 
     public void testLimitsMessageDelivery() {